@@ -18,15 +18,23 @@ public class ChatProcessor implements IChatProcessor {
     private final IChatFileHandler fileHandler;
     private final IChatFileCache fileCache;
     private final IAiAnalyticsService aiService;
+    private final IChatFileTransfer fileTransfer;
 
     public ChatProcessor(AbstractRPC rpc, Networking network,
                          IChatFileHandler fileHandler, IChatFileCache fileCache,
                          IAiAnalyticsService aiService) {
+        this(rpc, network, fileHandler, fileCache, aiService, new FileTransferManager(rpc, network, fileCache));
+    }
+
+    public ChatProcessor(AbstractRPC rpc, Networking network,
+                         IChatFileHandler fileHandler, IChatFileCache fileCache,
+                         IAiAnalyticsService aiService, IChatFileTransfer fileTransfer) {
         this.rpc = rpc;
         this.network = network;
         this.fileHandler = fileHandler;
         this.fileCache = fileCache;
         this.aiService = aiService;
+        this.fileTransfer = fileTransfer;
     }
 
     // ============================================================================
@@ -56,32 +64,23 @@ public class ChatProcessor implements IChatProcessor {
         try {
             FileMessage pathModeMsg = FileMessageSerializer.deserialize(messageBytes);
 
-            // 1. DELEGATE I/O and Compression (DIP: FileHandler)
-            IChatFileHandler.FileResult result = fileHandler.processFileForSending(pathModeMsg.getFilePath());
-            byte[] compressedData = result.compressedData();
+            // 1. DELEGATE I/O and Compression (DIP: FileHandler), streamed to a temp file on disk
+            IChatFileHandler.CompressedFile compressed =
+                    fileHandler.compressFileForSending(pathModeMsg.getFilePath());
 
-            // 2. Cache the compressed file (DIP: FileCache - Writes to Disk internally)
-            fileCache.put(pathModeMsg.getMessageId(), pathModeMsg.getFileName(), compressedData);
+            // 2. Cache the compressed file (DIP: FileCache - takes the temp file as is)
+            fileCache.putFile(pathModeMsg.getMessageId(), pathModeMsg.getFileName(), compressed.compressedPath());
 
-            // 3. Prepare Metadata for local UI (Coordinator/Adapter)
+            // 3. Prepare Metadata for local UI and network peers (Coordinator/Adapter)
             FileMessage metadataMsg = new FileMessage(
                     pathModeMsg.getMessageId(), pathModeMsg.getUserId(), pathModeMsg.getSenderDisplayName(),
-                    pathModeMsg.getCaption(), pathModeMsg.getFileName(), null, pathModeMsg.getReplyToMessageId());
-            byte[] metadataBytes = FileMessageSerializer.serialize(metadataMsg);
-
-            // 4. Prepare Content for network peers
-            // Note: We still use the byte[] here to send over network, which is unavoidable.
-            // But the local storage is safely on disk now.
-            FileMessage contentModeMsg = new FileMessage(
-                    pathModeMsg.getMessageId(), pathModeMsg.getUserId(), pathModeMsg.getSenderDisplayName(),
-                    pathModeMsg.getCaption(), pathModeMsg.getFileName(), compressedData,
+                    pathModeMsg.getCaption(), pathModeMsg.getFileName(), null,
                     System.currentTimeMillis() / 1000, pathModeMsg.getReplyToMessageId());
-            byte[] contentModeBytes = FileMessageSerializer.serialize(contentModeMsg);
-            byte[] networkPacket = ChatProtocol.addProtocolFlag(contentModeBytes, ChatProtocol.FLAG_FILE_MESSAGE);
+            byte[] metadataBytes = FileMessageSerializer.serialize(metadataMsg);
 
-            // 5. Route Messages
+            // 4. Route Messages: the content is streamed to peers in chunks, never held in RAM
             this.rpc.call("chat:file-metadata-received", metadataBytes);
-            this.network.broadcast(networkPacket, ModuleType.CHAT.ordinal(), 3);
+            fileTransfer.send(metadataMsg, compressed.compressedPath());
 
             return new byte[0];
 
@@ -120,7 +119,8 @@ public class ChatProcessor implements IChatProcessor {
     public byte[] processFrontendDelete(byte[] messageIdBytes) {
         String messageId = new String(messageIdBytes, StandardCharsets.UTF_8).trim();
 
-        // 1. Clean up: Remove from local file cache (also deletes temp file on disk)
+        // 1. Clean up: Stop any transfer, remove from local file cache (also deletes temp file on disk)
+        fileTransfer.cancel(messageId);
         fileCache.remove(messageId);
 
         // 2. Coordinate: Broadcast to network
@@ -149,7 +149,7 @@ public class ChatProcessor implements IChatProcessor {
                     this.rpc.call("chat:new-message", messageBytes);
                     break;
 
-                case ChatProtocol.FLAG_FILE_MESSAGE:
+                case ChatProtocol.FLAG_FILE_MESSAGE: // Whole file in one packet, from peers without chunked transfer
                     FileMessage fileMsg = FileMessageSerializer.deserialize(messageBytes);
 
                     // Writes received bytes to Disk immediately via Cache Implementation
@@ -163,8 +163,25 @@ public class ChatProcessor implements IChatProcessor {
                     this.rpc.call("chat:file-metadata-received", metadataBytes);
                     break;
 
+                case ChatProtocol.FLAG_FILE_METADATA:
+                    // Content follows as chunks, the UI shows the file right away
+                    FileMessage announcedMsg = FileMessageSerializer.deserialize(messageBytes);
+                    if (fileTransfer.expect(announcedMsg)) { // Not shown twice when sent again for another peer
+                        this.rpc.call("chat:file-metadata-received", messageBytes);
+                    }
+                    break;
+
+                case ChatProtocol.FLAG_FILE_CHUNK:
+                    fileTransfer.handleChunk(messageBytes); // Written to disk at its offset
+                    break;
+
+                case ChatProtocol.FLAG_FILE_RESUME:
+                    fileTransfer.handleResumeRequest(messageBytes);
+                    break;
+
                 case ChatProtocol.FLAG_DELETE_MESSAGE:
                     String remoteId = new String(messageBytes, StandardCharsets.UTF_8).trim();
+                    fileTransfer.cancel(remoteId);
                     fileCache.remove(remoteId); // Deletes temp file
                     this.rpc.call("chat:message-deleted", remoteId.getBytes(StandardCharsets.UTF_8));
                     break;
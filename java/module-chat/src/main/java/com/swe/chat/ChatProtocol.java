@@ -11,6 +11,18 @@ public class ChatProtocol {
     public static final byte FLAG_FILE_MESSAGE = (byte) 0x02;
     public static final byte FLAG_FILE_METADATA = (byte) 0x03;
     public static final byte FLAG_DELETE_MESSAGE = (byte) 0x04;
+    public static final byte FLAG_FILE_CHUNK = (byte) 0x05;
+    public static final byte FLAG_FILE_RESUME = (byte) 0x06;
+
+    /**
+     * Compressed bytes carried by one file chunk.
+     */
+    public static final int FILE_CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Network priority of file chunks: the background level, so transfers never hold up chat or media.
+     */
+    public static final int FILE_CHUNK_PRIORITY = 7;
 
     private ChatProtocol() { /* Utility class */ }
 
@@ -0,0 +1,503 @@
+package com.swe.chat;
+
+import com.swe.core.RPCinterface.AbstractRPC;
+import com.swe.networking.ModuleType;
+import com.swe.networking.Networking;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * IMPLEMENTATION: Streams compressed files between peers as numbered chunks.
+ *
+ * The sender reads its cached compressed file one chunk at a time and broadcasts every chunk at the
+ * background priority, waiting while the network queue is deep or a peer's connection is congested,
+ * so a file is never held in memory and a slow peer is not pushed towards being dropped.
+ * Receivers write each chunk at its offset in a partial file as it arrives. A transfer that stalls asks
+ * the sender for the chunks it is still missing, and for the metadata if that was lost, and resumes from
+ * there instead of starting over. Both sides report progress to the UI over RPC.
+ */
+public final class FileTransferManager implements IChatFileTransfer {
+
+    private static final String PROGRESS_METHOD = "chat:file-progress";
+
+    // Chunks queued in the network layer above which the sender waits before broadcasting more
+    private static final int MAX_QUEUED_PACKETS = 512;
+    private static final long QUEUE_POLL_MILLIS = 5;
+
+    // A transfer that got no chunk for this long asks the sender for the missing ones
+    private static final long STALL_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final long STALL_CHECK_SECONDS = 1;
+    private static final int MAX_RESUME_ATTEMPTS = 5;
+
+    // Most chunk numbers asked for in one resume request, the rest are asked for by the next one
+    private static final int MAX_RESUME_CHUNKS = 4096;
+
+    private final AbstractRPC rpc;
+    private final Networking network;
+    private final IChatFileCache fileCache;
+    private final ExecutorService sender;
+    private final ScheduledExecutorService stallChecker;
+
+    // Metadata packets of the files this peer offered, only their sender answers resume requests
+    private final Map<String, byte[]> outgoing = new ConcurrentHashMap<>();
+    // Offered files not fully sent once yet, resume requests for them would only send chunks twice
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private final Map<String, IncomingTransfer> incoming = new ConcurrentHashMap<>();
+    // Deleted files, their late chunks must not start the transfer again
+    private final Set<String> cancelled = ConcurrentHashMap.newKeySet();
+
+    /**
+     * State of a file being received, guarded by itself.
+     */
+    private static final class IncomingTransfer {
+        private final Path partFile;
+        private final FileChannel channel;
+        private String fileName;
+        private int total = -1;
+        private BitSet received = new BitSet();
+        private int receivedCount;
+        private int reportedPercent = -1;
+        private long lastActivity;
+        private int resumeAttempts;
+        private boolean closed;
+
+        private IncomingTransfer(Path partFile, FileChannel channel, long now) {
+            this.partFile = partFile;
+            this.channel = channel;
+            this.lastActivity = now;
+        }
+
+        private boolean isComplete() {
+            return total > 0 && receivedCount == total;
+        }
+    }
+
+    public FileTransferManager(AbstractRPC rpc, Networking network, IChatFileCache fileCache) {
+        this(rpc, network, fileCache,
+                Executors.newSingleThreadExecutor(daemon("chat-file-sender")),
+                Executors.newSingleThreadScheduledExecutor(daemon("chat-file-resume")));
+    }
+
+    /**
+     * @param stallChecker runs the stall checks, null to leave them to the caller
+     */
+    FileTransferManager(AbstractRPC rpc, Networking network, IChatFileCache fileCache,
+                        ExecutorService sender, ScheduledExecutorService stallChecker) {
+        this.rpc = rpc;
+        this.network = network;
+        this.fileCache = fileCache;
+        this.sender = sender;
+        this.stallChecker = stallChecker;
+        if (stallChecker != null) {
+            stallChecker.scheduleWithFixedDelay(() -> checkStalled(System.nanoTime()),
+                    STALL_CHECK_SECONDS, STALL_CHECK_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    // ============================================================================
+    // Sending
+    // ============================================================================
+
+    @Override
+    public void send(FileMessage metadata, Path compressedFile) {
+        String messageId = metadata.getMessageId();
+        byte[] metadataPacket = ChatProtocol.addProtocolFlag(FileMessageSerializer.serialize(metadata),
+                ChatProtocol.FLAG_FILE_METADATA);
+        outgoing.put(messageId, metadataPacket);
+        pending.add(messageId);
+        sender.execute(() -> {
+            // announced when its chunks start, so receivers do not see it stall behind earlier files
+            try {
+                network.broadcast(metadataPacket, ModuleType.CHAT.ordinal(), 0);
+                sendChunks(messageId, compressedFile, null);
+            } finally {
+                pending.remove(messageId);
+            }
+        });
+    }
+
+    @Override
+    public void handleResumeRequest(byte[] requestBytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(requestBytes);
+        // at least the count and the metadata flag follow the id
+        String messageId = readString(buffer, 4 + 1);
+        if (messageId == null) {
+            return;
+        }
+        int count = buffer.getInt();
+        if (count < -1 || count > MAX_RESUME_CHUNKS || buffer.remaining() < Math.max(0, count) * 4 + 1) {
+            return;
+        }
+        byte[] metadataPacket = outgoing.get(messageId);
+        Optional<IChatFileCache.FileCacheEntry> entry = fileCache.get(messageId);
+        if (metadataPacket == null || pending.contains(messageId) || entry.isEmpty()) {
+            return;
+        }
+
+        // A count of -1 means nothing arrived at all
+        int[] chunkIds = null;
+        if (count >= 0) {
+            chunkIds = new int[count];
+            for (int i = 0; i < count; i++) {
+                chunkIds[i] = buffer.getInt();
+            }
+        }
+        int[] requested = chunkIds;
+        boolean metadataMissing = buffer.get() != 0;
+        sender.execute(() -> {
+            if (metadataMissing) {
+                network.broadcast(metadataPacket, ModuleType.CHAT.ordinal(), 0);
+            }
+            if (requested == null || requested.length > 0) {
+                sendChunks(messageId, entry.get().tempFilePath(), requested);
+            }
+        });
+    }
+
+    /**
+     * Broadcasts chunks of a compressed file, all of them when chunkIds is null.
+     */
+    private void sendChunks(String messageId, Path compressedFile, int[] chunkIds) {
+        try (FileChannel channel = FileChannel.open(compressedFile, StandardOpenOption.READ)) {
+            int total = chunkCount(channel.size());
+            int count = chunkIds == null ? total : chunkIds.length;
+            int reportedPercent = -1;
+            ByteBuffer block = ByteBuffer.allocate(ChatProtocol.FILE_CHUNK_SIZE);
+
+            for (int i = 0; i < count && outgoing.containsKey(messageId); i++) {
+                int chunkId = chunkIds == null ? i : chunkIds[i];
+                if (chunkId < 0 || chunkId >= total) {
+                    continue;
+                }
+                long position = (long) chunkId * ChatProtocol.FILE_CHUNK_SIZE;
+                block.clear();
+                while (block.hasRemaining() && channel.read(block, position + block.position()) > 0) {
+                    // read the whole chunk, the last one ends early at the end of the file
+                }
+                block.flip();
+
+                awaitQueueRoom();
+                network.broadcast(encodeChunk(messageId, chunkId, total, block),
+                        ModuleType.CHAT.ordinal(), ChatProtocol.FILE_CHUNK_PRIORITY);
+                if (chunkIds == null) {
+                    reportedPercent = reportProgress(messageId, i + 1, total, reportedPercent);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("[Core.FileTransfer] Failed to send " + messageId + ": " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits while the network queue is deep, so a large file is not queued in memory all at once,
+     * or while a peer's connection is past its high watermark.
+     */
+    private void awaitQueueRoom() throws InterruptedException {
+        while (network.getQueuedPackets() > MAX_QUEUED_PACKETS || !network.canBroadcast()) {
+            Thread.sleep(QUEUE_POLL_MILLIS);
+        }
+    }
+
+    // ============================================================================
+    // Receiving
+    // ============================================================================
+
+    @Override
+    public boolean expect(FileMessage metadata) {
+        String messageId = metadata.getMessageId();
+        IncomingTransfer transfer = open(messageId);
+        if (transfer == null) {
+            return false;
+        }
+        synchronized (transfer) {
+            if (transfer.closed || transfer.fileName != null) {
+                return false;
+            }
+            transfer.fileName = metadata.getFileName();
+            finishIfComplete(messageId, transfer);
+            return true;
+        }
+    }
+
+    @Override
+    public void handleChunk(byte[] chunkBytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(chunkBytes);
+        String messageId = readString(buffer, 8);
+        int chunkId = buffer.getInt();
+        int total = buffer.getInt();
+        if (messageId == null || total <= 0 || chunkId < 0 || chunkId >= total
+                || buffer.remaining() > ChatProtocol.FILE_CHUNK_SIZE) {
+            return;
+        }
+        IncomingTransfer transfer = open(messageId);
+        if (transfer == null) {
+            return;
+        }
+
+        synchronized (transfer) {
+            if (transfer.closed) {
+                return;
+            }
+            if (transfer.total < 0) {
+                transfer.total = total;
+            }
+            if (transfer.total != total || transfer.received.get(chunkId)) {
+                return; // duplicate, e.g. resent for another peer
+            }
+
+            // Write the chunk at its offset, chunks may arrive in any order
+            try {
+                long position = (long) chunkId * ChatProtocol.FILE_CHUNK_SIZE - buffer.position();
+                while (buffer.hasRemaining()) {
+                    transfer.channel.write(buffer, position + buffer.position());
+                }
+            } catch (IOException e) {
+                System.err.println("[Core.FileTransfer] Failed to write chunk of " + messageId + ": " + e.getMessage());
+                abandon(messageId, transfer);
+                return;
+            }
+
+            transfer.received.set(chunkId);
+            transfer.receivedCount++;
+            transfer.lastActivity = System.nanoTime();
+            transfer.resumeAttempts = 0;
+            transfer.reportedPercent = reportProgress(messageId, transfer.receivedCount, total,
+                    transfer.reportedPercent);
+            finishIfComplete(messageId, transfer);
+        }
+    }
+
+    /**
+     * Returns the transfer of a message, starting it if needed. Returns null once the file is cached.
+     */
+    private IncomingTransfer open(String messageId) {
+        try {
+            return incoming.computeIfAbsent(messageId, id -> {
+                if (cancelled.contains(id) || fileCache.get(id).isPresent()) {
+                    return null; // deleted, already complete, or this peer sent it
+                }
+                try {
+                    Path partFile = Files.createTempFile("chat_recv_", ".part");
+                    partFile.toFile().deleteOnExit();
+                    FileChannel channel = FileChannel.open(partFile, StandardOpenOption.WRITE);
+                    return new IncomingTransfer(partFile, channel, System.nanoTime());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            System.err.println("[Core.FileTransfer] Failed to create partial file: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Hands the partial file to the cache once every chunk and the metadata arrived. Caller holds the lock.
+     */
+    private void finishIfComplete(String messageId, IncomingTransfer transfer) {
+        if (transfer.closed || !transfer.isComplete() || transfer.fileName == null) {
+            return;
+        }
+        try {
+            transfer.channel.close();
+        } catch (IOException e) {
+            System.err.println("[Core.FileTransfer] Failed to close " + transfer.partFile + ": " + e.getMessage());
+            abandon(messageId, transfer);
+            return;
+        }
+        transfer.closed = true;
+        // cached before it leaves the map, so late chunks find it complete
+        fileCache.putFile(messageId, transfer.fileName, transfer.partFile);
+        incoming.remove(messageId, transfer);
+        System.out.println("[Core.FileTransfer] Received " + messageId + " in " + transfer.total + " chunks");
+    }
+
+    /**
+     * Drops a transfer and its partial file. Caller holds the lock.
+     */
+    private void abandon(String messageId, IncomingTransfer transfer) {
+        transfer.closed = true;
+        incoming.remove(messageId, transfer);
+        try {
+            transfer.channel.close();
+            Files.deleteIfExists(transfer.partFile);
+        } catch (IOException e) {
+            System.err.println("[Core.FileTransfer] Failed to delete " + transfer.partFile + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Asks the senders of stalled transfers for their missing chunks and metadata, and gives up on
+     * transfers that stayed stalled after several requests. A file whose chunks all arrived is kept
+     * for metadata that comes later.
+     *
+     * @param now the current {@link System#nanoTime()}
+     */
+    void checkStalled(long now) {
+        for (Map.Entry<String, IncomingTransfer> entry : incoming.entrySet()) {
+            IncomingTransfer transfer = entry.getValue();
+            synchronized (transfer) {
+                if (transfer.closed || now - transfer.lastActivity < STALL_NANOS) {
+                    continue;
+                }
+                if (transfer.resumeAttempts >= MAX_RESUME_ATTEMPTS) {
+                    if (!transfer.isComplete()) {
+                        // the sender is gone
+                        System.err.println("[Core.FileTransfer] Giving up on " + entry.getKey());
+                        abandon(entry.getKey(), transfer);
+                    }
+                    continue;
+                }
+                transfer.resumeAttempts++;
+                transfer.lastActivity = now;
+                network.broadcast(encodeResumeRequest(entry.getKey(), missingChunks(transfer),
+                        transfer.fileName == null), ModuleType.CHAT.ordinal(), 0);
+            }
+        }
+    }
+
+    /**
+     * Returns the chunk numbers still missing, null when nothing arrived.
+     */
+    private static int[] missingChunks(IncomingTransfer transfer) {
+        if (transfer.total < 0) {
+            return null; // nothing arrived, ask for everything
+        }
+        int[] missing = new int[Math.min(MAX_RESUME_CHUNKS, transfer.total - transfer.receivedCount)];
+        int chunkId = transfer.received.nextClearBit(0);
+        for (int i = 0; i < missing.length; i++) {
+            missing[i] = chunkId;
+            chunkId = transfer.received.nextClearBit(chunkId + 1);
+        }
+        return missing;
+    }
+
+    @Override
+    public void cancel(String messageId) {
+        cancelled.add(messageId);
+        outgoing.remove(messageId);
+        pending.remove(messageId);
+        IncomingTransfer transfer = incoming.get(messageId);
+        if (transfer != null) {
+            synchronized (transfer) {
+                abandon(messageId, transfer);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        sender.shutdownNow();
+        if (stallChecker != null) {
+            stallChecker.shutdownNow();
+        }
+        for (Map.Entry<String, IncomingTransfer> entry : incoming.entrySet()) {
+            synchronized (entry.getValue()) {
+                abandon(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private int reportProgress(String messageId, int done, int total, int reportedPercent) {
+        int percent = (int) (100L * done / total);
+        if (percent != reportedPercent) {
+            rpc.call(PROGRESS_METHOD, encodeProgress(messageId, done, total));
+        }
+        return percent;
+    }
+
+    // ============================================================================
+    // Wire format
+    // ============================================================================
+
+    static int chunkCount(long compressedSize) {
+        return (int) Math.max(1, (compressedSize + ChatProtocol.FILE_CHUNK_SIZE - 1) / ChatProtocol.FILE_CHUNK_SIZE);
+    }
+
+    /**
+     * Flagged chunk: [id length][id][chunk number][chunk count][data].
+     */
+    static byte[] encodeChunk(String messageId, int chunkId, int total, ByteBuffer data) {
+        byte[] idBytes = messageId.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 4 + idBytes.length + 8 + data.remaining());
+        buffer.put(ChatProtocol.FLAG_FILE_CHUNK);
+        buffer.putInt(idBytes.length).put(idBytes);
+        buffer.putInt(chunkId).putInt(total);
+        buffer.put(data);
+        return buffer.array();
+    }
+
+    /**
+     * Flagged resume request: [id length][id][count][chunk numbers][metadata missing], a count of -1 and
+     * no chunk numbers for the whole file.
+     */
+    static byte[] encodeResumeRequest(String messageId, int[] chunkIds, boolean metadataMissing) {
+        byte[] idBytes = messageId.getBytes(StandardCharsets.UTF_8);
+        int count = chunkIds == null ? -1 : chunkIds.length;
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 4 + idBytes.length + 4 + 4 * Math.max(0, count) + 1);
+        buffer.put(ChatProtocol.FLAG_FILE_RESUME);
+        buffer.putInt(idBytes.length).put(idBytes);
+        buffer.putInt(count);
+        if (chunkIds != null) {
+            for (int chunkId : chunkIds) {
+                buffer.putInt(chunkId);
+            }
+        }
+        buffer.put((byte) (metadataMissing ? 1 : 0));
+        return buffer.array();
+    }
+
+    /**
+     * Progress sent to the UI: [id length][id][chunks done][chunk count].
+     */
+    static byte[] encodeProgress(String messageId, int done, int total) {
+        byte[] idBytes = messageId.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(4 + idBytes.length + 8);
+        buffer.putInt(idBytes.length).put(idBytes);
+        buffer.putInt(done).putInt(total);
+        return buffer.array();
+    }
+
+    /**
+     * Reads a length prefixed string followed by at least the given number of bytes, null if it is not there.
+     */
+    private static String readString(ByteBuffer buffer, int following) {
+        if (buffer.remaining() < 4) {
+            return null;
+        }
+        int length = buffer.getInt();
+        if (length <= 0 || length > buffer.remaining() - following) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -16,6 +16,11 @@ public interface IChatFileCache {
     record FileCacheEntry(String fileName, Path tempFilePath) {}
 
     void put(String messageId, String fileName, byte[] compressedData);
+
+    /**
+     * Caches a compressed file already on disk. The cache takes ownership of the file.
+     */
+    void putFile(String messageId, String fileName, Path compressedFile);
     Optional<FileCacheEntry> get(String messageId);
     void remove(String messageId);
 }
\ No newline at end of file
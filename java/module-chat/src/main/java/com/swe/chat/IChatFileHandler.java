@@ -9,8 +9,18 @@ public interface IChatFileHandler {
 
     record FileResult(byte[] compressedData, long originalFileSize) {}
 
+    /**
+     * A compressed copy of a file, written to disk.
+     */
+    record CompressedFile(Path compressedPath, long originalFileSize, long compressedSize) {}
+
     FileResult processFileForSending(String filePath) throws Exception;
 
+    /**
+     * Compresses a file into a temp file block by block, without loading it into memory.
+     */
+    CompressedFile compressFileForSending(String filePath) throws Exception;
+
     // UPDATED: Now accepts a Path to the compressed source file on disk
     void decompressAndSaveFile(String messageId, String fileName, Path compressedSourcePath)
             throws Exception;
@@ -0,0 +1,32 @@
+package com.swe.chat;
+
+import java.nio.file.Path;
+
+/**
+ * ABSTRACTION: Contract for moving cached files between peers as a stream of chunks.
+ */
+public interface IChatFileTransfer {
+
+    /**
+     * Announces a file to all peers and sends its compressed content in the background.
+     */
+    void send(FileMessage metadata, Path compressedFile);
+
+    /**
+     * Records the metadata announced for an incoming file, it is cached under this name once complete.
+     *
+     * @return false if the metadata was already known, e.g. sent again for another peer, or the file was deleted
+     */
+    boolean expect(FileMessage metadata);
+
+    void handleChunk(byte[] chunkBytes);
+
+    void handleResumeRequest(byte[] requestBytes);
+
+    /**
+     * Stops sending or receiving a file, e.g. once its message is deleted.
+     */
+    void cancel(String messageId);
+
+    void close();
+}
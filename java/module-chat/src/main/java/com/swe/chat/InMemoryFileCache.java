@@ -39,6 +39,20 @@ public class InMemoryFileCache implements IChatFileCache {
         }
     }
 
+    @Override
+    public void putFile(String messageId, String fileName, Path compressedFile) {
+        compressedFile.toFile().deleteOnExit();
+        FileCacheEntry previous = fileMap.put(messageId, new FileCacheEntry(fileName, compressedFile));
+        if (previous != null && !previous.tempFilePath().equals(compressedFile)) {
+            try {
+                Files.deleteIfExists(previous.tempFilePath());
+            } catch (IOException e) {
+                System.err.println("[Core.Cache] Failed to delete temp file: " + e.getMessage());
+            }
+        }
+        System.out.println("[Core.Cache] Cached file on disk at: " + compressedFile);
+    }
+
     @Override
     public Optional<FileCacheEntry> get(String messageId) {
         // Returns the path wrapper. The content is still on disk.
@@ -1,19 +1,64 @@
 package com.swe.chat;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
 
 /**
  * IMPLEMENTATION: Concrete strategy for performing local file I/O and compression.
  */
 public class LocalFileHandler implements IChatFileHandler {
 
+    // Bytes read or written per step when streaming, bounds the memory used per file
+    private static final int BLOCK_SIZE = 64 * 1024;
+
     @Override
     public FileResult processFileForSending(String filePath) throws Exception {
-        // Path Sanitization and Validation
+        Path sourcePath = resolveSource(filePath);
+
+        // Read and Compress
+        byte[] uncompressedData = Files.readAllBytes(sourcePath);
+        long originalSize = uncompressedData.length;
+
+        // Assuming Utilities.Compress exists as per your original code
+        byte[] compressedData = Utilities.Compress(uncompressedData, Deflater.BEST_SPEED);
+        if (compressedData == null) {
+            throw new IOException("Failed to compress file");
+        }
+
+        return new FileResult(compressedData, originalSize);
+    }
+
+    @Override
+    public CompressedFile compressFileForSending(String filePath) throws Exception {
+        Path sourcePath = resolveSource(filePath);
+        Path compressedPath = Files.createTempFile("chat_send_", ".tmp");
+
+        // Stream the file through the compressor, only one block is in memory at a time
+        try (InputStream in = Files.newInputStream(sourcePath);
+             DeflaterOutputStream out = new DeflaterOutputStream(Files.newOutputStream(compressedPath),
+                     new Deflater(Deflater.BEST_SPEED), BLOCK_SIZE)) {
+            byte[] block = new byte[BLOCK_SIZE];
+            int read;
+            while ((read = in.read(block)) != -1) {
+                out.write(block, 0, read);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(compressedPath);
+            throw new IOException("Failed to compress file", e);
+        }
+
+        return new CompressedFile(compressedPath, Files.size(sourcePath), Files.size(compressedPath));
+    }
+
+    // Path Sanitization and Validation
+    private static Path resolveSource(String filePath) {
         if (filePath == null || filePath.isEmpty()) {
             throw new IllegalArgumentException("File path is null or empty");
         }
@@ -27,38 +72,17 @@ public class LocalFileHandler implements IChatFileHandler {
         if (!Files.exists(sourcePath)) {
             throw new IllegalArgumentException("File does not exist: " + filePath);
         }
-
-        // Read and Compress
-        byte[] uncompressedData = Files.readAllBytes(sourcePath);
-        long originalSize = uncompressedData.length;
-
-        // Assuming Utilities.Compress exists as per your original code
-        byte[] compressedData = Utilities.Compress(uncompressedData, Deflater.BEST_SPEED);
-        if (compressedData == null) {
-            throw new IOException("Failed to compress file");
-        }
-
-        return new FileResult(compressedData, originalSize);
+        return sourcePath;
     }
 
     @Override
     public void decompressAndSaveFile(String messageId, String fileName, Path compressedSourcePath) throws Exception {
-        // 1. Read the compressed bytes from the TEMP file (Disk -> RAM)
-        // We only hold this in memory for the split second required to decompress it.
+        // 1. Check the compressed TEMP file, it is streamed rather than read into RAM
         if (!Files.exists(compressedSourcePath)) {
             throw new IOException("Temp cache file not found: " + compressedSourcePath);
         }
 
-        byte[] compressedData = Files.readAllBytes(compressedSourcePath);
-
-        // 2. Decompress (RAM processing)
-        // Assuming Utilities.Decompress exists as per your original code
-        byte[] decompressedData = Utilities.Decompress(compressedData);
-        if (decompressedData == null) {
-            throw new Exception("Failed to decompress file");
-        }
-
-        // 3. Save to Downloads folder with conflict resolution
+        // 2. Save to Downloads folder with conflict resolution
         String homeDir = System.getProperty("user.home");
         Path downloadsDir = Paths.get(homeDir, "Downloads");
 
@@ -85,8 +109,18 @@ public class LocalFileHandler implements IChatFileHandler {
             counter++;
         }
 
-        // 4. Write final file
-        Files.write(savePath, decompressedData);
+        // 3. Decompress straight from the temp file into the final file, block by block
+        try (InputStream in = new InflaterInputStream(Files.newInputStream(compressedSourcePath));
+             OutputStream out = Files.newOutputStream(savePath)) {
+            byte[] block = new byte[BLOCK_SIZE];
+            int read;
+            while ((read = in.read(block)) != -1) {
+                out.write(block, 0, read);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(savePath);
+            throw new Exception("Failed to decompress file", e);
+        }
         System.out.println("[Core.FileHandler] Saved message " + messageId + " to: " + savePath.toString());
     }
 }
\ No newline at end of file
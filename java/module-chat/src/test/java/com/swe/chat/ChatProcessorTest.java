@@ -16,6 +16,7 @@ import com.swe.core.RPCinterface.AbstractRPC;
 import com.swe.networking.ModuleType;
 import com.swe.networking.Networking;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import org.junit.jupiter.api.BeforeEach;
@@ -48,6 +49,9 @@ class ChatProcessorTest {
     @Mock
     private IAiAnalyticsService aiService;
 
+    @Mock
+    private IChatFileTransfer fileTransfer;
+
     @Captor
     private ArgumentCaptor<byte[]> byteCaptor;
 
@@ -86,26 +90,27 @@ class ChatProcessorTest {
     }
 
     @Test
-    void processFrontendFileMessageCachesAndBroadcasts() throws Exception {
+    void processFrontendFileMessageCachesAndStreams() throws Exception {
+        processor = new ChatProcessor(rpc, network, fileHandler, fileCache, aiService, fileTransfer);
         FileMessage fileMessage =
                 new FileMessage("file1", "user1", "Alice", "caption", "file.txt", "/tmp/a", "reply");
         byte[] serialized = FileMessageSerializer.serialize(fileMessage);
-        byte[] compressed = new byte[] {1, 2, 3};
-        when(fileHandler.processFileForSending("/tmp/a"))
-                .thenReturn(new IChatFileHandler.FileResult(compressed, 100));
+        Path compressed = Path.of("/tmp/file1.tmp");
+        when(fileHandler.compressFileForSending("/tmp/a"))
+                .thenReturn(new IChatFileHandler.CompressedFile(compressed, 100, 40));
 
         byte[] response = processor.processFrontendFileMessage(serialized);
 
         assertEquals(0, response.length);
-        verify(fileCache).put("file1", "file.txt", compressed);
+        verify(fileCache).putFile("file1", "file.txt", compressed);
         verify(rpc).call(eq("chat:file-metadata-received"), byteCaptor.capture());
         FileMessage metadata = FileMessageSerializer.deserialize(byteCaptor.getValue());
         assertEquals("file1", metadata.getMessageId());
         assertEquals("file.txt", metadata.getFileName());
         assertTrue(metadata.getFileContent() == null);
 
-        verify(network).broadcast(byteCaptor.capture(), eq(ModuleType.CHAT.ordinal()), eq(0));
-        assertEquals(ChatProtocol.FLAG_FILE_MESSAGE, byteCaptor.getValue()[0]);
+        verify(fileTransfer).send(any(FileMessage.class), eq(compressed));
+        verify(network, never()).broadcast(any(), anyInt(), anyInt());
     }
 
     @Test
@@ -113,7 +118,7 @@ class ChatProcessorTest {
         FileMessage fileMessage =
                 new FileMessage("file2", "user2", "Cara", "caption", "f.bin", "/tmp/b", null);
         byte[] serialized = FileMessageSerializer.serialize(fileMessage);
-        when(fileHandler.processFileForSending("/tmp/b"))
+        when(fileHandler.compressFileForSending("/tmp/b"))
                 .thenThrow(new Exception("compress fail"));
 
         byte[] response = processor.processFrontendFileMessage(serialized);
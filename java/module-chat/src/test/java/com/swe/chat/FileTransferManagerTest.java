@@ -0,0 +1,254 @@
+package com.swe.chat;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.swe.core.RPCinterface.AbstractRPC;
+import com.swe.networking.ModuleType;
+import com.swe.networking.Networking;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class FileTransferManagerTest {
+
+    static {
+        System.setProperty("net.bytebuddy.experimental", "true");
+    }
+
+    @Mock
+    private AbstractRPC rpc;
+
+    @Mock
+    private Networking senderNetwork;
+
+    @Mock
+    private Networking receiverNetwork;
+
+    @TempDir
+    Path tempDir;
+
+    private final ExecutorService senderExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService receiverExecutor = Executors.newSingleThreadExecutor();
+    private final InMemoryFileCache senderCache = new InMemoryFileCache();
+    private final InMemoryFileCache receiverCache = new InMemoryFileCache();
+    private FileTransferManager sender;
+    private FileTransferManager receiver;
+    private byte[] compressed;
+    private Path compressedFile;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(rpc.call(anyString(), any())).thenReturn(CompletableFuture.completedFuture(new byte[0]));
+        when(senderNetwork.canBroadcast()).thenReturn(true);
+        when(receiverNetwork.canBroadcast()).thenReturn(true);
+        sender = new FileTransferManager(rpc, senderNetwork, senderCache, senderExecutor, null);
+        receiver = new FileTransferManager(rpc, receiverNetwork, receiverCache, receiverExecutor, null);
+
+        // incompressible content, so the compressed file spans several chunks
+        byte[] original = new byte[3 * ChatProtocol.FILE_CHUNK_SIZE + 100];
+        new Random(7).nextBytes(original);
+        Path source = tempDir.resolve("clip.bin");
+        Files.write(source, original);
+        compressedFile = new LocalFileHandler().compressFileForSending(source.toString()).compressedPath();
+        compressed = Files.readAllBytes(compressedFile);
+        senderCache.putFile("f1", "clip.bin", compressedFile);
+    }
+
+    @AfterEach
+    void tearDown() {
+        sender.close();
+        receiver.close();
+        senderCache.remove("f1");
+        receiverCache.remove("f1");
+    }
+
+    private static FileMessage metadata() {
+        return new FileMessage("f1", "u1", "Alice", "cap", "clip.bin", null, 1L, null);
+    }
+
+    private static void drain(ExecutorService executor) throws Exception {
+        executor.submit(() -> { }).get(5, TimeUnit.SECONDS);
+    }
+
+    private static List<byte[]> broadcasts(Networking network) {
+        ArgumentCaptor<byte[]> captor = ArgumentCaptor.forClass(byte[].class);
+        verify(network, atLeastOnce()).broadcast(captor.capture(), eq(ModuleType.CHAT.ordinal()), anyInt());
+        return captor.getAllValues();
+    }
+
+    private static void deliver(FileTransferManager manager, byte[] packet) {
+        byte[] body = Arrays.copyOfRange(packet, 1, packet.length);
+        switch (packet[0]) {
+            case ChatProtocol.FLAG_FILE_METADATA -> manager.expect(FileMessageSerializer.deserialize(body));
+            case ChatProtocol.FLAG_FILE_CHUNK -> manager.handleChunk(body);
+            case ChatProtocol.FLAG_FILE_RESUME -> manager.handleResumeRequest(body);
+            default -> throw new IllegalStateException("unexpected flag " + packet[0]);
+        }
+    }
+
+    @Test
+    void sendStreamsMetadataThenChunksAtBackgroundPriority() throws Exception {
+        sender.send(metadata(), compressedFile);
+        drain(senderExecutor);
+
+        List<byte[]> packets = broadcasts(senderNetwork);
+        assertEquals(1 + FileTransferManager.chunkCount(compressed.length), packets.size());
+        assertEquals(ChatProtocol.FLAG_FILE_METADATA, packets.get(0)[0]);
+        verify(senderNetwork, atLeastOnce()).broadcast(any(), eq(ModuleType.CHAT.ordinal()),
+                eq(ChatProtocol.FILE_CHUNK_PRIORITY));
+        verify(rpc, atLeastOnce()).call(eq("chat:file-progress"), any());
+    }
+
+    @Test
+    void sendWaitsWhileAPeerIsCongested() throws Exception {
+        AtomicBoolean congested = new AtomicBoolean(true);
+        when(senderNetwork.canBroadcast()).thenAnswer(invocation -> !congested.get());
+        sender.send(metadata(), compressedFile);
+        Thread.sleep(100);
+
+        // only the metadata went out, the chunks wait for the congestion to clear
+        assertEquals(1, broadcasts(senderNetwork).size());
+
+        congested.set(false);
+        drain(senderExecutor);
+        assertEquals(1 + FileTransferManager.chunkCount(compressed.length), broadcasts(senderNetwork).size());
+    }
+
+    @Test
+    void receiverRebuildsTheFileFromChunksInAnyOrder() throws Exception {
+        sender.send(metadata(), compressedFile);
+        drain(senderExecutor);
+        List<byte[]> packets = broadcasts(senderNetwork);
+
+        // chunks first and reversed, the metadata last
+        for (int i = packets.size() - 1; i >= 0; i--) {
+            deliver(receiver, packets.get(i));
+        }
+
+        Path received = receiverCache.get("f1").orElseThrow().tempFilePath();
+        assertEquals("clip.bin", receiverCache.get("f1").get().fileName());
+        assertArrayEquals(compressed, Files.readAllBytes(received));
+    }
+
+    @Test
+    void stalledTransferResumesWithOnlyTheMissingChunks() throws Exception {
+        sender.send(metadata(), compressedFile);
+        drain(senderExecutor);
+        List<byte[]> packets = broadcasts(senderNetwork);
+        clearInvocations(senderNetwork);
+
+        // chunk 1 is lost
+        for (int i = 0; i < packets.size(); i++) {
+            if (i != 2) {
+                deliver(receiver, packets.get(i));
+            }
+        }
+        assertFalse(receiverCache.get("f1").isPresent());
+
+        receiver.checkStalled(System.nanoTime() + TimeUnit.SECONDS.toNanos(10));
+        List<byte[]> requests = broadcasts(receiverNetwork);
+        assertEquals(1, requests.size());
+        assertEquals(ChatProtocol.FLAG_FILE_RESUME, requests.get(0)[0]);
+
+        deliver(sender, requests.get(0));
+        drain(senderExecutor);
+        List<byte[]> resent = broadcasts(senderNetwork);
+        assertEquals(1, resent.size(), "only the missing chunk is sent again");
+        deliver(receiver, resent.get(0));
+
+        assertTrue(receiverCache.get("f1").isPresent());
+        assertArrayEquals(compressed, Files.readAllBytes(receiverCache.get("f1").get().tempFilePath()));
+    }
+
+    @Test
+    void lostMetadataIsAskedForAgainWithoutResendingChunks() throws Exception {
+        sender.send(metadata(), compressedFile);
+        drain(senderExecutor);
+        List<byte[]> packets = broadcasts(senderNetwork);
+        clearInvocations(senderNetwork);
+
+        // every chunk arrives, the metadata is lost
+        for (int i = 1; i < packets.size(); i++) {
+            deliver(receiver, packets.get(i));
+        }
+        receiver.checkStalled(System.nanoTime() + TimeUnit.SECONDS.toNanos(10));
+        List<byte[]> requests = broadcasts(receiverNetwork);
+        assertEquals(1, requests.size());
+
+        deliver(sender, requests.get(0));
+        drain(senderExecutor);
+        List<byte[]> resent = broadcasts(senderNetwork);
+        assertEquals(1, resent.size(), "only the metadata is sent again");
+        assertEquals(ChatProtocol.FLAG_FILE_METADATA, resent.get(0)[0]);
+        deliver(receiver, resent.get(0));
+
+        assertEquals("clip.bin", receiverCache.get("f1").orElseThrow().fileName());
+        assertArrayEquals(compressed, Files.readAllBytes(receiverCache.get("f1").get().tempFilePath()));
+        assertFalse(receiver.expect(metadata()), "metadata sent again for another peer is not new");
+    }
+
+    @Test
+    void completeFileIsKeptForLateMetadata() throws Exception {
+        sender.send(metadata(), compressedFile);
+        drain(senderExecutor);
+        List<byte[]> packets = broadcasts(senderNetwork);
+        for (int i = 1; i < packets.size(); i++) {
+            deliver(receiver, packets.get(i));
+        }
+
+        // the sender never answers
+        long now = System.nanoTime();
+        for (int attempt = 1; attempt <= 10; attempt++) {
+            receiver.checkStalled(now + attempt * TimeUnit.SECONDS.toNanos(10));
+        }
+
+        assertTrue(receiver.expect(metadata()));
+        assertArrayEquals(compressed, Files.readAllBytes(receiverCache.get("f1").orElseThrow().tempFilePath()));
+    }
+
+    @Test
+    void cancelDropsThePartialFile() throws Exception {
+        sender.send(metadata(), compressedFile);
+        drain(senderExecutor);
+        List<byte[]> packets = broadcasts(senderNetwork);
+        deliver(receiver, packets.get(0));
+        deliver(receiver, packets.get(1));
+
+        receiver.cancel("f1");
+        for (int i = 2; i < packets.size(); i++) {
+            deliver(receiver, packets.get(i));
+        }
+
+        assertFalse(receiverCache.get("f1").isPresent(), "a cancelled file is never completed");
+    }
+}
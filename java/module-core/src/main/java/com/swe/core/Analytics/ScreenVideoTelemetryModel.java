@@ -17,6 +17,24 @@ public class ScreenVideoTelemetryModel {
     private boolean withCamera;
     private boolean withScreen;
 
+    // Encoder stats, aggregated so that long sessions do not keep one entry per frame
+    private long encodedFrames;
+    private double encodeTimeSumMs;
+    private double maxEncodeTimeMs;
+    private double workerUtilisationSum;
+
+    // Capture pacing: runs that ended past the next deadline and deadlines skipped because of them
+    private long videoOverruns;
+    private long videoSkippedFrames;
+    private long audioOverruns;
+    private long audioSkippedChunks;
+
+    // Rate control: latest operating point and how often it changed
+    private int operatingQuality = 99;
+    private int operatingFps;
+    private int operatingTileBudget = 100;
+    private long operatingPointChanges;
+
     // Metrics
     private Double avgFps;
     private Double maxFps;
@@ -75,6 +93,82 @@ public class ScreenVideoTelemetryModel {
         return fpsEvery3Seconds;
     }
 
+    public void addEncodeStats(double encodeTimeMs, double utilisation) {
+        encodedFrames++;
+        encodeTimeSumMs += encodeTimeMs;
+        maxEncodeTimeMs = Math.max(maxEncodeTimeMs, encodeTimeMs);
+        workerUtilisationSum += utilisation;
+    }
+
+    public long getEncodedFrames() {
+        return encodedFrames;
+    }
+
+    public double getEncodeTimeSumMs() {
+        return encodeTimeSumMs;
+    }
+
+    public double getMaxEncodeTimeMs() {
+        return maxEncodeTimeMs;
+    }
+
+    public double getAvgEncodeTimeMs() {
+        return encodedFrames == 0 ? 0.0 : encodeTimeSumMs / encodedFrames;
+    }
+
+    public double getAvgWorkerUtilisation() {
+        return encodedFrames == 0 ? 0.0 : workerUtilisationSum / encodedFrames;
+    }
+
+    public void addVideoOverrun(long skippedFrames) {
+        videoOverruns++;
+        videoSkippedFrames += skippedFrames;
+    }
+
+    public long getVideoOverruns() {
+        return videoOverruns;
+    }
+
+    public long getVideoSkippedFrames() {
+        return videoSkippedFrames;
+    }
+
+    public void addAudioOverrun(long skippedChunks) {
+        audioOverruns++;
+        audioSkippedChunks += skippedChunks;
+    }
+
+    public long getAudioOverruns() {
+        return audioOverruns;
+    }
+
+    public long getAudioSkippedChunks() {
+        return audioSkippedChunks;
+    }
+
+    public void setOperatingPoint(int quality, int fps, int tileBudget) {
+        operatingQuality = quality;
+        operatingFps = fps;
+        operatingTileBudget = tileBudget;
+        operatingPointChanges++;
+    }
+
+    public int getOperatingQuality() {
+        return operatingQuality;
+    }
+
+    public int getOperatingFps() {
+        return operatingFps;
+    }
+
+    public int getOperatingTileBudget() {
+        return operatingTileBudget;
+    }
+
+    public long getOperatingPointChanges() {
+        return operatingPointChanges;
+    }
+
     public Double getAvgFps() {
         return avgFps;
     }
@@ -91,6 +185,28 @@ public class ScreenVideoTelemetryModel {
         return p95Fps;
     }
 
+    /**
+     * Copies the model so that it can be read while the original keeps being updated.
+     * FPS metrics are recalculated from the samples collected so far.
+     */
+    public ScreenVideoTelemetryModel snapshot() {
+        final ScreenVideoTelemetryModel copy = new ScreenVideoTelemetryModel(startTime, endTime,
+                fpsEvery3Seconds, withCamera, withScreen);
+        copy.encodedFrames = encodedFrames;
+        copy.encodeTimeSumMs = encodeTimeSumMs;
+        copy.maxEncodeTimeMs = maxEncodeTimeMs;
+        copy.workerUtilisationSum = workerUtilisationSum;
+        copy.videoOverruns = videoOverruns;
+        copy.videoSkippedFrames = videoSkippedFrames;
+        copy.audioOverruns = audioOverruns;
+        copy.audioSkippedChunks = audioSkippedChunks;
+        copy.operatingQuality = operatingQuality;
+        copy.operatingFps = operatingFps;
+        copy.operatingTileBudget = operatingTileBudget;
+        copy.operatingPointChanges = operatingPointChanges;
+        return copy;
+    }
+
     // --- Helper method to calculate metrics ---
     private void calculateMetrics() {
         if (fpsEvery3Seconds == null) {
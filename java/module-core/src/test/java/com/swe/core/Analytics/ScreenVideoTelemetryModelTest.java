@@ -207,5 +207,44 @@ public class ScreenVideoTelemetryModelTest {
         assertNotNull(model.getMaxFps());
         assertNotNull(model.getMinFps());
     }
-}
 
+    @Test
+    public void encodeStatsAreAggregated() {
+        final ScreenVideoTelemetryModel model = new ScreenVideoTelemetryModel(
+            1000L,
+            2000L,
+            fpsList,
+            true,
+            true
+        );
+
+        assertEquals(0.0, model.getAvgEncodeTimeMs(), 1e-9);
+        model.addEncodeStats(4.0, 1.0);
+        model.addEncodeStats(8.0, 0.5);
+
+        assertEquals(2, model.getEncodedFrames());
+        assertEquals(6.0, model.getAvgEncodeTimeMs(), 1e-9);
+        assertEquals(8.0, model.getMaxEncodeTimeMs(), 1e-9);
+        assertEquals(0.75, model.getAvgWorkerUtilisation(), 1e-9);
+    }
+
+    @Test
+    public void snapshotIsNotChangedByLaterUpdates() {
+        final ScreenVideoTelemetryModel model = new ScreenVideoTelemetryModel(
+            1000L,
+            2000L,
+            fpsList,
+            true,
+            true
+        );
+        model.addEncodeStats(4.0, 1.0);
+
+        final ScreenVideoTelemetryModel snapshot = model.snapshot();
+        model.addEncodeStats(8.0, 0.5);
+        model.addFps(10.0);
+
+        assertEquals(1, snapshot.getEncodedFrames());
+        assertEquals(5, snapshot.getFpsEvery3Seconds().size());
+        assertTrue(snapshot.isWithScreen());
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * -----------------------------------------------------------------------------
+ *  File: BoundedLane.java
+ *  Owner: Shubham Yadav
+ *  Roll Number : 112201032
+ *  Module : Networking
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+package com.swe.networking;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import com.swe.core.logging.SweLogger;
+import com.swe.core.logging.SweLoggerFactory;
+
+/**
+ * A bounded queue with one thread handing its items on in order, the queue is guarded by the lane.
+ *
+ * <p>
+ * What happens when the queue is full is chosen by an {@link ModuleDispatcher.OverflowPolicy}.
+ * Items the lane is told may not be dropped wait for room when the policy finds nothing it may
+ * drop, as every item does under {@code BLOCK}.
+ * </p>
+ *
+ * @param <T> the items queued
+ */
+final class BoundedLane<T> implements Runnable {
+
+    /**
+     * Logger for this class.
+     */
+    private static final SweLogger LOG = SweLoggerFactory.getLogger("NETWORKING");
+
+    /**
+     * Items waiting to be handed on.
+     */
+    private final ArrayDeque<T> queue = new ArrayDeque<>();
+
+    /**
+     * Name of the lane and its thread.
+     */
+    private final String name;
+
+    /**
+     * Whether the overflow policy may drop an item.
+     */
+    private final Predicate<T> droppable;
+
+    /**
+     * Called with every item on the thread of the lane.
+     */
+    private final Consumer<T> consumer;
+
+    /**
+     * Most items queued before the policy applies.
+     */
+    private int capacity;
+
+    /**
+     * What to do once the queue is full.
+     */
+    private ModuleDispatcher.OverflowPolicy policy;
+
+    /**
+     * The thread handing the items on, started with the first item.
+     */
+    private Thread worker;
+
+    /**
+     * Whether the lane was stopped.
+     */
+    private boolean stopped;
+
+    /**
+     * Deepest queue in the window.
+     */
+    private int peakDepth;
+
+    /**
+     * Items handed on in the window.
+     */
+    private long delivered;
+
+    /**
+     * Items dropped in the window.
+     */
+    private long dropped;
+
+    /**
+     * Creates a lane.
+     *
+     * @param nameArg the name of the lane and its thread
+     * @param capacityArg most items queued
+     * @param policyArg what to do once the queue is full
+     * @param droppableArg whether the policy may drop an item
+     * @param consumerArg called with every item, on the thread of the lane
+     */
+    BoundedLane(final String nameArg, final int capacityArg, final ModuleDispatcher.OverflowPolicy policyArg,
+            final Predicate<T> droppableArg, final Consumer<T> consumerArg) {
+        this.name = nameArg;
+        this.capacity = Math.max(1, capacityArg);
+        this.policy = policyArg;
+        this.droppable = droppableArg;
+        this.consumer = consumerArg;
+    }
+
+    /**
+     * Sets the queue length and overflow policy, waking the threads waiting for room.
+     *
+     * @param capacityArg most items queued before the policy applies
+     * @param policyArg what to do once the queue is full
+     */
+    synchronized void configure(final int capacityArg, final ModuleDispatcher.OverflowPolicy policyArg) {
+        this.capacity = Math.max(1, capacityArg);
+        this.policy = policyArg;
+        notifyAll();
+    }
+
+    /**
+     * Queues an item, applying the overflow policy while the queue is full.
+     *
+     * @param item the item
+     * @return false if the lane was stopped
+     * @throws InterruptedException if interrupted while waiting for room
+     */
+    synchronized boolean offer(final T item) throws InterruptedException {
+        // the consumer may hand items to its own lane, it cannot wait for itself
+        final boolean own = Thread.currentThread() == worker;
+        while (queue.size() >= capacity && !own && !stopped) {
+            if (policy == ModuleDispatcher.OverflowPolicy.DROP_NEWEST && droppable.test(item)) {
+                dropped++;
+                return true;
+            }
+            if (policy == ModuleDispatcher.OverflowPolicy.DROP_OLDEST && dropOldest()) {
+                dropped++;
+                break;
+            }
+            wait();
+        }
+        if (stopped) {
+            return false;
+        }
+        queue.addLast(item);
+        peakDepth = Math.max(peakDepth, queue.size());
+        if (worker == null) {
+            worker = new Thread(this, name);
+            worker.setDaemon(true);
+            worker.start();
+        }
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * Removes the oldest queued item that may be dropped.
+     *
+     * @return false if all the queued items must be handed on
+     */
+    private boolean dropOldest() {
+        final Iterator<T> items = queue.iterator();
+        while (items.hasNext()) {
+            if (droppable.test(items.next())) {
+                items.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Waits for the next item.
+     *
+     * @return the item, null once stopped
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private synchronized T take() throws InterruptedException {
+        while (queue.isEmpty() && !stopped) {
+            wait();
+        }
+        if (stopped) {
+            return null;
+        }
+        // wake a thread waiting for room
+        notifyAll();
+        return queue.pollFirst();
+    }
+
+    @Override
+    public void run() {
+        try {
+            T item = take();
+            while (item != null) {
+                try {
+                    consumer.accept(item);
+                } catch (RuntimeException e) {
+                    LOG.error("Consumer of " + name + " failed", e);
+                }
+                synchronized (this) {
+                    delivered++;
+                }
+                item = take();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Number of items waiting.
+     *
+     * @return the queue depth
+     */
+    synchronized int size() {
+        return queue.size();
+    }
+
+    /**
+     * Returns the counters of the window and starts a new one.
+     *
+     * @return the counters
+     */
+    synchronized ModuleDispatcher.Snapshot snapshot() {
+        final ModuleDispatcher.Snapshot snapshot = new ModuleDispatcher.Snapshot(queue.size(),
+                Math.max(queue.size(), peakDepth), delivered, dropped);
+        peakDepth = queue.size();
+        delivered = 0;
+        dropped = 0;
+        return snapshot;
+    }
+
+    /**
+     * Drops the queue, wakes the threads waiting on it and interrupts the thread of the lane.
+     */
+    void stop() {
+        final Thread current;
+        synchronized (this) {
+            stopped = true;
+            queue.clear();
+            notifyAll();
+            current = worker;
+        }
+        if (current != null && current != Thread.currentThread()) {
+            current.interrupt();
+        }
+    }
+}
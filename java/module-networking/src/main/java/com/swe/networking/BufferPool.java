@@ -0,0 +1,109 @@
+/*
+ * -----------------------------------------------------------------------------
+ *  File: BufferPool.java
+ *  Owner: Loganath
+ *  Roll Number : 112201016
+ *  Module : Networking
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+package com.swe.networking;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of equally sized direct buffers, so sockets are read without allocating a
+ * buffer per read.
+ */
+public final class BufferPool {
+
+    /**
+     * Capacity of every buffer of the pool.
+     */
+    private final int bufferSize;
+
+    /**
+     * Most buffers kept once released, further ones are left to the garbage collector.
+     */
+    private final int maxPooled;
+
+    /**
+     * Released buffers ready to be handed out again.
+     */
+    private final Queue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Number of buffers in {@link #free}.
+     */
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    /**
+     * Number of buffers allocated so far.
+     */
+    private final AtomicInteger allocated = new AtomicInteger();
+
+    /**
+     * Creates an empty pool.
+     *
+     * @param bufferSizeArg capacity of every buffer
+     * @param maxPooledArg most buffers kept once released
+     */
+    public BufferPool(final int bufferSizeArg, final int maxPooledArg) {
+        this.bufferSize = bufferSizeArg;
+        this.maxPooled = maxPooledArg;
+    }
+
+    /**
+     * Takes a cleared buffer from the pool, allocating one if none is free.
+     *
+     * @return the buffer
+     */
+    public ByteBuffer acquire() {
+        final ByteBuffer buffer = free.poll();
+        if (buffer == null) {
+            allocated.incrementAndGet();
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        pooled.decrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Gives a buffer back to the pool. The caller must not use it afterwards.
+     *
+     * @param buffer a buffer taken from this pool
+     */
+    public void release(final ByteBuffer buffer) {
+        if (buffer == null || buffer.capacity() != bufferSize) {
+            return;
+        }
+        if (pooled.incrementAndGet() > maxPooled) {
+            pooled.decrementAndGet();
+            return;
+        }
+        free.offer(buffer);
+    }
+
+    /**
+     * Capacity of the buffers of the pool.
+     *
+     * @return the size in bytes
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Number of buffers allocated so far, a steady value means buffers are reused.
+     *
+     * @return the count
+     */
+    public int getAllocated() {
+        return allocated.get();
+    }
+}
@@ -16,12 +16,15 @@ import com.swe.core.logging.SweLoggerFactory;
 import com.swe.core.ClientNode;
 
 import java.net.UnknownHostException;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.List;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Code for Chunk Manager.
@@ -51,6 +54,8 @@ public class ChunkManager {
 
     private ChunkManager(final int payloadSize) {
         defaultPayloadSize = payloadSize;
+        TimingWheel.getTimingWheel().scheduleAtFixedRate(() -> evictStale(System.nanoTime()),
+                EVICT_INTERVAL_MS, TimeUnit.MILLISECONDS);
     }
 
     /**
@@ -70,73 +75,509 @@ public class ChunkManager {
     /**
      * Message id.
      */
-    private int messageId = 0;
+    private int messageId;
 
     /**
-     * chunkListMap maps message id to list of chunks.
+     * Most chunks a message may announce, larger counts are treated as corrupt.
      */
-    private final Map<String, Vector<byte[]>> chunkListMap = new HashMap<>();
+    private static final int MAX_CHUNKS = 1 << 16;
+
+    /**
+     * Time without a new chunk after which a partial message is dropped.
+     */
+    private static final long MAX_AGE_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    /**
+     * Period of the sweep dropping stale partial messages.
+     */
+    private static final long EVICT_INTERVAL_MS = 1000;
+
+    /**
+     * Most bytes held by partial messages, the least recently updated ones are dropped above it.
+     */
+    private static final long MAX_BUFFERED_BYTES = 64L * 1024 * 1024;
+
+    /**
+     * Shift of the origin's host id in the table key.
+     */
+    private static final int KEY_HOST_SHIFT = 48;
+
+    /**
+     * Shift of the origin's port in the table key.
+     */
+    private static final int KEY_PORT_SHIFT = 32;
+
+    /**
+     * Mask of the host id and port bits.
+     */
+    private static final long SHORT_MASK = 0xFFFFL;
+
+    /**
+     * Number of host ids, the ones of hosts without partial messages are reused.
+     */
+    private static final int HOST_IDS = 1 << 16;
+
+    /**
+     * Bits in a dotted IPv4 address part.
+     */
+    private static final int IPV4_PART_BITS = 8;
+
+    /**
+     * Largest dotted IPv4 address part.
+     */
+    private static final int IPV4_PART_MAX = 255;
+
+    /**
+     * Mask of an unsigned int.
+     */
+    private static final long INT_MASK = 0xFFFFFFFFL;
+
+    /**
+     * Initial capacity of the table of partial messages.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Load factor of the table of partial messages.
+     */
+    private static final float LOAD_FACTOR = 0.75f;
+
+    /**
+     * Bits in a bitmap word.
+     */
+    private static final int WORD_BITS = Long.SIZE;
+
+    /**
+     * Messages whose chunks are still arriving, least recently updated first.
+     */
+    private final LinkedHashMap<Long, PartialMessage> partialMessages =
+            new LinkedHashMap<>(INITIAL_CAPACITY, LOAD_FACTOR, true);
+
+    /**
+     * The host id of every origin host with partial messages, by its IPv4 address.
+     */
+    private final Map<Integer, HostId> hostIds = new HashMap<>();
+
+    /**
+     * Host ids given back by hosts whose partial messages all left the table.
+     */
+    private final ArrayDeque<Integer> freeHostIds = new ArrayDeque<>();
+
+    /**
+     * Next host id never given out.
+     */
+    private int nextHostId;
+
+    /**
+     * Bytes held by the chunks of {@link #partialMessages}.
+     */
+    private long bufferedBytes;
+
+    /**
+     * Partial messages dropped for age or memory.
+     */
+    private final AtomicLong evictedMessages = new AtomicLong();
+
+    /**
+     * Chunks received twice.
+     */
+    private final AtomicLong duplicateChunks = new AtomicLong();
+
+    /**
+     * Chunks that did not follow the previous chunk of their message.
+     */
+    private final AtomicLong outOfOrderChunks = new AtomicLong();
+
+    /**
+     * The small id of an origin host packed into the table key, held while it has partial messages.
+     */
+    private static final class HostId {
+        /**
+         * The id.
+         */
+        private final int id;
+
+        /**
+         * Number of partial messages of the host.
+         */
+        private int messages;
+
+        /**
+         * Creates the id of a host.
+         *
+         * @param idArg the id
+         */
+        HostId(final int idArg) {
+            id = idArg;
+        }
+    }
+
+    /**
+     * The chunks of a message received so far, indexed by chunk number.
+     */
+    private static final class PartialMessage {
+        /**
+         * The message id.
+         */
+        private final int messageId;
+
+        /**
+         * IPv4 address of the host that chunked the message.
+         */
+        private final int host;
+
+        /**
+         * The received chunks, null where one is missing.
+         */
+        private final byte[][] chunks;
+
+        /**
+         * One bit per chunk number, set once the chunk arrived.
+         */
+        private final long[] bitmap;
+
+        /**
+         * Number of chunks received.
+         */
+        private int received;
+
+        /**
+         * Payload bytes of the received chunks.
+         */
+        private int payloadLength;
+
+        /**
+         * Bytes of the received chunks, headers included.
+         */
+        private long bytes;
+
+        /**
+         * Chunk number expected next when chunks arrive in order.
+         */
+        private int nextChunk;
+
+        /**
+         * {@link System#nanoTime()} of the last chunk.
+         */
+        private long updatedAt;
+
+        /**
+         * Creates an empty message.
+         *
+         * @param messageIdArg the full message id
+         * @param hostArg IPv4 address of the host that chunked the message
+         * @param chunkCount the number of chunks of the message
+         */
+        PartialMessage(final int messageIdArg, final int hostArg, final int chunkCount) {
+            messageId = messageIdArg;
+            host = hostArg;
+            chunks = new byte[chunkCount][];
+            bitmap = new long[(chunkCount + WORD_BITS - 1) / WORD_BITS];
+        }
+
+        /**
+         * Marks a chunk as received.
+         *
+         * @param chunkNum the chunk number
+         * @return false if it was already received
+         */
+        boolean mark(final int chunkNum) {
+            final long bit = 1L << (chunkNum % WORD_BITS);
+            final int word = chunkNum / WORD_BITS;
+            if ((bitmap[word] & bit) != 0) {
+                return false;
+            }
+            bitmap[word] |= bit;
+            return true;
+        }
+    }
 
     /**
      * Add chunk function.
      *
      * @param chunk the byte of chunk coming in.
+     * @param sender the peer the chunk arrived from
      * @return the combined chunk if present
      * @throws UnknownHostException the issue from packet parser.
      */
-    public byte[] addChunk(final byte[] chunk) throws UnknownHostException {
-        final PacketInfo info = parser.parsePacket(chunk);
-        final String msgId = String.valueOf(info.getMessageId()) + ":" + info.getIpAddress().toString();
-        final int maxNumChunks = info.getChunkLength();
-        final int chunkId = info.getChunkNum();
-        LOG.info("Chunk id / total chunks " + chunkId + " / " + maxNumChunks);
-        if (chunkListMap.containsKey(msgId)) {
-            chunkListMap.get(msgId).add(chunk);
-        } else {
-            chunkListMap.put(msgId, new Vector<byte[]>());
-            chunkListMap.get(msgId).add(chunk);
-        }
-        if (chunkListMap.get(msgId).size() == maxNumChunks) {
-            final byte[] messageChunk = mergeChunks(chunkListMap.get(msgId));
-            chunkListMap.remove(msgId);
-            return messageChunk;
+    public byte[] addChunk(final byte[] chunk, final ClientNode sender) throws UnknownHostException {
+        final byte[] payload = reassemble(chunk, sender);
+        if (payload == null) {
+            return null;
         }
-        return null;
+        // the header of the chunk is reused as is, only the chunk fields are rewritten
+        final int headerSize = PacketParser.getHeaderSize();
+        final byte[] pkt = new byte[headerSize + payload.length];
+        System.arraycopy(chunk, 0, pkt, 0, headerSize);
+        System.arraycopy(payload, 0, pkt, headerSize, payload.length);
+        PacketParser.setChunkNum(pkt, 0);
+        PacketParser.setChunkLength(pkt, 1);
+        return pkt;
     }
 
     /**
-     * Merge Chunks function.
+     * Collects a chunk and returns the payload of its message once every chunk arrived.
+     * Only the header fields are read, and each payload byte is copied once, into an
+     * array of the exact message size.
      *
-     * @param chunks The list of incoming chunks.
-     * @return merged packet.
+     * @param chunk the byte of chunk coming in.
+     * @param sender the peer the chunk arrived from
+     * @return the payload of the complete message, null while chunks are missing
      */
-    private byte[] mergeChunks(final Vector<byte[]> chunks) throws UnknownHostException {
-        int dataSize = 0;
-        for (byte[] chunk : chunks) {
-            dataSize += chunk.length - headerSize;
+    public byte[] reassemble(final byte[] chunk, final ClientNode sender) {
+        return reassemble(chunk, sender, System.nanoTime());
+    }
+
+    /**
+     * Collects a chunk received at the given time.
+     *
+     * @param chunk the byte of chunk coming in.
+     * @param sender the peer the chunk arrived from
+     * @param now the current {@link System#nanoTime()}
+     * @return the payload of the complete message, null while chunks are missing
+     */
+    synchronized byte[] reassemble(final byte[] chunk, final ClientNode sender, final long now) {
+        final int maxNumChunks = PacketParser.getChunkLength(chunk);
+        final int chunkId = PacketParser.getChunkNum(chunk);
+        if (maxNumChunks <= 1) {
+            return Arrays.copyOfRange(chunk, headerSize, chunk.length);
+        }
+        if (maxNumChunks > MAX_CHUNKS || chunkId < 0 || chunkId >= maxNumChunks) {
+            LOG.warn("Dropping chunk " + chunkId + " / " + maxNumChunks);
+            return null;
+        }
+        final int msgId = PacketParser.getMessageId(chunk);
+        // a relay forwards the chunks of several senders, the header names the one that chunked them
+        int host = PacketParser.getOriginIpv4(chunk);
+        int port = PacketParser.getOriginPort(chunk);
+        if (host == 0) {
+            host = ipv4(sender.hostName());
+            port = sender.port();
+        }
+        final HostId hostId = hostIds.get(host);
+        long key = 0;
+        PartialMessage message = null;
+        if (hostId != null) {
+            key = key(hostId.id, port, msgId);
+            message = partialMessages.get(key);
+        }
+        if (message != null && message.chunks.length != maxNumChunks) {
+            // an old message sharing the key never completed
+            evict(key, message);
+            message = null;
+        }
+        if (message == null) {
+            final int id = acquireHostId(host);
+            if (id < 0) {
+                LOG.warn("No host id left, dropping chunk " + chunkId + " of message " + msgId);
+                return null;
+            }
+            key = key(id, port, msgId);
+            message = new PartialMessage(msgId, host, maxNumChunks);
+            partialMessages.put(key, message);
+        }
+        if (!message.mark(chunkId)) {
+            duplicateChunks.incrementAndGet();
+            return null;
         }
-        final byte[] completePayload = new byte[dataSize];
-        PacketInfo info = parser.parsePacket(chunks.get(0));
-        final int lastChunkNum = info.getChunkLength() - 1;
-        final Vector<byte[]> sortedChunks = new Vector<>(Collections.nCopies(chunks.size(), null));
-        for (byte[] chunk : chunks) {
-            info = parser.parsePacket(chunk);
-            final int i = info.getChunkNum();
-            sortedChunks.set(i, chunk);
+        if (chunkId != message.nextChunk) {
+            outOfOrderChunks.incrementAndGet();
         }
-        int i = 0;
-        for (byte[] chunk : sortedChunks) {
-            info = parser.parsePacket(chunk);
-            final int chunkSize = chunk.length - headerSize;
-            final byte[] chunkPayload = info.getPayload();
-            System.arraycopy(chunkPayload, 0, completePayload, i, chunkSize);
-            i += chunkSize;
+        message.nextChunk = chunkId + 1;
+        message.updatedAt = now;
+        message.chunks[chunkId] = chunk;
+        message.received++;
+        message.payloadLength += chunk.length - headerSize;
+        message.bytes += chunk.length;
+        bufferedBytes += chunk.length;
+        if (message.received < maxNumChunks) {
+            evictOverCap(key);
+            return null;
         }
-        info = parser.parsePacket(chunks.get(0));
-        info.setChunkLength(1);
-        info.setChunkNum(0);
-        info.setPayload(completePayload);
-        return parser.createPkt(info);
+        partialMessages.remove(key);
+        bufferedBytes -= message.bytes;
+        releaseHostId(message.host);
+        final byte[] payload = new byte[message.payloadLength];
+        int offset = 0;
+        for (byte[] part : message.chunks) {
+            final int chunkSize = part.length - headerSize;
+            System.arraycopy(part, headerSize, payload, offset, chunkSize);
+            offset += chunkSize;
+        }
+        return payload;
+    }
+
+    /**
+     * Builds the table key of a message: the host id and port of the device that chunked it,
+     * and the message id.
+     *
+     * @param hostId the id of the origin's host
+     * @param port the origin's port
+     * @param msgId the message id
+     * @return the key
+     */
+    private static long key(final int hostId, final int port, final int msgId) {
+        return (hostId & SHORT_MASK) << KEY_HOST_SHIFT
+                | (port & SHORT_MASK) << KEY_PORT_SHIFT
+                | (msgId & INT_MASK);
+    }
+
+    /**
+     * Takes a partial message's hold on the id of its host, giving the host an id if it has none.
+     * Caller holds the lock.
+     *
+     * @param host the IPv4 address of the host
+     * @return the id, -1 if every id is held
+     */
+    private int acquireHostId(final int host) {
+        HostId hostId = hostIds.get(host);
+        if (hostId == null) {
+            final Integer free = freeHostIds.poll();
+            if (free != null) {
+                hostId = new HostId(free);
+            } else if (nextHostId < HOST_IDS) {
+                hostId = new HostId(nextHostId++);
+            } else {
+                return -1;
+            }
+            hostIds.put(host, hostId);
+        }
+        hostId.messages++;
+        return hostId.id;
+    }
+
+    /**
+     * Lets go of a partial message's hold on the id of its host, freeing the id with the last one.
+     * Caller holds the lock.
+     *
+     * @param host the IPv4 address of the host
+     */
+    private void releaseHostId(final int host) {
+        final HostId hostId = hostIds.get(host);
+        if (hostId != null && --hostId.messages == 0) {
+            hostIds.remove(host);
+            freeHostIds.add(hostId.id);
+        }
+    }
+
+    /**
+     * Reads a dotted IPv4 address as an int, the way the header holds it.
+     *
+     * @param hostName the address
+     * @return the address, most significant byte first, a hash of the name if it is not an IPv4 address
+     */
+    private static int ipv4(final String hostName) {
+        final String[] parts = hostName.split("\\.");
+        if (parts.length != Integer.BYTES) {
+            return hostName.hashCode();
+        }
+        int address = 0;
+        for (String part : parts) {
+            final int value;
+            try {
+                value = Integer.parseInt(part);
+            } catch (NumberFormatException e) {
+                return hostName.hashCode();
+            }
+            if (value < 0 || value > IPV4_PART_MAX) {
+                return hostName.hashCode();
+            }
+            address = address << IPV4_PART_BITS | value;
+        }
+        return address;
+    }
+
+    /**
+     * Drops the partial messages that got no chunk for too long, swept every {@link #EVICT_INTERVAL_MS}.
+     *
+     * @param now the current {@link System#nanoTime()}
+     */
+    synchronized void evictStale(final long now) {
+        final Iterator<Map.Entry<Long, PartialMessage>> iter = partialMessages.entrySet().iterator();
+        while (iter.hasNext()) {
+            final PartialMessage message = iter.next().getValue();
+            if (now - message.updatedAt < MAX_AGE_NANOS) {
+                // least recently updated first, the rest are younger
+                return;
+            }
+            iter.remove();
+            dropped(message);
+        }
+    }
+
+    /**
+     * Drops the least recently updated partial messages while over the memory cap.
+     *
+     * @param keep the key of the message being filled, dropped last
+     */
+    private void evictOverCap(final long keep) {
+        final Iterator<Map.Entry<Long, PartialMessage>> iter = partialMessages.entrySet().iterator();
+        while (bufferedBytes > MAX_BUFFERED_BYTES && iter.hasNext()) {
+            final Map.Entry<Long, PartialMessage> entry = iter.next();
+            if (entry.getKey() == keep && partialMessages.size() > 1) {
+                continue;
+            }
+            iter.remove();
+            dropped(entry.getValue());
+        }
+    }
+
+    private void evict(final long key, final PartialMessage message) {
+        partialMessages.remove(key);
+        dropped(message);
+    }
+
+    private void dropped(final PartialMessage message) {
+        bufferedBytes -= message.bytes;
+        releaseHostId(message.host);
+        evictedMessages.incrementAndGet();
+        LOG.warn("Dropping message " + message.messageId + " with " + message.received + " / "
+                + message.chunks.length + " chunks");
+    }
+
+    /**
+     * Number of partial messages dropped for age or memory.
+     *
+     * @return the count
+     */
+    public long getEvictedMessages() {
+        return evictedMessages.get();
+    }
+
+    /**
+     * Number of chunks received twice.
+     *
+     * @return the count
+     */
+    public long getDuplicateChunks() {
+        return duplicateChunks.get();
+    }
+
+    /**
+     * Number of chunks that did not follow the previous chunk of their message.
+     *
+     * @return the count
+     */
+    public long getOutOfOrderChunks() {
+        return outOfOrderChunks.get();
+    }
+
+    /**
+     * Bytes held by partial messages.
+     *
+     * @return the byte count
+     */
+    public synchronized long getBufferedBytes() {
+        return bufferedBytes;
+    }
+
+    /**
+     * Number of hosts holding an id, the ones with partial messages.
+     *
+     * @return the count
+     */
+    synchronized int getTrackedHosts() {
+        return hostIds.size();
     }
 
     /**
@@ -191,24 +632,20 @@ public class ChunkManager {
      *
      * @param client the client to remove
      */
-    public void cleanChunk(final ClientNode client) {
-        final String targetIp = client.hostName();
-
-        final List<String> keysToRemove = new ArrayList<>();
-
-        for (String key : chunkListMap.keySet()) {
-            final int idx = key.lastIndexOf(':');
-            if (idx != -1) {
-                final String ip = key.substring(idx + 1);
-
-                if (ip.equals(targetIp)) {
-                    keysToRemove.add(key);
-                }
-            }
+    public synchronized void cleanChunk(final ClientNode client) {
+        // the peer of an accepted connection has another port, only the host is compared
+        final int host = ipv4(client.hostName());
+        if (!hostIds.containsKey(host)) {
+            return;
         }
-
-        for (String key : keysToRemove) {
-            chunkListMap.remove(key);
+        final Iterator<PartialMessage> iter = partialMessages.values().iterator();
+        while (iter.hasNext()) {
+            final PartialMessage message = iter.next();
+            if (message.host == host) {
+                iter.remove();
+                bufferedBytes -= message.bytes;
+                releaseHostId(host);
+            }
         }
     }
 
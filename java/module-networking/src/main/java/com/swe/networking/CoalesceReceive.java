@@ -11,6 +11,8 @@
 package com.swe.networking;
 
 import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * The class implementing coalescing receive and
@@ -23,13 +25,33 @@ public class CoalesceReceive {
      */
     private static final String MODULENAME = "[COALESCERECEIVE]";
 
+    /**
+     * Bytes in front of the data of each record, the record size and the module.
+     */
+    private static final int RECORD_HEADER = Integer.BYTES + 1;
+
+    /**
+     * Priority of a batch received without its header, the least urgent.
+     */
+    private static final int LOWEST_PRIORITY = PriorityQueue.PacketPriority.values().length - 1;
+
     /**
      * function to parse coalesce packet and pass to corresponding listener.
      *
      * @param coalescedData  coalesced payload.
      */
     public void receiveCoalescedPacket(final ByteBuffer coalescedData) {
-        while (coalescedData.hasRemaining()) {
+        receiveCoalescedPacket(coalescedData, LOWEST_PRIORITY);
+    }
+
+    /**
+     * function to parse coalesce packet sent at a priority and pass to corresponding listener.
+     *
+     * @param coalescedData  coalesced payload.
+     * @param priority the priority of the batch, the most urgent of its records
+     */
+    private void receiveCoalescedPacket(final ByteBuffer coalescedData, final int priority) {
+        while (coalescedData.remaining() >= RECORD_HEADER) {
             // Get the size of the packet
             final int packetSize = coalescedData.getInt();
 
@@ -38,12 +60,74 @@ public class CoalesceReceive {
             final int moduleTypeInt = moduleTypeByte;
 
             // Get the payload
-            final int payloadSize = packetSize - 4 - 1;
+            final int payloadSize = packetSize - RECORD_HEADER;
+            if (payloadSize < 0 || payloadSize > coalescedData.remaining()) {
+                // a corrupt size, the records after it cannot be found
+                return;
+            }
             final byte[] payload = new byte[payloadSize];
             coalescedData.get(payload);
 
             // Call the module message listener based on the module type
-            Networking.getNetwork().callSubscriber(moduleTypeInt, payload);
+            Networking.getNetwork().callSubscriber(moduleTypeInt, payload, priority);
+        }
+    }
+
+    /**
+     * function to split a received COALESCED packet into one COALESCED packet per module.
+     * The records of a module keep their order, so each part can be handled on the
+     * lane of its module in order with the module's chunked data.
+     *
+     * @param packet the packet, header included
+     * @return the part of each module, the packet itself when all its records are of one module
+     */
+    static Map<Integer, byte[]> splitByModule(final byte[] packet) {
+        final int header = PacketParser.getHeaderSize();
+        // bytes of the records of each module, up to the first corrupt size as the receiver stops there
+        final Map<Integer, Integer> sizes = new LinkedHashMap<>();
+        final ByteBuffer records = ByteBuffer.wrap(packet, header, packet.length - header);
+        int end = header;
+        while (records.remaining() >= RECORD_HEADER) {
+            final int start = records.position();
+            final int packetSize = records.getInt();
+            final int module = records.get();
+            if (packetSize < RECORD_HEADER || packetSize - RECORD_HEADER > records.remaining()) {
+                break;
+            }
+            end = start + packetSize;
+            records.position(end);
+            sizes.merge(module, packetSize, Integer::sum);
+        }
+        final Map<Integer, byte[]> parts = new LinkedHashMap<>();
+        if (sizes.size() == 1) {
+            parts.put(sizes.keySet().iterator().next(), packet);
+            return parts;
+        }
+        final Map<Integer, ByteBuffer> writers = new LinkedHashMap<>();
+        for (Map.Entry<Integer, Integer> entry : sizes.entrySet()) {
+            final byte[] part = new byte[header + entry.getValue()];
+            System.arraycopy(packet, 0, part, 0, header);
+            parts.put(entry.getKey(), part);
+            writers.put(entry.getKey(), ByteBuffer.wrap(part, header, entry.getValue()));
         }
+        final ByteBuffer record = ByteBuffer.wrap(packet);
+        int offset = header;
+        while (offset < end) {
+            final int packetSize = record.getInt(offset);
+            writers.get((int) record.get(offset + Integer.BYTES)).put(packet, offset, packetSize);
+            offset += packetSize;
+        }
+        return parts;
+    }
+
+    /**
+     * function to pass the records of a received COALESCED packet to their listeners.
+     *
+     * @param packet the packet, header included
+     */
+    public void receiveCoalescedPacket(final byte[] packet) {
+        final int header = PacketParser.getHeaderSize();
+        receiveCoalescedPacket(ByteBuffer.wrap(packet, header, packet.length - header),
+                PacketParser.getPriority(packet));
     }
 }
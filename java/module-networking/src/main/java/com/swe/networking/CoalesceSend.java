@@ -16,12 +16,22 @@ import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
+import com.swe.core.ClientNode;
 import com.swe.core.logging.SweLogger;
 import com.swe.core.logging.SweLoggerFactory;
 
 /**
  * The class implementing coalescing before data is sent.
+ *
+ * <p>
+ * Small packets for the same destination are appended to one coalesced packet of
+ * {@code [int size][byte module][data]} records, which is handed to the {@link Sink} once it
+ * reaches {@link #maxSize} bytes or {@link #maxTime} ms after its first packet, whichever comes
+ * first. The time limit is enforced by a timer set on the given wheel when a destination
+ * gets its first packet, {@link #checkTimeout()} is only needed without a timer.
+ * </p>
  */
 public class CoalesceSend {
 
@@ -34,6 +44,22 @@ public class CoalesceSend {
      * The module name.
      */
     private static final String MODULENAME = "[COALESCESEND]";
+
+    /**
+     * Default maximum size of each coalesced packet in bytes.
+     */
+    private static final int DEFAULT_MAX_SIZE = 2048; // 2 KB
+
+    /**
+     * Default maximum time a packet waits to be coalesced in ms.
+     */
+    private static final int DEFAULT_MAX_TIME = 10; // 10 ms
+
+    /**
+     * Bytes each packet adds in front of its data, the record size and the module.
+     */
+    private static final int RECORD_HEADER = Integer.BYTES + 1;
+
     /**
      * Map which stores a list of packets corresponding to the same destination.
      */
@@ -42,18 +68,75 @@ public class CoalesceSend {
     /**
      * Maximum size of each coalesced packet in bytes.
      */
-    private final int maxSize = 2048; // 2 KB
+    private final int maxSize;
 
     /**
      * Maximum time before timeout.
      */
-    private final int maxTime = 10; // 10 ms
+    private final int maxTime;
 
+    /**
+     * Where coalesced packets are sent, null to only drop them.
+     */
+    private final Sink sink;
+
+    /**
+     * Wheel flushing coalesced packets after {@link #maxTime}, null to rely on {@link #checkTimeout()}.
+     */
+    private final TimingWheel timer;
+
+    /**
+     * Receiver of the coalesced packets.
+     */
+    @FunctionalInterface
+    public interface Sink {
+        /**
+         * Sends a coalesced packet.
+         *
+         * @param dest the destination of all its packets
+         * @param payload the records of the packets
+         * @param packets the number of packets coalesced
+         * @param priority the highest priority of its packets, {@link Integer#MAX_VALUE} if none was given
+         */
+        void send(ClientNode dest, byte[] payload, int packets, int priority);
+    }
+
+    /**
+     * Creates a coalescer with the default limits that is flushed by {@link #checkTimeout()}
+     * and drops what it flushes.
+     */
     public CoalesceSend() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_MAX_TIME, null, null);
+    }
+
+    /**
+     * Creates a coalescer.
+     *
+     * @param maxSizeArg size in bytes at which a coalesced packet is sent
+     * @param maxTimeArg time in ms after its first packet at which a coalesced packet is sent
+     * @param sinkArg where coalesced packets are sent
+     * @param timerArg wheel enforcing the time limit, null to rely on {@link #checkTimeout()}
+     */
+    public CoalesceSend(final int maxSizeArg, final int maxTimeArg, final Sink sinkArg,
+            final TimingWheel timerArg) {
         this.coalescedPackets = new HashMap<>();
+        this.maxSize = maxSizeArg;
+        this.maxTime = maxTimeArg;
+        this.sink = sinkArg;
+        this.timer = timerArg;
         LOG.info("CoalesceSend initialized...");
     }
 
+    /**
+     * Whether data of the given length is small enough to be coalesced.
+     *
+     * @param length the length of the data
+     * @return true if it should go through {@link #handlePacket}
+     */
+    public boolean accepts(final int length) {
+        return length + RECORD_HEADER < maxSize;
+    }
+
     /**
      * Adds packets to coalescing lists based on their destination.
      *
@@ -63,30 +146,36 @@ public class CoalesceSend {
      * @param module The module where the data is to be sent.
      */
     public void handlePacket(final byte[] data, final InetAddress destIP, final int destPort, final byte module) {
+        handlePacket(data, destIP, destPort, module, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Adds packets to coalescing lists based on their destination.
+     *
+     * @param data The payload of the packet.
+     * @param destIP The IP of the destination.
+     * @param destPort The port of the destination.
+     * @param module The module where the data is to be sent.
+     * @param priority The priority of the packet (0 highest).
+     */
+    public synchronized void handlePacket(final byte[] data, final InetAddress destIP, final int destPort,
+            final byte module, final int priority) {
         final String destination = destIP.getHostAddress() + ":" + destPort;
-        LOG.info("Handling packet for destination: " + destination);
 
         CoalescedPacket coalescedPacket = coalescedPackets.get(destination);
         if (coalescedPacket == null) {
-            LOG.info("No existing coalesced packet for "
-                    + destination + ". Creating new one.");
             coalescedPacket = new CoalescedPacket();
             coalescedPackets.put(destination, coalescedPacket);
+            scheduleFlush(destination, coalescedPacket);
         }
 
-        final int packetSize = 4 + 1 + data.length; // packetSize + module + data
-
-        final ByteBuffer buffer = ByteBuffer.allocate(packetSize);
-        buffer.putInt(packetSize); // 4 bytes
-        buffer.put(module); // 1 byte
-        buffer.put(data); // data.length bytes
+        final int packetSize = RECORD_HEADER + data.length; // packetSize + module + data
 
-        final byte[] packet = new byte[buffer.position()];
-        buffer.flip();
-        buffer.get(packet);
+        final byte[] packet = new byte[packetSize];
+        ByteBuffer.wrap(packet).putInt(packetSize).put(module).put(data);
 
         coalescedPacket.addToQueue(packet);
-        LOG.info("Added packet of size " + packet.length + " to queue for " + destination);
+        coalescedPacket.raisePriority(priority);
 
         if (coalescedPacket.getTotalSize() >= maxSize) {
             LOG.info("Max size reached for " + destination + ". Sending coalesced packet.");
@@ -95,27 +184,74 @@ public class CoalesceSend {
         }
     }
 
+    /**
+     * Sends what is coalesced for a destination right away, so data sent to it
+     * without coalescing does not overtake it.
+     *
+     * @param destIP The IP of the destination.
+     * @param destPort The port of the destination.
+     */
+    public synchronized void flush(final InetAddress destIP, final int destPort) {
+        final String destination = destIP.getHostAddress() + ":" + destPort;
+        final CoalescedPacket coalescedPacket = coalescedPackets.remove(destination);
+        if (coalescedPacket != null) {
+            sendCoalescedPacket(destination, coalescedPacket);
+        }
+    }
+
+    /**
+     * Sends everything coalesced so far.
+     */
+    public synchronized void flushAll() {
+        final Iterator<Map.Entry<String, CoalescedPacket>> iterator = coalescedPackets.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<String, CoalescedPacket> entry = iterator.next();
+            sendCoalescedPacket(entry.getKey(), entry.getValue());
+            iterator.remove();
+        }
+    }
+
+    private void scheduleFlush(final String destination, final CoalescedPacket coalescedPacket) {
+        if (timer != null) {
+            coalescedPacket.setFlushTimer(timer.schedule(() -> flushExpired(destination, coalescedPacket),
+                    maxTime, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    /**
+     * Timer task of a coalesced packet, it may have been sent for its size already.
+     *
+     * @param destination the destination key
+     * @param coalescedPacket the packet the task was scheduled for
+     */
+    private synchronized void flushExpired(final String destination, final CoalescedPacket coalescedPacket) {
+        if (coalescedPackets.remove(destination, coalescedPacket)) {
+            sendCoalescedPacket(destination, coalescedPacket);
+        }
+    }
+
     private void sendCoalescedPacket(final String destination, final CoalescedPacket coalescedPacket) {
+        // sent for its size or flushed, its timer has nothing left to do
+        coalescedPacket.cancelFlushTimer();
         final String ip = destination.split(":")[0];
         final int port = Integer.parseInt(destination.split(":")[1]);
         try {
             final InetAddress destIP = InetAddress.getByName(ip);
-            LOG.info("Sending coalesced packet to " + destination);
 
-            final ByteBuffer buffer = ByteBuffer.allocate(coalescedPacket.getTotalSize());
+            final int packets = coalescedPacket.getCount();
+            final byte[] payload = new byte[coalescedPacket.getTotalSize()];
+            final ByteBuffer buffer = ByteBuffer.wrap(payload);
 
             while (coalescedPacket.getTotalSize() > 0) {
                 buffer.put(coalescedPacket.getQueueHead());
             }
 
-            final byte[] payload = new byte[buffer.position()];
-            buffer.flip();
-            buffer.get(payload);
-
-            LOG.info("Coalesced packet of size "
+            LOG.info("Coalesced packet of " + packets + " packets and size "
                     + payload.length + " sent to " + destination);
-            // Todo: Send the module: networking, destIP, port and payload to the chunk
-            // manager.
+            if (sink != null) {
+                sink.send(new ClientNode(destIP.getHostAddress(), port), payload, packets,
+                        coalescedPacket.getPriority());
+            }
         } catch (UnknownHostException e) {
             LOG.error("Error sending coalesced packet: " + e.getMessage());
             throw new RuntimeException(e);
@@ -124,9 +260,9 @@ public class CoalesceSend {
 
     /**
      * Function to check timeout of each coalesced packet i.e., coalescedPacket.
-     * It should be invoked by a scheduled executor or timer.
+     * Only needed when no timer was given.
      */
-    public void checkTimeout() {
+    public synchronized void checkTimeout() {
         final long now = System.currentTimeMillis();
 
         final Iterator<Map.Entry<String, CoalescedPacket>> iterator = coalescedPackets.entrySet().iterator();
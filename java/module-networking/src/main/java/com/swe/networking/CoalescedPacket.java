@@ -40,6 +40,18 @@ class CoalescedPacket {
      * The time at which the coalescedPacket is created.
      */
     private long startTime;
+    /**
+     * Highest priority (lowest level) of the queued packets.
+     */
+    private int priority = Integer.MAX_VALUE;
+    /**
+     * Number of packets in the queue.
+     */
+    private int count = 0;
+    /**
+     * Timer flushing the packet at the time limit, null without one.
+     */
+    private TimingWheel.Timeout flushTimer;
 
     CoalescedPacket() {
         LOG.info("New coalesced packet created.");
@@ -58,10 +70,57 @@ class CoalescedPacket {
 
         queue.add(packet);
         totalSize += packet.length;
+        count++;
         LOG.info("Packet of size " + packet.length 
             + " added to queue. New total size: " + totalSize);
     }
 
+    /**
+     * Raises the priority of the coalesced packet to the given one if it is higher.
+     *
+     * @param priorityArg the priority of a queued packet (0 highest)
+     */
+    public void raisePriority(final int priorityArg) {
+        priority = Math.min(priority, priorityArg);
+    }
+
+    /**
+     * Highest priority of the queued packets, {@link Integer#MAX_VALUE} if none was given.
+     *
+     * @return the priority
+     */
+    public int getPriority() {
+        return this.priority;
+    }
+
+    /**
+     * Number of packets in the queue.
+     *
+     * @return the count
+     */
+    public int getCount() {
+        return this.count;
+    }
+
+    /**
+     * Sets the timer flushing the packet at the time limit.
+     *
+     * @param flushTimerArg the timer
+     */
+    public void setFlushTimer(final TimingWheel.Timeout flushTimerArg) {
+        this.flushTimer = flushTimerArg;
+    }
+
+    /**
+     * Cancels the timer flushing the packet, once it is sent for another reason.
+     */
+    public void cancelFlushTimer() {
+        if (flushTimer != null) {
+            flushTimer.cancel();
+            flushTimer = null;
+        }
+    }
+
     public long getStartTime() {
         return this.startTime;
     }
@@ -74,6 +133,7 @@ class CoalescedPacket {
         final byte[] head = this.queue.poll();
         if (head != null) {
             this.totalSize -= head.length;
+            this.count--;
             LOG.info("Packet of size " + head.length 
                 + " retrieved from queue. New total size: " + totalSize);
         } else {
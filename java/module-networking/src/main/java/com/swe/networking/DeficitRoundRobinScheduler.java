@@ -0,0 +1,248 @@
+/*
+ * -----------------------------------------------------------------------------
+ *  File: DeficitRoundRobinScheduler.java
+ *  Owner: Vishwaa
+ *  Roll Number : 112201030
+ *  Module : Networking
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+package com.swe.networking;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import com.swe.core.ClientNode;
+
+/**
+ * Weighted fair scheduler using deficit round robin over one queue per priority level.
+ *
+ * <p>
+ * Each level gets a byte quantum proportional to its {@link PriorityQueue.PacketPriority}
+ * share every time the round reaches it, and sends chunks while they fit in its deficit.
+ * Levels share the link in proportion to their weights whatever their chunk sizes, and an
+ * idle level leaves its share to the others, so a chunk is returned whenever one is queued.
+ * </p>
+ *
+ * <p>
+ * Producers only append to lock-free queues, the priority and destination are given by the
+ * caller so chunks are not parsed again. {@link #nextPacket()}, {@link #poll()} and
+ * {@link #take()} must be called from a single thread (the send thread), which owns the round
+ * state. {@link #take()} parks that thread while nothing is queued and the next producer
+ * unparks it.
+ * </p>
+ */
+public class DeficitRoundRobinScheduler implements PacketScheduler {
+
+    /**
+     * Bytes of quantum per percent of budget share.
+     */
+    private static final int BYTES_PER_SHARE = 1024;
+
+    /**
+     * Number of priority levels.
+     */
+    private static final int LEVELS = PriorityQueue.PacketPriority.values().length;
+
+    /**
+     * One queue per priority level.
+     */
+    private final Queue<OutgoingPacket>[] queues;
+
+    /**
+     * Bytes added to a level's deficit per round.
+     */
+    private final int[] quantums;
+
+    /**
+     * Bytes each level may still send in the current round, owned by the consumer.
+     */
+    private final long[] deficits = new long[LEVELS];
+
+    /**
+     * Number of queued chunks.
+     */
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * Level the round is at, owned by the consumer.
+     */
+    private int current;
+
+    /**
+     * Whether the current level already got its quantum this round, owned by the consumer.
+     */
+    private boolean charged;
+
+    /**
+     * The consumer parked in {@link #take()}, null while it is running.
+     */
+    private volatile Thread waiter;
+
+    /**
+     * Creates a scheduler weighted by the budget shares of the priority levels.
+     * Levels without a share get the smallest weight rather than starving.
+     */
+    @SuppressWarnings("unchecked")
+    public DeficitRoundRobinScheduler() {
+        queues = (Queue<OutgoingPacket>[]) new Queue<?>[LEVELS];
+        quantums = new int[LEVELS];
+        for (PriorityQueue.PacketPriority priority : PriorityQueue.PacketPriority.values()) {
+            final int level = priority.ordinal();
+            queues[level] = new ConcurrentLinkedQueue<>();
+            quantums[level] = Math.max(1, priority.getShare()) * BYTES_PER_SHARE;
+        }
+    }
+
+    /**
+     * Queues a chunk, unknown levels go to the lowest one.
+     *
+     * @param data the chunk, header included
+     * @param priority the priority level the chunk was sent with (0 highest)
+     */
+    @Override
+    public void addPacket(final byte[] data, final int priority) {
+        addPacket(data, priority, null);
+    }
+
+    /**
+     * Queues a chunk for the given client and wakes the consumer if it is parked.
+     * Unknown levels go to the lowest one.
+     *
+     * @param data the chunk, header included
+     * @param priority the priority level the chunk was sent with (0 highest)
+     * @param dest the client to send the chunk to
+     */
+    public void addPacket(final byte[] data, final int priority, final ClientNode dest) {
+        addPacket(data, null, priority, dest);
+    }
+
+    /**
+     * Queues a chunk held as its header and a payload shared with the chunks of other clients.
+     * Unknown levels go to the lowest one.
+     *
+     * @param header the header of the chunk
+     * @param payload the read only payload, null if the header array holds the whole chunk
+     * @param priority the priority level the chunk was sent with (0 highest)
+     * @param dest the client to send the chunk to
+     */
+    public void addPacket(final byte[] header, final ByteBuffer payload, final int priority,
+            final ClientNode dest) {
+        int level = priority;
+        if (level < 0 || level >= LEVELS) {
+            level = LEVELS - 1;
+        }
+        queues[level].offer(new OutgoingPacket(header, payload, dest, System.nanoTime()));
+        // counted once visible, so a non zero size always has a chunk to poll
+        size.incrementAndGet();
+        // read after the count, take() publishes itself before reading the count
+        final Thread parked = waiter;
+        if (parked != null) {
+            LockSupport.unpark(parked);
+        }
+    }
+
+    /**
+     * Takes the next chunk in deficit round robin order. Single consumer only.
+     *
+     * @return the chunk, or null if none is queued
+     */
+    @Override
+    public byte[] nextPacket() {
+        final OutgoingPacket packet = poll();
+        if (packet == null) {
+            return null;
+        }
+        return packet.toBytes();
+    }
+
+    /**
+     * Takes the next chunk with its destination, waiting while none is queued. Single consumer only.
+     *
+     * @return the chunk
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public OutgoingPacket take() throws InterruptedException {
+        while (true) {
+            final OutgoingPacket packet = poll();
+            if (packet != null) {
+                return packet;
+            }
+            waiter = Thread.currentThread();
+            // a producer that counted before this read is seen, one after it sees the waiter
+            if (size.get() == 0) {
+                LockSupport.park(this);
+            }
+            waiter = null;
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    /**
+     * Takes the next chunk with its destination in deficit round robin order. Single consumer only.
+     *
+     * @return the chunk, or null if none is queued
+     */
+    public OutgoingPacket poll() {
+        int emptyVisits = 0;
+        while (size.get() > 0 && emptyVisits < LEVELS) {
+            final Queue<OutgoingPacket> queue = queues[current];
+            final OutgoingPacket head = queue.peek();
+            if (head == null) {
+                // an idle level does not bank credit
+                deficits[current] = 0;
+                emptyVisits++;
+                advance();
+                continue;
+            }
+            emptyVisits = 0;
+            if (!charged) {
+                deficits[current] += quantums[current];
+                charged = true;
+            }
+            final int length = head.length();
+            if (length <= deficits[current]) {
+                queue.poll();
+                deficits[current] -= length;
+                size.decrementAndGet();
+                return head;
+            }
+            advance();
+        }
+        return null;
+    }
+
+    private void advance() {
+        current = (current + 1) % LEVELS;
+        charged = false;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size.get() == 0;
+    }
+
+    /**
+     * Number of queued chunks.
+     *
+     * @return the count
+     */
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public void clear() {
+        for (Queue<OutgoingPacket> queue : queues) {
+            while (queue.poll() != null) {
+                size.decrementAndGet();
+            }
+        }
+    }
+}
@@ -12,6 +12,8 @@ package com.swe.networking;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.List;
 
 import com.swe.core.ClientNode;
@@ -87,6 +89,11 @@ public class MainServer implements P2PUser {
      */
     private final ChunkManager chunkManager;
 
+    /**
+     * Variable to store the demultiplexer of coalesced packets.
+     */
+    private final CoalesceReceive coalesceReceive = new CoalesceReceive();
+
     /**
      * Variable to store the chunksize.
      */
@@ -109,8 +116,12 @@ public class MainServer implements P2PUser {
         timer = new Timer(timerTimeoutMilliSeconds, this::handleClientTimeout);
         LOG.info("Listening at port:" + serverPort + " ...");
         communicator = new TCPCommunicator(serverPort);
-        receiveThread = new Thread(() -> receive());
-        receiveThread.start();
+        if (communicator.setReceiver(packet -> parsePacket(packet.data(), packet.sender()))) {
+            receiveThread = null;
+        } else {
+            receiveThread = new Thread(() -> receive());
+            receiveThread.start();
+        }
     }
 
     /**
@@ -141,6 +152,31 @@ public class MainServer implements P2PUser {
         communicator.sendData(data, sendDest); // check of this should be dest
     }
 
+    /**
+     * Function to send to a single destination a chunk whose payload is shared with other destinations.
+     *
+     * @param header the header of the chunk
+     * @param payload the shared payload
+     * @param destIp the destination to which the data is sent
+     */
+    @Override
+    public void send(final byte[] header, final ByteBuffer payload, final ClientNode destIp) {
+        final ClientNode sendDest = topology.getDestination(mainserver, destIp);
+        communicator.sendData(header, payload, sendDest);
+    }
+
+    /**
+     * Function to check whether the next hop to a destination keeps up with the data sent to it.
+     *
+     * @param destIp the destination of the data
+     * @return false while too much data to its next hop is waiting to be written
+     */
+    @Override
+    public boolean canSend(final ClientNode destIp) {
+        final ClientNode sendDest = topology.getDestination(mainserver, destIp);
+        return sendDest == null || communicator.canSend(sendDest);
+    }
+
     /**
      * Function to receive the data from the sockets.
      */
@@ -149,11 +185,7 @@ public class MainServer implements P2PUser {
         while (true) {
             final ReceivePacket packet = communicator.receiveData();
             if (packet != null) {
-                final List<byte[]> packets = SplitPackets.getSplitPackets().split(packet);
-                for (byte[] p : packets) {
-                    parsePacket(p);
-                }
-                // parsePacket(packet);
+                parsePacket(packet.data(), packet.sender());
             }
         }
     }
@@ -162,44 +194,34 @@ public class MainServer implements P2PUser {
      * Function to parse the packet received and take necessary action.
      *
      * @param packet the packet received
+     * @param sender the peer the packet arrived from
      */
-    private void parsePacket(final byte[] packet) {
-        try {
-            final PacketInfo packetInfo = parser.parsePacket(packet);
-            final int connectionType = packetInfo.getConnectionType();
-            final int type = packetInfo.getType();
-            final InetAddress destInet = packetInfo.getIpAddress();
-            final String destinationIp = destInet.getHostAddress();
-            final int destinationPort = packetInfo.getPortNum();
-            final ClientNode dest = new ClientNode(destinationIp,
-                    destinationPort);
-            LOG.info("Packet received from " + dest + " of type "
-                    + type + " and connection type " + connectionType + "...");
-            // check for broadcast packet
-            if (packetInfo.getBroadcast() == 1) {
-                handleBroadcast(packetInfo);
-                packetInfo.setBroadcast(0);
-                packetInfo.setType(NetworkType.USE.ordinal());
-            }
-            if (type == NetworkType.USE.ordinal()) {
-                handleUsePacket(packet, dest, connectionType);
-            } else if (type == NetworkType.SAMECLUSTER.ordinal()) {
-                final PacketInfo pktInfo = parser.parsePacket(packet);
-                pktInfo.setType(NetworkType.USE.ordinal());
-                final byte[] newPacket = parser.createPkt(pktInfo);
-                send(newPacket, dest);
-            } else if (type == NetworkType.OTHERCLUSTER.ordinal()) {
-                final ClientNode clusterServer = topology.getServer(dest);
-                if (clusterServer.equals(dest)) {
-                    packetInfo.setType(NetworkType.USE.ordinal());
-                } else {
-                    packetInfo.setType(NetworkType.SAMECLUSTER.ordinal());
-                }
-                send(packet, clusterServer);
+    private void parsePacket(final byte[] packet, final ClientNode sender) {
+        // routing reads the header in place, the payload is never copied
+        final int connectionType = PacketParser.getConnectionType(packet);
+        final int type = PacketParser.getType(packet);
+        final ClientNode dest = PacketParser.getClientNode(packet);
+        LOG.info("Packet received from " + dest + " of type "
+                + type + " and connection type " + connectionType + "...");
+        // check for broadcast packet
+        if (PacketParser.getBroadcast(packet) == 1) {
+            handleBroadcast(packet);
+        }
+        if (type == NetworkType.USE.ordinal()) {
+            handleUsePacket(packet, dest, connectionType, sender);
+        } else if (type == NetworkType.SAMECLUSTER.ordinal()) {
+            PacketParser.setType(packet, NetworkType.USE.ordinal());
+            send(packet, dest);
+        } else if (type == NetworkType.OTHERCLUSTER.ordinal()) {
+            final ClientNode clusterServer = topology.getServer(dest);
+            if (clusterServer.equals(dest)) {
+                PacketParser.setType(packet, NetworkType.USE.ordinal());
             } else {
-                LOG.info("Unknown packet type received.");
+                PacketParser.setType(packet, NetworkType.SAMECLUSTER.ordinal());
             }
-        } catch (UnknownHostException ex) {
+            send(packet, clusterServer);
+        } else {
+            LOG.info("Unknown packet type received.");
         }
     }
 
@@ -209,8 +231,10 @@ public class MainServer implements P2PUser {
      * @param packet the packet to be parsed
      * @param dest the destination from which the packet was received
      * @param connectionType the connection type of the packet
+     * @param sender the peer the packet arrived from
      */
-    private void handleUsePacket(final byte[] packet, final ClientNode dest, final int connectionType) {
+    private void handleUsePacket(final byte[] packet, final ClientNode dest, final int connectionType,
+                                 final ClientNode sender) {
         try {
             if (connectionType == NetworkConnectionType.HELLO.ordinal()) {
                 handleHello(dest);
@@ -221,12 +245,14 @@ public class MainServer implements P2PUser {
                 LOG.info("Received alive packet from " + dest);
             } else if (connectionType == NetworkConnectionType.MODULE.ordinal()) {
                 LOG.info("Passing to chunk manager...");
-                final int module = parser.parsePacket(packet).getModule();
-                final byte[] data = chunkManager.addChunk(packet);
+                final int module = PacketParser.getModule(packet);
+                final byte[] data = chunkManager.reassemble(packet, sender);
                 final Networking networking = Networking.getNetwork();
                 if (data != null) {
-                    networking.callSubscriber(module, parser.parsePacket(data).getPayload());
+                    networking.callSubscriber(module, data, PacketParser.getPriority(packet));
                 }
+            } else if (connectionType == NetworkConnectionType.COALESCED.ordinal()) {
+                coalesceReceive.receiveCoalescedPacket(packet);
             } else if (connectionType == NetworkConnectionType.CLOSE.ordinal()) {
                 LOG.info("Closing the Main Server");
             }
@@ -237,37 +263,44 @@ public class MainServer implements P2PUser {
     /**
      * Function to handle broadcasting a packet.
      *
-     * @param packetInfo function to handle packet.
+     * @param packet the broadcast packet, left unchanged
      */
-    private void handleBroadcast(final PacketInfo packetInfo) {
-        if (packetInfo.getType() == NetworkType.USE.ordinal()) {
+    private void handleBroadcast(final byte[] packet) {
+        // the packet is copied once per hop, its header rewritten and the buffer queued for every destination
+        final int type = PacketParser.getType(packet);
+        if (type == NetworkType.USE.ordinal()) {
             // send to other servers
-            final List<ClientNode> servers = topology.getAllClusterServers();
-            for (ClientNode server : servers) {
-                if (server.equals(mainserver)) {
-                    continue;
-                }
-                packetInfo.setType(NetworkType.OTHERCLUSTER.ordinal());
-                final byte[] newPacket = parser.createPkt(packetInfo);
-                send(newPacket, server);
-            }
-        } else if (packetInfo.getType() == NetworkType.OTHERCLUSTER.ordinal()) {
+            final byte[] relayed = Arrays.copyOf(packet, packet.length);
+            PacketParser.setType(relayed, NetworkType.OTHERCLUSTER.ordinal());
+            relay(relayed, topology.getAllClusterServers(), mainserver);
+        } else if (type == NetworkType.OTHERCLUSTER.ordinal()) {
             // to just send to clients in the cluster
             final List<ClientNode> dests = topology.getClients(topology.getClusterIndex(mainserver));
-            for (ClientNode dest : dests) {
-                if (dest.equals(mainserver)) {
-                    continue;
-                }
-                packetInfo.setType(NetworkType.USE.ordinal());
-                packetInfo.setBroadcast(0);
-                final byte[] newPacket = parser.createPkt(packetInfo);
-                send(newPacket, dest);
+            if (dests == null) {
+                return;
             }
+            final byte[] relayed = Arrays.copyOf(packet, packet.length);
+            PacketParser.setType(relayed, NetworkType.USE.ordinal());
+            PacketParser.setBroadcast(relayed, 0);
+            relay(relayed, dests, mainserver);
         } else {
             LOG.info("Broadcast packet of unknown type received at P2PServer.");
-            return;
         }
+    }
 
+    /**
+     * Function to relay a serialised packet to the given clients, all sends share the buffer.
+     *
+     * @param packet the packet to relay
+     * @param dests the clients to relay to
+     * @param self this device, which is skipped
+     */
+    private void relay(final byte[] packet, final List<ClientNode> dests, final ClientNode self) {
+        for (ClientNode dest : dests) {
+            if (!dest.equals(self)) {
+                send(packet, dest);
+            }
+        }
     }
 
     /**
@@ -428,9 +461,10 @@ public class MainServer implements P2PUser {
     public void close() {
         final byte[] removePkt = createRemovePacket(mainserver);
         Networking.getNetwork().broadcast(removePkt, 0, 0);
-        receiveThread.interrupt();
+        if (receiveThread != null) {
+            receiveThread.interrupt();
+        }
         communicator.close();
-        SplitPackets.getSplitPackets().emptyBuffer();
 //        timer.close();
     }
 
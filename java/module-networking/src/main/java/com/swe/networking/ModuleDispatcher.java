@@ -0,0 +1,252 @@
+/*
+ * -----------------------------------------------------------------------------
+ *  File: ModuleDispatcher.java
+ *  Owner: Shubham Yadav
+ *  Roll Number : 112201032
+ *  Module : Networking
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+package com.swe.networking;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+import com.swe.core.logging.SweLogger;
+import com.swe.core.logging.SweLoggerFactory;
+
+/**
+ * Hands received data to the module listeners off the receive threads.
+ *
+ * <p>
+ * Every module has a bounded queue and one thread calling its listener, so data reaches a
+ * module in the order it was received, from every sender, and a slow listener only holds
+ * up its own module. What happens when a queue is full is chosen per module: screen share
+ * frames replace the oldest queued frame, since a late frame is of no use, while the other
+ * modules hold the receive thread until there is room so nothing is lost.
+ * </p>
+ *
+ * <p>
+ * Only data sent below the protected priority may be dropped. Control messages and full
+ * images are sent at the protected priority, so a full queue holds the receive thread for
+ * them as it does for the modules that never drop.
+ * </p>
+ */
+public final class ModuleDispatcher {
+
+    /**
+     * What to do with data for a module whose queue is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Wait for room, holding up the receive thread.
+         */
+        BLOCK,
+        /**
+         * Drop the oldest queued data to make room.
+         */
+        DROP_OLDEST,
+        /**
+         * Drop the new data.
+         */
+        DROP_NEWEST
+    }
+
+    /**
+     * Counters of one module over a window.
+     *
+     * @param depth the data queued when the snapshot was taken
+     * @param peakDepth the deepest the queue was in the window
+     * @param delivered the data taken off the queue for the listener in the window
+     * @param dropped the data dropped by the overflow policy in the window
+     */
+    public record Snapshot(int depth, int peakDepth, long delivered, long dropped) {
+    }
+
+    /**
+     * Logger for this class.
+     */
+    private static final SweLogger LOG = SweLoggerFactory.getLogger("NETWORKING");
+
+    /**
+     * Default queue length of a module.
+     */
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * Default queue length of screen sharing, a few frames of every viewer.
+     */
+    private static final int SCREENSHARING_CAPACITY = 64;
+
+    /**
+     * Least urgent priority whose data is never dropped.
+     */
+    private static final int PROTECTED_PRIORITY = PriorityQueue.PacketPriority.ONE.ordinal();
+
+    /**
+     * Priority of data whose sender did not give one, the least urgent.
+     */
+    private static final int LOWEST_PRIORITY = PriorityQueue.PacketPriority.values().length - 1;
+
+    /**
+     * The lane of each module, by ordinal.
+     */
+    private final BoundedLane<Entry>[] lanes;
+
+    /**
+     * Finds the listener of a module when its data is delivered.
+     */
+    private final IntFunction<MessageListener> listeners;
+
+    /**
+     * Whether the dispatcher was closed.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Queued data and whether the overflow policy may drop it.
+     *
+     * @param data the data
+     * @param droppable false for data sent at the protected priority
+     */
+    private record Entry(byte[] data, boolean droppable) {
+    }
+
+    /**
+     * Creates the lanes of every module with the default policies.
+     *
+     * @param listenersArg finds the listener of a module by ordinal, null if none
+     */
+    public ModuleDispatcher(final IntFunction<MessageListener> listenersArg) {
+        this.listeners = listenersArg;
+        final ModuleType[] modules = ModuleType.values();
+        @SuppressWarnings("unchecked")
+        final BoundedLane<Entry>[] created = (BoundedLane<Entry>[]) new BoundedLane<?>[modules.length];
+        for (ModuleType module : modules) {
+            created[module.ordinal()] = new BoundedLane<>("dispatch-" + module.name().toLowerCase(),
+                    DEFAULT_CAPACITY, OverflowPolicy.BLOCK, Entry::droppable, entry -> deliver(module, entry.data()));
+        }
+        lanes = created;
+        configure(ModuleType.SCREENSHARING, SCREENSHARING_CAPACITY, OverflowPolicy.DROP_OLDEST);
+    }
+
+    /**
+     * Sets the queue length and overflow policy of a module.
+     *
+     * @param module the module
+     * @param capacity most data queued before the policy applies
+     * @param policy what to do once the queue is full
+     */
+    public void configure(final ModuleType module, final int capacity, final OverflowPolicy policy) {
+        lanes[module.ordinal()].configure(capacity, policy);
+    }
+
+    /**
+     * Queues data sent without a priority, at the least urgent one.
+     *
+     * @param module the module ordinal
+     * @param data the data
+     * @return false if the module has no listener or the dispatcher closed
+     */
+    public boolean dispatch(final int module, final byte[] data) {
+        return dispatch(module, data, LOWEST_PRIORITY);
+    }
+
+    /**
+     * Queues data for the listener of its module. Listeners subscribed under a number that is
+     * not a {@link ModuleType} have no lane and are called on the calling thread.
+     *
+     * @param module the module ordinal
+     * @param data the data
+     * @param priority the priority the data was sent at, data at the protected priority is never dropped
+     * @return false if the module has no listener or the dispatcher closed
+     */
+    public boolean dispatch(final int module, final byte[] data, final int priority) {
+        if (closed) {
+            return false;
+        }
+        if (module < 0 || module >= lanes.length) {
+            return deliverNow(module, data);
+        }
+        try {
+            return lanes[module].offer(new Entry(data, priority > PROTECTED_PRIORITY));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Calls the listener of a module, on the thread of its lane.
+     *
+     * @param module the module
+     * @param data the data
+     */
+    private void deliver(final ModuleType module, final byte[] data) {
+        final MessageListener listener = listeners.apply(module.ordinal());
+        if (listener == null) {
+            LOG.info("Subscriber of " + module + " was removed, dropping its data...");
+            return;
+        }
+        try {
+            listener.receiveData(data);
+        } catch (RuntimeException e) {
+            LOG.error("Subscriber of " + module + " failed", e);
+        }
+    }
+
+    /**
+     * Calls the listener of a module without a lane.
+     *
+     * @param module the number the listener was subscribed under
+     * @param data the data
+     * @return false if there is no listener
+     */
+    private boolean deliverNow(final int module, final byte[] data) {
+        final MessageListener listener = listeners.apply(module);
+        if (listener == null) {
+            return false;
+        }
+        try {
+            listener.receiveData(data);
+        } catch (RuntimeException e) {
+            LOG.error("Subscriber of " + module + " failed", e);
+        }
+        return true;
+    }
+
+    /**
+     * Number of data waiting for the listener of a module.
+     *
+     * @param module the module
+     * @return the queue depth
+     */
+    public int getQueuedPackets(final ModuleType module) {
+        return lanes[module.ordinal()].size();
+    }
+
+    /**
+     * Returns the counters of every module since the last snapshot and starts a new window.
+     *
+     * @return the counters by module
+     */
+    public Map<ModuleType, Snapshot> snapshot() {
+        final Map<ModuleType, Snapshot> snapshots = new EnumMap<>(ModuleType.class);
+        for (ModuleType module : ModuleType.values()) {
+            snapshots.put(module, lanes[module.ordinal()].snapshot());
+        }
+        return snapshots;
+    }
+
+    /**
+     * Stops the threads, queued data is dropped.
+     */
+    public void close() {
+        closed = true;
+        for (BoundedLane<Entry> lane : lanes) {
+            lane.stop();
+        }
+    }
+}
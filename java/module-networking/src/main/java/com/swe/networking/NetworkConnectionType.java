@@ -29,7 +29,9 @@ public enum NetworkConnectionType {
     /** MODULE packet type. */
     MODULE,
     /** CLOSE packet type. */
-    CLOSE;
+    CLOSE,
+    /** COALESCED packet type, small module packets sent together. */
+    COALESCED;
 
     /** REMOVE packet ID. */
     private static final int HELLOID = 0;
@@ -45,6 +47,8 @@ public enum NetworkConnectionType {
     private static final int MODULEID = 5;
     /** CLOES packet ID. */
     private static final int CLOSEID = 6;
+    /** COALESCED packet ID. */
+    private static final int COALESCEDID = 7;
 
     /**
      * Hashmap storing the mapping from integer to NetworkConnectionType.
@@ -58,6 +62,7 @@ public enum NetworkConnectionType {
             put(NETWORKID, NETWORK);
             put(MODULEID, MODULE);
             put(CLOSEID, CLOSE);
+            put(COALESCEDID, COALESCED);
         }
     };
 
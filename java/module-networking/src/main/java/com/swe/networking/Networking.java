@@ -10,15 +10,18 @@
 
 package com.swe.networking;
 
+import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.swe.core.ClientNode;
 import com.swe.core.RPCinterface.AbstractRPC;
@@ -30,6 +33,23 @@ import com.swe.core.logging.SweLoggerFactory;
  */
 public class Networking implements AbstractNetworking, AbstractController {
 
+    /**
+     * How the data of a module is carried to its destinations.
+     */
+    public enum Transport {
+        /**
+         * Chunks go through the send queue over the TCP connections of the topology, relayed by the
+         * cluster servers, every chunk arrives in order.
+         */
+        TCP,
+        /**
+         * Chunks go straight to their destination in datagrams, a lost chunk only loses its message.
+         * Chunks sent at a priority up to {@link PriorityQueue.PacketPriority#ONE} are resent when
+         * missing, the others are not.
+         */
+        UDP
+    }
+
     /**
      * The singeton variable to store the class object.
      */
@@ -39,25 +59,82 @@ public class Networking implements AbstractNetworking, AbstractController {
      * The singleton object.
      */
     private static Networking networking;
+
+    /**
+     * How often the send thread logs its metrics while sending.
+     */
+    private static final long METRICS_INTERVAL_NS = 10_000_000_000L;
+
+    /**
+     * Default size in bytes at which the packets coalesced for a destination are sent.
+     */
+    private static final int COALESCE_SIZE = 2048; // 2 KB
+
+    /**
+     * Default time in ms a packet waits to be coalesced.
+     */
+    private static final int COALESCE_DELAY_MS = 2;
+
+    /**
+     * Default rate in bytes per second the datagrams are paced at, about a 100 Mbit/s link.
+     */
+    private static final long DATAGRAM_PACING_RATE = 12L * 1024 * 1024;
+
+    /**
+     * Lowest priority level of the scheduler.
+     */
+    private static final int LOWEST_PRIORITY = PriorityQueue.PacketPriority.values().length - 1;
+
     /**
      * The variable to store all the listeners subscribed to the module.
      */
-    private final HashMap<Integer, MessageListener> listeners = new HashMap<>();
+    private final Map<Integer, MessageListener> listeners = new ConcurrentHashMap<>();
+
+    /**
+     * The variable to store the queues handing received data to the listeners.
+     */
+    private final ModuleDispatcher moduleDispatcher = new ModuleDispatcher(listeners::get);
+
+    /**
+     * The variable to store the transport of each module, by ordinal.
+     */
+    private final Transport[] transports = new Transport[ModuleType.values().length];
+
+    /**
+     * The variable to store the communicator of the modules sent over UDP, null until a user is added.
+     */
+    private volatile UDPCommunicator datagrams;
 
     /**
      * The variable to store the client details.
      */
     private ClientNode user;
 
+    /**
+     * The variable to store the address of the client, put in the chunks it makes, null until a user is added.
+     */
+    private volatile InetAddress userAddress;
+
     /**
      * The variable to store singleton chunk manager.
      */
     private final ChunkManager chunkManager;
 
     /**
-     * The variable to store singleton priority queue.
+     * The variable to store the scheduler ordering the outgoing chunks.
      */
-    private PriorityQueue priorityQueue;
+    private DeficitRoundRobinScheduler priorityQueue;
+
+    /**
+     * The variable to store the counters of the send pipeline.
+     */
+    private final SendMetrics sendMetrics = new SendMetrics();
+
+    /**
+     * The variable to store the coalescer of small packets.
+     */
+    private volatile CoalesceSend coalesceSend;
+
     /**
      * The variable to store singleton priority queue.
      */
@@ -88,9 +165,12 @@ public class Networking implements AbstractNetworking, AbstractController {
      */
     private Networking() {
         chunkManager = ChunkManager.getChunkManager(payloadSize);
-        priorityQueue = PriorityQueue.getPriorityQueue();
+        priorityQueue = new DeficitRoundRobinScheduler();
         parser = PacketParser.getPacketParser();
         topology = Topology.getTopology();
+        Arrays.fill(transports, Transport.TCP);
+        coalesceSend = new CoalesceSend(COALESCE_SIZE, COALESCE_DELAY_MS, this::sendCoalesced,
+                TimingWheel.getTimingWheel());
         sendThread = new Thread(this::start);
         sendThread.start();
     }
@@ -112,6 +192,7 @@ public class Networking implements AbstractNetworking, AbstractController {
 
     /**
      * Function to chunk and send the recevied data to the queue.
+     * Data small enough is coalesced with the other small data for the same destination.
      *
      * @param data the data to be sent
      * @param dest the dest to send to
@@ -126,74 +207,404 @@ public class Networking implements AbstractNetworking, AbstractController {
         }
         LOG.info("Data length : " + data.length);
         LOG.info("Destination : " + Arrays.toString(dest));
-        final Vector<byte[]> chunks = getChunks(data, dest, module, priority, 0);
-        LOG.info("chunk number : " + chunks.size());
-        for (byte[] chunk : chunks) {
+        final UDPCommunicator communicator = datagrams;
+        if (communicator != null && module >= 0 && module < transports.length
+                && transports[module] == Transport.UDP) {
+            sendDatagrams(communicator, data, dest, module, priority);
+            return;
+        }
+        final CoalesceSend coalescer = coalesceSend;
+        if (coalescer.accepts(data.length)) {
+            coalesce(coalescer, data, dest, module, priority);
+            return;
+        }
+        // what is coalesced for these clients goes first so it is not overtaken
+        flushCoalesced(coalescer, dest);
+        final int chunkCount = enqueueChunks(data, dest, module, priority, 0);
+        LOG.info("chunk number : " + chunkCount);
+    }
+
+    /**
+     * Function to chunk the given data and send the chunks straight to each client in datagrams,
+     * they are neither coalesced nor queued behind the chunks sent over TCP.
+     *
+     * @param communicator the communicator to send with
+     * @param data the data to be sent
+     * @param dest the dest to send to
+     * @param module the module to be sent to
+     * @param priority the priority of the data
+     */
+    private void sendDatagrams(final UDPCommunicator communicator, final byte[] data, final ClientNode[] dest,
+            final int module, final int priority) {
+        final PacketInfo pkt = new PacketInfo();
+        pkt.setModule(module);
+        pkt.setPriority(priority);
+        pkt.setBroadcast(0);
+        pkt.setConnectionType(NetworkConnectionType.MODULE.ordinal());
+        pkt.setPayload(data);
+        fanOut(pkt, dest, true, (header, payload, client) -> {
+            if (payload == null) {
+                communicator.sendData(header, client);
+            } else {
+                communicator.sendData(header, payload, client);
+            }
+        });
+    }
+
+    /**
+     * Function to hand a chunk received over UDP to its module once its message is complete.
+     *
+     * @param packet the received chunk
+     */
+    private void receiveDatagram(final ReceivePacket packet) {
+        final byte[] chunk = packet.data();
+        if (chunk.length < PacketParser.getHeaderSize()
+                || PacketParser.getConnectionType(chunk) != NetworkConnectionType.MODULE.ordinal()) {
+            return;
+        }
+        final byte[] data = chunkManager.reassemble(chunk, packet.sender());
+        if (data != null) {
+            callSubscriber(PacketParser.getModule(chunk), data, PacketParser.getPriority(chunk));
+        }
+    }
+
+    /**
+     * Function to choose how the data of a module is sent. Every device listens on UDP, so
+     * the receivers need no change. Broadcasts are always relayed over TCP.
+     *
+     * @param module the module
+     * @param transport the transport of its data
+     */
+    public void setTransport(final ModuleType module, final Transport transport) {
+        transports[module.ordinal()] = transport;
+        LOG.info("Module " + module + " sends over " + transport + "...");
+    }
+
+    /**
+     * Function to get the counters of the UDP communicator.
+     *
+     * @return the counters, null until a user is added
+     */
+    public UDPCommunicator.Stats getDatagramStats() {
+        final UDPCommunicator communicator = datagrams;
+        if (communicator == null) {
+            return null;
+        }
+        return communicator.getStats();
+    }
+
+    /**
+     * Function to set the limits of coalescing, what is already coalesced is sent.
+     *
+     * @param maxSize the size in bytes at which the packets coalesced for a destination are sent,
+     *                0 to turn coalescing off
+     * @param maxDelayMillis the time in ms after the first packet for a destination at which they are sent
+     */
+    public void setCoalescing(final int maxSize, final int maxDelayMillis) {
+        final CoalesceSend old = coalesceSend;
+        coalesceSend = new CoalesceSend(maxSize, maxDelayMillis, this::sendCoalesced, TimingWheel.getTimingWheel());
+        old.flushAll();
+    }
+
+    /**
+     * Function to coalesce small data for each client.
+     *
+     * @param coalescer the coalescer to add to
+     * @param data the data to be sent
+     * @param dest the dest to send to
+     * @param module the module to be sent to
+     * @param priority the priority of the data
+     */
+    private void coalesce(final CoalesceSend coalescer, final byte[] data, final ClientNode[] dest, final int module,
+            final int priority) {
+        for (ClientNode client : dest) {
+            try {
+                coalescer.handlePacket(data, InetAddress.getByName(client.hostName()), client.port(), (byte) module,
+                        priority);
+            } catch (UnknownHostException ex) {
+                LOG.error("Exception", ex);
+            }
+        }
+    }
+
+    /**
+     * Function to send what is coalesced for the given clients.
+     *
+     * @param coalescer the coalescer to flush
+     * @param dest the clients to flush
+     */
+    private void flushCoalesced(final CoalesceSend coalescer, final ClientNode[] dest) {
+        for (ClientNode client : dest) {
             try {
-                final PacketInfo pktInfo = parser.parsePacket(chunk);
-                final InetAddress addr = pktInfo.getIpAddress();
-                final int port = pktInfo.getPortNum();
-                final ClientNode newdest = new ClientNode(addr.getHostAddress(), port);
-                // System.out.println("Time to create new dest: " + (endTime - startTime) + " ms");
-                System.out.println("Destination " + newdest);
-                // topology.sendPacket(chunk, newdest);
-                priorityQueue.addPacket(chunk);
+                coalescer.flush(InetAddress.getByName(client.hostName()), client.port());
             } catch (UnknownHostException ex) {
-                System.out.println("Unknown host exception: " + ex.getMessage());
+                LOG.error("Exception", ex);
             }
         }
     }
 
+    /**
+     * Function to queue a coalesced packet, called by the coalescer.
+     *
+     * @param dest the client all its packets go to
+     * @param payload the records of the packets
+     * @param packets the number of packets coalesced
+     * @param priority the highest priority of its packets
+     */
+    private void sendCoalesced(final ClientNode dest, final byte[] payload, final int packets, final int priority) {
+        final int level = Math.min(priority, LOWEST_PRIORITY);
+        final PacketInfo pkt = new PacketInfo();
+        pkt.setModule(ModuleType.NETWORKING.ordinal());
+        pkt.setPriority(level);
+        pkt.setBroadcast(0);
+        pkt.setType(topology.getNetworkType(user, dest));
+        pkt.setConnectionType(NetworkConnectionType.COALESCED.ordinal());
+        pkt.setPortNum(dest.port());
+        pkt.setPayload(payload);
+        try {
+            pkt.setIpAddress(InetAddress.getByName(dest.hostName()));
+        } catch (UnknownHostException ex) {
+            LOG.error("Exception", ex);
+            return;
+        }
+        priorityQueue.addPacket(parser.createPkt(pkt), level, dest);
+        sendMetrics.recordCoalesced(packets);
+        sendMetrics.recordDepth(priorityQueue.size());
+    }
+
     /**
      * Function to continuously send data.
+     * The thread parks while nothing is queued and is woken by the next chunk.
      */
     public void start() {
+        long lastReport = System.nanoTime();
         while (!Thread.currentThread().isInterrupted()) {
-            if (!priorityQueue.isEmpty()) {
-                final byte[] packet = priorityQueue.nextPacket();
-                try {
-                    final PacketInfo pktInfo = parser.parsePacket(packet);
-                    final InetAddress addr = pktInfo.getIpAddress();
-                    final int port = pktInfo.getPortNum();
-                    final ClientNode dest = new ClientNode(addr.getHostAddress(), port);
-                    topology.sendPacket(packet, dest);
-                } catch (UnknownHostException e) {
-                    LOG.error("Exception", e);
-                }
+            final OutgoingPacket packet;
+            try {
+                packet = priorityQueue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            final ClientNode dest = destinationOf(packet);
+            if (dest == null) {
+                continue;
+            }
+            if (packet.payload() == null) {
+                topology.sendPacket(packet.data(), dest);
+            } else {
+                topology.sendPacket(packet.data(), packet.payload(), dest);
+            }
+            final long now = System.nanoTime();
+            sendMetrics.recordSent(dest, packet.length(), now - packet.enqueuedAt());
+            if (now - lastReport >= METRICS_INTERVAL_NS) {
+                lastReport = now;
+                LOG.info("Send metrics : " + getSendMetrics());
             }
         }
     }
 
     /**
-     * Function to chunk the given data by the chunk manager.
+     * Function to get the destination of a queued chunk.
+     * Chunks queued without one are parsed for it.
+     *
+     * @param packet the queued chunk
+     * @return the destination, or null if it cannot be read
+     */
+    private ClientNode destinationOf(final OutgoingPacket packet) {
+        if (packet.dest() != null) {
+            return packet.dest();
+        }
+        return PacketParser.getClientNode(packet.data());
+    }
+
+    /**
+     * Function to get the counters of the send pipeline since the last call.
+     *
+     * @return the queue depth, queue wait and per destination send rates
+     */
+    public SendMetrics.Snapshot getSendMetrics() {
+        return sendMetrics.snapshot(priorityQueue.size());
+    }
+
+    /**
+     * Function to get the number of chunks waiting to be sent, so bulk senders can pace themselves.
+     *
+     * @return the queue depth
+     */
+    public int getQueuedPackets() {
+        return priorityQueue.size();
+    }
+
+    /**
+     * Function to check whether data sent to the given clients would be written promptly.
+     * It is false once the TCP queue towards the next hop of any of them passes its high
+     * watermark, well before the hard cap at which the connection is dropped, so bulk
+     * senders should hold back until it is true again.
+     *
+     * @param dest the clients the data is for
+     * @return false while any of them is congested
+     */
+    public boolean canSend(final ClientNode[] dest) {
+        for (ClientNode client : dest) {
+            if (!topology.canSend(client)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Function to check whether a broadcast would be written promptly, see {@link #canSend}.
+     *
+     * @return false while any client a broadcast is sent to is congested
+     */
+    public boolean canBroadcast() {
+        return canSend(broadcastDestinations());
+    }
+
+    /**
+     * Function to chunk the given data by the chunk manager and queue the chunks
+     * with the client each was made for.
      *
      * @param data the data to be sent
      * @param dest the dest to send the packet
      * @param module the module to be sent to
      * @param priority the priority of the packet
      * @param broadcast the data should b broadcasted or not
-     * @return the chunks of the data
+     * @return the number of chunks queued
      */
-    private Vector<byte[]> getChunks(final byte[] data, final ClientNode[] dest, final int module, final int priority,
+    private int enqueueChunks(final byte[] data, final ClientNode[] dest, final int module, final int priority,
             final int broadcast) {
         final PacketInfo pkt = new PacketInfo();
         pkt.setModule(module);
         pkt.setPriority(priority);
         pkt.setBroadcast(broadcast);
-        final Vector<byte[]> chunks = new Vector<>();
-        for (ClientNode client : dest) {
+        pkt.setConnectionType(NetworkConnectionType.MODULE.ordinal());
+        pkt.setPayload(data);
+        final int chunkCount = fanOut(pkt, dest, false,
+            (header, payload, client) -> priorityQueue.addPacket(header, payload, priority, client));
+        sendMetrics.recordDepth(priorityQueue.size());
+        return chunkCount;
+    }
+
+    /**
+     * Receives the chunks made for each client.
+     */
+    @FunctionalInterface
+    private interface ChunkSink {
+        /**
+         * Function to take a chunk for a client.
+         *
+         * @param header the chunk, or only its header when the payload is shared
+         * @param payload the read only payload shared by every client, null if header is the whole chunk
+         * @param client the client the chunk is for
+         */
+        void accept(byte[] header, ByteBuffer payload, ClientNode client);
+    }
+
+    /**
+     * Function to chunk data once for all its clients. The chunks are made for the first
+     * client, every other client gets a copy of the chunk headers rewritten with its address
+     * and network type, while the payload of each chunk is one read only view shared by all.
+     * A single client gets the chunks as they are.
+     *
+     * @param pkt the header fields and payload, the address and type are set per client
+     * @param dest the clients to send to
+     * @param direct whether the chunks go straight to the clients instead of through the topology
+     * @param sink takes the chunks of every client
+     * @return the number of chunks handed to the sink
+     */
+    private int fanOut(final PacketInfo pkt, final ClientNode[] dest, final boolean direct, final ChunkSink sink) {
+        final InetAddress[] addresses = resolve(dest);
+        int first = 0;
+        while (first < dest.length && addresses[first] == null) {
+            first++;
+        }
+        if (first == dest.length) {
+            return 0;
+        }
+        pkt.setIpAddress(addresses[first]);
+        pkt.setPortNum(dest[first].port());
+        pkt.setType(networkTypeOf(dest[first], direct));
+        final InetAddress origin = userAddress;
+        if (origin != null) {
+            // relays keep it, so the receivers tell the senders' chunks apart
+            pkt.setOriginAddress(origin);
+            pkt.setOriginPort(user.port());
+        }
+        final Vector<byte[]> chunks = chunkManager.chunk(pkt);
+        if (dest.length == 1) {
+            for (byte[] chunk : chunks) {
+                sink.accept(chunk, null, dest[first]);
+            }
+            return chunks.size();
+        }
+        final ByteBuffer[] payloads = sharedPayloads(chunks);
+        int chunkCount = 0;
+        for (int i = first; i < dest.length; i++) {
+            if (addresses[i] == null) {
+                continue;
+            }
+            final int type = networkTypeOf(dest[i], direct);
+            for (int c = 0; c < payloads.length; c++) {
+                final byte[] header = Arrays.copyOf(chunks.get(c), PacketParser.getHeaderSize());
+                PacketParser.setIpAddress(header, addresses[i]);
+                PacketParser.setPortNum(header, dest[i].port());
+                PacketParser.setType(header, type);
+                sink.accept(header, payloads[c], dest[i]);
+            }
+            chunkCount += payloads.length;
+        }
+        return chunkCount;
+    }
+
+    /**
+     * Function to resolve the address of each client.
+     *
+     * @param dest the clients
+     * @return the address of each client, null for the ones that cannot be resolved
+     */
+    private static InetAddress[] resolve(final ClientNode[] dest) {
+        final InetAddress[] addresses = new InetAddress[dest.length];
+        for (int i = 0; i < dest.length; i++) {
             try {
-                pkt.setPayload(data);
-                final int type = topology.getNetworkType(user, client);
-                pkt.setType(type);
-                pkt.setIpAddress(InetAddress.getByName(client.hostName()));
-                pkt.setPortNum(client.port());
-                pkt.setConnectionType(NetworkConnectionType.MODULE.ordinal());
-                chunks.addAll(chunkManager.chunk(pkt));
+                addresses[i] = InetAddress.getByName(dest[i].hostName());
             } catch (UnknownHostException ex) {
+                LOG.error("Exception", ex);
             }
         }
-        return chunks;
+        return addresses;
+    }
+
+    /**
+     * Function to get a read only view of the payload of each chunk.
+     *
+     * @param chunks the chunks, header included
+     * @return the payload after the header of each chunk
+     */
+    private static ByteBuffer[] sharedPayloads(final List<byte[]> chunks) {
+        final int headerSize = PacketParser.getHeaderSize();
+        final ByteBuffer[] payloads = new ByteBuffer[chunks.size()];
+        for (int i = 0; i < payloads.length; i++) {
+            final byte[] chunk = chunks.get(i);
+            payloads[i] = ByteBuffer.wrap(chunk, headerSize, chunk.length - headerSize).slice().asReadOnlyBuffer();
+        }
+        return payloads;
+    }
+
+    /**
+     * Function to get the network type of the chunks for a client.
+     *
+     * @param client the client
+     * @param direct whether the chunks go straight to the client
+     * @return the network type
+     */
+    private int networkTypeOf(final ClientNode client, final boolean direct) {
+        if (direct) {
+            return NetworkType.USE.ordinal();
+        }
+        return topology.getNetworkType(user, client);
     }
 
     /**
@@ -206,33 +617,28 @@ public class Networking implements AbstractNetworking, AbstractController {
      */
     @Override
     public void broadcast(final byte[] data, final int module, final int priority) {
-        // Get all the destinations to send the broadcast
-        List<ClientNode> dest = new ArrayList<>();
-        final List<ClientNode> clientDests = new ArrayList<>(topology.getClients(topology.getClusterIndex(user)));
-        System.out.println("Clientdest " + clientDests);
-        dest = clientDests;
-        System.out.println("dest " + dest + " user: " + user + " server " + topology.getServer(user));
+        final ClientNode[] destArray = broadcastDestinations();
+        System.out.println("Broadcasting clients " + Arrays.toString(destArray));
+        enqueueChunks(data, destArray, module, priority, 1);
+    }
+
+    /**
+     * Function to get the clients a broadcast is sent to: the rest of the cluster and,
+     * on a cluster server, the other cluster servers.
+     *
+     * @return the destinations
+     */
+    private ClientNode[] broadcastDestinations() {
+        // polled by bulk senders, so nothing is printed here
+        final List<ClientNode> dest = new ArrayList<>(topology.getClients(topology.getClusterIndex(user)));
         dest.remove(user);
 
         if (user == topology.getServer(user)) {
-            final List<ClientNode> servers = new ArrayList<>(topology.getAllClusterServers());
-            dest.addAll(servers);
+            dest.addAll(topology.getAllClusterServers());
             dest.remove(user);
-            System.out.println("Servers " + servers);
         }
 
-        final ClientNode[] destArray = dest.toArray(ClientNode[]::new);
-        System.out.println("Broadcasting clients " + Arrays.toString(destArray));
-        final Vector<byte[]> chunks = getChunks(data, destArray, module, priority, 1);
-        for (byte[] chunk : chunks) {
-            for (ClientNode client : dest) {
-                try {
-                    // topology.sendPacket(chunk, client);
-                    priorityQueue.addPacket(chunk);
-                } catch (UnknownHostException ex) {
-                }
-            }
-        }
+        return dest.toArray(ClientNode[]::new);
     }
 
     /**
@@ -243,8 +649,7 @@ public class Networking implements AbstractNetworking, AbstractController {
      */
     @Override
     public void subscribe(final int name, final MessageListener function) {
-        if (!listeners.containsKey(name)) {
-            listeners.put(name, function);
+        if (listeners.putIfAbsent(name, function) == null) {
             LOG.info("Added a new subscriber...");
             return;
         }
@@ -269,32 +674,87 @@ public class Networking implements AbstractNetworking, AbstractController {
     @Override
     public void addUser(final ClientNode deviceAddress, final ClientNode mainServerAddress) {
         user = deviceAddress;
+        try {
+            userAddress = InetAddress.getByName(deviceAddress.hostName());
+        } catch (UnknownHostException ex) {
+            LOG.error("Unable to resolve the address of this device : " + ex.getMessage());
+        }
         topology.addUser(deviceAddress, mainServerAddress);
+        if (datagrams == null) {
+            try {
+                final UDPCommunicator communicator = new UDPCommunicator(deviceAddress.port());
+                communicator.setReceiver(this::receiveDatagram);
+                // a frame goes out spread over time instead of as one burst the peer cannot buffer
+                communicator.setPacingRate(DATAGRAM_PACING_RATE);
+                datagrams = communicator;
+            } catch (IOException ex) {
+                LOG.error("Unable to open the UDP socket, every module sends over TCP : " + ex.getMessage());
+            }
+        }
     }
 
     /**
      * Function to call the subscirbed modules.
+     * The data is queued for the module's own thread, so the receive thread is not held up by the listener.
      *
      * @param module the module to call
      * @param data the data to sent
      */
     public void callSubscriber(final int module, final byte[] data) {
+        callSubscriber(module, data, LOWEST_PRIORITY);
+    }
+
+    /**
+     * Function to call the subscirbed modules with data received at a priority.
+     * Data at the protected priority is never dropped when the module's queue is full.
+     *
+     * @param module the module to call
+     * @param data the data to sent
+     * @param priority the priority the data was sent at
+     */
+    public void callSubscriber(final int module, final byte[] data, final int priority) {
         final MessageListener function = listeners.get(module);
         if (function == null) {
             System.out.println("No function found for module: " + module);
-        } else {
-            function.receiveData(data);
+        } else if (!moduleDispatcher.dispatch(module, data, priority)) {
+            LOG.info("Dropping data of module " + module + "...");
         }
     }
 
+    /**
+     * Function to set how received data of a module is queued for its listener.
+     *
+     * @param module the module
+     * @param capacity the most data queued for the listener
+     * @param policy what to do with data once the queue is full
+     */
+    public void setDispatchPolicy(final ModuleType module, final int capacity,
+            final ModuleDispatcher.OverflowPolicy policy) {
+        moduleDispatcher.configure(module, capacity, policy);
+    }
+
+    /**
+     * Function to get the counters of the queues of received data since the last call.
+     *
+     * @return the queue depth, delivered and dropped data of every module
+     */
+    public Map<ModuleType, ModuleDispatcher.Snapshot> getDispatchMetrics() {
+        return moduleDispatcher.snapshot();
+    }
+
     /**
      * Function called to close the networking module.
      */
     @Override
     public void closeNetworking() {
         LOG.info("Closing Networking module...");
+        coalesceSend.flushAll();
         topology.closeTopology();
+        if (datagrams != null) {
+            datagrams.close();
+        }
         sendThread.interrupt();
+        moduleDispatcher.close();
     }
 
     /**
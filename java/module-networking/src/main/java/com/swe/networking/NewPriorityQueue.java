@@ -1,13 +1,12 @@
 package com.swe.networking;
 
-import java.net.UnknownHostException;
 import java.util.Deque;
 import java.util.concurrent.ConcurrentLinkedDeque;
 
 /**
  * Class for the new priorityQueue.
  */
-public class NewPriorityQueue {
+public class NewPriorityQueue implements PacketScheduler {
 
     /**
      * Global priority queue instance used across the class.
@@ -112,28 +111,32 @@ public class NewPriorityQueue {
      * @param data the data to add
      */
     public synchronized void addPacket(final byte[] data) {
-        try {
-            System.out.println("Added a packet to the priority queue...");
-            totalPackets++;
-            final PacketParser parser = PacketParser.getPacketParser();
-            final PacketInfo info = parser.parsePacket(data);
-            final int priorityLevel = info.getPriority();
-            switch (priorityLevel) {
-                case zeroPriority ->
-                    zeroPriorityQueue.add(data);
-                case firstPriority ->
-                    firstPriorityQueue.add(data);
-                case secondPriority ->
-                    secondPriorityQueue.add(data);
-                case thirdPriority ->
-                    thirdPriorityQueue.add(data);
-                default -> {
-                    System.out.println("No a defined priority level. Adding to last priority...");
-                    thirdPriorityQueue.add(data);
-                }
+        addPacket(data, PacketParser.getPriority(data));
+    }
+
+    /**
+     * The function to add packet with the priority given by the caller.
+     *
+     * @param data the data to add
+     * @param priorityLevel the priority the data was sent with
+     */
+    @Override
+    public synchronized void addPacket(final byte[] data, final int priorityLevel) {
+        System.out.println("Added a packet to the priority queue...");
+        totalPackets++;
+        switch (priorityLevel) {
+            case zeroPriority ->
+                zeroPriorityQueue.add(data);
+            case firstPriority ->
+                firstPriorityQueue.add(data);
+            case secondPriority ->
+                secondPriorityQueue.add(data);
+            case thirdPriority ->
+                thirdPriorityQueue.add(data);
+            default -> {
+                System.out.println("No a defined priority level. Adding to last priority...");
+                thirdPriorityQueue.add(data);
             }
-        } catch (UnknownHostException ex) {
-            System.out.println("Cannot add packet " + ex.getMessage());
         }
     }
 
@@ -169,15 +172,39 @@ public class NewPriorityQueue {
         return packet;
     }
 
+    /**
+     * Function to get the next packet, see {@link #getPacket()}.
+     *
+     * @return the packet, or null
+     */
+    @Override
+    public byte[] nextPacket() {
+        return getPacket();
+    }
+
     /**
      * Function to check if priority queue is empty.
      *
      * @return the boolean state
      */
+    @Override
     public boolean isEmpty() {
         return totalPackets == 0;
     }
 
+    /**
+     * Function to drop all the queued packets.
+     */
+    @Override
+    public synchronized void clear() {
+        zeroPriorityQueue.clear();
+        firstPriorityQueue.clear();
+        secondPriorityQueue.clear();
+        thirdPriorityQueue.clear();
+        totalPackets = 0;
+        limits = new int[]{zeroLimit, firstLimit, secondLimit, thirdLimit};
+    }
+
     void resetLimits() {
         if (limits[zeroPriority] == 0 && limits[firstPriority] == 0
                 && limits[secondPriority] == 0 && limits[thirdPriority] == 0) {
@@ -0,0 +1,70 @@
+/*
+ * -----------------------------------------------------------------------------
+ *  File: OutgoingPacket.java
+ *  Owner: Shubham Yadav
+ *  Roll Number : 112201032
+ *  Module : Networking
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+package com.swe.networking;
+
+import java.nio.ByteBuffer;
+
+import com.swe.core.ClientNode;
+
+/**
+ * A chunk waiting in the send pipeline with the destination it was chunked for,
+ * so the send thread does not decode it back out of the header.
+ *
+ * <p>
+ * A chunk sent to many clients is held as its own header and a read only view of the
+ * payload shared by every client, the payload is then not copied per client.
+ * </p>
+ *
+ * @param data the chunk, or only its header when the payload is held apart
+ * @param payload the shared payload after the header, null when data holds the whole chunk
+ * @param dest the client to send the chunk to
+ * @param enqueuedAt {@link System#nanoTime()} when the chunk was queued
+ */
+public record OutgoingPacket(byte[] data, ByteBuffer payload, ClientNode dest, long enqueuedAt) {
+
+    /**
+     * Creates a chunk held in one array.
+     *
+     * @param data the chunk, header included
+     * @param dest the client to send the chunk to
+     * @param enqueuedAt {@link System#nanoTime()} when the chunk was queued
+     */
+    public OutgoingPacket(final byte[] data, final ClientNode dest, final long enqueuedAt) {
+        this(data, null, dest, enqueuedAt);
+    }
+
+    /**
+     * Size of the chunk, header included.
+     *
+     * @return the number of bytes sent
+     */
+    public int length() {
+        if (payload == null) {
+            return data.length;
+        }
+        return data.length + payload.remaining();
+    }
+
+    /**
+     * The chunk in one array, the payload is copied after the header if held apart.
+     *
+     * @return the chunk
+     */
+    public byte[] toBytes() {
+        if (payload == null) {
+            return data;
+        }
+        final byte[] chunk = new byte[length()];
+        System.arraycopy(data, 0, chunk, 0, data.length);
+        payload.duplicate().get(chunk, data.length, payload.remaining());
+        return chunk;
+    }
+}
@@ -12,8 +12,8 @@ package com.swe.networking;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
-import java.util.List;
-import java.util.concurrent.ScheduledExecutorService;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
 
 import com.swe.core.ClientNode;
 import com.swe.core.logging.SweLogger;
@@ -63,9 +63,9 @@ public class P2PClient implements P2PUser {
     private final Thread receiveThread;
 
     /**
-     * alive thread manager.
+     * timer sending alive packets.
      */
-    private ScheduledExecutorService aliveScheduler = null;
+    private TimingWheel.Timeout aliveTimeout = null;
 
     /**
      * time interval gap to send alive packet.
@@ -111,15 +111,18 @@ public class P2PClient implements P2PUser {
 
         updateClusterServer();
 
-        // Starting the continuous receive loop
-        this.receiveThread = new Thread(this::receive);
-        this.receiveThread.setName("P2PClient-Receive-Thread");
-        this.receiveThread.start();
+        // Starting the continuous receive loop, unless the communicator hands the packets over itself
+        if (communicator.setReceiver(packet -> packetHandler.packetRedirection(packet.data(), packet.sender()))) {
+            this.receiveThread = null;
+        } else {
+            this.receiveThread = new Thread(this::receive);
+            this.receiveThread.setName("P2PClient-Receive-Thread");
+            this.receiveThread.start();
+        }
 
         // start a scheduled ALIVE packets to the cluster server
-//          this.aliveScheduler = Executors.newSingleThreadScheduledExecutor();
-//          this.aliveScheduler.scheduleAtFixedRate(this::sendAlivePacket,
-//                  ALIVE_INTERVAL_SECONDS, ALIVE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        this.aliveTimeout = TimingWheel.getTimingWheel().scheduleAtFixedRate(this::sendAlivePacket,
+                ALIVE_INTERVAL_SECONDS, TimeUnit.SECONDS);
     }
 
     @Override
@@ -135,6 +138,18 @@ public class P2PClient implements P2PUser {
         sendToSingleNode(data, destNode);
     }
 
+    @Override
+    public void send(final byte[] header, final ByteBuffer payload, final ClientNode destNode) {
+        final ClientNode sendDest = topology.getDestination(mainServerAddress, destNode);
+        communicator.sendData(header, payload, sendDest);
+    }
+
+    @Override
+    public boolean canSend(final ClientNode destNode) {
+        final ClientNode sendDest = topology.getDestination(mainServerAddress, destNode);
+        return sendDest == null || communicator.canSend(sendDest);
+    }
+
     /**
      * Helper method to send data to a single destination node.
      *
@@ -156,10 +171,7 @@ public class P2PClient implements P2PUser {
                 if (packet == null) {
                     continue;
                 }
-                final List<byte[]> packets = SplitPackets.getSplitPackets().split(packet);
-                for (byte[] p : packets) {
-                    packetHandler.packetRedirection(p);
-                }
+                packetHandler.packetRedirection(packet.data(), packet.sender());
             } catch (Exception e) {
                 System.err.println("p2pclient received exception while processing packet");
             }
@@ -172,6 +184,7 @@ public class P2PClient implements P2PUser {
     private void sendAlivePacket() {
         if (clusterServerAddress == null) {
             LOG.info("cluster server address is null");
+            return;
         }
 
         try {
@@ -223,6 +236,10 @@ public class P2PClient implements P2PUser {
          * Chunk manager to manage the chunks of data.
          */
         private final ChunkManager chunkManager;
+        /**
+         * Demultiplexer of coalesced packets.
+         */
+        private final CoalesceReceive coalesceReceive = new CoalesceReceive();
         /**
          * The client context to access the P2PClient methods.
          */
@@ -241,13 +258,12 @@ public class P2PClient implements P2PUser {
          * Main packet parsing logic based on the user's specification.
          *
          * @param packet The raw packet data.
+         * @param sender The peer the packet arrived from.
          */
-        public void packetRedirection(final byte[] packet) {
+        public void packetRedirection(final byte[] packet, final ClientNode sender) {
             System.out.println("p2pclient received packet from: " + clientContext.deviceAddress.hostName());
             try {
-                final PacketInfo info = parser.parsePacket(packet);
-                final int typeInt = info.getType();
-                final NetworkType type = NetworkType.getType(typeInt);
+                final NetworkType type = NetworkType.getType(PacketParser.getType(packet));
 
                 switch (type) {
                     case CLUSTERSERVER:
@@ -257,7 +273,7 @@ public class P2PClient implements P2PUser {
                         System.out.println("p2pclient received packet and dropping of type :" + type);
                         break;
                     case USE:
-                        parseUsePacket(info, packet);
+                        parseUsePacket(packet, sender);
                         break;
                     default:
                         break;
@@ -269,12 +285,13 @@ public class P2PClient implements P2PUser {
 
         /**
          * Handles Type 11 (USE) packets based on the connection type.
+         * Only the network updates are parsed, module packets are passed on as they are.
          *
-         * @param info The raw packet data.
          * @param packet The raw packet data.
+         * @param sender The peer the packet arrived from.
          */
-        private void parseUsePacket(final PacketInfo info, final byte[] packet) throws UnknownHostException {
-            final int connectionTypeInt = info.getConnectionType();
+        private void parseUsePacket(final byte[] packet, final ClientNode sender) throws UnknownHostException {
+            final int connectionTypeInt = PacketParser.getConnectionType(packet);
             final NetworkConnectionType connection = NetworkConnectionType.getType(connectionTypeInt);
 
             System.out.println("p2pclient received connection type: " + connection);
@@ -286,19 +303,23 @@ public class P2PClient implements P2PUser {
                     break;
 
                 case ADD: // 010 : update the current network
-                    handleUpdateNetwork(info);
+                    handleUpdateNetwork(parser.parsePacket(packet));
                     break;
 
                 case REMOVE: // 011 : update the current network
-                    handleRemoveClient(info);
+                    handleRemoveClient(parser.parsePacket(packet));
                     break;
 
                 case NETWORK: // 100 : replace the current network
-                    handleReplaceNetwork(info);
+                    handleReplaceNetwork(parser.parsePacket(packet));
                     break;
 
                 case MODULE:
-                    handleModulePacket(packet);
+                    handleModulePacket(packet, sender);
+                    break;
+
+                case COALESCED:
+                    coalesceReceive.receiveCoalescedPacket(packet);
                     break;
 
                 case CLOSE: // 111 : close the client terminate
@@ -352,17 +373,17 @@ public class P2PClient implements P2PUser {
          * Helper function to handle Module packet.
          *
          * @param packet received packet
+         * @param sender the peer the packet arrived from
          */
-        private void handleModulePacket(final byte[] packet) throws UnknownHostException {
+        private void handleModulePacket(final byte[] packet, final ClientNode sender) throws UnknownHostException {
             System.out.println("MODULE packet received.");
-            final int module = parser.parsePacket(packet).getModule();
-            final byte[] data = chunkManager.addChunk(packet);
+            final int module = PacketParser.getModule(packet);
+            final byte[] data = chunkManager.reassemble(packet, sender);
             final Networking networking = Networking.getNetwork();
             // System.out.println("Data received: " + Arrays.toString(data));
             if (data != null) {
-                final PacketInfo destpktInfo = parser.parsePacket(data);
                 System.out.println("p2pclient calling subscriber for module: " + module);
-                networking.callSubscriber(module, destpktInfo.getPayload());
+                networking.callSubscriber(module, data, PacketParser.getPriority(packet));
             }
         }
     }
@@ -390,9 +411,9 @@ public class P2PClient implements P2PUser {
         LOG.info("p2pclient started closing");
 
         // Stop sending ALIVE packets
-//        if (aliveScheduler != null) {
-//            aliveScheduler.shutdownNow();
-//        }
+        if (aliveTimeout != null) {
+            aliveTimeout.cancel();
+        }
         // Close all network sockets
         if (communicator != null) {
             communicator.close();
@@ -403,7 +424,6 @@ public class P2PClient implements P2PUser {
             receiveThread.interrupt();
         }
         final byte[] removePkt = createRemovePacket(deviceAddress);
-        SplitPackets.getSplitPackets().emptyBuffer();
     }
 
     /**
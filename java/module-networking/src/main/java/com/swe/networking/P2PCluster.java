@@ -12,6 +12,7 @@ package com.swe.networking;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -157,6 +158,29 @@ public class P2PCluster implements P2PUser {
         this.user.send(data, destIp);
     }
 
+    /**
+     * Function to send a chunk whose payload is shared with other destinations.
+     *
+     * @param header the header of the chunk
+     * @param payload the shared payload
+     * @param destIp the one destination to send the data
+     */
+    @Override
+    public void send(final byte[] header, final ByteBuffer payload, final ClientNode destIp) {
+        this.user.send(header, payload, destIp);
+    }
+
+    /**
+     * Function to check whether the next hop to a destination keeps up with the data sent to it.
+     *
+     * @param destIp the one destination to send the data
+     * @return false while too much data to its next hop is waiting to be written
+     */
+    @Override
+    public boolean canSend(final ClientNode destIp) {
+        return this.user.canSend(destIp);
+    }
+
     /**
      * Function to receive data from other clients.
      */
@@ -12,6 +12,8 @@ package com.swe.networking;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.List;
 
 import com.swe.core.ClientNode;
@@ -87,6 +89,11 @@ public class P2PServer implements P2PUser {
      */
     private final ChunkManager chunkManager;
 
+    /**
+     * Variable to store the demultiplexer of coalesced packets.
+     */
+    private final CoalesceReceive coalesceReceive = new CoalesceReceive();
+
     /**
      * Main server Node.
      */
@@ -116,10 +123,13 @@ public class P2PServer implements P2PUser {
 
         this.timer = new Timer(timerTimeout, this::handleClientTimeout);
         // sendThread = new Thread(this::sendAliveToMainServer);
-        receiveThread = new Thread(this::receive);
-
+        if (communicator.setReceiver(packet -> receivePacket(packet.data(), packet.sender()))) {
+            receiveThread = null;
+        } else {
+            receiveThread = new Thread(this::receive);
+            receiveThread.start();
+        }
         // sendThread.start();
-        receiveThread.start();
 
         LOG.info("P2PServer");
 
@@ -154,6 +164,31 @@ public class P2PServer implements P2PUser {
         communicator.sendData(data, sendDest);
     }
 
+    /**
+     * Function to send to a single destination a chunk whose payload is shared with other destinations.
+     *
+     * @param header the header of the chunk
+     * @param payload the shared payload
+     * @param destIp the destination to which the data is sent
+     */
+    @Override
+    public void send(final byte[] header, final ByteBuffer payload, final ClientNode destIp) {
+        final ClientNode sendDest = topology.getDestination(deviceNode, destIp);
+        communicator.sendData(header, payload, sendDest);
+    }
+
+    /**
+     * Function to check whether the next hop to a destination keeps up with the data sent to it.
+     *
+     * @param destIp the destination of the data
+     * @return false while too much data to its next hop is waiting to be written
+     */
+    @Override
+    public boolean canSend(final ClientNode destIp) {
+        final ClientNode sendDest = topology.getDestination(deviceNode, destIp);
+        return sendDest == null || communicator.canSend(sendDest);
+    }
+
     /**
      * Function to receive the data from the sockets.
      */
@@ -161,58 +196,57 @@ public class P2PServer implements P2PUser {
     public void receive() {
         while (true) {
             final ReceivePacket packet = communicator.receiveData();
-            if (packet == null) {
-                continue;
-            }
-            try {
-                final List<byte[]> packets = SplitPackets.getSplitPackets().split(packet);
-                for (byte[] p : packets) {
-                    handlePacket(p);
-                }
-            } catch (UnknownHostException e) {
-                LOG.error("Exception", e);
+            if (packet != null) {
+                receivePacket(packet.data(), packet.sender());
             }
         }
     }
 
+    /**
+     * Function to handle a received packet, logging the ones that cannot be handled.
+     *
+     * @param packet the received packet
+     * @param sender the peer the packet arrived from
+     */
+    private void receivePacket(final byte[] packet, final ClientNode sender) {
+        try {
+            handlePacket(packet, sender);
+        } catch (UnknownHostException e) {
+            LOG.error("Exception", e);
+        }
+    }
+
     /**
      * Function to handle the received packet.
      *
      * @param packet the received packet
+     * @param sender the peer the packet arrived from
      * @throws UnknownHostException if the ip address is invalid
      */
-    private void handlePacket(final byte[] packet) throws UnknownHostException {
-        // parse the packet
-        final PacketInfo packetInfo = parser.parsePacket(packet);
-        final int connectionType = packetInfo.getConnectionType();
-        final int type = packetInfo.getType();
-        final InetAddress destInet = packetInfo.getIpAddress();
-        final String destinationIp = destInet.getHostAddress();
-        final int destinationPort = packetInfo.getPortNum();
-        final ClientNode dest = new ClientNode(destinationIp,
-                destinationPort);
+    private void handlePacket(final byte[] packet, final ClientNode sender) throws UnknownHostException {
+        // routing reads the header in place, the payload is never copied
+        final int connectionType = PacketParser.getConnectionType(packet);
+        final int type = PacketParser.getType(packet);
+        final ClientNode dest = PacketParser.getClientNode(packet);
 
         // check for broadcast
-        if (packetInfo.getBroadcast() == 1) {
+        if (PacketParser.getBroadcast(packet) == 1) {
             LOG.info("Broadcast packet received at P2PServer.");
-            handleBroadcast(packetInfo);
-            packetInfo.setBroadcast(0);
+            handleBroadcast(packet);
         }
 
         // handle based on type and connection type
         if (type == NetworkType.USE.ordinal() || type == NetworkType.CLUSTERSERVER.ordinal()) {
-            handleUsePacket(connectionType, packet, dest);
+            handleUsePacket(connectionType, packet, dest, sender);
         } else if (type == NetworkType.SAMECLUSTER.ordinal()) {
-            final PacketInfo pktInfo = parser.parsePacket(packet);
-            pktInfo.setType(NetworkType.USE.ordinal());
-            final byte[] newPacket = parser.createPkt(pktInfo);
-            send(newPacket, dest);
+            PacketParser.setType(packet, NetworkType.USE.ordinal());
+            send(packet, dest);
         } else if (type == NetworkType.OTHERCLUSTER.ordinal()) {
             final ClientNode clusterServer = topology.getServer(dest);
             if (clusterServer.equals(dest)) {
-                packetInfo.setType(NetworkType.USE.ordinal());
+                PacketParser.setType(packet, NetworkType.USE.ordinal());
             } else {
-                packetInfo.setType(NetworkType.SAMECLUSTER.ordinal());
+                PacketParser.setType(packet, NetworkType.SAMECLUSTER.ordinal());
             }
             send(packet, clusterServer);
         } else {
@@ -223,37 +257,44 @@ public class P2PServer implements P2PUser {
     /**
      * Function to handle broadcasting a packet.
      *
-     * @param packetInfo function to handle packet.
+     * @param packet the broadcast packet, left unchanged
      */
-    private void handleBroadcast(final PacketInfo packetInfo) {
-        if (packetInfo.getType() == NetworkType.USE.ordinal()) {
+    private void handleBroadcast(final byte[] packet) {
+        // the packet is copied once per hop, its header rewritten and the buffer queued for every destination
+        final int type = PacketParser.getType(packet);
+        if (type == NetworkType.USE.ordinal()) {
             // send to other servers
-            final List<ClientNode> servers = topology.getAllClusterServers();
-            for (ClientNode server : servers) {
-                if (server.equals(deviceNode)) {
-                    continue;
-                }
-                packetInfo.setType(NetworkType.OTHERCLUSTER.ordinal());
-                final byte[] newPacket = parser.createPkt(packetInfo);
-                send(newPacket, server);
-            }
-        } else if (packetInfo.getType() == NetworkType.OTHERCLUSTER.ordinal()) {
+            final byte[] relayed = Arrays.copyOf(packet, packet.length);
+            PacketParser.setType(relayed, NetworkType.OTHERCLUSTER.ordinal());
+            relay(relayed, topology.getAllClusterServers(), deviceNode);
+        } else if (type == NetworkType.OTHERCLUSTER.ordinal()) {
             // to just send to clients in the cluster
             final List<ClientNode> dests = topology.getClients(topology.getClusterIndex(deviceNode));
-            for (ClientNode dest : dests) {
-                if (dest.equals(deviceNode)) {
-                    continue;
-                }
-                packetInfo.setType(NetworkType.USE.ordinal());
-                packetInfo.setBroadcast(0);
-                final byte[] newPacket = parser.createPkt(packetInfo);
-                send(newPacket, dest);
+            if (dests == null) {
+                return;
             }
+            final byte[] relayed = Arrays.copyOf(packet, packet.length);
+            PacketParser.setType(relayed, NetworkType.USE.ordinal());
+            PacketParser.setBroadcast(relayed, 0);
+            relay(relayed, dests, deviceNode);
         } else {
             LOG.info("Broadcast packet of unknown type received at P2PServer.");
-            return;
         }
+    }
 
+    /**
+     * Function to relay a serialised packet to the given clients, all sends share the buffer.
+     *
+     * @param packet the packet to relay
+     * @param dests the clients to relay to
+     * @param self this device, which is skipped
+     */
+    private void relay(final byte[] packet, final List<ClientNode> dests, final ClientNode self) {
+        for (ClientNode dest : dests) {
+            if (!dest.equals(self)) {
+                send(packet, dest);
+            }
+        }
     }
 
     /**
@@ -262,9 +303,10 @@ public class P2PServer implements P2PUser {
      * @param connectionType the connection type of the packet
      * @param packet the received packet
      * @param dest the destination client node
+     * @param sender the peer the packet arrived from
      */
     private void handleUsePacket(final int connectionType, final byte[] packet,
-            final ClientNode dest) {
+            final ClientNode dest, final ClientNode sender) {
         final NetworkConnectionType conn = NetworkConnectionType.values()[connectionType];
         try {
             switch (conn) {
@@ -286,14 +328,17 @@ public class P2PServer implements P2PUser {
                     break;
                 case MODULE:
                     LOG.info("MODULE packet received");
-                    final int module = parser.parsePacket(packet).getModule();
-                    final byte[] data = chunkManager.addChunk(packet);
+                    final int module = PacketParser.getModule(packet);
+                    final byte[] data = chunkManager.reassemble(packet, sender);
                     final Networking networking = Networking.getNetwork();
                     if (data != null) {
-                        final PacketInfo destpktInfo = parser.parsePacket(data);
-                        networking.callSubscriber(module, destpktInfo.getPayload());
+                        networking.callSubscriber(module, data, PacketParser.getPriority(packet));
                     }
                     break;
+                case COALESCED:
+                    LOG.info("COALESCED packet received");
+                    coalesceReceive.receiveCoalescedPacket(packet);
+                    break;
                 case CLOSE:
                     close();
                     break;
@@ -423,11 +468,12 @@ public class P2PServer implements P2PUser {
      */
     @Override
     public void close() {
-        SplitPackets.getSplitPackets().emptyBuffer();
         final byte[] removePkt = createRemovePacket(deviceNode);
         Networking.getNetwork().broadcast(removePkt, 0, 0);
         communicator.close();
-        receiveThread.interrupt();
+        if (receiveThread != null) {
+            receiveThread.interrupt();
+        }
         // sendThread.interrupt();
         timer.close();
     }
@@ -10,6 +10,8 @@
 
 package com.swe.networking;
 
+import java.nio.ByteBuffer;
+
 import com.swe.core.ClientNode;
 
 /**
@@ -33,6 +35,31 @@ public interface P2PUser {
      */
     void send(byte[] data, ClientNode destIp);
 
+    /**
+     * Function to send a packet held as its header and a payload shared with the packets
+     * of other destinations.
+     *
+     * @param header the header of the packet
+     * @param payload the read only payload, read without moving its position
+     * @param destIp the one destination to send the data
+     */
+    default void send(final byte[] header, final ByteBuffer payload, final ClientNode destIp) {
+        final byte[] data = new byte[header.length + payload.remaining()];
+        System.arraycopy(header, 0, data, 0, header.length);
+        payload.duplicate().get(data, header.length, payload.remaining());
+        send(data, destIp);
+    }
+
+    /**
+     * Function to check whether the next hop to a destination keeps up with the data sent to it.
+     *
+     * @param destIp the one destination to send the data
+     * @return false while too much data to its next hop is waiting to be written
+     */
+    default boolean canSend(final ClientNode destIp) {
+        return true;
+    }
+
     /**
      * Function to receive data from other users.
      */
@@ -78,6 +78,16 @@ public class PacketInfo {
      */
     private int chunkLength;
 
+    /**
+     * IPv4 address of the device that chunked the message (4 bytes), null if not known.
+     */
+    private InetAddress originAddress;
+
+    /**
+     * Port of the device that chunked the message (16-bit value).
+     */
+    private int originPort;
+
     public PacketInfo() {
     }
 
@@ -302,4 +312,40 @@ public class PacketInfo {
         this.chunkLength = chunkLengthValue;
     }
 
+    /**
+     * Get the IPv4 address of the device that chunked the message.
+     *
+     * @return originAddress the address, null if not known
+     */
+    public InetAddress getOriginAddress() {
+        return originAddress;
+    }
+
+    /**
+     * Set the IPv4 address of the device that chunked the message.
+     *
+     * @param originAddressValue the address, null if not known
+     */
+    public void setOriginAddress(final InetAddress originAddressValue) {
+        this.originAddress = originAddressValue;
+    }
+
+    /**
+     * Get the port of the device that chunked the message.
+     *
+     * @return originPort the port
+     */
+    public int getOriginPort() {
+        return originPort;
+    }
+
+    /**
+     * Set the port of the device that chunked the message.
+     *
+     * @param originPortValue the port
+     */
+    public void setOriginPort(final int originPortValue) {
+        this.originPort = originPortValue;
+    }
+
 }
@@ -15,6 +15,8 @@ import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
 
+import com.swe.core.ClientNode;
+
 /* Parser for the packets.
 The structure of the packet is given below
 - Length            : 16bits
@@ -29,6 +31,8 @@ The structure of the packet is given below
 - Message Id        : 32bits
 - Chunk Num         : 32bits
 - Chunk Length      : 32bits
+- Origin IPv4 addr  : 32bits
+- Origin port num   : 16bits
 - Payload           : variable length
 
 
@@ -53,6 +57,11 @@ The structure of the packet is given below
 |                  Chunk Length                 |
 |                                               |
 +--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+
+|               Origin IPv4 Address             |
+|                                               |
++--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+
+|               Origin port number              |
++--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+--+
 | Payload....
 +--+--+--+--+--+
  */
@@ -69,7 +78,7 @@ public class PacketParser {
     /**
      * Size of the packet header in bytes.
      */
-    private static final int HEADER_SIZE = 22;
+    private static final int HEADER_SIZE = 28;
     /**
      * Number of bytes in an IPv4 address.
      */
@@ -90,6 +99,10 @@ public class PacketParser {
      * Number of bytes used to store the chunk length.
      */
     private static final int LEN_CHUNK_LENGTH = 4;
+    /**
+     * Longest dotted IPv4 address.
+     */
+    private static final int MAX_HOST_LENGTH = 15;
     // Offsets into the packet
     /**
      * Offset of the length field.
@@ -119,6 +132,14 @@ public class PacketParser {
      * Offset of the chunk length field.
      */
     private static final int OFF_CHUNK_LENGTH = 18;
+    /**
+     * Offset of the origin IPv4 address field.
+     */
+    private static final int OFF_ORIGIN_IP = 22;
+    /**
+     * Offset of the origin port field.
+     */
+    private static final int OFF_ORIGIN_PORT = 26;
 
     /**
      * Bitfield sizes within the first two bytes.
@@ -230,48 +251,23 @@ public class PacketParser {
     public PacketInfo parsePacket(final byte[] pkt) throws UnknownHostException {
         final PacketInfo info = new PacketInfo();
 
-        final int length = (pkt[OFF_LEN]) & MASK_LENGTH
-                | (((pkt[OFF_LEN + 1]) & MASK_LENGTH) << SHIFT_LENGTH);
-
-        final int type = (pkt[OFF_FLAGS] >> SHIFT_TYPE) & MASK_TYPE;
-        final int priority = (pkt[OFF_FLAGS] >> SHIFT_PRIORITY) & MASK_PRIORITY;
-
-        final int lower = pkt[OFF_FLAGS] & MASK_MODULE_LOWER; // lower 3 bits in byte0
-        final int upper = (pkt[OFF_FLAGS + 1] >> SHIFT_MODULE_UPPER) & MASK_MODULE_UPPER; // single bit in byte1
-        final int module = (lower << 1) | upper;
-
-        final int connectionType = (pkt[OFF_FLAGS + 1] >> SHIFT_CONNECTION_TYPE) & MASK_CONNECTION_TYPE;
-        final int broadcast = (pkt[OFF_FLAGS + 1] >> SHIFT_BROADCAST) & MASK_BROADCAST;
-
-        final byte[] ipBytes = Arrays.copyOfRange(pkt, OFF_IP, OFF_IP + LEN_IP);
-        final InetAddress ip = InetAddress.getByAddress(ipBytes);
-
-        final ByteBuffer portBb = ByteBuffer.wrap(pkt, OFF_PORT, LEN_PORT);
-        final int port = Short.toUnsignedInt(portBb.getShort());
-
-        final ByteBuffer midBb = ByteBuffer.wrap(pkt, OFF_MESSAGE_ID, LEN_MESSAGE_ID);
-        final int messageId = midBb.getInt();
-
-        final ByteBuffer cnumBb = ByteBuffer.wrap(pkt, OFF_CHUNK_NUM, LEN_CHUNK_NUM);
-        final int chunkNum = cnumBb.getInt();
-
-        final ByteBuffer clenBb = ByteBuffer.wrap(pkt, OFF_CHUNK_LENGTH, LEN_CHUNK_LENGTH);
-        final int chunkLength = clenBb.getInt();
-
-        final byte[] payload = Arrays.copyOfRange(pkt, HEADER_SIZE, pkt.length);
-
-        info.setLength(length);
-        info.setType(type);
-        info.setPriority(priority);
-        info.setModule(module);
-        info.setConnectionType(connectionType);
-        info.setBroadcast(broadcast);
-        info.setIpAddress(ip);
-        info.setPortNum(port);
-        info.setMessageId(messageId);
-        info.setChunkNum(chunkNum);
-        info.setChunkLength(chunkLength);
-        info.setPayload(payload);
+        info.setLength(getLength(pkt));
+        info.setType(getType(pkt));
+        info.setPriority(getPriority(pkt));
+        info.setModule(getModule(pkt));
+        info.setConnectionType(getConnectionType(pkt));
+        info.setBroadcast(getBroadcast(pkt));
+        info.setIpAddress(getIpAddress(pkt));
+        info.setPortNum(getPortNum(pkt));
+        info.setMessageId(getMessageId(pkt));
+        info.setChunkNum(getChunkNum(pkt));
+        info.setChunkLength(getChunkLength(pkt));
+        if (getOriginIpv4(pkt) != 0) {
+            info.setOriginAddress(InetAddress.getByAddress(Arrays.copyOfRange(pkt, OFF_ORIGIN_IP,
+                    OFF_ORIGIN_IP + LEN_IP)));
+        }
+        info.setOriginPort(getOriginPort(pkt));
+        info.setPayload(Arrays.copyOfRange(pkt, HEADER_SIZE, pkt.length));
 
         return info;
     }
@@ -324,7 +320,17 @@ public class PacketParser {
         // Bytes 18–21: chunkLength
         bb.putInt(ds.getChunkLength());
 
-        // Bytes 22+: payload
+        // Bytes 22–25: origin IP, zero if not known
+        if (ds.getOriginAddress() != null) {
+            bb.put(ds.getOriginAddress().getAddress());
+        } else {
+            bb.position(bb.position() + LEN_IP);
+        }
+
+        // Bytes 26–27: origin port
+        bb.putShort((short) ds.getOriginPort());
+
+        // Bytes 28+: payload
         bb.put(data);
 
         return pkt;
@@ -338,4 +344,252 @@ public class PacketParser {
     public static int getHeaderSize() {
         return HEADER_SIZE;
     }
+
+    /*
+     * Header view: the static functions below read or rewrite single header fields in place,
+     * so routing and scheduling neither copy the payload nor build a PacketInfo.
+     */
+
+    /**
+     * Reads the length field of a packet without parsing the rest of it.
+     *
+     * @param pkt raw packet bytes
+     * @return the length
+     */
+    public static int getLength(final byte[] pkt) {
+        return pkt[OFF_LEN] & MASK_LENGTH | (pkt[OFF_LEN + 1] & MASK_LENGTH) << SHIFT_LENGTH;
+    }
+
+    /**
+     * Reads the type of a packet without parsing the rest of it.
+     *
+     * @param pkt raw packet bytes
+     * @return the {@link NetworkType} ordinal
+     */
+    public static int getType(final byte[] pkt) {
+        return (pkt[OFF_FLAGS] >> SHIFT_TYPE) & MASK_TYPE;
+    }
+
+    /**
+     * Rewrites the type of a packet in place.
+     *
+     * @param pkt raw packet bytes
+     * @param type the {@link NetworkType} ordinal
+     */
+    public static void setType(final byte[] pkt, final int type) {
+        pkt[OFF_FLAGS] = (byte) (pkt[OFF_FLAGS] & ~(MASK_TYPE << SHIFT_TYPE) | (type & MASK_TYPE) << SHIFT_TYPE);
+    }
+
+    /**
+     * Reads the priority of a packet without parsing the rest of it.
+     *
+     * @param pkt raw packet bytes
+     * @return the priority
+     */
+    public static int getPriority(final byte[] pkt) {
+        return (pkt[OFF_FLAGS] >> SHIFT_PRIORITY) & MASK_PRIORITY;
+    }
+
+    /**
+     * Reads the module of a packet without parsing the rest of it.
+     *
+     * @param pkt raw packet bytes
+     * @return the module
+     */
+    public static int getModule(final byte[] pkt) {
+        final int lower = pkt[OFF_FLAGS] & MASK_MODULE_LOWER;
+        final int upper = (pkt[OFF_FLAGS + 1] >> SHIFT_MODULE_UPPER) & MASK_MODULE_UPPER;
+        return (lower << 1) | upper;
+    }
+
+    /**
+     * Reads the connection type of a packet without parsing the rest of it.
+     *
+     * @param pkt raw packet bytes
+     * @return the {@link NetworkConnectionType} ordinal
+     */
+    public static int getConnectionType(final byte[] pkt) {
+        return (pkt[OFF_FLAGS + 1] >> SHIFT_CONNECTION_TYPE) & MASK_CONNECTION_TYPE;
+    }
+
+    /**
+     * Reads the broadcast flag of a packet without parsing the rest of it.
+     *
+     * @param pkt raw packet bytes
+     * @return 1 for a broadcast, 0 otherwise
+     */
+    public static int getBroadcast(final byte[] pkt) {
+        return (pkt[OFF_FLAGS + 1] >> SHIFT_BROADCAST) & MASK_BROADCAST;
+    }
+
+    /**
+     * Rewrites the broadcast flag of a packet in place.
+     *
+     * @param pkt raw packet bytes
+     * @param broadcast 1 for a broadcast, 0 otherwise
+     */
+    public static void setBroadcast(final byte[] pkt, final int broadcast) {
+        pkt[OFF_FLAGS + 1] = (byte) (pkt[OFF_FLAGS + 1] & ~(MASK_BROADCAST << SHIFT_BROADCAST)
+                | (broadcast & MASK_BROADCAST) << SHIFT_BROADCAST);
+    }
+
+    /**
+     * Reads the message id of a packet without parsing the rest of it.
+     *
+     * @param pkt raw packet bytes
+     * @return the message id
+     */
+    public static int getMessageId(final byte[] pkt) {
+        return readInt(pkt, OFF_MESSAGE_ID, LEN_MESSAGE_ID);
+    }
+
+    /**
+     * Reads the chunk number of a packet without parsing the rest of it.
+     *
+     * @param pkt raw packet bytes
+     * @return the chunk number
+     */
+    public static int getChunkNum(final byte[] pkt) {
+        return readInt(pkt, OFF_CHUNK_NUM, LEN_CHUNK_NUM);
+    }
+
+    /**
+     * Rewrites the chunk number of a packet in place.
+     *
+     * @param pkt raw packet bytes
+     * @param chunkNum the chunk number
+     */
+    public static void setChunkNum(final byte[] pkt, final int chunkNum) {
+        writeInt(pkt, OFF_CHUNK_NUM, LEN_CHUNK_NUM, chunkNum);
+    }
+
+    /**
+     * Reads the chunk count of a packet without parsing the rest of it.
+     *
+     * @param pkt raw packet bytes
+     * @return the number of chunks of the message
+     */
+    public static int getChunkLength(final byte[] pkt) {
+        return readInt(pkt, OFF_CHUNK_LENGTH, LEN_CHUNK_LENGTH);
+    }
+
+    /**
+     * Rewrites the chunk count of a packet in place.
+     *
+     * @param pkt raw packet bytes
+     * @param chunkLength the number of chunks of the message
+     */
+    public static void setChunkLength(final byte[] pkt, final int chunkLength) {
+        writeInt(pkt, OFF_CHUNK_LENGTH, LEN_CHUNK_LENGTH, chunkLength);
+    }
+
+    /**
+     * Reads the IPv4 address of a packet without parsing the rest of it.
+     *
+     * @param pkt raw packet bytes
+     * @return the address
+     * @throws UnknownHostException if the IP address is invalid
+     */
+    public static InetAddress getIpAddress(final byte[] pkt) throws UnknownHostException {
+        return InetAddress.getByAddress(Arrays.copyOfRange(pkt, OFF_IP, OFF_IP + LEN_IP));
+    }
+
+    /**
+     * Rewrites the IPv4 address of a packet in place.
+     *
+     * @param pkt raw packet bytes
+     * @param address the address
+     */
+    public static void setIpAddress(final byte[] pkt, final InetAddress address) {
+        System.arraycopy(address.getAddress(), 0, pkt, OFF_IP, LEN_IP);
+    }
+
+    /**
+     * Reads the IPv4 address of a packet as an int, without parsing the rest of it.
+     *
+     * @param pkt raw packet bytes
+     * @return the address, most significant byte first
+     */
+    public static int getIpv4(final byte[] pkt) {
+        return readInt(pkt, OFF_IP, LEN_IP);
+    }
+
+    /**
+     * Reads the IPv4 address of a packet in dotted form, without an {@link InetAddress}.
+     *
+     * @param pkt raw packet bytes
+     * @return the address, as {@link InetAddress#getHostAddress()} would give it
+     */
+    public static String getHostAddress(final byte[] pkt) {
+        final StringBuilder host = new StringBuilder(MAX_HOST_LENGTH);
+        host.append(pkt[OFF_IP] & MASK_LENGTH);
+        for (int i = 1; i < LEN_IP; i++) {
+            host.append('.').append(pkt[OFF_IP + i] & MASK_LENGTH);
+        }
+        return host.toString();
+    }
+
+    /**
+     * Reads the port of a packet without parsing the rest of it.
+     *
+     * @param pkt raw packet bytes
+     * @return the port
+     */
+    public static int getPortNum(final byte[] pkt) {
+        return readInt(pkt, OFF_PORT, LEN_PORT);
+    }
+
+    /**
+     * Rewrites the port of a packet in place.
+     *
+     * @param pkt raw packet bytes
+     * @param port the port
+     */
+    public static void setPortNum(final byte[] pkt, final int port) {
+        writeInt(pkt, OFF_PORT, LEN_PORT, port);
+    }
+
+    /**
+     * Reads the IPv4 address of the device that chunked a packet, without parsing the rest of it.
+     *
+     * @param pkt raw packet bytes
+     * @return the address, most significant byte first, 0 if not known
+     */
+    public static int getOriginIpv4(final byte[] pkt) {
+        return readInt(pkt, OFF_ORIGIN_IP, LEN_IP);
+    }
+
+    /**
+     * Reads the port of the device that chunked a packet, without parsing the rest of it.
+     *
+     * @param pkt raw packet bytes
+     * @return the port
+     */
+    public static int getOriginPort(final byte[] pkt) {
+        return readInt(pkt, OFF_ORIGIN_PORT, LEN_PORT);
+    }
+
+    /**
+     * Reads the client of the address and port of a packet.
+     *
+     * @param pkt raw packet bytes
+     * @return the client
+     */
+    public static ClientNode getClientNode(final byte[] pkt) {
+        return new ClientNode(getHostAddress(pkt), getPortNum(pkt));
+    }
+
+    private static int readInt(final byte[] pkt, final int offset, final int length) {
+        int value = 0;
+        for (int i = 0; i < length; i++) {
+            value = value << Byte.SIZE | pkt[offset + i] & MASK_LENGTH;
+        }
+        return value;
+    }
+
+    private static void writeInt(final byte[] pkt, final int offset, final int length, final int value) {
+        for (int i = 0; i < length; i++) {
+            pkt[offset + i] = (byte) (value >>> (Byte.SIZE * (length - 1 - i)));
+        }
+    }
 }
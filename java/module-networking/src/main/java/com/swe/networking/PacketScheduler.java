@@ -0,0 +1,44 @@
+/*
+ * -----------------------------------------------------------------------------
+ *  File: PacketScheduler.java
+ *  Owner: Vishwaa
+ *  Roll Number : 112201030
+ *  Module : Networking
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+package com.swe.networking;
+
+/**
+ * Orders the outgoing chunks of all modules before they reach the topology.
+ */
+public interface PacketScheduler {
+
+    /**
+     * Queues a chunk.
+     *
+     * @param data the chunk, header included
+     * @param priority the priority level the chunk was sent with (0 highest)
+     */
+    void addPacket(byte[] data, int priority);
+
+    /**
+     * Takes the next chunk to send.
+     *
+     * @return the chunk, or null if none is queued
+     */
+    byte[] nextPacket();
+
+    /**
+     * Whether no chunk is queued.
+     *
+     * @return true if empty
+     */
+    boolean isEmpty();
+
+    /**
+     * Drops every queued chunk.
+     */
+    void clear();
+}
@@ -20,7 +20,7 @@ import java.util.concurrent.ConcurrentLinkedDeque;
 /**
  * Priority Queue with simple Multi-Level Feedback Queue (MLFQ).
  */
-public class PriorityQueue {
+public class PriorityQueue implements PacketScheduler {
 
     /**
      * Variable to store the name of the module.
@@ -114,6 +114,7 @@ public class PriorityQueue {
     /**
      * Empties the priority queue for each test.
      */
+    @Override
     public void clear() {
         highestPriorityQueue.clear();
         midPriorityQueue.clear();
@@ -127,6 +128,7 @@ public class PriorityQueue {
      *
      * @return true if there are packets left.
      */
+    @Override
     public boolean isEmpty() {
         // Checking the highest and mid-priority queue
         if (!highestPriorityQueue.isEmpty() || !midPriorityQueue.isEmpty() || !lowPriorityQueue.isEmpty()
@@ -174,9 +176,17 @@ public class PriorityQueue {
      * @param data the packet payload
      */
     public synchronized void addPacket(final byte[] data) throws UnknownHostException {
-        final PacketParser parser = PacketParser.getPacketParser();
-        final PacketInfo info = parser.parsePacket(data);
-        final int priorityLevel = info.getPriority();
+        addPacket(data, PacketParser.getPriority(data));
+    }
+
+    /**
+     * Adds a packet to the queue of the given priority without parsing it.
+     *
+     * @param data the packet payload
+     * @param priorityLevel the priority the packet was sent with
+     */
+    @Override
+    public synchronized void addPacket(final byte[] data, final int priorityLevel) {
         final PacketPriority priority = PacketPriority.fromLevel(priorityLevel);
 
         switch (priority) {
@@ -415,6 +425,7 @@ public class PriorityQueue {
      *
      * @return the next packet's data, or null if none available
      */
+    @Override
     public synchronized byte[] nextPacket() {
         byte[] packet;
 
@@ -10,7 +10,9 @@
 
 package com.swe.networking;
 
+import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
+import java.util.function.Consumer;
 
 import com.swe.core.ClientNode;
 
@@ -46,6 +48,32 @@ public interface ProtocolBase {
      */
     void sendData(byte[] data, ClientNode dest);
 
+    /**
+     * To send a packet held as its header and a payload shared with the packets of other
+     * destinations. The payload is read from its position without moving it.
+     *
+     * @param header the header of the packet
+     * @param payload the read only payload
+     * @param dest the dest to send the data
+     */
+    default void sendData(final byte[] header, final ByteBuffer payload, final ClientNode dest) {
+        final byte[] data = new byte[header.length + payload.remaining()];
+        System.arraycopy(header, 0, data, 0, header.length);
+        payload.duplicate().get(data, header.length, payload.remaining());
+        sendData(data, dest);
+    }
+
+    /**
+     * Whether the given destination keeps up with the data sent to it.
+     * Callers should hold back non essential data while this is false.
+     *
+     * @param dest the destination
+     * @return false while too much data to dest is waiting to be written
+     */
+    default boolean canSend(final ClientNode dest) {
+        return true;
+    }
+
     /**
      * To receive data/socket form clients.
      *
@@ -53,6 +81,17 @@ public interface ProtocolBase {
      */
     ReceivePacket receiveData();
 
+    /**
+     * To have the received data handed over on the communicator's own threads
+     * instead of returned by {@link #receiveData}.
+     *
+     * @param receiver called with every received packet
+     * @return false if the communicator has no threads of its own, callers then loop on {@link #receiveData}
+     */
+    default boolean setReceiver(final Consumer<ReceivePacket> receiver) {
+        return false;
+    }
+
     /**
      * Function to handle socket closing at termination.
      */
@@ -0,0 +1,201 @@
+/*
+ * -----------------------------------------------------------------------------
+ *  File: ReceiveDispatcher.java
+ *  Owner: Loganath
+ *  Roll Number : 112201016
+ *  Module : Networking
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+package com.swe.networking;
+
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Hands the packets read by the reactors of a communicator to its user.
+ *
+ * <p>
+ * Until a receiver is set the packets wait in one queue that {@link #poll} takes from.
+ * Once it is set, every module gets a lane: a queue and a thread calling the receiver,
+ * so the packets of a module keep their order while a large frame of one module does
+ * not hold up the packets of another. A COALESCED packet is split by the modules of its
+ * records first, so small data of a module stays in order with its chunked data.
+ * </p>
+ *
+ * <p>
+ * Lanes are bounded and hold the reading thread until there is room, so a slow module
+ * cannot grow the heap. Nothing is dropped here: the packets are chunks, and a message
+ * missing one chunk is never reassembled. Whole messages are dropped after reassembly by
+ * the overflow policies of {@link ModuleDispatcher}.
+ * </p>
+ */
+public final class ReceiveDispatcher {
+
+    /**
+     * Default queue length of a lane.
+     */
+    private static final int DEFAULT_CAPACITY = 4096;
+
+    /**
+     * Queue length of every lane.
+     */
+    private final int capacity;
+
+    /**
+     * Packets received before a receiver was set.
+     */
+    private final LinkedBlockingQueue<ReceivePacket> pending = new LinkedBlockingQueue<>();
+
+    /**
+     * The lane of each module, null until a receiver is set.
+     */
+    private volatile BoundedLane<ReceivePacket>[] lanes;
+
+    /**
+     * Whether the dispatcher was closed.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Creates a dispatcher with the default lane length.
+     */
+    public ReceiveDispatcher() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a dispatcher.
+     *
+     * @param capacityArg most packets queued on a lane before the reading thread waits
+     */
+    ReceiveDispatcher(final int capacityArg) {
+        this.capacity = Math.max(1, capacityArg);
+    }
+
+    /**
+     * Starts handing the packets to a receiver, the ones received so far included.
+     * Only the first receiver set is used.
+     *
+     * @param receiver called with every packet, on the thread of its module
+     */
+    public synchronized void setReceiver(final Consumer<ReceivePacket> receiver) {
+        if (lanes != null || closed) {
+            return;
+        }
+        final ModuleType[] modules = ModuleType.values();
+        @SuppressWarnings("unchecked")
+        final BoundedLane<ReceivePacket>[] created = (BoundedLane<ReceivePacket>[]) new BoundedLane<?>[modules.length];
+        for (ModuleType module : modules) {
+            created[module.ordinal()] = new BoundedLane<>("receive-" + module.name().toLowerCase(), capacity,
+                    ModuleDispatcher.OverflowPolicy.BLOCK, packet -> false, receiver);
+        }
+        ReceivePacket packet = pending.poll();
+        while (packet != null) {
+            route(created, packet);
+            packet = pending.poll();
+        }
+        lanes = created;
+    }
+
+    /**
+     * Queues a received packet for the receiver, or for {@link #poll} while none is set.
+     *
+     * @param packet the packet
+     */
+    public void dispatch(final ReceivePacket packet) {
+        BoundedLane<ReceivePacket>[] current = lanes;
+        if (current == null) {
+            synchronized (this) {
+                current = lanes;
+                if (current == null) {
+                    pending.add(packet);
+                    return;
+                }
+            }
+        }
+        route(current, packet);
+    }
+
+    /**
+     * Takes the next packet received while no receiver is set.
+     *
+     * @param timeoutMillis how long to wait for one
+     * @return the packet, null if none came in time
+     */
+    public ReceivePacket poll(final long timeoutMillis) {
+        try {
+            return pending.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Number of packets waiting for the receiver of a module.
+     *
+     * @param module the module
+     * @return the count, 0 while no receiver is set
+     */
+    public int getQueuedPackets(final ModuleType module) {
+        final BoundedLane<ReceivePacket>[] current = lanes;
+        if (current == null) {
+            return 0;
+        }
+        return current[module.ordinal()].size();
+    }
+
+    /**
+     * Stops the lanes, the packets still queued are dropped.
+     */
+    public synchronized void close() {
+        closed = true;
+        final BoundedLane<ReceivePacket>[] current = lanes;
+        if (current != null) {
+            for (BoundedLane<ReceivePacket> lane : current) {
+                lane.stop();
+            }
+        }
+    }
+
+    /**
+     * Queues a packet on the lane of its module, the parts of a COALESCED packet on the lanes of theirs.
+     *
+     * @param all the lanes
+     * @param packet the packet
+     */
+    private static void route(final BoundedLane<ReceivePacket>[] all, final ReceivePacket packet) {
+        final byte[] data = packet.data();
+        if (data.length < PacketParser.getHeaderSize()) {
+            // too short to name a module, the receiver drops it
+            offer(all[0], packet);
+            return;
+        }
+        if (PacketParser.getConnectionType(data) != NetworkConnectionType.COALESCED.ordinal()) {
+            offer(all[Math.floorMod(PacketParser.getModule(data), all.length)], packet);
+            return;
+        }
+        // the batch carries the NETWORKING module, its records go with the chunks of their own
+        for (Map.Entry<Integer, byte[]> part : CoalesceReceive.splitByModule(data).entrySet()) {
+            offer(all[Math.floorMod(part.getKey(), all.length)], new ReceivePacket(packet.sender(), part.getValue()));
+        }
+    }
+
+    /**
+     * Queues a packet on a lane, waiting while it is full.
+     *
+     * @param lane the lane
+     * @param packet the packet
+     */
+    private static void offer(final BoundedLane<ReceivePacket> lane, final ReceivePacket packet) {
+        try {
+            lane.offer(packet);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
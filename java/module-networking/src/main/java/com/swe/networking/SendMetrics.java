@@ -0,0 +1,176 @@
+/*
+ * -----------------------------------------------------------------------------
+ *  File: SendMetrics.java
+ *  Owner: Shubham Yadav
+ *  Roll Number : 112201032
+ *  Module : Networking
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+package com.swe.networking;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.swe.core.ClientNode;
+
+/**
+ * Counters of the send pipeline: queue depth, time chunks wait before being sent, the
+ * send rate per destination and what coalescing saved. Counters cover the window since
+ * the last snapshot.
+ */
+public class SendMetrics {
+
+    /**
+     * Nanoseconds in a microsecond.
+     */
+    private static final double NANOS_PER_MICRO = 1_000.0;
+
+    /**
+     * Nanoseconds in a second.
+     */
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    /**
+     * Chunks sent in the window.
+     */
+    private final LongAdder sent = new LongAdder();
+
+    /**
+     * Total queue wait of the chunks sent in the window.
+     */
+    private final LongAdder waitNanos = new LongAdder();
+
+    /**
+     * Longest queue wait in the window.
+     */
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    /**
+     * Deepest queue seen in the window.
+     */
+    private final AtomicInteger peakDepth = new AtomicInteger();
+
+    /**
+     * Bytes sent per destination in the window.
+     */
+    private final Map<ClientNode, LongAdder> bytesTo = new ConcurrentHashMap<>();
+
+    /**
+     * Chunks sent per destination in the window.
+     */
+    private final Map<ClientNode, LongAdder> chunksTo = new ConcurrentHashMap<>();
+
+    /**
+     * Packets sent inside coalesced packets in the window.
+     */
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * Coalesced packets sent in the window.
+     */
+    private final LongAdder batches = new LongAdder();
+
+    /**
+     * Start of the window.
+     */
+    private long windowStart = System.nanoTime();
+
+    /**
+     * Counters of one window.
+     *
+     * @param depth the chunks queued when the snapshot was taken
+     * @param peakDepth the deepest queue seen in the window
+     * @param chunks the chunks sent in the window
+     * @param avgWaitMicros the average queue wait of the sent chunks
+     * @param maxWaitMicros the longest queue wait of the sent chunks
+     * @param bytesPerSecond the send rate in bytes per second per destination
+     * @param chunksPerSecond the send rate in chunks per second per destination
+     * @param coalescedPerSecond the packets per second sent inside coalesced packets
+     * @param writesSavedPerSecond the framed writes per second coalescing saved
+     */
+    public record Snapshot(int depth, int peakDepth, long chunks, double avgWaitMicros, double maxWaitMicros,
+                           Map<ClientNode, Double> bytesPerSecond, Map<ClientNode, Double> chunksPerSecond,
+                           double coalescedPerSecond, double writesSavedPerSecond) {
+    }
+
+    /**
+     * Records the queue depth after chunks were added.
+     *
+     * @param depth the number of queued chunks
+     */
+    public void recordDepth(final int depth) {
+        peakDepth.accumulateAndGet(depth, Math::max);
+    }
+
+    /**
+     * Records a chunk handed to the topology.
+     *
+     * @param dest the client it was sent to
+     * @param bytes the chunk length
+     * @param waitedNanos the time it spent queued
+     */
+    public void recordSent(final ClientNode dest, final int bytes, final long waitedNanos) {
+        sent.increment();
+        waitNanos.add(waitedNanos);
+        maxWaitNanos.accumulateAndGet(waitedNanos, Math::max);
+        if (dest != null) {
+            bytesTo.computeIfAbsent(dest, k -> new LongAdder()).add(bytes);
+            chunksTo.computeIfAbsent(dest, k -> new LongAdder()).increment();
+        }
+    }
+
+    /**
+     * Records a coalesced packet handed to the send queue.
+     *
+     * @param packets the number of packets it carries
+     */
+    public void recordCoalesced(final int packets) {
+        coalesced.add(packets);
+        batches.increment();
+    }
+
+    /**
+     * Returns the counters of the window since the last snapshot and starts a new one.
+     *
+     * @param depth the number of chunks queued now
+     * @return the counters
+     */
+    public synchronized Snapshot snapshot(final int depth) {
+        final long now = System.nanoTime();
+        final double seconds = Math.max(1, now - windowStart) / NANOS_PER_SECOND;
+        windowStart = now;
+
+        final long chunks = sent.sumThenReset();
+        final long totalWait = waitNanos.sumThenReset();
+        double avgWait = 0;
+        if (chunks > 0) {
+            avgWait = totalWait / (double) chunks / NANOS_PER_MICRO;
+        }
+        final double maxWait = maxWaitNanos.getAndSet(0) / NANOS_PER_MICRO;
+        final int peak = Math.max(depth, peakDepth.getAndSet(depth));
+        final long packets = coalesced.sumThenReset();
+        final long saved = packets - batches.sumThenReset();
+        return new Snapshot(depth, peak, chunks, avgWait, maxWait, rates(bytesTo, seconds), rates(chunksTo, seconds),
+                packets / seconds, saved / seconds);
+    }
+
+    private static Map<ClientNode, Double> rates(final Map<ClientNode, LongAdder> counters, final double seconds) {
+        final Map<ClientNode, Double> rates = new HashMap<>();
+        for (Map.Entry<ClientNode, LongAdder> entry : counters.entrySet()) {
+            final long count = entry.getValue().sumThenReset();
+            if (count == 0) {
+                // nothing sent to it for a whole window, stop tracking it
+                counters.remove(entry.getKey(), entry.getValue());
+            } else {
+                rates.put(entry.getKey(), count / seconds);
+            }
+        }
+        return rates;
+    }
+}
@@ -13,7 +13,6 @@ package com.swe.networking.SimpleNetworking;
 import java.io.IOException;
 import java.net.UnknownHostException;
 import java.nio.charset.StandardCharsets;
-import java.util.List;
 
 import com.swe.core.ClientNode;
 import com.swe.core.logging.SweLogger;
@@ -23,7 +22,6 @@ import com.swe.networking.PacketInfo;
 import com.swe.networking.PacketParser;
 import com.swe.networking.ProtocolBase;
 import com.swe.networking.ReceivePacket;
-import com.swe.networking.SplitPackets;
 import com.swe.networking.TCPCommunicator;
 
 // File owned by Loganath
@@ -114,10 +112,7 @@ public class Client implements IUser {
     public void receive() throws IOException {
         final ReceivePacket packet = communicator.receiveData();
         if (packet != null) {
-            final List<byte[]> packets = SplitPackets.getSplitPackets().split(packet);
-            for (byte[] p : packets) {
-                parsePacket(p);
-            }
+            parsePacket(packet.data());
         }
     }
 
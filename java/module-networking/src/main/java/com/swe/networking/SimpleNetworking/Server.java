@@ -14,7 +14,6 @@ import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.nio.charset.StandardCharsets;
-import java.util.List;
 
 import com.swe.core.ClientNode;
 import com.swe.core.logging.SweLogger;
@@ -24,7 +23,6 @@ import com.swe.networking.PacketInfo;
 import com.swe.networking.PacketParser;
 import com.swe.networking.ProtocolBase;
 import com.swe.networking.ReceivePacket;
-import com.swe.networking.SplitPackets;
 import com.swe.networking.TCPCommunicator;
 
 //File owned by Loganath.
@@ -116,10 +114,7 @@ public class Server implements IUser {
         while (true) {
             final ReceivePacket packet = communicator.receiveData();
             if (packet != null) {
-                final List<byte[]> packets = SplitPackets.getSplitPackets().split(packet);
-                for (byte[] p : packets) {
-                    parsePacket(p);
-                }
+                parsePacket(packet.data());
             }
         }
     }
@@ -13,12 +13,23 @@ package com.swe.networking;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedSelectorException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
-import java.util.HashMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
 
 import com.swe.core.ClientNode;
 import com.swe.core.logging.SweLogger;
@@ -28,6 +39,25 @@ import com.swe.core.logging.SweLoggerFactory;
 /**
  * Communicator class module for TCP.
  *
+ * <p>
+ * Connections are spread over a few reactor threads by the hash of their peer, each thread
+ * running its own selector, so one busy socket only holds up the sockets of its shard. New
+ * connections are accepted by the first reactor and handed to the reactor of their shard.
+ * </p>
+ *
+ * <p>
+ * Every connection has its own outbound queue. {@link #sendData} appends to it and writes
+ * what the socket takes right away, the rest is written by the connection's reactor when
+ * the socket becomes writable, several chunks per gathering write. A slow peer only grows
+ * its own queue and {@link #canSend} reports it once the queue passes the high watermark.
+ * </p>
+ *
+ * <p>
+ * Reads go into pooled direct buffers and are split on the 16 bit length at the start of
+ * every packet, each connection keeping its buffer only while it holds part of a packet.
+ * Whole packets go to a {@link ReceiveDispatcher}: they are returned one at a time by
+ * {@link #receiveData}, or once a receiver is set, handed to it on a thread per module.
+ * </p>
  */
 public final class TCPCommunicator implements ProtocolBase {
 
@@ -40,21 +70,66 @@ public final class TCPCommunicator implements ProtocolBase {
      * The module name.
      */
     private static final String MODULENAME = "[TCPCOMMUNICATOR]";
+
+    /**
+     * Queued bytes above which a peer is reported as congested.
+     */
+    private static final long HIGH_WATERMARK = 4L * 1024 * 1024;
+
+    /**
+     * Queued bytes below which a congested peer is reported as writable again.
+     */
+    private static final long LOW_WATERMARK = 1024L * 1024;
+
+    /**
+     * Queued bytes at which a peer is considered stalled and disconnected.
+     */
+    private static final long MAX_QUEUED_BYTES = 64L * 1024 * 1024;
+
+    /**
+     * Most chunks written by one gathering write.
+     */
+    private static final int MAX_GATHER = 64;
+
+    /**
+     * How long close waits for queued data to be written.
+     */
+    private static final long CLOSE_FLUSH_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    /**
+     * Pause between flush attempts while closing.
+     */
+    private static final long CLOSE_FLUSH_PAUSE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * Most reactor threads started by default.
+     */
+    private static final int MAX_DEFAULT_REACTORS = 4;
+
+    /**
+     * How long a reactor waits in its selector before checking whether it was closed.
+     */
+    private static final long SELECT_TIMEOUT_MS = 1000;
     /**
      * The server socket used to receive client connections.
      *
      */
     private ServerSocketChannel receiveSocket;
     /**
-     * The selector for the sockets.
+     * The reactors the connections are sharded over, the first one also accepts.
      */
-    private Selector selector;
+    private final Reactor[] reactors;
 
     /**
-     * The list of all connected clients and their sockets.
+     * The key of every connected client, its attachment is the {@link Connection}.
      *
      */
-    private final HashMap<ClientNode, SocketChannel> clientSockets = new HashMap<>();
+    private final Map<ClientNode, SelectionKey> clientSockets = new ConcurrentHashMap<>();
+
+    /**
+     * Where whole packets read by the reactors go.
+     */
+    private final ReceiveDispatcher dispatcher = new ReceiveDispatcher();
 
     /**
      * The port where the server is instantiated.
@@ -64,9 +139,136 @@ public final class TCPCommunicator implements ProtocolBase {
     // Integer clientSendTimeout = 2000;
 
     /**
-     * The size of the buffer to read data. Let it be the size of 15KB.
+     * The size of the buffers to read data, fits the largest packet the 16 bit length allows.
      */
-    private final Integer byteBufferSize = 15 * 1024;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Most read buffers kept for reuse.
+     */
+    private static final int MAX_POOLED_READ_BUFFERS = 16;
+
+    /**
+     * Bytes of the length field at the start of every packet.
+     */
+    private static final int LENGTH_BYTES = 2;
+
+    /**
+     * Read buffers shared by the connections.
+     */
+    private final BufferPool readBuffers = new BufferPool(READ_BUFFER_SIZE, MAX_POOLED_READ_BUFFERS);
+
+    /**
+     * State of a connection, attached to its selection key: the data waiting to be written
+     * and the part of a packet read so far.
+     */
+    private static final class Connection {
+        /**
+         * The peer of the connection, for logging.
+         */
+        private final ClientNode peer;
+
+        /**
+         * Chunks not fully written yet, in send order, a shared payload queued after its header.
+         */
+        private final ArrayDeque<ByteBuffer> queue = new ArrayDeque<>();
+
+        /**
+         * Reused array handed to the gathering write.
+         */
+        private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+
+        /**
+         * Bytes left in the queue.
+         */
+        private long queuedBytes;
+
+        /**
+         * Whether the queue passed the high watermark and has not yet drained to the low one.
+         */
+        private boolean congested;
+
+        /**
+         * Pooled buffer holding the start of a packet, null between packets. Reactor thread only.
+         */
+        private ByteBuffer readBuffer;
+
+        /**
+         * Creates an empty queue.
+         *
+         * @param peerArg the peer of the connection
+         */
+        Connection(final ClientNode peerArg) {
+            this.peer = peerArg;
+        }
+    }
+
+    /**
+     * A selector and the thread serving the keys registered with it.
+     */
+    private final class Reactor implements Runnable {
+        /**
+         * The selector of the shard.
+         */
+        private final Selector selector;
+
+        /**
+         * The thread running the selector.
+         */
+        private final Thread thread;
+
+        /**
+         * Cleared once the communicator is closed.
+         */
+        private volatile boolean running = true;
+
+        /**
+         * Opens the selector of a shard and starts its thread.
+         *
+         * @param index the shard, for the thread name
+         * @throws IOException if the selector cannot be opened
+         */
+        Reactor(final int index) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, "tcp-reactor-" + index);
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    selector.select(SELECT_TIMEOUT_MS);
+                    final Iterator<SelectionKey> iter = selector.selectedKeys().iterator();
+                    while (iter.hasNext()) {
+                        final SelectionKey key = iter.next();
+                        iter.remove();
+                        handleKey(key);
+                    }
+                } catch (IOException | ClosedSelectorException ex) {
+                    if (running) {
+                        LOG.error("Error while using the selector...");
+                        LOG.error("Error : " + ex.getMessage());
+                    }
+                    return;
+                }
+            }
+            try {
+                selector.close();
+            } catch (IOException ex) {
+                LOG.error("Error : " + ex.getMessage());
+            }
+        }
+
+        /**
+         * Stops the thread, it closes the selector on its way out.
+         */
+        void stop() {
+            running = false;
+            selector.wakeup();
+        }
+    }
 
     // maintain list of clients and add timeouts
     /**
@@ -75,9 +277,22 @@ public final class TCPCommunicator implements ProtocolBase {
      * @param serverPort which port to start the TCP.
      */
     public TCPCommunicator(final int serverPort) {
+        this(serverPort, Math.min(MAX_DEFAULT_REACTORS, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Constructor function for TCP Communicator class.
+     *
+     * @param serverPort which port to start the TCP.
+     * @param reactorCount the number of reactor threads the connections are sharded over
+     */
+    public TCPCommunicator(final int serverPort, final int reactorCount) {
+        reactors = new Reactor[Math.max(1, reactorCount)];
         try {
             LOG.info("TCP communicator initialized...");
-            selector = Selector.open();
+            for (int i = 0; i < reactors.length; i++) {
+                reactors[i] = new Reactor(i);
+            }
             deviceServerPort = serverPort;
             setServerPort();
         } catch (IOException ex) {
@@ -87,41 +302,73 @@ public final class TCPCommunicator implements ProtocolBase {
     }
 
     /**
-     * Function to print all keys in the selector.
+     * Function to print all keys in the selectors.
      */
     @Override
     public void printKeys() {
-        selector.keys().stream().forEach(kay -> LOG.info("Selector channel: " + kay.channel()));
+        for (Reactor reactor : reactors) {
+            if (reactor != null) {
+                reactor.selector.keys().stream().forEach(kay -> LOG.info("Selector channel: " + kay.channel()));
+            }
+        }
     }
 
     @Override
     public ReceivePacket receiveData() {
+        return dispatcher.poll(SELECT_TIMEOUT_MS);
+    }
+
+    @Override
+    public boolean setReceiver(final Consumer<ReceivePacket> receiver) {
+        dispatcher.setReceiver(receiver);
+        return true;
+    }
+
+    /**
+     * Function to get the reactor of a peer's shard.
+     *
+     * @param peer the peer
+     * @return the reactor serving it
+     */
+    private Reactor reactorFor(final ClientNode peer) {
+        return reactors[Math.floorMod(peer.hashCode(), reactors.length)];
+    }
+
+    /**
+     * Function to serve a key the selector reported ready, on its reactor's thread.
+     *
+     * @param key the key
+     * @throws IOException if the server socket fails
+     */
+    private void handleKey(final SelectionKey key) throws IOException {
         try {
-            final int timeout = 1000;
-            selector.select(timeout);
-            final Iterator<SelectionKey> iter = selector.selectedKeys().iterator();
-            while (iter.hasNext()) {
-                final SelectionKey key = iter.next();
-                iter.remove();
-                if (!key.isValid()) {
-                    continue;
+            if (!key.isValid()) {
+                return;
+            }
+            if (key.isConnectable()) {
+                finishConnect(key);
+                return;
+            }
+            if (key.isWritable()) {
+                writeQueued(key);
+            }
+            if (!key.isValid()) {
+                return;
+            }
+            if (key.isAcceptable()) {
+                acceptConnection(key);
+            } else if (key.isReadable()) {
+                final List<byte[]> packets = readData(key);
+                if (packets == null) {
+                    return;
                 }
-                if (key.isAcceptable()) {
-                    acceptConnection(key);
-                } else if (key.isReadable()) {
-                    final byte[] data = readData(key);
-                    final String clientIp = ((SocketChannel) key.channel()).getRemoteAddress().toString();
-                    final int clientPort = ((InetSocketAddress) ((SocketChannel) key.channel())
-                            .getRemoteAddress()).getPort();
-                    final ClientNode client = new ClientNode(clientIp, clientPort);
-                    return new ReceivePacket(client, data);
+                final ClientNode peer = ((Connection) key.attachment()).peer;
+                for (byte[] packet : packets) {
+                    dispatcher.dispatch(new ReceivePacket(peer, packet));
                 }
             }
-            return null;
-        } catch (IOException ex) {
-            LOG.error("Error while using the selector...");
-            LOG.error("Error : " + ex.getMessage());
-            return null;
+        } catch (CancelledKeyException ex) {
+            LOG.info("Connection closed while it was served...");
         }
     }
 
@@ -133,7 +380,8 @@ public final class TCPCommunicator implements ProtocolBase {
             receiveSocket = ServerSocketChannel.open();
             receiveSocket.bind(new InetSocketAddress(deviceServerPort));
             receiveSocket.configureBlocking(false);
-            receiveSocket.register(selector, SelectionKey.OP_ACCEPT);
+            receiveSocket.register(reactors[0].selector, SelectionKey.OP_ACCEPT);
+            reactors[0].selector.wakeup();
             LOG.info("Creating new server port at " + deviceServerPort);
         } catch (IOException ex) {
             LOG.error("Error connecting to port : " + deviceServerPort);
@@ -155,16 +403,12 @@ public final class TCPCommunicator implements ProtocolBase {
 
     @Override
     public void closeSocket(final ClientNode client) {
-        final SocketChannel clientSocket = clientSockets.get(client);
-        if (clientSocket != null) {
+        final SelectionKey key = clientSockets.remove(client);
+        if (key != null) {
             try {
-                final SelectionKey key = clientSocket.keyFor(selector);
-                if (key != null) {
-                    key.cancel();
-                    clientSocket.close();
-                    clientSockets.remove(client);
-                    LOG.info("Closing socket for client " + client + " ...");
-                }
+                key.cancel();
+                key.channel().close();
+                LOG.info("Closing socket for client " + client + " ...");
             } catch (IOException ex) {
                 LOG.error("Error occurred while closing socket...");
                 LOG.error("Error : " + ex.getMessage());
@@ -174,39 +418,266 @@ public final class TCPCommunicator implements ProtocolBase {
 
     @Override
     public void sendData(final byte[] data, final ClientNode dest) {
+        queue(dest, ByteBuffer.wrap(data), null);
+    }
+
+    /**
+     * Queues the header and a view of the shared payload, the gathering write sends them as one
+     * packet without the payload being copied for every destination.
+     *
+     * @param header the header of the packet
+     * @param payload the read only payload
+     * @param dest the dest to send the data
+     */
+    @Override
+    public void sendData(final byte[] header, final ByteBuffer payload, final ClientNode dest) {
+        queue(dest, ByteBuffer.wrap(header), payload.duplicate());
+    }
+
+    /**
+     * Function to queue a packet for a destination and write what the socket takes right away.
+     *
+     * @param dest the destination
+     * @param first the packet, or its header
+     * @param rest the payload after the header, null if first holds the whole packet
+     */
+    private void queue(final ClientNode dest, final ByteBuffer first, final ByteBuffer rest) {
         final String destIp = dest.hostName();
         final Integer destPort = dest.port();
+        int length = first.remaining();
+        if (rest != null) {
+            length += rest.remaining();
+        }
         try {
-            final SocketChannel destSocket;
-            if (clientSockets.containsKey(dest)) {
-                LOG.info("Connection to " + dest + " exists already...");
-                destSocket = clientSockets.get(dest);
-            } else {
-                destSocket = openSocket();
-                destSocket.configureBlocking(true);
-                LOG.info("Client : " + dest + " ...");
-                destSocket.connect(new InetSocketAddress(destIp, destPort));
-                destSocket.configureBlocking(false);
-                LOG.info("Opening new socket at port " + destSocket.socket().getLocalPort());
-                destSocket.register(selector, SelectionKey.OP_READ);
-                LOG.info("New connection created successfully...");
-                clientSockets.put(new ClientNode(destIp, destPort), destSocket);
-            }
-            synchronized (destSocket) {
-                final ByteBuffer buffer = ByteBuffer.wrap(data);
-                while (buffer.hasRemaining()) {
-                    destSocket.write(buffer);
+            final SelectionKey key = connectionFor(dest);
+            if (key == null) {
+                return;
+            }
+            final SocketChannel destSocket = (SocketChannel) key.channel();
+            final Connection connection = (Connection) key.attachment();
+            if (destSocket.isConnectionPending() && destSocket.finishConnect()) {
+                connected(key);
+            }
+            final boolean drained;
+            synchronized (connection) {
+                if (connection.queuedBytes + length > MAX_QUEUED_BYTES) {
+                    LOG.error("Client " + dest + " is not reading, dropping the connection...");
+                    closeSocket(dest);
+                    return;
                 }
+                connection.queue.addLast(first);
+                if (rest != null) {
+                    connection.queue.addLast(rest);
+                }
+                connection.queuedBytes += length;
+                drained = destSocket.isConnected() && flush(destSocket, connection);
+                updateWatermark(connection);
+            }
+            if (!drained && destSocket.isConnected()) {
+                watchWritable(key);
             }
             printIpAddr(destIp, destPort);
         } catch (IOException ex) {
             LOG.error("Error while sending data...");
             LOG.error("Error : " + ex.getMessage());
+            closeSocket(dest);
+        }
+    }
+
+    @Override
+    public boolean canSend(final ClientNode dest) {
+        final SelectionKey key = clientSockets.get(dest);
+        if (key == null) {
+            return true;
+        }
+        final Connection connection = (Connection) key.attachment();
+        synchronized (connection) {
+            return !connection.congested;
+        }
+    }
+
+    /**
+     * Function to get the connection to a destination, starting a non blocking
+     * connect if there is none.
+     *
+     * @param dest the destination
+     * @return the key of the connection, null if it could not be opened
+     * @throws IOException if the connect fails right away
+     */
+    private SelectionKey connectionFor(final ClientNode dest) throws IOException {
+        final SelectionKey existing = clientSockets.get(dest);
+        if (existing != null && existing.isValid()) {
+            return existing;
+        }
+        synchronized (clientSockets) {
+            final SelectionKey raced = clientSockets.get(dest);
+            if (raced != null && raced != existing) {
+                return raced;
+            }
+            final SocketChannel destSocket = openSocket();
+            if (destSocket == null) {
+                return null;
+            }
+            LOG.info("Client : " + dest + " ...");
+            destSocket.configureBlocking(false);
+            final boolean connectedNow = destSocket.connect(new InetSocketAddress(dest.hostName(), dest.port()));
+            int interest = SelectionKey.OP_CONNECT;
+            if (connectedNow) {
+                interest = SelectionKey.OP_READ;
+            }
+            final Selector selector = reactorFor(dest).selector;
+            final SelectionKey key = destSocket.register(selector, interest, new Connection(dest));
+            clientSockets.put(new ClientNode(dest.hostName(), dest.port()), key);
+            LOG.info("Opening new socket at port " + destSocket.socket().getLocalPort());
+            selector.wakeup();
+            return key;
+        }
+    }
+
+    /**
+     * Function to complete a non blocking connect once the selector reports it.
+     *
+     * @param key the key of the connecting socket
+     */
+    private void finishConnect(final SelectionKey key) {
+        final SocketChannel channel = (SocketChannel) key.channel();
+        try {
+            if (channel.finishConnect()) {
+                connected(key);
+            }
+        } catch (IOException ex) {
+            LOG.error("Error while connecting...");
+            LOG.error("Error : " + ex.getMessage());
+            dropConnection(key);
+        }
+    }
+
+    /**
+     * Function to start reading a connected socket and write what was queued while connecting.
+     *
+     * @param key the key of the connected socket
+     */
+    private void connected(final SelectionKey key) {
+        LOG.info("New connection created successfully...");
+        final Connection connection = (Connection) key.attachment();
+        synchronized (connection) {
+            int interest = SelectionKey.OP_READ;
+            if (!connection.queue.isEmpty()) {
+                interest |= SelectionKey.OP_WRITE;
+            }
+            key.interestOps(interest);
+        }
+    }
+
+    /**
+     * Function to write the queued data of a writable socket.
+     *
+     * @param key the key of the socket
+     */
+    private void writeQueued(final SelectionKey key) {
+        final SocketChannel channel = (SocketChannel) key.channel();
+        final Connection connection = (Connection) key.attachment();
+        try {
+            synchronized (connection) {
+                if (flush(channel, connection)) {
+                    key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+                }
+                updateWatermark(connection);
+            }
+        } catch (IOException ex) {
+            LOG.error("Error while sending data...");
+            LOG.error("Error : " + ex.getMessage());
+            dropConnection(key);
+        }
+    }
+
+    /**
+     * Function to write as much of the queue as the socket takes. Callers hold the queue's lock.
+     *
+     * @param channel the connected socket
+     * @param connection the queue of the socket
+     * @return true if the queue is empty
+     * @throws IOException if the write fails
+     */
+    private static boolean flush(final SocketChannel channel, final Connection connection) throws IOException {
+        final ByteBuffer[] gather = connection.gather;
+        while (!connection.queue.isEmpty()) {
+            int count = 0;
+            for (ByteBuffer buffer : connection.queue) {
+                gather[count++] = buffer;
+                if (count == MAX_GATHER) {
+                    break;
+                }
+            }
+            final long written = channel.write(gather, 0, count);
+            Arrays.fill(gather, 0, count, null);
+            connection.queuedBytes -= written;
+            while (!connection.queue.isEmpty() && !connection.queue.peekFirst().hasRemaining()) {
+                connection.queue.pollFirst();
+            }
+            if (written == 0) {
+                // socket buffer is full, the selector resumes once it drains
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Function to update the congestion state of a queue. Callers hold the queue's lock.
+     *
+     * @param connection the queue
+     */
+    private static void updateWatermark(final Connection connection) {
+        if (!connection.congested && connection.queuedBytes > HIGH_WATERMARK) {
+            connection.congested = true;
+            LOG.info("Outbound queue of " + connection.peer + " passed " + HIGH_WATERMARK + " bytes...");
+        } else if (connection.congested && connection.queuedBytes < LOW_WATERMARK) {
+            connection.congested = false;
+            LOG.info("Outbound queue of " + connection.peer + " drained...");
         }
     }
 
     /**
-     * Function to accept new connection.
+     * Function to have the selector write the rest of a queue once the socket is writable.
+     *
+     * @param key the key of the socket
+     */
+    private void watchWritable(final SelectionKey key) {
+        try {
+            if ((key.interestOps() & SelectionKey.OP_WRITE) == 0) {
+                key.interestOpsOr(SelectionKey.OP_WRITE);
+                key.selector().wakeup();
+            }
+        } catch (CancelledKeyException ex) {
+            LOG.info("Connection closed before its data was written...");
+        }
+    }
+
+    /**
+     * Function to close a failed connection and forget it.
+     *
+     * @param key the key of the connection
+     */
+    private void dropConnection(final SelectionKey key) {
+        final SocketChannel channel = (SocketChannel) key.channel();
+        final Connection connection = (Connection) key.attachment();
+        if (connection.readBuffer != null) {
+            readBuffers.release(connection.readBuffer);
+            connection.readBuffer = null;
+        }
+        key.cancel();
+        clientSockets.values().remove(key);
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            LOG.error("Error occurred while closing socket...");
+            LOG.error("Error : " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Function to accept new connection and hand it to the reactor of its shard.
      *
      * @param key the selection key for new connections
      */
@@ -216,11 +687,12 @@ public final class TCPCommunicator implements ProtocolBase {
             final ServerSocketChannel serverSocketChannel = (ServerSocketChannel) key.channel();
             final SocketChannel clientChannel = serverSocketChannel.accept();
             clientChannel.configureBlocking(false);
-            clientChannel.register(selector, SelectionKey.OP_READ);
             final String ip = clientChannel.getRemoteAddress().toString().split(":")[0].replace("/", "");
             final int port = ((InetSocketAddress) clientChannel.getRemoteAddress()).getPort();
             final ClientNode client = new ClientNode(ip, port);
-            clientSockets.put(client, clientChannel);
+            final Selector selector = reactorFor(client).selector;
+            clientSockets.put(client, clientChannel.register(selector, SelectionKey.OP_READ, new Connection(client)));
+            selector.wakeup();
             LOG.info("New connection esthablished...");
             LOG.info("Client " + client + " ...");
         } catch (IOException ex) {
@@ -230,31 +702,76 @@ public final class TCPCommunicator implements ProtocolBase {
     }
 
     /**
-     * Function to read data from available socket.
+     * Function to read data from available socket and split it into packets.
+     * The bytes of an incomplete packet stay in the connection's buffer until the rest arrives.
      *
      * @param key the key for the socket
-     * @return the data ead
+     * @return the complete packets read, null if the connection was closed
      */
-    public byte[] readData(final SelectionKey key) {
+    public List<byte[]> readData(final SelectionKey key) {
+        final SocketChannel clientChannel = (SocketChannel) key.channel();
+        final Connection connection = (Connection) key.attachment();
+        if (connection.readBuffer == null) {
+            connection.readBuffer = readBuffers.acquire();
+        }
+        final ByteBuffer buffer = connection.readBuffer;
         try {
-            final ByteBuffer buffer = ByteBuffer.allocate(byteBufferSize);
-            final SocketChannel clientChannel = (SocketChannel) key.channel();
             final int bytesRead = clientChannel.read(buffer);
             if (bytesRead == -1) {
+                LOG.info("Connection closed by " + connection.peer + "...");
+                dropConnection(key);
                 return null;
             }
-            LOG.error("Bytes read : " + bytesRead);
             buffer.flip();
-            final byte[] data = new byte[bytesRead];
-            buffer.get(data);
-            return data;
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            final List<byte[]> packets = new ArrayList<>();
+            while (buffer.remaining() > LENGTH_BYTES) {
+                final int position = buffer.position();
+                final int len = Short.toUnsignedInt(buffer.getShort(position));
+                if (len <= LENGTH_BYTES) {
+                    throw new IOException("Invalid packet length " + len);
+                }
+                if (buffer.remaining() < len) {
+                    break;
+                }
+                // the one copy of the packet, straight out of the direct buffer
+                final byte[] packet = new byte[len];
+                buffer.get(packet);
+                packets.add(packet);
+            }
+            if (buffer.hasRemaining()) {
+                buffer.compact();
+            } else {
+                connection.readBuffer = null;
+                readBuffers.release(buffer);
+            }
+            return packets;
         } catch (IOException ex) {
             LOG.error("Error occured while reading data...");
             LOG.error("Error : " + ex.getMessage());
+            dropConnection(key);
             return null;
         }
     }
 
+    /**
+     * Function to get the pool the sockets are read into.
+     *
+     * @return the pool of read buffers
+     */
+    BufferPool getReadBuffers() {
+        return readBuffers;
+    }
+
+    /**
+     * Function to get where the packets read go.
+     *
+     * @return the dispatcher of the received packets
+     */
+    ReceiveDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
     /**
      * Function to handle socket on termination.
      */
@@ -262,15 +779,65 @@ public final class TCPCommunicator implements ProtocolBase {
     public void close() {
         try {
             LOG.info("Closing TCP communicator...");
+            flushAll();
             receiveSocket.close();
-            for (SocketChannel socket : clientSockets.values()) {
-                LOG.info("Closing socket of " + socket.getRemoteAddress() + "...");
-                socket.close();
+            for (SelectionKey key : clientSockets.values()) {
+                LOG.info("Closing socket of " + ((Connection) key.attachment()).peer + "...");
+                key.channel().close();
             }
         } catch (IOException ex) {
             LOG.error("Error occured while closing socket...");
             LOG.error("Error : " + ex.getMessage());
         }
+        for (Reactor reactor : reactors) {
+            if (reactor != null) {
+                reactor.stop();
+            }
+        }
+        dispatcher.close();
+    }
+
+    /**
+     * Function to write what is still queued before the sockets are closed, for a bounded time.
+     */
+    private void flushAll() {
+        final long deadline = System.nanoTime() + CLOSE_FLUSH_NANOS;
+        boolean pending = true;
+        while (pending && System.nanoTime() < deadline) {
+            pending = false;
+            for (SelectionKey key : clientSockets.values()) {
+                pending |= !flushBeforeClose(key);
+            }
+            if (pending) {
+                LockSupport.parkNanos(CLOSE_FLUSH_PAUSE_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Function to write the queue of one socket while closing.
+     *
+     * @param key the key of the socket
+     * @return true if nothing is left to write to it
+     */
+    private boolean flushBeforeClose(final SelectionKey key) {
+        if (!key.isValid()) {
+            return true;
+        }
+        final SocketChannel channel = (SocketChannel) key.channel();
+        final Connection connection = (Connection) key.attachment();
+        try {
+            if (channel.isConnectionPending() && !channel.finishConnect()) {
+                return false;
+            }
+            synchronized (connection) {
+                return flush(channel, connection);
+            }
+        } catch (IOException ex) {
+            LOG.error("Error while sending data...");
+            LOG.error("Error : " + ex.getMessage());
+            return true;
+        }
     }
 
     private void printIpAddr(final String ipAddr, final Integer port) {
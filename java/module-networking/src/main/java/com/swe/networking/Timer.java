@@ -11,8 +11,10 @@
 package com.swe.networking;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 import com.swe.core.ClientNode;
@@ -21,6 +23,13 @@ import com.swe.core.logging.SweLoggerFactory;
 
 /**
  * Timer class to monitor client timeouts.
+ *
+ * <p>
+ * Each monitored client has one timer on a {@link TimingWheel}. A packet from the client
+ * only records when it was seen, the timer moves itself forward when it expires and finds
+ * the client was seen since, so no thread is needed per timer and no timer is touched per
+ * packet.
+ * </p>
  */
 public class Timer {
 
@@ -35,24 +44,35 @@ public class Timer {
     private final long timeoutDuration;
 
     /**
-     * List of clients being monitored.
+     * Liveness of the clients being monitored.
      */
-    private final List<ClientNode> clients;
+    private final Map<ClientNode, Liveness> clients;
 
     /**
-     * Map to store the last active time for each client.
+     * Wheel the timeouts are scheduled on.
      */
-    private final HashMap<ClientNode, Long> clientTimeouts;
+    private final TimingWheel wheel;
 
     /**
-     * Thread to run the timer.
+     * Callback function to handle timed out clients.
      */
-    private final Thread timerThread;
+    private final Consumer<ClientNode> onTimeout;
 
     /**
-     * Callback function to handle timed out clients.
+     * When a client was last seen and its timer.
      */
-    private final Consumer<ClientNode> onTimeout;
+    private static final class Liveness {
+
+        /**
+         * {@link System#nanoTime()} of the last packet from the client.
+         */
+        private volatile long lastSeen = System.nanoTime();
+
+        /**
+         * The timer of the client.
+         */
+        private volatile TimingWheel.Timeout timeout;
+    }
 
     /**
      * Constructor for Timer class.
@@ -62,15 +82,22 @@ public class Timer {
      */
     public Timer(final long durationMillis,
             final Consumer<ClientNode> timeoutCallback) {
+        this(durationMillis, timeoutCallback, TimingWheel.getTimingWheel());
+    }
+
+    /**
+     * Constructor for Timer class on a given wheel.
+     *
+     * @param durationMillis the duration for the timeout in milliseconds
+     * @param timeoutCallback the callback function to handle timed out clients
+     * @param wheelArg the wheel to schedule the timeouts on
+     */
+    public Timer(final long durationMillis,
+            final Consumer<ClientNode> timeoutCallback, final TimingWheel wheelArg) {
         this.timeoutDuration = durationMillis;
-        this.clients = new ArrayList<>();
-        this.clientTimeouts = new HashMap<>();
+        this.clients = new ConcurrentHashMap<>();
         this.onTimeout = timeoutCallback;
-        for (ClientNode client : clients) {
-            clientTimeouts.put(client, System.currentTimeMillis());
-        }
-        this.timerThread = new Thread(this::start);
-        this.timerThread.start();
+        this.wheel = wheelArg;
     }
 
     /**
@@ -79,7 +106,10 @@ public class Timer {
      * @param client the client to update
      */
     public void updateTimeout(final ClientNode client) {
-        clientTimeouts.put(client, System.currentTimeMillis());
+        final Liveness liveness = clients.get(client);
+        if (liveness != null) {
+            liveness.lastSeen = System.nanoTime();
+        }
     }
 
     /**
@@ -89,8 +119,12 @@ public class Timer {
      */
     public void addClient(final ClientNode client) {
         LOG.info("Adding client to timer monitoring: " + client);
-        clients.add(client);
-        clientTimeouts.put(client, System.currentTimeMillis());
+        final Liveness liveness = new Liveness();
+        liveness.timeout = wheel.schedule(() -> expire(client, liveness), timeoutDuration, TimeUnit.MILLISECONDS);
+        final Liveness previous = clients.put(client, liveness);
+        if (previous != null) {
+            previous.timeout.cancel();
+        }
     }
 
     /**
@@ -99,8 +133,10 @@ public class Timer {
      * @param client the client to remove
      */
     public void removeClient(final ClientNode client) {
-        clients.remove(client);
-        clientTimeouts.remove(client);
+        final Liveness liveness = clients.remove(client);
+        if (liveness != null) {
+            liveness.timeout.cancel();
+        }
     }
 
     /**
@@ -108,13 +144,10 @@ public class Timer {
      */
     public void checkTimeouts() {
         final List<ClientNode> timedOutClients = new ArrayList<>();
-        final long currentTime = System.currentTimeMillis();
-        synchronized (clients) {
-            // LOG.info("Timer clients " + clients);
-            for (ClientNode c : clients) {
-                if (currentTime - clientTimeouts.get(c) > timeoutDuration) {
-                    timedOutClients.add(c);
-                }
+        final long currentTime = System.nanoTime();
+        for (Map.Entry<ClientNode, Liveness> entry : clients.entrySet()) {
+            if (currentTime - entry.getValue().lastSeen > TimeUnit.MILLISECONDS.toNanos(timeoutDuration)) {
+                timedOutClients.add(entry.getKey());
             }
         }
 
@@ -125,23 +158,33 @@ public class Timer {
     }
 
     /**
-     * Start the timer thread and monitor for timeouts.
+     * Runs when the timer of a client expires.
+     *
+     * @param client the client
+     * @param liveness its liveness when the timer was set
      */
-    public void start() {
-        while (true) {
-            checkTimeouts();
-            try {
-                Thread.sleep(timeoutDuration);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
+    private void expire(final ClientNode client, final Liveness liveness) {
+        if (clients.get(client) != liveness) {
+            return;
+        }
+        final long idle = System.nanoTime() - liveness.lastSeen;
+        final long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutDuration) - idle;
+        if (remaining > 0) {
+            // seen since the timer was set, wait for the rest of the timeout
+            liveness.timeout.reschedule(remaining, TimeUnit.NANOSECONDS);
+            return;
+        }
+        if (clients.remove(client, liveness)) {
+            onTimeout.accept(client);
         }
     }
 
     /**
-     * Close the timer thread.
+     * Stop monitoring all clients.
      */
     public void close() {
-        this.timerThread.interrupt();
+        for (ClientNode client : new ArrayList<>(clients.keySet())) {
+            removeClient(client);
+        }
     }
 }
@@ -0,0 +1,491 @@
+/*
+ * -----------------------------------------------------------------------------
+ *  File: TimingWheel.java
+ *  Owner: Asaduddin ahmed
+ *  Roll Number : 112201021
+ *  Module : Networking
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+package com.swe.networking;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.swe.core.logging.SweLogger;
+import com.swe.core.logging.SweLoggerFactory;
+
+/**
+ * Hashed timing wheel shared by the timers of the networking module.
+ *
+ * <p>
+ * Time is cut into ticks and a timer is kept in the bucket of the tick it expires at,
+ * modulo the number of buckets, along with that tick. Scheduling, rescheduling and
+ * cancelling link or unlink a timer in its bucket in O(1), and in a binary heap ordered by
+ * due tick in O(log n), so the earliest due tick is always at hand. One daemon thread sleeps until
+ * the earliest tick with a timer due and runs the due timers, so tasks must be short: they
+ * may send a packet or queue work, not block. Long lived periodic timers therefore wake it
+ * once per period rather than once per tick, and it sleeps while no timer is active.
+ * </p>
+ */
+public final class TimingWheel {
+
+    /**
+     * Logger for this class.
+     */
+    private static final SweLogger LOG = SweLoggerFactory.getLogger("NETWORKING");
+
+    /**
+     * Tick of the shared wheel.
+     */
+    private static final long DEFAULT_TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * Buckets of the shared wheel, a turn covers 512 ms.
+     */
+    private static final int DEFAULT_WHEEL_SIZE = 512;
+
+    /**
+     * Initial capacity of the due tick heap, it grows as needed.
+     */
+    private static final int INITIAL_HEAP_SIZE = 64;
+
+    /**
+     * The wheel shared by the module.
+     */
+    private static TimingWheel timingWheel = null;
+
+    /**
+     * Length of a tick in nanoseconds.
+     */
+    private final long tickNanos;
+
+    /**
+     * Mask turning a tick into its bucket.
+     */
+    private final int mask;
+
+    /**
+     * Head of the list of timers of each bucket.
+     */
+    private final Timeout[] buckets;
+
+    /**
+     * Linked timers ordered by due tick, earliest first, guarded by this.
+     */
+    private Timeout[] dueHeap = new Timeout[INITIAL_HEAP_SIZE];
+
+    /**
+     * {@link System#nanoTime()} of tick 0.
+     */
+    private final long startTime = System.nanoTime();
+
+    /**
+     * The thread advancing the wheel.
+     */
+    private final Thread worker;
+
+    /**
+     * The next tick to expire, guarded by this.
+     */
+    private long tick;
+
+    /**
+     * Number of scheduled timers, guarded by this.
+     */
+    private int active;
+
+    /**
+     * The tick the worker sleeps until, guarded by this.
+     */
+    private long wakeTick = Long.MAX_VALUE;
+
+    /**
+     * Number of times the worker woke up, guarded by this.
+     */
+    private long wakeups;
+
+    /**
+     * Whether the wheel was closed, guarded by this.
+     */
+    private boolean closed;
+
+    /**
+     * Creates a wheel and starts its thread.
+     *
+     * @param tick the length of a tick, timers expire on tick boundaries
+     * @param unit the unit of the tick
+     * @param wheelSize the number of buckets, rounded up to a power of two
+     */
+    public TimingWheel(final long tick, final TimeUnit unit, final int wheelSize) {
+        this.tickNanos = Math.max(1, unit.toNanos(tick));
+        final int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.mask = size - 1;
+        this.buckets = new Timeout[size];
+        this.worker = new Thread(this::run, "timing-wheel");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Function to get the wheel shared by the module.
+     *
+     * @return the shared wheel
+     */
+    public static synchronized TimingWheel getTimingWheel() {
+        if (timingWheel == null) {
+            timingWheel = new TimingWheel(DEFAULT_TICK_NANOS, TimeUnit.NANOSECONDS, DEFAULT_WHEEL_SIZE);
+        }
+        return timingWheel;
+    }
+
+    /**
+     * A task scheduled on the wheel.
+     */
+    public final class Timeout {
+
+        /**
+         * The task to run.
+         */
+        private final Runnable task;
+
+        /**
+         * Period of a repeating timer, 0 for a one shot one.
+         */
+        private final long periodNanos;
+
+        /**
+         * When the timer is due, in nanoseconds from {@link #startTime}.
+         */
+        private long deadline;
+
+        /**
+         * The tick the timer expires at.
+         */
+        private long dueTick;
+
+        /**
+         * The bucket the timer is linked in, -1 while it is not scheduled.
+         */
+        private int bucket = -1;
+
+        /**
+         * Position of the timer in the due tick heap, -1 while it is not scheduled.
+         */
+        private int heapIndex = -1;
+
+        /**
+         * Previous timer of the bucket.
+         */
+        private Timeout prev;
+
+        /**
+         * Next timer of the bucket.
+         */
+        private Timeout next;
+
+        private Timeout(final Runnable taskArg, final long periodNanosArg) {
+            this.task = taskArg;
+            this.periodNanos = periodNanosArg;
+        }
+
+        /**
+         * Cancels the timer, it is not run afterwards unless rescheduled.
+         *
+         * @return true if it was scheduled
+         */
+        public boolean cancel() {
+            synchronized (TimingWheel.this) {
+                if (bucket < 0) {
+                    return false;
+                }
+                unlink(this);
+                return true;
+            }
+        }
+
+        /**
+         * Moves the timer to a new delay from now, scheduling it again if it was cancelled or ran.
+         *
+         * @param delay the new delay
+         * @param unit the unit of the delay
+         */
+        public void reschedule(final long delay, final TimeUnit unit) {
+            synchronized (TimingWheel.this) {
+                if (bucket >= 0) {
+                    unlink(this);
+                }
+                if (!closed) {
+                    deadline = elapsed() + unit.toNanos(delay);
+                    link(this);
+                }
+            }
+        }
+
+        /**
+         * Whether the timer is waiting to run.
+         *
+         * @return true if scheduled
+         */
+        public boolean isActive() {
+            synchronized (TimingWheel.this) {
+                return bucket >= 0;
+            }
+        }
+    }
+
+    /**
+     * Runs a task once after a delay.
+     *
+     * @param task the task
+     * @param delay the delay
+     * @param unit the unit of the delay
+     * @return the handle to cancel or reschedule it
+     */
+    public Timeout schedule(final Runnable task, final long delay, final TimeUnit unit) {
+        final Timeout timeout = new Timeout(task, 0);
+        timeout.reschedule(delay, unit);
+        return timeout;
+    }
+
+    /**
+     * Runs a task every period, starting a period from now, until it is cancelled.
+     *
+     * @param task the task
+     * @param period the period
+     * @param unit the unit of the period
+     * @return the handle to cancel it
+     */
+    public Timeout scheduleAtFixedRate(final Runnable task, final long period, final TimeUnit unit) {
+        final Timeout timeout = new Timeout(task, Math.max(tickNanos, unit.toNanos(period)));
+        timeout.reschedule(period, unit);
+        return timeout;
+    }
+
+    /**
+     * Number of timers waiting to run.
+     *
+     * @return the count
+     */
+    public synchronized int getActiveTimers() {
+        return active;
+    }
+
+    /**
+     * Number of times the worker woke up, to check that it sleeps between deadlines.
+     *
+     * @return the count
+     */
+    synchronized long getWakeups() {
+        return wakeups;
+    }
+
+    /**
+     * Stops the wheel, its timers are not run anymore.
+     */
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            for (int i = 0; i < buckets.length; i++) {
+                while (buckets[i] != null) {
+                    unlink(buckets[i]);
+                }
+            }
+            notifyAll();
+        }
+        worker.interrupt();
+    }
+
+    private long elapsed() {
+        return System.nanoTime() - startTime;
+    }
+
+    /**
+     * Links a timer in the bucket of its deadline, caller holds the lock.
+     *
+     * @param timeout the timer, not linked
+     */
+    private void link(final Timeout timeout) {
+        if (active == 0) {
+            // nothing is linked, skip the ticks the worker slept through
+            tick = Math.max(tick, elapsed() / tickNanos);
+        }
+        // the tick whose end is at or after the deadline, never one already expired
+        final long due = Math.max(tick, (timeout.deadline + tickNanos - 1) / tickNanos - 1);
+        if (due < wakeTick) {
+            // due before the worker wakes up
+            notifyAll();
+        }
+        timeout.dueTick = due;
+        timeout.bucket = (int) (due & mask);
+        timeout.prev = null;
+        timeout.next = buckets[timeout.bucket];
+        if (timeout.next != null) {
+            timeout.next.prev = timeout;
+        }
+        buckets[timeout.bucket] = timeout;
+        if (active == dueHeap.length) {
+            dueHeap = Arrays.copyOf(dueHeap, active * 2);
+        }
+        timeout.heapIndex = active;
+        dueHeap[active] = timeout;
+        active++;
+        siftUp(timeout.heapIndex);
+    }
+
+    /**
+     * Unlinks a timer from its bucket, caller holds the lock.
+     *
+     * @param timeout the timer, linked
+     */
+    private void unlink(final Timeout timeout) {
+        if (timeout.prev == null) {
+            buckets[timeout.bucket] = timeout.next;
+        } else {
+            timeout.prev.next = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.bucket = -1;
+        active--;
+        final int index = timeout.heapIndex;
+        timeout.heapIndex = -1;
+        final Timeout last = dueHeap[active];
+        dueHeap[active] = null;
+        if (last != timeout) {
+            // move the last timer into the hole and restore the order around it
+            dueHeap[index] = last;
+            last.heapIndex = index;
+            siftDown(index);
+            siftUp(last.heapIndex);
+        }
+    }
+
+    /**
+     * Moves a heap entry towards the root while it is due before its parent, caller holds the lock.
+     *
+     * @param start the index of the entry
+     */
+    private void siftUp(final int start) {
+        final Timeout timeout = dueHeap[start];
+        int index = start;
+        while (index > 0) {
+            final int parent = (index - 1) >>> 1;
+            if (dueHeap[parent].dueTick <= timeout.dueTick) {
+                break;
+            }
+            dueHeap[index] = dueHeap[parent];
+            dueHeap[index].heapIndex = index;
+            index = parent;
+        }
+        dueHeap[index] = timeout;
+        timeout.heapIndex = index;
+    }
+
+    /**
+     * Moves a heap entry towards the leaves while a child is due before it, caller holds the lock.
+     *
+     * @param start the index of the entry
+     */
+    private void siftDown(final int start) {
+        final Timeout timeout = dueHeap[start];
+        int index = start;
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= active) {
+                break;
+            }
+            if (child + 1 < active && dueHeap[child + 1].dueTick < dueHeap[child].dueTick) {
+                child++;
+            }
+            if (timeout.dueTick <= dueHeap[child].dueTick) {
+                break;
+            }
+            dueHeap[index] = dueHeap[child];
+            dueHeap[index].heapIndex = index;
+            index = child;
+        }
+        dueHeap[index] = timeout;
+        timeout.heapIndex = index;
+    }
+
+    /**
+     * Takes the timers due at the current tick and moves to the next one, caller holds the lock.
+     *
+     * @return the tasks to run
+     */
+    private List<Runnable> expire() {
+        final List<Runnable> due = new ArrayList<>();
+        final List<Timeout> repeating = new ArrayList<>();
+        Timeout timeout = buckets[(int) (tick & mask)];
+        while (timeout != null) {
+            final Timeout next = timeout.next;
+            if (timeout.dueTick <= tick) {
+                unlink(timeout);
+                due.add(timeout.task);
+                if (timeout.periodNanos > 0) {
+                    repeating.add(timeout);
+                }
+            }
+            timeout = next;
+        }
+        tick++;
+        for (Timeout again : repeating) {
+            // linked after the bucket was walked so it is not seen twice
+            again.deadline += again.periodNanos;
+            link(again);
+        }
+        return due;
+    }
+
+    private void run() {
+        try {
+            List<Runnable> due = nextDue();
+            while (due != null) {
+                for (Runnable task : due) {
+                    try {
+                        task.run();
+                    } catch (RuntimeException e) {
+                        LOG.error("Timer task failed", e);
+                    }
+                }
+                due = nextDue();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits for the end of the earliest tick with a timer due and takes its due timers.
+     * The ticks skipped on the way have no timer due, linking an earlier one wakes the worker.
+     *
+     * @return the tasks to run, null once the wheel is closed
+     * @throws InterruptedException if the worker is interrupted
+     */
+    private synchronized List<Runnable> nextDue() throws InterruptedException {
+        while (!closed) {
+            wakeups++;
+            if (active == 0) {
+                wakeTick = Long.MAX_VALUE;
+                wait();
+                continue;
+            }
+            final long next = dueHeap[0].dueTick;
+            final long wait = (next + 1) * tickNanos - elapsed();
+            if (wait <= 0) {
+                tick = next;
+                return expire();
+            }
+            wakeTick = next;
+            TimeUnit.NANOSECONDS.timedWait(this, wait);
+        }
+        return null;
+    }
+}
@@ -11,8 +11,13 @@
 package com.swe.networking;
 
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 import com.swe.core.ClientNode;
 import com.swe.core.logging.SweLogger;
@@ -21,6 +26,15 @@ import com.swe.core.logging.SweLoggerFactory;
 /**
  * The main architecture of the networking module. Implements the cluster
  * networks
+ *
+ * <p>
+ * The clusters are kept in an immutable {@link View} together with an index from
+ * each client to its cluster. Membership changes are serialised, copy the view,
+ * update the index for the clients they touch and publish the copy, so the per
+ * packet lookups ({@link #getServer}, {@link #getClusterIndex},
+ * {@link #getNetworkType}) are hash lookups on the current view that never wait
+ * for a membership change.
+ * </p>
  */
 public final class Topology implements AbstractTopology {
 
@@ -35,19 +49,9 @@ public final class Topology implements AbstractTopology {
     private static final String MODULENAME = "[TOPOLOGY]";
 
     /**
-     * The List of all cluster clients.
-     *
-     */
-    private List<List<ClientNode>> clusters;
-    /**
-     * The List of all servers of all clusters.
+     * The current clusters, servers and client index, replaced on every membership change.
      */
-    private List<ClientNode> clusterServers;
-    /**
-     * The total number of clusters.
-     *
-     */
-    private int numClusters = 0;
+    private volatile View view = View.EMPTY;
     /**
      * The total number of clients.
      *
@@ -73,9 +77,23 @@ public final class Topology implements AbstractTopology {
      */
     private P2PUser user = null;
 
+    /**
+     * An immutable state of the network.
+     *
+     * @param clusters the clients of every cluster
+     * @param servers the server of every cluster
+     * @param clusterOf the cluster index of every client
+     */
+    private record View(List<List<ClientNode>> clusters, List<ClientNode> servers,
+                        Map<ClientNode, Integer> clusterOf) {
+
+        /**
+         * The network without any cluster.
+         */
+        static final View EMPTY = new View(List.of(), List.of(), Map.of());
+    }
+
     private Topology() {
-        clusters = new ArrayList<>();
-        clusterServers = new ArrayList<>();
     }
 
     /**
@@ -93,25 +111,18 @@ public final class Topology implements AbstractTopology {
     }
 
     /**
-     * Function returns the cluster server in which the client is present. TODO
-     * Update all the functions.
+     * Function returns the cluster server in which the client is present.
      *
      * @param dest The ip address of the destination client
      */
     @Override
     public ClientNode getServer(final ClientNode dest) {
-        ClientNode node = null;
-        for (int i = 0; i < numClusters; i++) {
-            final List<ClientNode> clients = clusters.get(i);
-            for (int j = 0; j < clients.size(); j++) {
-                final ClientNode client = clients.get(j);
-                if (client.equals(dest)) {
-                    node = clusterServers.get(i);
-                    return node;
-                }
-            }
+        final View current = view;
+        final Integer idx = current.clusterOf().get(dest);
+        if (idx == null || idx >= current.servers().size()) {
+            return null;
         }
-        return node;
+        return current.servers().get(idx);
     }
 
     /**
@@ -127,11 +138,7 @@ public final class Topology implements AbstractTopology {
         if (deviceAddress.equals(mainServerAddress)) {
             LOG.info("Device " + deviceAddress + " is considered as the main Server");
             user = new MainServer(deviceAddress, mainServerAddress);
-            final List<ClientNode> cluster = new ArrayList<>();
-            cluster.add(deviceAddress);
-            clusters.add(cluster);
-            clusterServers.add(deviceAddress);
-            numClusters = 1;
+            addCluster(deviceAddress);
             numClients = 1;
         } else {
             try {
@@ -154,11 +161,12 @@ public final class Topology implements AbstractTopology {
         final List<List<ClientNode>> clients = new ArrayList<>();
         final List<ClientNode> servers = new ArrayList<>();
         final NetworkStructure structure = new NetworkStructure(clients, servers);
-        LOG.info("Clusters: " + clusters);
-        LOG.info("Cluster servers: " + clusterServers);
-        for (int i = 0; i < clusters.size(); i++) {
-            structure.clusters().add(clusters.get(i));
-            structure.servers().add(clusterServers.get(i));
+        final View current = view;
+        LOG.info("Clusters: " + current.clusters());
+        LOG.info("Cluster servers: " + current.servers());
+        for (int i = 0; i < current.clusters().size(); i++) {
+            structure.clusters().add(new ArrayList<>(current.clusters().get(i)));
+            structure.servers().add(current.servers().get(i));
         }
         return structure;
     }
@@ -168,8 +176,7 @@ public final class Topology implements AbstractTopology {
      */
     public void closeTopology() {
         user.close();
-        clusters = new ArrayList<>();
-        clusterServers = new ArrayList<>();
+        view = View.EMPTY;
         LOG.info("Closing topology...");
     }
 
@@ -180,22 +187,19 @@ public final class Topology implements AbstractTopology {
      *
      * @return the index of cluster it is added to
      */
-    public int addClient(final ClientNode clientAddress) {
+    public synchronized int addClient(final ClientNode clientAddress) {
         numClients += 1;
 
-        final List<ClientNode> lastCluster = clusters.get(clusters.size() - 1);
+        final View current = view;
+        final int last = current.clusters().size() - 1;
+        final List<ClientNode> lastCluster = current.clusters().get(last);
         if (lastCluster.size() < singleClusterSize) {
-            lastCluster.add(clientAddress);
-            LOG.info("Added to cluster " + (numClusters - 1) + " ...");
-            return numClusters - 1;
+            addToCluster(current, last, clientAddress);
+            LOG.info("Added to cluster " + last + " ...");
+            return last;
         } else {
-            final List<ClientNode> cluster = new ArrayList<>();
-            cluster.add(clientAddress);
-            clusters.add(cluster);
-            clusterServers.add(clientAddress);
-            numClusters++;
             LOG.info("Adding to a new cluster...");
-            return numClusters - 1;
+            return addCluster(clientAddress);
         }
     }
 
@@ -204,10 +208,10 @@ public final class Topology implements AbstractTopology {
      *
      * @param client the details of the new client
      */
-    public void updateNetwork(final ClientNetworkRecord client) {
+    public synchronized void updateNetwork(final ClientNetworkRecord client) {
         final int idx = client.clusterIndex();
         final ClientNode newClient = client.client();
-        clusters.get(idx).add(newClient);
+        addToCluster(view, idx, newClient);
         LOG.info("Updated network by adding client " + newClient + " to cluster " + idx);
     }
 
@@ -216,23 +220,32 @@ public final class Topology implements AbstractTopology {
      *
      * @param client the details of the client
      */
-    public void removeClient(final ClientNetworkRecord client) {
+    public synchronized void removeClient(final ClientNetworkRecord client) {
         final int idx = client.clusterIndex();
         final ClientNode removeClient = client.client();
-        clusters.get(idx).remove(removeClient);
+        final View current = view;
+        final List<List<ClientNode>> clusters = new ArrayList<>(current.clusters());
+        final List<ClientNode> clusterServers = new ArrayList<>(current.servers());
+        final List<ClientNode> cluster = new ArrayList<>(clusters.get(idx));
+        cluster.remove(removeClient);
+        clusters.set(idx, Collections.unmodifiableList(cluster));
         numClients -= 1;
-        if (clusterServers.contains(removeClient)) {
-            if (!clusters.get(idx).isEmpty()) {
-                final ClientNode newServer = clusters.get(idx).get(0);
-                clusterServers.set(idx, newServer);
-                LOG.info("A new server has been decided\n");
-                return;
-            }
+        if (clusterServers.contains(removeClient) && cluster.isEmpty()) {
             clusters.remove(idx);
             clusterServers.remove(removeClient);
+            // the clusters after it moved down, index them again
+            view = index(clusters, clusterServers);
             LOG.info("Removed " + removeClient + "from the server list...");
-            // numClusters -= 1;
+            return;
+        }
+        if (clusterServers.contains(removeClient)) {
+            clusterServers.set(idx, cluster.get(0));
+            LOG.info("A new server has been decided\n");
         }
+        final Map<ClientNode, Integer> clusterOf = new HashMap<>(current.clusterOf());
+        clusterOf.remove(removeClient, idx);
+        view = new View(Collections.unmodifiableList(clusters), Collections.unmodifiableList(clusterServers),
+                Collections.unmodifiableMap(clusterOf));
     }
 
     /**
@@ -240,20 +253,76 @@ public final class Topology implements AbstractTopology {
      *
      * @param network the new network structure
      */
-    public void replaceNetwork(final NetworkStructure network) {
-        clusters.clear();
-        clusterServers.clear();
+    public synchronized void replaceNetwork(final NetworkStructure network) {
+        final List<List<ClientNode>> clusters = new ArrayList<>();
+        final List<ClientNode> clusterServers = new ArrayList<>();
+        numClients = 0;
         for (int i = 0; i < network.clusters().size(); i++) {
-            clusters.add(network.clusters().get(i));
+            final List<ClientNode> cluster = network.clusters().get(i);
+            clusters.add(Collections.unmodifiableList(new ArrayList<>(cluster)));
             clusterServers.add(network.servers().get(i));
-        }
-        numClusters = network.clusters().size();
-        numClients = 0;
-        for (List<ClientNode> cluster : clusters) {
             numClients += cluster.size();
         }
+        view = index(clusters, clusterServers);
         LOG.info("Replaced network structure. New number of clusters: "
-                + numClusters + ", New number of clients: " + numClients);
+                + clusters.size() + ", New number of clients: " + numClients);
+    }
+
+    /**
+     * Function to add a cluster served by the given client.
+     *
+     * @param server the first client and server of the cluster
+     * @return the index of the new cluster
+     */
+    private synchronized int addCluster(final ClientNode server) {
+        final View current = view;
+        final int idx = current.clusters().size();
+        final List<List<ClientNode>> clusters = new ArrayList<>(current.clusters());
+        clusters.add(List.of(server));
+        final List<ClientNode> clusterServers = new ArrayList<>(current.servers());
+        clusterServers.add(server);
+        final Map<ClientNode, Integer> clusterOf = new HashMap<>(current.clusterOf());
+        clusterOf.putIfAbsent(server, idx);
+        view = new View(Collections.unmodifiableList(clusters), Collections.unmodifiableList(clusterServers),
+                Collections.unmodifiableMap(clusterOf));
+        return idx;
+    }
+
+    /**
+     * Function to publish a copy of the view with a client appended to a cluster.
+     *
+     * @param current the view to copy
+     * @param idx the index of the cluster
+     * @param client the client to add
+     */
+    private void addToCluster(final View current, final int idx, final ClientNode client) {
+        final List<List<ClientNode>> clusters = new ArrayList<>(current.clusters());
+        final List<ClientNode> cluster = new ArrayList<>(clusters.get(idx));
+        cluster.add(client);
+        clusters.set(idx, Collections.unmodifiableList(cluster));
+        final Map<ClientNode, Integer> clusterOf = new HashMap<>(current.clusterOf());
+        clusterOf.putIfAbsent(client, idx);
+        view = new View(Collections.unmodifiableList(clusters), current.servers(),
+                Collections.unmodifiableMap(clusterOf));
+    }
+
+    /**
+     * Function to build a view indexing every client of the given clusters.
+     *
+     * @param clusters the clients of every cluster
+     * @param clusterServers the server of every cluster
+     * @return the view
+     */
+    private static View index(final List<List<ClientNode>> clusters, final List<ClientNode> clusterServers) {
+        final Map<ClientNode, Integer> clusterOf = new HashMap<>();
+        for (int i = 0; i < clusters.size(); i++) {
+            for (ClientNode client : clusters.get(i)) {
+                // a client listed twice belongs to the first cluster, as the scans used to find
+                clusterOf.putIfAbsent(client, i);
+            }
+        }
+        return new View(Collections.unmodifiableList(clusters), Collections.unmodifiableList(clusterServers),
+                Collections.unmodifiableMap(clusterOf));
     }
 
     /**
@@ -263,12 +332,11 @@ public final class Topology implements AbstractTopology {
      * @return the cluster index of the client
      */
     public int getClusterIndex(final ClientNode client) {
-        for (int i = 0; i < clusters.size(); i++) {
-            if (clusters.get(i).contains(client)) {
-                return i;
-            }
+        final Integer idx = view.clusterOf().get(client);
+        if (idx == null) {
+            return -1;
         }
-        return -1;
+        return idx;
     }
 
     /**
@@ -278,6 +346,7 @@ public final class Topology implements AbstractTopology {
      * @return list of all clients in the cluster
      */
     public List<ClientNode> getClients(final int index) {
+        final List<List<ClientNode>> clusters = view.clusters();
         if (index >= clusters.size() || index < 0) {
             return null;
         }
@@ -287,10 +356,10 @@ public final class Topology implements AbstractTopology {
     /**
      * Function to get all the cluster servers.
      *
-     * @return list of all cluster servers.
+     * @return list of all cluster servers, it does not change with the network.
      */
     public List<ClientNode> getAllClusterServers() {
-        return clusterServers;
+        return view.servers();
     }
 
     /**
@@ -300,10 +369,8 @@ public final class Topology implements AbstractTopology {
      */
     public List<ClientNode> getAllClients() {
         final List<ClientNode> clients = new ArrayList<>();
-        for (List<ClientNode> cluster : clusters) {
-            for (ClientNode client : cluster) {
-                clients.add(client);
-            }
+        for (List<ClientNode> cluster : view.clusters()) {
+            clients.addAll(cluster);
         }
         return clients;
     }
@@ -316,9 +383,8 @@ public final class Topology implements AbstractTopology {
      * @return the type number
      */
     public int getNetworkType(final ClientNode source, final ClientNode dest) {
-        final int srcClusterIdx = getClusterIndex(source);
-        final int destClusterIdx = getClusterIndex(dest);
-        if (srcClusterIdx == destClusterIdx) {
+        final Map<ClientNode, Integer> clusterOf = view.clusterOf();
+        if (Objects.equals(clusterOf.get(source), clusterOf.get(dest))) {
             return NetworkType.USE.ordinal();
         } else {
             return NetworkType.OTHERCLUSTER.ordinal();
@@ -333,15 +399,15 @@ public final class Topology implements AbstractTopology {
      * @return the destination to send to
      */
     public ClientNode getDestination(final ClientNode source, final ClientNode dest) {
-        final int srcClusterIdx = getClusterIndex(source);
-        final int destClusterIdx = getClusterIndex(dest);
-        LOG.info("Netowkr " + topology.getNetwork());
-        if (srcClusterIdx == destClusterIdx) {
+        final View current = view;
+        final Integer srcClusterIdx = current.clusterOf().get(source);
+        final Integer destClusterIdx = current.clusterOf().get(dest);
+        if (Objects.equals(srcClusterIdx, destClusterIdx)) {
             return dest;
-        } else {
-            final ClientNode destServer = getServer(dest);
-            return destServer;
+        } else if (destClusterIdx == null || destClusterIdx >= current.servers().size()) {
+            return null;
         }
+        return current.servers().get(destClusterIdx);
     }
 
     /**
@@ -358,6 +424,32 @@ public final class Topology implements AbstractTopology {
         }
     }
 
+    /**
+     * Function to send a chunk whose payload is shared with the chunks of other destinations.
+     *
+     * @param header the header of the chunk
+     * @param payload the shared read only payload
+     * @param dest the destination of the chunk
+     */
+    public void sendPacket(final byte[] header, final ByteBuffer payload, final ClientNode dest) {
+        try {
+            user.send(header, payload, dest);
+        } catch (Exception e) {
+            LOG.info("Exception occured: " + e.getMessage() + " Closing topology...");
+        }
+    }
+
+    /**
+     * Function to check whether the next hop to a destination keeps up with the data sent to it.
+     *
+     * @param dest the destination of the data
+     * @return false while too much data to its next hop is waiting to be written
+     */
+    public boolean canSend(final ClientNode dest) {
+        final P2PUser current = user;
+        return current == null || current.canSend(dest);
+    }
+
     /**
      * Function to check if a client is present in the topology (any cluster).
      *
@@ -365,11 +457,6 @@ public final class Topology implements AbstractTopology {
      * @return true if client present, false otherwise
      */
     boolean checkClientPresent(final ClientNode client) {
-        for (List<ClientNode> cluster : clusters) {
-            if (cluster.contains(client)) {
-                return true;
-            }
-        }
-        return false;
+        return view.clusterOf().containsKey(client);
     }
 }
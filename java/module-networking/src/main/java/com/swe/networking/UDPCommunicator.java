@@ -0,0 +1,926 @@
+/*
+ * -----------------------------------------------------------------------------
+ *  File: UDPCommunicator.java
+ *  Owner: Loganath
+ *  Roll Number : 112201016
+ *  Module : Networking
+ *
+ * -----------------------------------------------------------------------------
+ */
+
+package com.swe.networking;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.UnresolvedAddressException;
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+
+import com.swe.core.ClientNode;
+import com.swe.core.logging.SweLogger;
+import com.swe.core.logging.SweLoggerFactory;
+
+/**
+ * Communicator class module for UDP, for real time media.
+ *
+ * <p>
+ * Every packet goes in one datagram of its own, so a lost packet only loses itself instead
+ * of holding up the packets behind it as a lost TCP segment does. Datagrams carry a sequence
+ * number per peer; the receiver drops duplicates and stale datagrams and hands the others on
+ * in the order they arrive.
+ * </p>
+ *
+ * <p>
+ * Packets at or above the protected priority, keyframes and control messages, are kept by the
+ * sender for a while and numbered apart from the others, so a gap in the kept numbers is
+ * always a datagram the sender can resend. After sending kept datagrams the sender announces
+ * the newest kept sequence number a few times, so a lost last datagram, such as the end of a
+ * full image or a lone control message, shows up as a gap as well. The receiver asks again for
+ * the kept sequence numbers it is missing a few times (NACK) and gives up on them after that.
+ * Gaps in the other numbers are only counted as lost, they are never asked for.
+ * </p>
+ *
+ * <p>
+ * Datagrams are written by one pacing thread through a token bucket, so a large frame goes
+ * out at the pacing rate instead of as one burst that overflows the switch and the receive
+ * buffer of the peer. When the queue is full the oldest datagrams are dropped.
+ * </p>
+ */
+public final class UDPCommunicator implements ProtocolBase {
+
+    /**
+     * Counters of the communicator.
+     *
+     * @param sent the datagrams written
+     * @param received the data datagrams handed on
+     * @param retransmitted the datagrams resent for a NACK
+     * @param nacked the kept sequence numbers asked for again
+     * @param lost the sequence numbers given up on
+     * @param dropped the datagrams dropped by the full send queue
+     */
+    public record Stats(long sent, long received, long retransmitted, long nacked, long lost, long dropped) {
+    }
+
+    /**
+     * Variable to store the name of the module.
+     */
+    private static final SweLogger LOG = SweLoggerFactory.getLogger("NETWORKING");
+
+    /**
+     * The module name.
+     */
+    private static final String MODULENAME = "[UDPCOMMUNICATOR]";
+
+    /**
+     * Kind of a datagram carrying a packet.
+     */
+    private static final byte KIND_DATA = 0;
+
+    /**
+     * Kind of a datagram listing missing sequence numbers.
+     */
+    private static final byte KIND_NACK = 1;
+
+    /**
+     * Kind of a datagram announcing the newest kept sequence number sent.
+     */
+    private static final byte KIND_TAIL = 2;
+
+    /**
+     * Flag of a datagram kept by its sender for a NACK.
+     */
+    private static final byte FLAG_PROTECTED = 1;
+
+    /**
+     * Flag of a datagram resent for a NACK.
+     */
+    private static final byte FLAG_RETRANSMIT = 2;
+
+    /**
+     * Offset of the flags of a datagram.
+     */
+    private static final int FLAGS_OFFSET = 1;
+
+    /**
+     * Offset of the sequence number of a data datagram, or of the count of a NACK.
+     */
+    private static final int FIELD_OFFSET = 2;
+
+    /**
+     * Bytes before the packet in a data datagram: kind, flags and sequence number.
+     */
+    private static final int DATA_HEADER = 6;
+
+    /**
+     * Bytes before the sequence numbers in a NACK: kind, flags and count.
+     */
+    private static final int NACK_HEADER = 4;
+
+    /**
+     * Mask of an unsigned short.
+     */
+    private static final int SHORT_MASK = 0xFFFF;
+
+    /**
+     * Largest UDP payload.
+     */
+    private static final int MAX_DATAGRAM = 65_507;
+
+    /**
+     * Most sequence numbers in one NACK.
+     */
+    private static final int MAX_NACK_SEQUENCES = (MAX_DATAGRAM - NACK_HEADER) / Integer.BYTES;
+
+    /**
+     * Most protected datagrams kept for NACKs per peer.
+     */
+    private static final int HISTORY = 512;
+
+    /**
+     * Most bytes of protected datagrams kept for NACKs per peer.
+     */
+    private static final long HISTORY_BYTES = 2L * 1024 * 1024;
+
+    /**
+     * How far behind the newest datagram of a peer a late one is still taken.
+     */
+    private static final int WINDOW = 1024;
+
+    /**
+     * How often a missing sequence number is asked for before it is given up on.
+     */
+    private static final int MAX_NACK_ATTEMPTS = 3;
+
+    /**
+     * How often the newest kept sequence number is announced after the last kept datagram.
+     */
+    private static final int TAIL_ANNOUNCEMENTS = 3;
+
+    /**
+     * Period of the NACKs for missing sequence numbers and of the tail announcements.
+     */
+    private static final long NACK_INTERVAL_MS = 20;
+
+    /**
+     * Bytes waiting to be written above which the oldest datagrams are dropped.
+     */
+    private static final long MAX_QUEUED_BYTES = 8L * 1024 * 1024;
+
+    /**
+     * Most bytes written in one burst while pacing.
+     */
+    private static final long BURST_BYTES = 64L * 1024;
+
+    /**
+     * Highest pacing rate, keeps the token arithmetic in range.
+     */
+    private static final long MAX_PACING_RATE = 1L << 30;
+
+    /**
+     * Nanoseconds in a second.
+     */
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * How long {@link #receiveData} waits for a packet.
+     */
+    private static final long POLL_TIMEOUT_MS = 1000;
+
+    /**
+     * The socket every datagram is written and read on.
+     */
+    private final DatagramChannel channel;
+
+    /**
+     * Where the received packets go.
+     */
+    private final ReceiveDispatcher dispatcher = new ReceiveDispatcher();
+
+    /**
+     * The sequence numbers, kept datagrams and receive window of every peer.
+     */
+    private final Map<ClientNode, Peer> peers = new ConcurrentHashMap<>();
+
+    /**
+     * Datagrams waiting for the pacing thread, guarded by itself.
+     */
+    private final ArrayDeque<Outgoing> outgoing = new ArrayDeque<>();
+
+    /**
+     * Bytes of the datagrams waiting, guarded by {@link #outgoing}.
+     */
+    private long queuedBytes;
+
+    /**
+     * Tokens of the bucket in bytes, only used by the pacing thread.
+     */
+    private long tokens = BURST_BYTES;
+
+    /**
+     * When the bucket was last filled, only used by the pacing thread.
+     */
+    private long lastRefill = System.nanoTime();
+
+    /**
+     * Bytes per second written, 0 to write as fast as the socket takes them.
+     */
+    private volatile long pacingRate;
+
+    /**
+     * Lowest priority level whose packets are kept for NACKs.
+     */
+    private volatile int protectedPriority = PriorityQueue.PacketPriority.ONE.ordinal();
+
+    /**
+     * Which first transmissions are dropped, to simulate loss.
+     */
+    private volatile IntPredicate loss = sequence -> false;
+
+    /**
+     * The timer sending the NACKs.
+     */
+    private final TimingWheel.Timeout nackTimer;
+
+    /**
+     * Whether the communicator was closed.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Datagrams written.
+     */
+    private final AtomicLong sent = new AtomicLong();
+
+    /**
+     * Data datagrams handed on.
+     */
+    private final AtomicLong received = new AtomicLong();
+
+    /**
+     * Datagrams resent for a NACK.
+     */
+    private final AtomicLong retransmitted = new AtomicLong();
+
+    /**
+     * Kept sequence numbers asked for again.
+     */
+    private final AtomicLong nacked = new AtomicLong();
+
+    /**
+     * Sequence numbers given up on.
+     */
+    private final AtomicLong lost = new AtomicLong();
+
+    /**
+     * Datagrams dropped by the full send queue.
+     */
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * A datagram waiting to be written.
+     *
+     * @param datagram the datagram
+     * @param address where it goes
+     */
+    private record Outgoing(byte[] datagram, InetSocketAddress address) {
+    }
+
+    /**
+     * The receive window of one sequence space of a peer, guarded by the peer.
+     */
+    private static final class Window {
+        /**
+         * Whether gaps are remembered to be asked for, only for the kept datagrams.
+         */
+        private final boolean recover;
+
+        /**
+         * Whether a datagram was received in this space.
+         */
+        private boolean started;
+
+        /**
+         * Newest sequence number received.
+         */
+        private int highest;
+
+        /**
+         * Sequence numbers of the window received, by sequence number modulo the window.
+         */
+        private final BitSet seen = new BitSet(WINDOW);
+
+        /**
+         * Missing sequence numbers and how often they were asked for.
+         */
+        private final LinkedHashMap<Integer, Integer> missing = new LinkedHashMap<>();
+
+        /**
+         * Creates a window.
+         *
+         * @param recoverArg whether gaps are asked for
+         */
+        Window(final boolean recoverArg) {
+            this.recover = recoverArg;
+        }
+
+        /**
+         * Records a received sequence number.
+         *
+         * @param sequence the sequence number
+         * @param lostCounter counts the gaps that are not asked for
+         * @return false if the datagram is a duplicate or too late
+         */
+        boolean accept(final int sequence, final AtomicLong lostCounter) {
+            final int ahead = sequence - highest;
+            if (!started || ahead > WINDOW || -ahead >= WINDOW) {
+                // the first datagram, or the peer jumped past the window or started over
+                restart(sequence, ahead, lostCounter);
+                seen.set(slot(sequence));
+                return true;
+            }
+            if (ahead > 0) {
+                skipTo(sequence, lostCounter);
+                seen.set(slot(sequence));
+                return true;
+            }
+            if (seen.get(slot(sequence))) {
+                return false;
+            }
+            seen.set(slot(sequence));
+            missing.remove(sequence);
+            return true;
+        }
+
+        /**
+         * Records the newest sequence number the peer announced sending, so the ones after the
+         * newest received are missing too.
+         *
+         * @param newest the newest sequence number sent
+         * @param lostCounter counts the gaps that are not asked for
+         */
+        void announce(final int newest, final AtomicLong lostCounter) {
+            if (!started) {
+                // nothing arrived yet, the peer numbers from 0 and keeps at most HISTORY datagrams
+                started = true;
+                highest = Math.max(0, newest - HISTORY + 1) - 1;
+            }
+            final int ahead = newest - highest;
+            if (ahead <= 0) {
+                return;
+            }
+            if (ahead > WINDOW) {
+                restart(newest, ahead, lostCounter);
+                seen.clear(slot(newest));
+                missing.put(newest, 0);
+                return;
+            }
+            // the announced one is still missing, it is marked seen when it arrives
+            skipTo(newest + 1, lostCounter);
+            highest = newest;
+        }
+
+        /**
+         * Marks the sequence numbers between the newest received and the given one as missing.
+         *
+         * @param sequence the sequence number after the gap, becomes the newest
+         * @param lostCounter counts the gaps that are not asked for
+         */
+        private void skipTo(final int sequence, final AtomicLong lostCounter) {
+            for (int gap = highest + 1; gap != sequence; gap++) {
+                seen.clear(slot(gap));
+                if (recover) {
+                    missing.put(gap, 0);
+                } else {
+                    lostCounter.incrementAndGet();
+                }
+            }
+            highest = sequence;
+        }
+
+        /**
+         * Starts the window over at a sequence number, counting what it forgets as lost.
+         *
+         * @param sequence the new newest sequence number
+         * @param ahead how far it is past the previous newest one
+         * @param lostCounter counts the forgotten sequence numbers
+         */
+        private void restart(final int sequence, final int ahead, final AtomicLong lostCounter) {
+            if (started) {
+                lostCounter.addAndGet(missing.size());
+                if (ahead > 0) {
+                    // jumped forward, the ones skipped can no longer be told apart
+                    lostCounter.addAndGet(ahead - 1L);
+                }
+            }
+            started = true;
+            seen.clear();
+            missing.clear();
+            highest = sequence;
+        }
+
+        /**
+         * Takes the missing sequence numbers to ask for, forgetting the ones asked for too often.
+         *
+         * @param lostCounter counts the ones given up on
+         * @return the sequence numbers to ask for
+         */
+        int[] dueNacks(final AtomicLong lostCounter) {
+            final int[] due = new int[Math.min(missing.size(), MAX_NACK_SEQUENCES)];
+            int count = 0;
+            final Iterator<Map.Entry<Integer, Integer>> it = missing.entrySet().iterator();
+            while (it.hasNext()) {
+                final Map.Entry<Integer, Integer> entry = it.next();
+                if (entry.getValue() >= MAX_NACK_ATTEMPTS) {
+                    it.remove();
+                    lostCounter.incrementAndGet();
+                } else if (count < due.length) {
+                    entry.setValue(entry.getValue() + 1);
+                    due[count++] = entry.getKey();
+                }
+            }
+            if (count < due.length) {
+                final int[] shorter = new int[count];
+                System.arraycopy(due, 0, shorter, 0, count);
+                return shorter;
+            }
+            return due;
+        }
+
+        private static int slot(final int sequence) {
+            return Math.floorMod(sequence, WINDOW);
+        }
+    }
+
+    /**
+     * The state kept for one peer, guarded by the peer.
+     */
+    private static final class Peer {
+        /**
+         * The address of the peer.
+         */
+        private final InetSocketAddress address;
+
+        /**
+         * Sequence number of the next datagram sent to the peer that is not kept.
+         */
+        private int nextSequence;
+
+        /**
+         * Sequence number of the next kept datagram sent to the peer.
+         */
+        private int nextKeptSequence;
+
+        /**
+         * The kept datagrams last sent to the peer, by kept sequence number, oldest first.
+         */
+        private final LinkedHashMap<Integer, byte[]> history = new LinkedHashMap<>();
+
+        /**
+         * Bytes of the datagrams in {@link #history}.
+         */
+        private long historyBytes;
+
+        /**
+         * Tail announcements left to send, reset by every kept datagram.
+         */
+        private int tailsLeft;
+
+        /**
+         * Receive window of the datagrams the peer did not keep.
+         */
+        private final Window plain = new Window(false);
+
+        /**
+         * Receive window of the datagrams the peer kept, its gaps are asked for.
+         */
+        private final Window kept = new Window(true);
+
+        /**
+         * Creates the state of a peer.
+         *
+         * @param addressArg the address of the peer
+         */
+        Peer(final InetSocketAddress addressArg) {
+            this.address = addressArg;
+        }
+
+        /**
+         * Keeps a datagram for NACKs, forgetting the oldest ones over the count or byte limit.
+         *
+         * @param sequence its kept sequence number
+         * @param datagram the datagram
+         */
+        void keep(final int sequence, final byte[] datagram) {
+            history.put(sequence, datagram);
+            historyBytes += datagram.length;
+            tailsLeft = TAIL_ANNOUNCEMENTS;
+            final Iterator<byte[]> oldest = history.values().iterator();
+            while (history.size() > 1 && (history.size() > HISTORY || historyBytes > HISTORY_BYTES)) {
+                historyBytes -= oldest.next().length;
+                oldest.remove();
+            }
+        }
+    }
+
+    /**
+     * Opens the socket and starts the receive and pacing threads.
+     *
+     * @param port the port to bind, the peers send to the same port number as for TCP
+     * @throws IOException if the socket cannot be opened
+     */
+    public UDPCommunicator(final int port) throws IOException {
+        channel = DatagramChannel.open();
+        channel.bind(new InetSocketAddress(port));
+        LOG.info(MODULENAME + " UDP communicator bound to port " + port + "...");
+        final Thread receiveThread = new Thread(this::receiveLoop, "udp-receive-" + port);
+        receiveThread.setDaemon(true);
+        receiveThread.start();
+        final Thread pacerThread = new Thread(this::paceLoop, "udp-pacer-" + port);
+        pacerThread.setDaemon(true);
+        pacerThread.start();
+        nackTimer = TimingWheel.getTimingWheel().scheduleAtFixedRate(this::sendNacks, NACK_INTERVAL_MS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sets the rate the datagrams are written at.
+     *
+     * @param bytesPerSecond the rate, 0 to write as fast as the socket takes them
+     */
+    public void setPacingRate(final long bytesPerSecond) {
+        pacingRate = Math.min(Math.max(0, bytesPerSecond), MAX_PACING_RATE);
+    }
+
+    /**
+     * Sets which packets are kept for NACKs, by the priority in their header.
+     *
+     * @param level the lowest priority level kept, -1 to keep none
+     */
+    public void setProtectedPriority(final int level) {
+        protectedPriority = level;
+    }
+
+    /**
+     * Drops the first transmission of the data datagrams whose sequence number matches,
+     * to test the recovery over loopback. Resent datagrams are not dropped.
+     *
+     * @param lossArg tells the dropped sequence numbers
+     */
+    void setLoss(final IntPredicate lossArg) {
+        loss = lossArg;
+    }
+
+    /**
+     * There is no stream socket to open, every peer is reached on the one datagram socket.
+     *
+     * @return null
+     */
+    @Override
+    public SocketChannel openSocket() {
+        return null;
+    }
+
+    @Override
+    public void printKeys() {
+        LOG.info(MODULENAME + " " + peers.size() + " peers, " + getStats());
+    }
+
+    @Override
+    public void closeSocket(final ClientNode client) {
+        peers.remove(client);
+    }
+
+    @Override
+    public void sendData(final byte[] data, final ClientNode dest) {
+        send(dest, data, null);
+    }
+
+    /**
+     * Copies the header and the shared payload into the datagram, the one copy a datagram needs.
+     *
+     * @param header the header of the packet
+     * @param payload the read only payload
+     * @param dest the dest to send the data
+     */
+    @Override
+    public void sendData(final byte[] header, final ByteBuffer payload, final ClientNode dest) {
+        send(dest, header, payload);
+    }
+
+    /**
+     * Numbers a packet for its peer, keeps it if protected and queues it for the pacing thread.
+     *
+     * @param dest the destination
+     * @param data the packet, or its header
+     * @param payload the payload after the header, null if data holds the whole packet
+     */
+    private void send(final ClientNode dest, final byte[] data, final ByteBuffer payload) {
+        int length = data.length;
+        if (payload != null) {
+            length += payload.remaining();
+        }
+        if (closed) {
+            return;
+        }
+        if (length > MAX_DATAGRAM - DATA_HEADER) {
+            LOG.warn(MODULENAME + " Packet of " + length + " bytes does not fit a datagram, dropping it...");
+            return;
+        }
+        final Peer peer = peers.computeIfAbsent(dest, node -> new Peer(new InetSocketAddress(node.hostName(),
+                node.port())));
+        final boolean keep = data.length >= PacketParser.getHeaderSize()
+                && PacketParser.getPriority(data) <= protectedPriority;
+        final byte[] datagram = new byte[DATA_HEADER + length];
+        datagram[0] = KIND_DATA;
+        if (keep) {
+            datagram[FLAGS_OFFSET] = FLAG_PROTECTED;
+        }
+        System.arraycopy(data, 0, datagram, DATA_HEADER, data.length);
+        if (payload != null) {
+            payload.duplicate().get(datagram, DATA_HEADER + data.length, payload.remaining());
+        }
+        final int sequence;
+        synchronized (peer) {
+            if (keep) {
+                sequence = peer.nextKeptSequence++;
+                peer.keep(sequence, datagram);
+            } else {
+                sequence = peer.nextSequence++;
+            }
+            ByteBuffer.wrap(datagram).order(ByteOrder.LITTLE_ENDIAN).putInt(FIELD_OFFSET, sequence);
+        }
+        if (loss.test(sequence)) {
+            return;
+        }
+        enqueue(new Outgoing(datagram, peer.address), false);
+    }
+
+    @Override
+    public ReceivePacket receiveData() {
+        return dispatcher.poll(POLL_TIMEOUT_MS);
+    }
+
+    @Override
+    public boolean setReceiver(final Consumer<ReceivePacket> receiver) {
+        dispatcher.setReceiver(receiver);
+        return true;
+    }
+
+    /**
+     * Returns the counters since the communicator was opened.
+     *
+     * @return the counters
+     */
+    public Stats getStats() {
+        return new Stats(sent.get(), received.get(), retransmitted.get(), nacked.get(), lost.get(),
+                dropped.get());
+    }
+
+    /**
+     * Queues a datagram for the pacing thread, dropping the oldest ones while the queue is full.
+     *
+     * @param item the datagram
+     * @param first whether it goes before the ones waiting
+     */
+    private void enqueue(final Outgoing item, final boolean first) {
+        final int length = item.datagram().length;
+        synchronized (outgoing) {
+            while (queuedBytes + length > MAX_QUEUED_BYTES && !outgoing.isEmpty()) {
+                queuedBytes -= outgoing.pollFirst().datagram().length;
+                dropped.incrementAndGet();
+            }
+            if (first) {
+                outgoing.addFirst(item);
+            } else {
+                outgoing.addLast(item);
+            }
+            queuedBytes += length;
+            outgoing.notifyAll();
+        }
+    }
+
+    /**
+     * Waits for the next datagram to write.
+     *
+     * @return the datagram, null once closed
+     */
+    private Outgoing take() {
+        synchronized (outgoing) {
+            while (outgoing.isEmpty() && !closed) {
+                try {
+                    outgoing.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+            final Outgoing item = outgoing.pollFirst();
+            if (item != null) {
+                queuedBytes -= item.datagram().length;
+            }
+            return item;
+        }
+    }
+
+    /**
+     * Writes the queued datagrams at the pacing rate until closed.
+     */
+    private void paceLoop() {
+        Outgoing item = take();
+        while (item != null && !closed) {
+            pace(item.datagram().length);
+            try {
+                channel.send(ByteBuffer.wrap(item.datagram()), item.address());
+                sent.incrementAndGet();
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException | UnresolvedAddressException e) {
+                LOG.error(MODULENAME + " Unable to send to " + item.address() + " : " + e.getMessage());
+            }
+            item = take();
+        }
+    }
+
+    /**
+     * Waits until the bucket holds the tokens to write a datagram and takes them.
+     *
+     * @param length the size of the datagram
+     */
+    private void pace(final int length) {
+        final long rate = pacingRate;
+        if (rate <= 0) {
+            return;
+        }
+        final long now = System.nanoTime();
+        final long elapsed = Math.min(now - lastRefill, NANOS_PER_SECOND);
+        lastRefill = now;
+        tokens = Math.min(BURST_BYTES, tokens + elapsed * rate / NANOS_PER_SECOND);
+        if (tokens < length) {
+            LockSupport.parkNanos((length - tokens) * NANOS_PER_SECOND / rate);
+            // the wait earned the missing tokens
+            tokens = length;
+            lastRefill = System.nanoTime();
+        }
+        tokens -= length;
+    }
+
+    /**
+     * Reads datagrams until closed.
+     */
+    private void receiveLoop() {
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(MAX_DATAGRAM).order(ByteOrder.LITTLE_ENDIAN);
+        while (!closed) {
+            buffer.clear();
+            final SocketAddress from;
+            try {
+                from = channel.receive(buffer);
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                LOG.error(MODULENAME + " Unable to receive : " + e.getMessage());
+                continue;
+            }
+            buffer.flip();
+            if (from instanceof InetSocketAddress address && buffer.remaining() >= NACK_HEADER) {
+                handleDatagram(buffer, address);
+            }
+        }
+    }
+
+    /**
+     * Hands on a data datagram or resends the datagrams a NACK asks for.
+     *
+     * @param buffer the datagram
+     * @param from the peer it came from
+     */
+    private void handleDatagram(final ByteBuffer buffer, final InetSocketAddress from) {
+        final ClientNode sender = new ClientNode(from.getAddress().getHostAddress(), from.getPort());
+        final Peer peer = peers.computeIfAbsent(sender, node -> new Peer(from));
+        if (buffer.get(0) == KIND_NACK) {
+            final int count = Math.min(buffer.getShort(FIELD_OFFSET) & SHORT_MASK,
+                    (buffer.remaining() - NACK_HEADER) / Integer.BYTES);
+            for (int i = 0; i < count; i++) {
+                resend(peer, buffer.getInt(NACK_HEADER + i * Integer.BYTES));
+            }
+            return;
+        }
+        if (buffer.remaining() < DATA_HEADER) {
+            return;
+        }
+        if (buffer.get(0) == KIND_TAIL) {
+            synchronized (peer) {
+                peer.kept.announce(buffer.getInt(FIELD_OFFSET), lost);
+            }
+            return;
+        }
+        if (buffer.get(0) != KIND_DATA) {
+            return;
+        }
+        final boolean fresh;
+        synchronized (peer) {
+            final Window window;
+            if ((buffer.get(FLAGS_OFFSET) & FLAG_PROTECTED) != 0) {
+                window = peer.kept;
+            } else {
+                window = peer.plain;
+            }
+            fresh = window.accept(buffer.getInt(FIELD_OFFSET), lost);
+        }
+        if (!fresh) {
+            return;
+        }
+        final byte[] packet = new byte[buffer.remaining() - DATA_HEADER];
+        buffer.get(DATA_HEADER, packet);
+        received.incrementAndGet();
+        dispatcher.dispatch(new ReceivePacket(sender, packet));
+    }
+
+    /**
+     * Resends a kept datagram ahead of the waiting ones.
+     *
+     * @param peer the peer asking
+     * @param sequence the kept sequence number asked for
+     */
+    private void resend(final Peer peer, final int sequence) {
+        final byte[] kept;
+        synchronized (peer) {
+            kept = peer.history.get(sequence);
+        }
+        if (kept == null) {
+            return;
+        }
+        final byte[] datagram = kept.clone();
+        datagram[FLAGS_OFFSET] |= FLAG_RETRANSMIT;
+        retransmitted.incrementAndGet();
+        enqueue(new Outgoing(datagram, peer.address), true);
+    }
+
+    /**
+     * Asks every peer for the sequence numbers missing from it and announces the newest kept
+     * sequence number to the peers recently sent kept datagrams, called by the timer.
+     */
+    private void sendNacks() {
+        for (Peer peer : peers.values()) {
+            final int[] due;
+            int tail = -1;
+            synchronized (peer) {
+                due = peer.kept.dueNacks(lost);
+                if (peer.tailsLeft > 0) {
+                    peer.tailsLeft--;
+                    tail = peer.nextKeptSequence - 1;
+                }
+            }
+            if (tail >= 0) {
+                // behind the waiting datagrams, so it does not overtake the ones it announces
+                final byte[] announcement = new byte[DATA_HEADER];
+                announcement[0] = KIND_TAIL;
+                ByteBuffer.wrap(announcement).order(ByteOrder.LITTLE_ENDIAN).putInt(FIELD_OFFSET, tail);
+                enqueue(new Outgoing(announcement, peer.address), false);
+            }
+            if (due.length == 0) {
+                continue;
+            }
+            nacked.addAndGet(due.length);
+            final ByteBuffer nack = ByteBuffer.allocate(NACK_HEADER + due.length * Integer.BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            nack.put(KIND_NACK).put((byte) 0).putShort((short) due.length);
+            for (int sequence : due) {
+                nack.putInt(sequence);
+            }
+            enqueue(new Outgoing(nack.array(), peer.address), true);
+        }
+    }
+
+    @Override
+    public void close() {
+        LOG.info(MODULENAME + " Closing UDP communicator...");
+        closed = true;
+        nackTimer.cancel();
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            LOG.error(MODULENAME + " Error occured while closing socket : " + ex.getMessage());
+        }
+        synchronized (outgoing) {
+            outgoing.clear();
+            queuedBytes = 0;
+            outgoing.notifyAll();
+        }
+        dispatcher.close();
+    }
+}
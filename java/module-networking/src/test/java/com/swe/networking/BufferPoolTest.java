@@ -0,0 +1,49 @@
+package com.swe.networking;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+class BufferPoolTest {
+
+    @Test
+    void testBuffersAreDirectAndReused() {
+        final BufferPool pool = new BufferPool(1024, 2);
+        final ByteBuffer buffer = pool.acquire();
+        assertTrue(buffer.isDirect());
+        assertEquals(1024, buffer.capacity());
+        buffer.put((byte) 1);
+        pool.release(buffer);
+
+        final ByteBuffer again = pool.acquire();
+        assertSame(buffer, again);
+        assertEquals(0, again.position(), "a reused buffer comes back cleared");
+        assertEquals(1, pool.getAllocated());
+    }
+
+    @Test
+    void testPoolKeepsAtMostMaxBuffers() {
+        final BufferPool pool = new BufferPool(16, 1);
+        final ByteBuffer first = pool.acquire();
+        final ByteBuffer second = pool.acquire();
+        pool.release(first);
+        pool.release(second);
+
+        assertSame(first, pool.acquire());
+        assertNotSame(second, pool.acquire());
+        assertEquals(3, pool.getAllocated());
+    }
+
+    @Test
+    void testForeignBuffersAreIgnored() {
+        final BufferPool pool = new BufferPool(16, 4);
+        pool.release(ByteBuffer.allocate(8));
+        pool.release(null);
+        pool.acquire();
+        assertEquals(1, pool.getAllocated());
+    }
+}
@@ -3,8 +3,12 @@ package com.swe.networking;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+
+import com.swe.core.ClientNode;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -13,6 +17,11 @@ import org.junit.jupiter.api.Test;
  * Test cases for chunk manager.
  */
 public class ChunkManagerTest {
+    /**
+     * Peer the chunks arrive from.
+     */
+    private static final ClientNode SENDER = new ClientNode("10.0.0.5", 40000);
+
     /**
      * Chunk message test.
      */
@@ -202,7 +211,7 @@ public class ChunkManagerTest {
         final Vector<byte[]> chunks = chunkManager.chunk(info, payloadSize);
         Collections.shuffle(chunks);
         for (byte[] chunk : chunks) {
-            chunkManager.addChunk(chunk);
+            chunkManager.addChunk(chunk, new ClientNode("10.0.0.6", 8000));
         }
         final Vector<byte[]> mergedPkts = chunkManager.getMessageList();
         final byte[] mergedPkt = mergedPkts.get(chunkManager.getLastMessageId());
@@ -216,4 +225,227 @@ public class ChunkManagerTest {
         final String mergedMessage = new String(info.getPayload(), StandardCharsets.UTF_8);
         Assertions.assertEquals(message, mergedMessage);
     }
+
+    /**
+     * Shuffled and duplicated chunks are joined into the original payload.
+     */
+    @Test
+    void reassembleTest() throws UnknownHostException {
+        final ChunkManager chunkManager = ChunkManager.getChunkManager(4);
+        final byte[] data = "Hello this is Networking Team".getBytes();
+        final PacketInfo info = new PacketInfo();
+        info.setModule(ModuleType.CHAT.ordinal());
+        info.setIpAddress(InetAddress.getByName("10.0.0.7"));
+        info.setPortNum(8000);
+        info.setPayload(data);
+        final Vector<byte[]> chunks = chunkManager.chunk(info, 3);
+        Collections.shuffle(chunks);
+
+        byte[] payload = null;
+        for (int i = 0; i < chunks.size(); i++) {
+            Assertions.assertNull(payload, "no payload before the last chunk");
+            payload = chunkManager.reassemble(chunks.get(i), SENDER);
+            if (i == 0) {
+                Assertions.assertNull(chunkManager.reassemble(chunks.get(0), SENDER), "duplicates are ignored");
+            }
+        }
+        Assertions.assertArrayEquals(data, payload);
+        Assertions.assertEquals(ModuleType.CHAT.ordinal(), PacketParser.getModule(chunks.get(0)));
+    }
+
+    /**
+     * A message of one chunk is returned right away.
+     */
+    @Test
+    void reassembleSingleChunkTest() throws UnknownHostException {
+        final ChunkManager chunkManager = ChunkManager.getChunkManager(4);
+        final byte[] data = "hi".getBytes();
+        final PacketInfo info = new PacketInfo();
+        info.setIpAddress(InetAddress.getByName("10.0.0.8"));
+        info.setPayload(data);
+        final Vector<byte[]> chunks = chunkManager.chunk(info, 16);
+        Assertions.assertEquals(1, chunks.size());
+        Assertions.assertArrayEquals(data, chunkManager.reassemble(chunks.get(0), SENDER));
+    }
+
+    private static Vector<byte[]> chunksOf(final ChunkManager chunkManager, final String address, final int size)
+            throws UnknownHostException {
+        final PacketInfo info = new PacketInfo();
+        info.setIpAddress(InetAddress.getByName(address));
+        info.setPortNum(8000);
+        info.setPayload(new byte[size]);
+        return chunkManager.chunk(info, 4);
+    }
+
+    /**
+     * A message missing a chunk is dropped once it got nothing for too long.
+     */
+    @Test
+    void staleMessageEvictionTest() throws UnknownHostException {
+        final ChunkManager chunkManager = ChunkManager.getChunkManager(4);
+        final long start = System.nanoTime();
+        // drop what other tests left behind in the shared manager
+        chunkManager.evictStale(start + TimeUnit.SECONDS.toNanos(20));
+        final long evicted = chunkManager.getEvictedMessages();
+        final long buffered = chunkManager.getBufferedBytes();
+        final Vector<byte[]> chunks = chunksOf(chunkManager, "10.0.0.9", 12);
+        Assertions.assertNull(chunkManager.reassemble(chunks.get(0), SENDER, start));
+        Assertions.assertTrue(chunkManager.getBufferedBytes() > buffered);
+
+        chunkManager.evictStale(start + TimeUnit.SECONDS.toNanos(1));
+        Assertions.assertEquals(evicted, chunkManager.getEvictedMessages(), "recent messages are kept");
+        chunkManager.evictStale(start + TimeUnit.SECONDS.toNanos(11));
+        Assertions.assertEquals(evicted + 1, chunkManager.getEvictedMessages());
+        Assertions.assertEquals(buffered, chunkManager.getBufferedBytes());
+
+        // the late chunks start a new message instead of completing the dropped one
+        Assertions.assertNull(chunkManager.reassemble(chunks.get(1), SENDER, start + TimeUnit.SECONDS.toNanos(12)));
+    }
+
+    /**
+     * Duplicate and out of order chunks are counted.
+     */
+    @Test
+    void chunkCountersTest() throws UnknownHostException {
+        final ChunkManager chunkManager = ChunkManager.getChunkManager(4);
+        final long duplicates = chunkManager.getDuplicateChunks();
+        final long outOfOrder = chunkManager.getOutOfOrderChunks();
+        final Vector<byte[]> chunks = chunksOf(chunkManager, "10.0.0.10", 12);
+
+        Assertions.assertNull(chunkManager.reassemble(chunks.get(0), SENDER));
+        Assertions.assertNull(chunkManager.reassemble(chunks.get(2), SENDER));
+        Assertions.assertNull(chunkManager.reassemble(chunks.get(2), SENDER));
+        Assertions.assertNotNull(chunkManager.reassemble(chunks.get(1), SENDER));
+
+        Assertions.assertEquals(duplicates + 1, chunkManager.getDuplicateChunks());
+        Assertions.assertEquals(outOfOrder + 2, chunkManager.getOutOfOrderChunks());
+    }
+
+    /**
+     * Removing a client drops its partial messages.
+     */
+    @Test
+    void cleanChunkTest() throws UnknownHostException {
+        final ChunkManager chunkManager = ChunkManager.getChunkManager(4);
+        final long buffered = chunkManager.getBufferedBytes();
+        final ClientNode sender = new ClientNode("10.0.0.11", 40000);
+        final Vector<byte[]> chunks = chunksOf(chunkManager, "10.0.0.11", 12);
+        Assertions.assertNull(chunkManager.reassemble(chunks.get(0), sender));
+
+        chunkManager.cleanChunk(new ClientNode("10.0.0.11", 8000));
+        Assertions.assertEquals(buffered, chunkManager.getBufferedBytes());
+        Assertions.assertNull(chunkManager.reassemble(chunks.get(1), sender), "the message starts over");
+    }
+
+    private static Vector<byte[]> chunksWithId(final String text, final int messageId)
+            throws UnknownHostException {
+        return chunksWithId(text, messageId, null);
+    }
+
+    private static Vector<byte[]> chunksWithId(final String text, final int messageId, final ClientNode origin)
+            throws UnknownHostException {
+        final byte[] data = text.getBytes(StandardCharsets.UTF_8);
+        final int count = (data.length + 3) / 4;
+        final Vector<byte[]> chunks = new Vector<>();
+        for (int i = 0; i < count; i++) {
+            final PacketInfo info = new PacketInfo();
+            // the header only names the receiver
+            info.setIpAddress(InetAddress.getByName("10.0.0.13"));
+            info.setPortNum(8000);
+            info.setMessageId(messageId);
+            info.setChunkNum(i);
+            info.setChunkLength(count);
+            if (origin != null) {
+                info.setOriginAddress(InetAddress.getByName(origin.hostName()));
+                info.setOriginPort(origin.port());
+            }
+            info.setPayload(Arrays.copyOfRange(data, i * 4, Math.min(data.length, i * 4 + 4)));
+            chunks.add(PacketParser.getPacketParser().createPkt(info));
+        }
+        return chunks;
+    }
+
+    /**
+     * Two peers sending the same message id to one receiver get their own messages.
+     */
+    @Test
+    void sameMessageIdFromTwoSendersTest() throws UnknownHostException {
+        final ChunkManager chunkManager = ChunkManager.getChunkManager(4);
+        final ClientNode other = new ClientNode("10.0.0.12", 40000);
+        final Vector<byte[]> first = chunksWithId("first sender", 7);
+        final Vector<byte[]> second = chunksWithId("other sender", 7);
+
+        byte[] firstPayload = null;
+        byte[] secondPayload = null;
+        for (int i = 0; i < first.size(); i++) {
+            firstPayload = chunkManager.reassemble(first.get(i), SENDER);
+            secondPayload = chunkManager.reassemble(second.get(i), other);
+        }
+        Assertions.assertEquals("first sender", new String(firstPayload, StandardCharsets.UTF_8));
+        Assertions.assertEquals("other sender", new String(secondPayload, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Two peers on one host keep their messages apart by port.
+     */
+    @Test
+    void sameMessageIdFromTwoPortsOfOneHostTest() throws UnknownHostException {
+        final ChunkManager chunkManager = ChunkManager.getChunkManager(4);
+        final ClientNode first = new ClientNode("10.0.0.14", 40000);
+        final ClientNode second = new ClientNode("10.0.0.14", 40001);
+        final Vector<byte[]> firstChunks = chunksWithId("first port", 9);
+        final Vector<byte[]> secondChunks = chunksWithId("other port", 9);
+
+        byte[] firstPayload = null;
+        byte[] secondPayload = null;
+        for (int i = 0; i < firstChunks.size(); i++) {
+            firstPayload = chunkManager.reassemble(firstChunks.get(i), first);
+            secondPayload = chunkManager.reassemble(secondChunks.get(i), second);
+        }
+        Assertions.assertEquals("first port", new String(firstPayload, StandardCharsets.UTF_8));
+        Assertions.assertEquals("other port", new String(secondPayload, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Chunks of two senders relayed over one connection are told apart by their origin.
+     */
+    @Test
+    void sameMessageIdRelayedFromTwoOriginsTest() throws UnknownHostException {
+        final ChunkManager chunkManager = ChunkManager.getChunkManager(4);
+        final ClientNode relay = new ClientNode("10.0.0.15", 40000);
+        final Vector<byte[]> first = chunksWithId("first origin", 11, new ClientNode("10.0.0.16", 40000));
+        final Vector<byte[]> second = chunksWithId("other origin", 11, new ClientNode("10.0.0.17", 40000));
+
+        byte[] firstPayload = null;
+        byte[] secondPayload = null;
+        for (int i = 0; i < first.size(); i++) {
+            firstPayload = chunkManager.reassemble(first.get(i), relay);
+            secondPayload = chunkManager.reassemble(second.get(i), relay);
+        }
+        Assertions.assertEquals("first origin", new String(firstPayload, StandardCharsets.UTF_8));
+        Assertions.assertEquals("other origin", new String(secondPayload, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * A host keeps its id only while it has partial messages.
+     */
+    @Test
+    void hostIdIsFreedWithItsMessagesTest() throws UnknownHostException {
+        final ChunkManager chunkManager = ChunkManager.getChunkManager(4);
+        final int hosts = chunkManager.getTrackedHosts();
+        final ClientNode origin = new ClientNode("10.0.0.18", 40000);
+        final Vector<byte[]> completed = chunksWithId("completed", 13, origin);
+        final Vector<byte[]> removed = chunksWithId("removed", 14, origin);
+
+        Assertions.assertNull(chunkManager.reassemble(completed.get(0), SENDER));
+        Assertions.assertNull(chunkManager.reassemble(removed.get(0), SENDER));
+        Assertions.assertEquals(hosts + 1, chunkManager.getTrackedHosts());
+        for (int i = 1; i < completed.size(); i++) {
+            chunkManager.reassemble(completed.get(i), SENDER);
+        }
+        Assertions.assertEquals(hosts + 1, chunkManager.getTrackedHosts(), "a partial message is left");
+
+        chunkManager.cleanChunk(origin);
+        Assertions.assertEquals(hosts, chunkManager.getTrackedHosts());
+    }
 }
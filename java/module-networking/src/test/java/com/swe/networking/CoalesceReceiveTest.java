@@ -5,6 +5,7 @@ import org.junit.jupiter.api.Test;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import static org.junit.jupiter.api.Assertions.*;
 
 public class CoalesceReceiveTest {
@@ -17,17 +18,26 @@ public class CoalesceReceiveTest {
         private final List<byte[]> receivedData = new ArrayList<>();
 
         @Override
-        public void receiveData(byte[] data) {
+        public synchronized void receiveData(byte[] data) {
             receivedData.add(data);
         }
 
-        public List<byte[]> getReceivedData() {
-            return receivedData;
+        public synchronized List<byte[]> getReceivedData() {
+            return new ArrayList<>(receivedData);
         }
 
-        public void clear() {
+        public synchronized void clear() {
             receivedData.clear();
         }
+
+        // data is handed to the listeners on the thread of their module
+        public List<byte[]> awaitReceived(final int count) throws InterruptedException {
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (getReceivedData().size() < count && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            return getReceivedData();
+        }
     }
 
     @BeforeEach
@@ -37,7 +47,7 @@ public class CoalesceReceiveTest {
     }
 
     @Test
-    public void testSinglePacketSingleListener() {
+    public void testSinglePacketSingleListener() throws InterruptedException {
         final byte moduleId = 1;
         final byte[] data = "test_data".getBytes();
 
@@ -54,14 +64,14 @@ public class CoalesceReceiveTest {
 
         coalesceReceive.receiveCoalescedPacket(coalescedData);
 
-        assertEquals(1, listener.getReceivedData().size());
+        assertEquals(1, listener.awaitReceived(1).size());
         assertArrayEquals(data, listener.getReceivedData().get(0));
 
         networking.removeSubscription(moduleId);
     }
 
     @Test
-    public void testMultiplePacketsSingleListener() {
+    public void testMultiplePacketsSingleListener() throws InterruptedException {
         final byte moduleId = 2;
         final byte[] data1 = "test_data_1".getBytes();
         final byte[] data2 = "test_data_2".getBytes();
@@ -86,7 +96,7 @@ public class CoalesceReceiveTest {
 
         coalesceReceive.receiveCoalescedPacket(coalescedData);
 
-        assertEquals(2, listener.getReceivedData().size());
+        assertEquals(2, listener.awaitReceived(2).size());
         assertArrayEquals(data1, listener.getReceivedData().get(0));
         assertArrayEquals(data2, listener.getReceivedData().get(1));
 
@@ -94,7 +104,7 @@ public class CoalesceReceiveTest {
     }
 
     @Test
-    public void testSinglePacketMultipleListeners() {
+    public void testSinglePacketMultipleListeners() throws InterruptedException {
         final byte moduleId1 = 3;
         final byte moduleId2 = 4;
         final byte[] data = "test_data".getBytes();
@@ -114,7 +124,7 @@ public class CoalesceReceiveTest {
 
         coalesceReceive.receiveCoalescedPacket(coalescedData);
 
-        assertEquals(1, listener1.getReceivedData().size());
+        assertEquals(1, listener1.awaitReceived(1).size());
         assertArrayEquals(data, listener1.getReceivedData().get(0));
         assertTrue(listener2.getReceivedData().isEmpty());
 
@@ -123,7 +133,7 @@ public class CoalesceReceiveTest {
     }
 
     @Test
-    public void testMultiplePacketsMultipleListeners() {
+    public void testMultiplePacketsMultipleListeners() throws InterruptedException {
         final byte moduleId1 = 5;
         final byte moduleId2 = 6;
         final byte[] data1 = "test_data_1".getBytes();
@@ -151,10 +161,10 @@ public class CoalesceReceiveTest {
 
         coalesceReceive.receiveCoalescedPacket(coalescedData);
 
-        assertEquals(1, listener1.getReceivedData().size());
+        assertEquals(1, listener1.awaitReceived(1).size());
         assertArrayEquals(data1, listener1.getReceivedData().get(0));
 
-        assertEquals(1, listener2.getReceivedData().size());
+        assertEquals(1, listener2.awaitReceived(1).size());
         assertArrayEquals(data2, listener2.getReceivedData().get(0));
 
         networking.removeSubscription(moduleId1);
@@ -180,4 +190,53 @@ public class CoalesceReceiveTest {
         networking.removeSubscription(moduleId1);
         networking.removeSubscription(moduleId2);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testCoalescedPacketWithHeader() throws InterruptedException {
+        final byte moduleId = 9;
+        final byte[] data = "after_header".getBytes();
+
+        TestMessageListener listener = new TestMessageListener();
+        networking.subscribe(moduleId, listener);
+
+        final int header = PacketParser.getHeaderSize();
+        final int packetSize = 4 + 1 + data.length;
+        final ByteBuffer packet = ByteBuffer.allocate(header + packetSize);
+        packet.position(header);
+        packet.putInt(packetSize);
+        packet.put(moduleId);
+        packet.put(data);
+
+        coalesceReceive.receiveCoalescedPacket(packet.array());
+
+        assertEquals(1, listener.awaitReceived(1).size());
+        assertArrayEquals(data, listener.getReceivedData().get(0));
+
+        networking.removeSubscription(moduleId);
+    }
+
+    @Test
+    public void testCorruptSizeStopsParsing() throws InterruptedException {
+        final byte moduleId = 10;
+        final byte[] data = "test_data".getBytes();
+
+        TestMessageListener listener = new TestMessageListener();
+        networking.subscribe(moduleId, listener);
+
+        final int packetSize = 4 + 1 + data.length;
+        ByteBuffer coalescedData = ByteBuffer.allocate(packetSize * 2);
+        coalescedData.putInt(packetSize);
+        coalescedData.put(moduleId);
+        coalescedData.put(data);
+        // claims more bytes than are left
+        coalescedData.putInt(packetSize * 4);
+        coalescedData.put(moduleId);
+        coalescedData.put(data);
+        coalescedData.flip();
+
+        assertDoesNotThrow(() -> coalesceReceive.receiveCoalescedPacket(coalescedData));
+        assertEquals(1, listener.awaitReceived(1).size());
+
+        networking.removeSubscription(moduleId);
+    }
+}
@@ -5,7 +5,14 @@ import org.junit.jupiter.api.Test;
 
 import java.lang.reflect.Field;
 import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.swe.core.ClientNode;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -233,4 +240,106 @@ public class CoalesceSendTest {
         });
     }
 
+    private record Sent(ClientNode dest, byte[] payload, int packets, int priority) {
+    }
+
+    @Test
+    public void testSizeFlushHandsTheRecordsToTheSink() throws Exception {
+        final List<Sent> sent = new CopyOnWriteArrayList<>();
+        final CoalesceSend send = new CoalesceSend(64, 1000,
+                (dest, payload, packets, priority) -> sent.add(new Sent(dest, payload, packets, priority)), null);
+
+        send.handlePacket(new byte[20], destA, portA, (byte) 7, 3);
+        send.handlePacket(new byte[20], destA, portA, (byte) 2, 1);
+        assertTrue(sent.isEmpty());
+        send.handlePacket(new byte[20], destA, portA, (byte) 7, 2);
+
+        assertEquals(1, sent.size());
+        final Sent batch = sent.get(0);
+        assertEquals(new ClientNode(destA.getHostAddress(), portA), batch.dest());
+        assertEquals(3, batch.packets());
+        assertEquals(1, batch.priority(), "the batch goes out at its most urgent packet's priority");
+        final ByteBuffer records = ByteBuffer.wrap(batch.payload());
+        assertEquals(75, records.remaining());
+        assertEquals(25, records.getInt());
+        assertEquals(7, records.get());
+        records.position(25);
+        assertEquals(25, records.getInt());
+        assertEquals(2, records.get());
+    }
+
+    @Test
+    public void testTimerFlushesWithoutPolling() throws Exception {
+        final TimingWheel timer = new TimingWheel(1, TimeUnit.MILLISECONDS, 64);
+        try {
+            final CountDownLatch flushed = new CountDownLatch(1);
+            final List<Sent> sent = new CopyOnWriteArrayList<>();
+            final CoalesceSend send = new CoalesceSend(2048, 5, (dest, payload, packets, priority) -> {
+                sent.add(new Sent(dest, payload, packets, priority));
+                flushed.countDown();
+            }, timer);
+
+            send.handlePacket(new byte[10], destA, portA, (byte) 1);
+            send.handlePacket(new byte[10], destA, portA, (byte) 1);
+
+            assertTrue(flushed.await(2, TimeUnit.SECONDS), "the timer sends the batch once its delay is over");
+            assertEquals(1, sent.size());
+            assertEquals(2, sent.get(0).packets());
+            assertEquals(Integer.MAX_VALUE, sent.get(0).priority());
+        } finally {
+            timer.close();
+        }
+    }
+
+    @Test
+    public void testStaleTimerDoesNotFlushTheNextBatch() throws Exception {
+        final TimingWheel timer = new TimingWheel(1, TimeUnit.MILLISECONDS, 64);
+        try {
+            final List<Sent> sent = new CopyOnWriteArrayList<>();
+            final CoalesceSend send = new CoalesceSend(30, 50,
+                    (dest, payload, packets, priority) -> sent.add(new Sent(dest, payload, packets, priority)), timer);
+
+            // sent for its size, its timer must not take the next batch
+            send.handlePacket(new byte[30], destA, portA, (byte) 1);
+            assertEquals(1, sent.size());
+            assertEquals(0, timer.getActiveTimers(), "the timer of the sent batch is cancelled");
+            Thread.sleep(30);
+            send.handlePacket(new byte[10], destA, portA, (byte) 1);
+            Thread.sleep(30);
+            assertEquals(1, sent.size(), "the second batch waits for its own timer");
+            assertEquals(1, getInternalMap(send).size());
+        } finally {
+            timer.close();
+        }
+    }
+
+    @Test
+    public void testFlushAndAccepts() throws Exception {
+        final List<Sent> sent = new CopyOnWriteArrayList<>();
+        final CoalesceSend send = new CoalesceSend(100, 1000,
+                (dest, payload, packets, priority) -> sent.add(new Sent(dest, payload, packets, priority)), null);
+
+        assertTrue(send.accepts(94));
+        assertFalse(send.accepts(95));
+        assertFalse(new CoalesceSend(0, 10, null, null).accepts(0), "a size of 0 turns coalescing off");
+
+        send.handlePacket(new byte[10], destA, portA, (byte) 1);
+        send.handlePacket(new byte[10], destB, portB, (byte) 1);
+        send.flush(destA, portA);
+        assertEquals(1, sent.size());
+        assertEquals(portA, sent.get(0).dest().port());
+
+        send.flush(destA, portA);
+        assertEquals(1, sent.size(), "nothing left to flush");
+
+        send.flushAll();
+        assertEquals(2, sent.size());
+        assertTrue(getInternalMap(send).isEmpty());
+    }
+
+    private static Map<String, CoalescedPacket> getInternalMap(final CoalesceSend send) throws Exception {
+        Field mapField = CoalesceSend.class.getDeclaredField("coalescedPackets");
+        mapField.setAccessible(true);
+        return (Map<String, CoalescedPacket>) mapField.get(send);
+    }
 }
@@ -0,0 +1,222 @@
+package com.swe.networking;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.swe.core.ClientNode;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+class DeficitRoundRobinSchedulerTest {
+
+    private final DeficitRoundRobinScheduler scheduler = new DeficitRoundRobinScheduler();
+
+    private static byte[] chunk(final int level, final int seq, final int length) {
+        final byte[] data = new byte[length];
+        data[0] = (byte) level;
+        data[1] = (byte) seq;
+        return data;
+    }
+
+    @Test
+    void testEmptyQueueReturnsNull() {
+        assertTrue(scheduler.isEmpty());
+        assertNull(scheduler.nextPacket());
+    }
+
+    @Test
+    void testSingleLevelKeepsFifoOrder() {
+        for (int i = 0; i < 5; i++) {
+            scheduler.addPacket(chunk(3, i, 100), 3);
+        }
+        for (int i = 0; i < 5; i++) {
+            final byte[] packet = scheduler.nextPacket();
+            assertEquals(i, packet[1], "chunks of a level leave in arrival order");
+        }
+        assertTrue(scheduler.isEmpty());
+        assertNull(scheduler.nextPacket());
+    }
+
+    @Test
+    void testBackloggedLevelsShareBytesByWeight() {
+        // level 2 has a 70% share, level 3 a 10% share
+        final int length = 1000;
+        for (int i = 0; i < 2000; i++) {
+            scheduler.addPacket(chunk(2, i, length), 2);
+            scheduler.addPacket(chunk(3, i, length), 3);
+        }
+        int video = 0;
+        int chat = 0;
+        for (int i = 0; i < 1600; i++) {
+            if (scheduler.nextPacket()[0] == 2) {
+                video++;
+            } else {
+                chat++;
+            }
+        }
+        assertEquals(7.0, video / (double) chat, 0.5);
+    }
+
+    @Test
+    void testSharedPayloadChunkIsChargedAndSentWhole() throws InterruptedException {
+        final byte[] chunk = chunk(2, 0, 1000);
+        final java.nio.ByteBuffer payload = java.nio.ByteBuffer.wrap(chunk, 22, 978).slice().asReadOnlyBuffer();
+        final byte[] header = java.util.Arrays.copyOf(chunk, 22);
+        final ClientNode dest = new ClientNode("10.0.0.1", 8000);
+        scheduler.addPacket(header, payload, 2, dest);
+        scheduler.addPacket(header, payload, 2, dest);
+
+        final OutgoingPacket packet = scheduler.take();
+        assertSame(header, packet.data());
+        assertEquals(1000, packet.length());
+        assertArrayEquals(chunk, packet.toBytes());
+        assertArrayEquals(chunk, scheduler.nextPacket(), "polled without a destination it comes out whole");
+        assertEquals(978, payload.remaining(), "the shared payload is not consumed");
+    }
+
+    @Test
+    void testLargeChunksDoNotStarveSmallOnes() {
+        // a share of 10 gets 10 KB per round, bigger chunks wait for credit
+        scheduler.addPacket(chunk(0, 0, 15 * 1024), 0);
+        scheduler.addPacket(chunk(3, 0, 100), 3);
+
+        assertEquals(3, scheduler.nextPacket()[0], "the small chunk fits first");
+        assertEquals(0, scheduler.nextPacket()[0], "the large one is sent once its deficit covers it");
+    }
+
+    @Test
+    void testIdleLevelsLeaveTheirShare() {
+        for (int i = 0; i < 10; i++) {
+            scheduler.addPacket(chunk(7, i, 10 * 1024), 7);
+        }
+        for (int i = 0; i < 10; i++) {
+            assertNotNull(scheduler.nextPacket(), "a queued chunk is always returned");
+        }
+        assertTrue(scheduler.isEmpty());
+    }
+
+    @Test
+    void testUnknownLevelGoesToLowest() {
+        final byte[] data = chunk(9, 0, 10);
+        scheduler.addPacket(data, 42);
+        assertArrayEquals(data, scheduler.nextPacket());
+    }
+
+    @Test
+    void testClear() {
+        scheduler.addPacket(chunk(1, 0, 10), 1);
+        scheduler.addPacket(chunk(2, 0, 10), 2);
+        scheduler.clear();
+        assertTrue(scheduler.isEmpty());
+        assertEquals(0, scheduler.size());
+        assertNull(scheduler.nextPacket());
+    }
+
+    @Test
+    void testConcurrentProducersLoseNothing() throws InterruptedException {
+        final int producers = 4;
+        final int perProducer = 2000;
+        final ExecutorService pool = Executors.newFixedThreadPool(producers);
+        final CountDownLatch done = new CountDownLatch(producers);
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            pool.submit(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    final byte[] data = new byte[8];
+                    data[0] = (byte) producer;
+                    data[4] = (byte) (i >> 8);
+                    data[5] = (byte) i;
+                    scheduler.addPacket(data, (producer + i) % 4);
+                }
+                done.countDown();
+            });
+        }
+
+        final Set<Integer> seen = new HashSet<>();
+        while (seen.size() < producers * perProducer) {
+            final byte[] packet = scheduler.nextPacket();
+            if (packet != null) {
+                seen.add(packet[0] * perProducer + ((packet[4] & 0xFF) << 8 | (packet[5] & 0xFF)));
+            }
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        pool.shutdown();
+        assertTrue(scheduler.isEmpty());
+        assertNull(scheduler.nextPacket());
+    }
+
+    @Test
+    void testDestinationTravelsWithTheChunk() throws InterruptedException {
+        final ClientNode dest = new ClientNode("10.0.0.2", 8000);
+        final byte[] data = chunk(2, 0, 10);
+        scheduler.addPacket(data, 2, dest);
+
+        final OutgoingPacket packet = scheduler.take();
+        assertSame(data, packet.data());
+        assertEquals(dest, packet.dest());
+        assertTrue(packet.enqueuedAt() <= System.nanoTime());
+    }
+
+    @Test
+    void testTakeParksUntilAProducerAdds() throws InterruptedException {
+        final AtomicReference<OutgoingPacket> taken = new AtomicReference<>();
+        final Thread consumer = new Thread(() -> {
+            try {
+                taken.set(scheduler.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        consumer.start();
+        // wait until the consumer is parked on the empty scheduler
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (consumer.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertEquals(Thread.State.WAITING, consumer.getState());
+
+        scheduler.addPacket(chunk(3, 7, 10), 3, new ClientNode("10.0.0.3", 8000));
+        consumer.join(5000);
+        assertNotNull(taken.get(), "the producer wakes the parked consumer");
+        assertEquals(7, taken.get().data()[1]);
+    }
+
+    @Test
+    void testTakeIsInterruptible() {
+        Thread.currentThread().interrupt();
+        assertThrows(InterruptedException.class, scheduler::take);
+        assertFalse(Thread.currentThread().isInterrupted());
+    }
+
+    @Test
+    void testNoWakeupIsLostUnderLoad() throws InterruptedException {
+        final int total = 20_000;
+        final Thread producer = new Thread(() -> {
+            for (int i = 0; i < total; i++) {
+                scheduler.addPacket(new byte[8], i % 4, null);
+                if (i % 100 == 0) {
+                    Thread.yield();
+                }
+            }
+        });
+        producer.start();
+        for (int i = 0; i < total; i++) {
+            assertNotNull(scheduler.take());
+        }
+        producer.join();
+        assertTrue(scheduler.isEmpty());
+    }
+}
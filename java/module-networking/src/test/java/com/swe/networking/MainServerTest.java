@@ -1221,15 +1221,15 @@ public class MainServerTest {
             Thread.sleep(500);
             // Test ALIVE
             byte[] alivePacket = PacketParser.getPacketParser().createPkt(createPacketInfo(NetworkType.USE.ordinal(), NetworkConnectionType.ALIVE.ordinal(), clientNode, null));
-            invokePrivateMethod(mainServer, "handleUsePacket", new Class<?>[]{byte[].class, ClientNode.class, int.class}, new Object[]{alivePacket, clientNode, NetworkConnectionType.ALIVE.ordinal()});
+            invokePrivateMethod(mainServer, "handleUsePacket", new Class<?>[]{byte[].class, ClientNode.class, int.class, ClientNode.class}, new Object[]{alivePacket, clientNode, NetworkConnectionType.ALIVE.ordinal(), clientNode});
             Thread.sleep(200);
             // Test CLOSE
             byte[] closePacket = PacketParser.getPacketParser().createPkt(createPacketInfo(NetworkType.USE.ordinal(), NetworkConnectionType.CLOSE.ordinal(), clientNode, null));
-            invokePrivateMethod(mainServer, "handleUsePacket", new Class<?>[]{byte[].class, ClientNode.class, int.class}, new Object[]{closePacket, clientNode, NetworkConnectionType.CLOSE.ordinal()});
+            invokePrivateMethod(mainServer, "handleUsePacket", new Class<?>[]{byte[].class, ClientNode.class, int.class, ClientNode.class}, new Object[]{closePacket, clientNode, NetworkConnectionType.CLOSE.ordinal(), clientNode});
             Thread.sleep(200);
             // Test unknown connection type
             byte[] unknownPacket = PacketParser.getPacketParser().createPkt(createPacketInfo(NetworkType.USE.ordinal(), 99, clientNode, null));
-            invokePrivateMethod(mainServer, "handleUsePacket", new Class<?>[]{byte[].class, ClientNode.class, int.class}, new Object[]{unknownPacket, clientNode, 99});
+            invokePrivateMethod(mainServer, "handleUsePacket", new Class<?>[]{byte[].class, ClientNode.class, int.class, ClientNode.class}, new Object[]{unknownPacket, clientNode, 99, clientNode});
         } finally {
             if (mainServer != null) {
                 mainServer.close();
@@ -1271,22 +1271,26 @@ public class MainServerTest {
             // Test USE broadcast
             PacketInfo pkt = createPacketInfo(NetworkType.USE.ordinal(), 0, new ClientNode("127.0.0.1", 9220), "Broadcast from main server".getBytes());
             pkt.setBroadcast(1);
-            invokePrivateMethod(mainServer, "handleBroadcast", new Class<?>[]{PacketInfo.class}, new Object[]{pkt});
+            invokePrivateMethod(mainServer, "handleBroadcast", new Class<?>[]{byte[].class},
+                    new Object[]{PacketParser.getPacketParser().createPkt(pkt)});
             Thread.sleep(200);
             // Test OTHERCLUSTER broadcast
             pkt = createPacketInfo(NetworkType.OTHERCLUSTER.ordinal(), 0, mainServerNode, "Broadcast from another cluster".getBytes());
             pkt.setBroadcast(1);
-            invokePrivateMethod(mainServer, "handleBroadcast", new Class<?>[]{PacketInfo.class}, new Object[]{pkt});
+            invokePrivateMethod(mainServer, "handleBroadcast", new Class<?>[]{byte[].class},
+                    new Object[]{PacketParser.getPacketParser().createPkt(pkt)});
             Thread.sleep(200);
             // Test with no other servers
             pkt = createPacketInfo(NetworkType.USE.ordinal(), 0, new ClientNode("127.0.0.1", 9420), "Broadcast with no other servers".getBytes());
             pkt.setBroadcast(1);
-            invokePrivateMethod(mainServer, "handleBroadcast", new Class<?>[]{PacketInfo.class}, new Object[]{pkt});
+            invokePrivateMethod(mainServer, "handleBroadcast", new Class<?>[]{byte[].class},
+                    new Object[]{PacketParser.getPacketParser().createPkt(pkt)});
             Thread.sleep(200);
             // Test OTHERCLUSTER with no clients
             pkt = createPacketInfo(NetworkType.OTHERCLUSTER.ordinal(), 0, mainServerNode, "Broadcast OTHERCLUSTER with no clients".getBytes());
             pkt.setBroadcast(1);
-            invokePrivateMethod(mainServer, "handleBroadcast", new Class<?>[]{PacketInfo.class}, new Object[]{pkt});
+            invokePrivateMethod(mainServer, "handleBroadcast", new Class<?>[]{byte[].class},
+                    new Object[]{PacketParser.getPacketParser().createPkt(pkt)});
             serverBThread.join(2000);
             serverCThread.join(2000);
             clientAThread.join(2000);
@@ -1434,7 +1438,8 @@ public class MainServerTest {
             Thread.sleep(500);
             PacketInfo pkt = createPacketInfo(99, 0, new ClientNode("127.0.0.1", 9300), "Unknown broadcast type".getBytes());
             pkt.setBroadcast(1);
-            invokePrivateMethod(mainServer, "handleBroadcast", new Class<?>[]{PacketInfo.class}, new Object[]{pkt});
+            invokePrivateMethod(mainServer, "handleBroadcast", new Class<?>[]{byte[].class},
+                    new Object[]{PacketParser.getPacketParser().createPkt(pkt)});
         } finally {
             if (mainServer != null) {
                 mainServer.close();
@@ -1512,7 +1517,7 @@ public class MainServerTest {
             pkt.setModule(ModuleType.NETWORKING.ordinal());
             pkt.setChunkNum(0);
             pkt.setChunkLength(2);
-            invokePrivateMethod(mainServer, "handleUsePacket", new Class<?>[]{byte[].class, ClientNode.class, int.class}, new Object[]{PacketParser.getPacketParser().createPkt(pkt), clientNode, NetworkConnectionType.MODULE.ordinal()});
+            invokePrivateMethod(mainServer, "handleUsePacket", new Class<?>[]{byte[].class, ClientNode.class, int.class, ClientNode.class}, new Object[]{PacketParser.getPacketParser().createPkt(pkt), clientNode, NetworkConnectionType.MODULE.ordinal(), clientNode});
         } finally {
             if (mainServer != null) {
                 mainServer.close();
@@ -0,0 +1,199 @@
+package com.swe.networking;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class ModuleDispatcherTest {
+
+    private final Map<Integer, MessageListener> listeners = new ConcurrentHashMap<>();
+    private final ModuleDispatcher dispatcher = new ModuleDispatcher(listeners::get);
+
+    @AfterEach
+    void close() {
+        dispatcher.close();
+    }
+
+    private static byte[] data(final int i) {
+        return new byte[] {(byte) i};
+    }
+
+    @Test
+    void testDataReachesTheListenerInOrder() throws InterruptedException {
+        final List<Integer> received = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(100);
+        listeners.put(ModuleType.CHAT.ordinal(), data -> {
+            received.add((int) data[0]);
+            done.countDown();
+        });
+        for (int i = 0; i < 100; i++) {
+            assertTrue(dispatcher.dispatch(ModuleType.CHAT.ordinal(), data(i)));
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 100; i++) {
+            assertEquals((byte) i, received.get(i).byteValue());
+        }
+        assertEquals(100, dispatcher.snapshot().get(ModuleType.CHAT).delivered());
+    }
+
+    @Test
+    void testSlowModuleDoesNotHoldUpOthers() throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch chat = new CountDownLatch(1);
+        listeners.put(ModuleType.CANVAS.ordinal(), data -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        listeners.put(ModuleType.CHAT.ordinal(), data -> chat.countDown());
+
+        dispatcher.dispatch(ModuleType.CANVAS.ordinal(), data(1));
+        dispatcher.dispatch(ModuleType.CANVAS.ordinal(), data(2));
+        dispatcher.dispatch(ModuleType.CHAT.ordinal(), data(3));
+        assertTrue(chat.await(5, TimeUnit.SECONDS));
+        release.countDown();
+    }
+
+    @Test
+    void testScreenShareDropsTheOldestFrames() throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Integer> received = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(4);
+        dispatcher.configure(ModuleType.SCREENSHARING, 3, ModuleDispatcher.OverflowPolicy.DROP_OLDEST);
+        listeners.put(ModuleType.SCREENSHARING.ordinal(), data -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (received) {
+                received.add((int) data[0]);
+            }
+            done.countDown();
+        });
+
+        dispatcher.dispatch(ModuleType.SCREENSHARING.ordinal(), data(0));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i <= 6; i++) {
+            // never waits, the listener is stuck
+            dispatcher.dispatch(ModuleType.SCREENSHARING.ordinal(), data(i));
+        }
+        final ModuleDispatcher.Snapshot snapshot = dispatcher.snapshot().get(ModuleType.SCREENSHARING);
+        assertEquals(3, snapshot.depth());
+        assertEquals(3, snapshot.dropped());
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        synchronized (received) {
+            assertEquals(List.of(0, 4, 5, 6), received);
+        }
+    }
+
+    @Test
+    void testScreenShareNeverDropsProtectedMessages() throws InterruptedException {
+        final int frame = PriorityQueue.PacketPriority.TWO.ordinal();
+        final int control = PriorityQueue.PacketPriority.ONE.ordinal();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Integer> received = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(5);
+        dispatcher.configure(ModuleType.SCREENSHARING, 3, ModuleDispatcher.OverflowPolicy.DROP_OLDEST);
+        listeners.put(ModuleType.SCREENSHARING.ordinal(), data -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (received) {
+                received.add((int) data[0]);
+            }
+            done.countDown();
+        });
+
+        dispatcher.dispatch(ModuleType.SCREENSHARING.ordinal(), data(0), frame);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        dispatcher.dispatch(ModuleType.SCREENSHARING.ordinal(), data(1), control);
+        dispatcher.dispatch(ModuleType.SCREENSHARING.ordinal(), data(2), control);
+        for (int i = 3; i <= 5; i++) {
+            // only the frames make room
+            dispatcher.dispatch(ModuleType.SCREENSHARING.ordinal(), data(i), frame);
+        }
+        // the last queued frame makes room for a control message too
+        dispatcher.dispatch(ModuleType.SCREENSHARING.ordinal(), data(6), control);
+        assertEquals(3, dispatcher.snapshot().get(ModuleType.SCREENSHARING).dropped());
+
+        final CountDownLatch queued = new CountDownLatch(1);
+        final Thread receiver = new Thread(() -> {
+            dispatcher.dispatch(ModuleType.SCREENSHARING.ordinal(), data(7), control);
+            queued.countDown();
+        });
+        receiver.start();
+        assertFalse(queued.await(200, TimeUnit.MILLISECONDS), "waits while nothing can be dropped");
+
+        release.countDown();
+        assertTrue(queued.await(5, TimeUnit.SECONDS));
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        synchronized (received) {
+            assertEquals(List.of(0, 1, 2, 6, 7), received);
+        }
+    }
+
+    @Test
+    void testFullChatQueueHoldsTheReceiverUntilThereIsRoom() throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(4);
+        dispatcher.configure(ModuleType.CHAT, 2, ModuleDispatcher.OverflowPolicy.BLOCK);
+        listeners.put(ModuleType.CHAT.ordinal(), data -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            done.countDown();
+        });
+
+        dispatcher.dispatch(ModuleType.CHAT.ordinal(), data(0));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        dispatcher.dispatch(ModuleType.CHAT.ordinal(), data(1));
+        dispatcher.dispatch(ModuleType.CHAT.ordinal(), data(2));
+        final CountDownLatch queued = new CountDownLatch(1);
+        final Thread receiver = new Thread(() -> {
+            dispatcher.dispatch(ModuleType.CHAT.ordinal(), data(3));
+            queued.countDown();
+        });
+        receiver.start();
+        assertFalse(queued.await(200, TimeUnit.MILLISECONDS), "waits while the queue is full");
+
+        release.countDown();
+        assertTrue(queued.await(5, TimeUnit.SECONDS));
+        assertTrue(done.await(5, TimeUnit.SECONDS), "nothing is dropped");
+        assertEquals(0, dispatcher.snapshot().get(ModuleType.CHAT).dropped());
+    }
+
+    @Test
+    void testListenerOutsideTheModulesIsCalledDirectly() {
+        final int module = ModuleType.values().length + 3;
+        final List<Thread> callers = new ArrayList<>();
+        listeners.put(module, data -> callers.add(Thread.currentThread()));
+
+        assertTrue(dispatcher.dispatch(module, data(0)));
+        assertEquals(List.of(Thread.currentThread()), callers);
+        assertFalse(dispatcher.dispatch(-1, data(0)), "nobody listens to it");
+    }
+}
@@ -24,6 +24,8 @@ import java.net.InetAddress;
 import java.net.Socket;
 import java.net.UnknownHostException;
 import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -70,23 +72,52 @@ public class NetworkingTest {
     }
 
     @Test
-    public void testSubscribeAndCallSubscriber() {
+    public void testSubscribeAndCallSubscriber() throws InterruptedException {
 
         AtomicReference<byte[]> receivedDataRef = new AtomicReference<>();
+        CountDownLatch received = new CountDownLatch(1);
         MessageListener chatListener = (data) -> {
             System.out.println("Received data: " + new String(data));
             receivedDataRef.set(data);
+            received.countDown();
         };
 
         networking.subscribe(ModuleType.CHAT.ordinal(), chatListener);
         byte[] testData = "hello chat module!".getBytes();
 
         networking.callSubscriber(ModuleType.CHAT.ordinal(), testData);
+        // the listener runs on the module's dispatch thread
+        assertTrue(received.await(5, TimeUnit.SECONDS), "Listener was not called");
         System.out.println("Test data: " + new String(receivedDataRef.get()));
         assertNotNull(receivedDataRef.get(), "Listener was not called");
         assertArrayEquals(testData, receivedDataRef.get(), "Listener received incorrect data");
     }
 
+    @Test
+    public void testScreenShareGoesOverUdpOnceChosen() throws InterruptedException {
+        AtomicReference<byte[]> receivedDataRef = new AtomicReference<>();
+        CountDownLatch received = new CountDownLatch(1);
+        networking.subscribe(ModuleType.SCREENSHARING.ordinal(), data -> {
+            receivedDataRef.set(data);
+            received.countDown();
+        });
+        // a full image, several datagrams over loopback to this device
+        byte[] image = new byte[200 * 1024];
+        Arrays.fill(image, (byte) 7);
+
+        networking.setTransport(ModuleType.SCREENSHARING, Networking.Transport.UDP);
+        try {
+            networking.sendData(image, new ClientNode[]{serverNode}, ModuleType.SCREENSHARING.ordinal(),
+                    PriorityQueue.PacketPriority.ONE.ordinal());
+            assertTrue(received.await(5, TimeUnit.SECONDS), "Listener was not called");
+            assertArrayEquals(image, receivedDataRef.get(), "Listener received incorrect data");
+            assertTrue(networking.getDatagramStats().received() > 1, "The image did not go over UDP");
+            assertEquals(0, networking.getDatagramStats().lost());
+        } finally {
+            networking.setTransport(ModuleType.SCREENSHARING, Networking.Transport.TCP);
+        }
+    }
+
     @Test
     public void testCallSubscriber_NoFunction() {
         assertDoesNotThrow(() -> networking.callSubscriber(ModuleType.CHAT.ordinal() + 99, "dummy".getBytes()));
@@ -128,7 +159,7 @@ public class NetworkingTest {
     }
 
     @Test
-    public void testSendData_CoverInternalCatch() throws Exception {
+    public void testSendData_DoesNotParseChunks() throws Exception {
 
         PacketParser mockParser = mock(PacketParser.class);
         resetStaticSingleton(PacketParser.class, "parser", mockParser); // Reset static singleton
@@ -140,15 +171,15 @@ public class NetworkingTest {
         topology.addClient(clientNode); // clientNode = 127.0.0.1:8001
         byte[] testData = "test data".getBytes();
 
-
-        doThrow(new UnknownHostException("Forcing sendData's catch block"))
+        doThrow(new UnknownHostException("sendData should not parse its chunks"))
                 .when(mockParser).parsePacket(any(byte[].class));
 
         assertDoesNotThrow(() -> {
             networking.sendData(testData, new ClientNode[]{clientNode}, ModuleType.CANVAS.ordinal(), 1);
-        }, "sendData should catch the UnknownHostException thrown by the parser mock.");
+        });
 
-        verify(mockParser, atLeastOnce()).parsePacket(any(byte[].class));
+        // the destination travels with the chunk instead of being decoded from it
+        verify(mockParser, never()).parsePacket(any(byte[].class));
     }
 
     @Test
@@ -257,17 +288,17 @@ public class NetworkingTest {
     }
 
     @Test
-    public void testSubscribe_ExistingModule() {
-        AtomicBoolean listenerCalled = new AtomicBoolean(false);
+    public void testSubscribe_ExistingModule() throws InterruptedException {
+        CountDownLatch listenerCalled = new CountDownLatch(1);
         MessageListener chatListener = (data) -> {
-            listenerCalled.set(true);
+            listenerCalled.countDown();
         };
         networking.subscribe(ModuleType.CHAT.ordinal(), chatListener);
         networking.subscribe(ModuleType.CHAT.ordinal(), chatListener);
         byte[] testData = "test overwrite".getBytes();
         networking.callSubscriber(ModuleType.CHAT.ordinal(), testData);
 
-        assertTrue(listenerCalled.get(), "The module listener should still be active after the duplicate subscription attempt.");
+        assertTrue(listenerCalled.await(5, TimeUnit.SECONDS), "The module listener should still be active after the duplicate subscription attempt.");
     }
 
 
@@ -18,9 +18,7 @@ import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.Semaphore;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.jupiter.api.AfterEach;
@@ -276,14 +274,13 @@ public class P2PClientTest {
         testClient = new P2PClient(deviceNode, mainServer, communicator);
         setPrivateField(testClient, "clusterServerAddress", clusterServerNode);
 
-        ScheduledExecutorService scheduler =
-                (ScheduledExecutorService) getPrivateField(testClient, "aliveScheduler");
+        TimingWheel.Timeout alive =
+                (TimingWheel.Timeout) getPrivateField(testClient, "aliveTimeout");
 
-        if (scheduler != null) {
-            scheduler.shutdownNow();
-            scheduler.awaitTermination(200, TimeUnit.MILLISECONDS);
+        if (alive != null) {
+            alive.cancel();
         }
-        setPrivateField(testClient, "aliveScheduler", null);
+        setPrivateField(testClient, "aliveTimeout", null);
 
         Method sendAlive = P2PClient.class.getDeclaredMethod("sendAlivePacket");
         sendAlive.setAccessible(true);
@@ -311,14 +308,13 @@ public class P2PClientTest {
         ClientNode badNode = new ClientNode("invalid-host-name!!!", 9122);
         final ProtocolBase communicator = new TCPCommunicator(9122);
         testClient = new P2PClient(badNode, mainServer, communicator);
-        ScheduledExecutorService scheduler =
-                (ScheduledExecutorService) getPrivateField(testClient, "aliveScheduler");
+        TimingWheel.Timeout alive =
+                (TimingWheel.Timeout) getPrivateField(testClient, "aliveTimeout");
 
-        if (scheduler != null) {
-            scheduler.shutdownNow();
-            scheduler.awaitTermination(200, TimeUnit.MILLISECONDS);
+        if (alive != null) {
+            alive.cancel();
         }
-        setPrivateField(testClient, "aliveScheduler", null);
+        setPrivateField(testClient, "aliveTimeout", null);
         setPrivateField(testClient, "clusterServerAddress", clusterServerNode);
 
         Method sendAlive = P2PClient.class.getDeclaredMethod("sendAlivePacket");
@@ -547,7 +543,7 @@ public class P2PClientTest {
         testClient.close();
         Thread.sleep(100);
 
-        setPrivateField(testClient, "aliveScheduler", null);
+        setPrivateField(testClient, "aliveTimeout", null);
         setPrivateField(testClient, "receiveThread", null);
         setPrivateField(testClient, "communicator", null);
         setPrivateField(testClient, "running", true);
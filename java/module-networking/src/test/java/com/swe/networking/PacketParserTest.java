@@ -3,8 +3,11 @@ package com.swe.networking;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 
+import com.swe.core.ClientNode;
+
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
 
 
 public class PacketParserTest {
@@ -326,4 +329,81 @@ public class PacketParserTest {
         assertEquals(ChunkLength, info.getChunkLength());
         assertArrayEquals(data, info.getPayload());
     }
-}
\ No newline at end of file
+
+    private static PacketInfo headerViewInfo() throws UnknownHostException {
+        final PacketInfo ds = new PacketInfo();
+        ds.setLength(27);
+        ds.setType(NetworkType.OTHERCLUSTER.ordinal());
+        ds.setPriority(6);
+        ds.setModule(11);
+        ds.setConnectionType(NetworkConnectionType.MODULE.ordinal());
+        ds.setBroadcast(1);
+        ds.setIpAddress(InetAddress.getByName("192.168.200.7"));
+        ds.setPortNum(50001);
+        ds.setMessageId(-2);
+        ds.setChunkNum(3);
+        ds.setChunkLength(9);
+        ds.setOriginAddress(InetAddress.getByName("172.16.4.9"));
+        ds.setOriginPort(50002);
+        ds.setPayload(new byte[] {1, 2, 3, 4, 5});
+        return ds;
+    }
+
+    @Test
+    public void testHeaderViewMatchesParsePacket() throws UnknownHostException {
+        final PacketParser parser = PacketParser.getPacketParser();
+        final byte[] pkt = parser.createPkt(headerViewInfo());
+        final PacketInfo info = parser.parsePacket(pkt);
+
+        assertEquals(info.getLength(), PacketParser.getLength(pkt));
+        assertEquals(info.getType(), PacketParser.getType(pkt));
+        assertEquals(info.getPriority(), PacketParser.getPriority(pkt));
+        assertEquals(info.getModule(), PacketParser.getModule(pkt));
+        assertEquals(info.getConnectionType(), PacketParser.getConnectionType(pkt));
+        assertEquals(info.getBroadcast(), PacketParser.getBroadcast(pkt));
+        assertEquals(info.getIpAddress(), PacketParser.getIpAddress(pkt));
+        assertEquals("192.168.200.7", PacketParser.getHostAddress(pkt));
+        assertEquals(50001, PacketParser.getPortNum(pkt));
+        assertEquals(new ClientNode("192.168.200.7", 50001), PacketParser.getClientNode(pkt));
+        assertEquals(-2, PacketParser.getMessageId(pkt));
+        assertEquals(3, PacketParser.getChunkNum(pkt));
+        assertEquals(9, PacketParser.getChunkLength(pkt));
+        assertEquals(InetAddress.getByName("172.16.4.9"), info.getOriginAddress());
+        assertEquals(0xAC100409, PacketParser.getOriginIpv4(pkt));
+        assertEquals(50002, PacketParser.getOriginPort(pkt));
+        assertEquals(info.getOriginPort(), PacketParser.getOriginPort(pkt));
+    }
+
+    @Test
+    public void testHeaderRewriteInPlaceKeepsOtherFields() throws UnknownHostException {
+        final PacketParser parser = PacketParser.getPacketParser();
+        final PacketInfo ds = headerViewInfo();
+        final byte[] pkt = parser.createPkt(ds);
+
+        PacketParser.setType(pkt, NetworkType.USE.ordinal());
+        PacketParser.setBroadcast(pkt, 0);
+        PacketParser.setChunkNum(pkt, 0);
+        PacketParser.setChunkLength(pkt, 1);
+
+        ds.setType(NetworkType.USE.ordinal());
+        ds.setBroadcast(0);
+        ds.setChunkNum(0);
+        ds.setChunkLength(1);
+        assertArrayEquals(parser.createPkt(ds), pkt);
+    }
+
+    @Test
+    public void testAddressRewriteInPlaceKeepsOtherFields() throws UnknownHostException {
+        final PacketParser parser = PacketParser.getPacketParser();
+        final PacketInfo ds = headerViewInfo();
+        final byte[] pkt = parser.createPkt(ds);
+
+        PacketParser.setIpAddress(pkt, InetAddress.getByName("10.32.0.41"));
+        PacketParser.setPortNum(pkt, 65000);
+
+        ds.setIpAddress(InetAddress.getByName("10.32.0.41"));
+        ds.setPortNum(65000);
+        assertArrayEquals(parser.createPkt(ds), pkt);
+        assertEquals(new ClientNode("10.32.0.41", 65000), PacketParser.getClientNode(pkt));
+    }
+}
@@ -0,0 +1,170 @@
+package com.swe.networking;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.swe.core.ClientNode;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class ReceiveDispatcherTest {
+
+    private static final ClientNode SENDER = new ClientNode("127.0.0.1", 40000);
+
+    private final ReceiveDispatcher dispatcher = new ReceiveDispatcher();
+
+    @AfterEach
+    void close() {
+        dispatcher.close();
+    }
+
+    private static byte[] packet(final int module, final int connectionType, final byte[] payload)
+            throws UnknownHostException {
+        final PacketInfo info = new PacketInfo();
+        info.setType(NetworkType.USE.ordinal());
+        info.setModule(module);
+        info.setConnectionType(connectionType);
+        info.setIpAddress(InetAddress.getByName("127.0.0.1"));
+        info.setPortNum(8000);
+        info.setPayload(payload);
+        return PacketParser.getPacketParser().createPkt(info);
+    }
+
+    private static byte[] coalesced(final int... modules) throws UnknownHostException {
+        final ByteBuffer records = ByteBuffer.allocate(modules.length * 6);
+        for (int i = 0; i < modules.length; i++) {
+            // one byte of data, its index in the batch
+            records.putInt(6).put((byte) modules[i]).put((byte) i);
+        }
+        return packet(ModuleType.NETWORKING.ordinal(), NetworkConnectionType.COALESCED.ordinal(), records.array());
+    }
+
+    @Test
+    void testSmallDataIsNotOvertakenByLargeDataOfItsModule() throws Exception {
+        final List<String> received = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(2);
+        dispatcher.setReceiver(packet -> {
+            if (PacketParser.getConnectionType(packet.data()) == NetworkConnectionType.COALESCED.ordinal()) {
+                try {
+                    // a slow batch, the chunk after it must still wait
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                synchronized (received) {
+                    received.add("small");
+                }
+            } else {
+                synchronized (received) {
+                    received.add("large");
+                }
+            }
+            done.countDown();
+        });
+
+        dispatcher.dispatch(new ReceivePacket(SENDER, coalesced(ModuleType.CHAT.ordinal())));
+        dispatcher.dispatch(new ReceivePacket(SENDER,
+                packet(ModuleType.CHAT.ordinal(), NetworkConnectionType.MODULE.ordinal(), new byte[64 * 1024])));
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        synchronized (received) {
+            assertEquals(List.of("small", "large"), received);
+        }
+    }
+
+    @Test
+    void testFullLaneHoldsTheReaderInsteadOfDroppingChunks() throws Exception {
+        final ReceiveDispatcher bounded = new ReceiveDispatcher(4);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Integer> received = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(10);
+        bounded.setReceiver(packet -> {
+            try {
+                // a stuck module, its lane fills up
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (received) {
+                received.add((int) packet.data()[PacketParser.getHeaderSize()]);
+            }
+            done.countDown();
+        });
+        try {
+            final int media = PriorityQueue.PacketPriority.TWO.ordinal();
+            final Thread reader = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 10; i++) {
+                        bounded.dispatch(new ReceivePacket(SENDER,
+                                prioritised(ModuleType.SCREENSHARING.ordinal(), media, i)));
+                    }
+                } catch (UnknownHostException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            reader.start();
+            // one packet is taken by the stuck receiver, the lane holds 4 and the reader waits
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (bounded.getQueuedPackets(ModuleType.SCREENSHARING) < 4 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            reader.join(200);
+            assertTrue(reader.isAlive(), "the reader must wait for room");
+            assertEquals(4, bounded.getQueuedPackets(ModuleType.SCREENSHARING));
+
+            release.countDown();
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            reader.join(5000);
+            synchronized (received) {
+                assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), received, "no chunk is dropped");
+            }
+        } finally {
+            bounded.close();
+        }
+    }
+
+    private static byte[] prioritised(final int module, final int priority, final int index)
+            throws UnknownHostException {
+        final PacketInfo info = new PacketInfo();
+        info.setType(NetworkType.USE.ordinal());
+        info.setModule(module);
+        info.setPriority(priority);
+        info.setConnectionType(NetworkConnectionType.MODULE.ordinal());
+        info.setIpAddress(InetAddress.getByName("127.0.0.1"));
+        info.setPortNum(8000);
+        info.setPayload(new byte[] {(byte) index});
+        return PacketParser.getPacketParser().createPkt(info);
+    }
+
+    @Test
+    void testMixedBatchIsSplitByModule() throws Exception {
+        final int chat = ModuleType.CHAT.ordinal();
+        final int canvas = ModuleType.CANVAS.ordinal();
+        final List<byte[]> parts = new ArrayList<>(
+                CoalesceReceive.splitByModule(coalesced(chat, canvas, chat, canvas, chat)).values());
+
+        assertEquals(2, parts.size());
+        final ByteBuffer chatRecords = ByteBuffer.wrap(parts.get(0), PacketParser.getHeaderSize(), 18);
+        for (int index : new int[] {0, 2, 4}) {
+            assertEquals(6, chatRecords.getInt());
+            assertEquals(chat, chatRecords.get());
+            assertEquals(index, chatRecords.get(), "the records of a module keep their order");
+        }
+        assertEquals(PacketParser.getHeaderSize() + 12, parts.get(1).length);
+        assertEquals(NetworkConnectionType.COALESCED.ordinal(), PacketParser.getConnectionType(parts.get(1)));
+    }
+
+    @Test
+    void testBatchOfOneModuleIsNotCopied() throws Exception {
+        final byte[] batch = coalesced(ModuleType.CHAT.ordinal(), ModuleType.CHAT.ordinal());
+        assertTrue(CoalesceReceive.splitByModule(batch).get(ModuleType.CHAT.ordinal()) == batch);
+    }
+}
@@ -0,0 +1,77 @@
+package com.swe.networking;
+
+import com.swe.core.ClientNode;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+class SendMetricsTest {
+
+    private final SendMetrics metrics = new SendMetrics();
+    private final ClientNode first = new ClientNode("10.0.0.1", 8000);
+    private final ClientNode second = new ClientNode("10.0.0.2", 8000);
+
+    @Test
+    void testEmptyWindow() {
+        final SendMetrics.Snapshot snapshot = metrics.snapshot(0);
+        assertEquals(0, snapshot.chunks());
+        assertEquals(0, snapshot.avgWaitMicros());
+        assertTrue(snapshot.bytesPerSecond().isEmpty());
+    }
+
+    @Test
+    void testWaitAndDepth() {
+        metrics.recordDepth(5);
+        metrics.recordDepth(2);
+        metrics.recordSent(first, 100, 1_000);
+        metrics.recordSent(first, 100, 3_000);
+
+        final SendMetrics.Snapshot snapshot = metrics.snapshot(1);
+        assertEquals(1, snapshot.depth());
+        assertEquals(5, snapshot.peakDepth());
+        assertEquals(2, snapshot.chunks());
+        assertEquals(2.0, snapshot.avgWaitMicros(), 1e-9);
+        assertEquals(3.0, snapshot.maxWaitMicros(), 1e-9);
+    }
+
+    @Test
+    void testRatesPerDestination() {
+        metrics.recordSent(first, 100, 0);
+        metrics.recordSent(first, 100, 0);
+        metrics.recordSent(second, 50, 0);
+
+        final SendMetrics.Snapshot snapshot = metrics.snapshot(0);
+        final double firstBytes = snapshot.bytesPerSecond().get(first);
+        final double secondBytes = snapshot.bytesPerSecond().get(second);
+        assertEquals(4.0, firstBytes / secondBytes, 1e-9);
+        assertEquals(2.0, snapshot.chunksPerSecond().get(first) / snapshot.chunksPerSecond().get(second), 1e-9);
+    }
+
+    @Test
+    void testSnapshotStartsANewWindow() {
+        metrics.recordDepth(9);
+        metrics.recordSent(first, 100, 5_000);
+        metrics.snapshot(0);
+
+        final SendMetrics.Snapshot snapshot = metrics.snapshot(0);
+        assertEquals(0, snapshot.chunks());
+        assertEquals(0, snapshot.peakDepth());
+        assertEquals(0, snapshot.maxWaitMicros());
+        assertFalse(snapshot.bytesPerSecond().containsKey(first), "idle destinations are dropped");
+    }
+
+    @Test
+    void testCoalescingSavings() throws InterruptedException {
+        metrics.recordCoalesced(5);
+        metrics.recordCoalesced(3);
+        Thread.sleep(10);
+
+        final SendMetrics.Snapshot snapshot = metrics.snapshot(0);
+        // 8 packets went out as 2 writes, 6 writes were saved
+        assertEquals(8.0 / 6.0, snapshot.coalescedPerSecond() / snapshot.writesSavedPerSecond(), 1e-9);
+        assertTrue(snapshot.coalescedPerSecond() > 0);
+        assertEquals(0, metrics.snapshot(0).coalescedPerSecond());
+    }
+}
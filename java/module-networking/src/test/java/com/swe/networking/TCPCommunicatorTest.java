@@ -6,8 +6,15 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.swe.core.ClientNode;
 
@@ -80,18 +87,18 @@ public class TCPCommunicatorTest {
                 ReceivePacket data = new ReceivePacket(null, new byte[100]);
                 data = tcp.receiveData();
                 if (data != null) {
-                    System.out.println("Received : " + new String(data.data()));
-                    assertEquals(new String(data.data()), "Hello World !!!");
+                    System.out.println("Received : " + payload(data));
+                    assertEquals(payload(data), "Hello World !!!");
                 }
                 data = tcp.receiveData();
                 if (data != null) {
-                    System.out.println("Received : " + new String(data.data()));
-                    assertEquals(new String(data.data()), "Hello World !!!");
+                    System.out.println("Received : " + payload(data));
+                    assertEquals(payload(data), "Hello World !!!");
                 }
                 data = tcp.receiveData();
                 if (data != null) {
-                    System.out.println("Received : " + new String(data.data()));
-                    assertEquals(new String(data.data()), "Hello World !!!");
+                    System.out.println("Received : " + payload(data));
+                    assertEquals(payload(data), "Hello World !!!");
                 }
             });
             receiveThread.start();
@@ -116,13 +123,37 @@ public class TCPCommunicatorTest {
             destSocket.connect(new InetSocketAddress(localAddress, serverPort), timeout);
             final DataOutputStream dataOut = new DataOutputStream(destSocket.getOutputStream());
             final String data = "Hello World !!!";
-            dataOut.write(data.getBytes());
+            dataOut.write(frame(data.getBytes()));
             System.out.println("Data sent successfully");
             destSocket.close();
         } catch (IOException ex) {
         }
     }
 
+    /**
+     * Prefixes data with the 16 bit little endian length every packet starts with.
+     *
+     * @param data the bytes after the length
+     * @return the framed packet
+     */
+    private static byte[] frame(final byte[] data) {
+        final byte[] packet = new byte[data.length + 2];
+        packet[0] = (byte) packet.length;
+        packet[1] = (byte) (packet.length >> 8);
+        System.arraycopy(data, 0, packet, 2, data.length);
+        return packet;
+    }
+
+    /**
+     * The bytes of a received packet after its length.
+     *
+     * @param packet the received packet
+     * @return the bytes as a string
+     */
+    private static String payload(final ReceivePacket packet) {
+        return new String(packet.data(), 2, packet.data().length - 2);
+    }
+
     @org.junit.jupiter.api.Test
     public void testErrorSetServerPort() {
         final ProtocolBase tcp = new TCPCommunicator(1);
@@ -144,4 +175,350 @@ public class TCPCommunicatorTest {
         tcp.printKeys();
         tcp.close();
     }
+
+    /**
+     * Runs the selector loop of the communicator like the P2P receive threads do.
+     *
+     * @param tcp the communicator
+     * @param running cleared to stop the loop
+     * @return the started thread
+     */
+    private Thread selectorLoop(final ProtocolBase tcp, final AtomicBoolean running) {
+        final Thread loop = new Thread(() -> {
+            while (running.get()) {
+                tcp.receiveData();
+            }
+        });
+        loop.start();
+        return loop;
+    }
+
+    /**
+     * Chunks queued behind a slow socket reach the peer complete and in order.
+     */
+    @org.junit.jupiter.api.Test
+    public void testQueuedChunksArriveInOrder() throws Exception {
+        final int chunks = 500;
+        final int chunkSize = 10 * 1024;
+        final AtomicReference<byte[]> received = new AtomicReference<>();
+        final CountDownLatch listening = new CountDownLatch(1);
+        final Thread peer = new Thread(() -> {
+            try (ServerSocket serverSocket = new ServerSocket(8031)) {
+                listening.countDown();
+                final Socket socket = serverSocket.accept();
+                received.set(new DataInputStream(socket.getInputStream()).readNBytes(chunks * chunkSize));
+            } catch (IOException ex) {
+                System.out.println("Error : " + ex.getMessage());
+            }
+        });
+        peer.start();
+        assertTrue(listening.await(5, TimeUnit.SECONDS));
+
+        final ProtocolBase tcp = new TCPCommunicator(8030);
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final Thread loop = selectorLoop(tcp, running);
+        final ClientNode dest = new ClientNode("127.0.0.1", 8031);
+        for (int i = 0; i < chunks; i++) {
+            final byte[] chunk = new byte[chunkSize];
+            ByteBuffer.wrap(chunk).putInt(i);
+            tcp.sendData(chunk, dest);
+        }
+        peer.join(10_000);
+        running.set(false);
+        loop.join();
+        tcp.close();
+
+        final ByteBuffer data = ByteBuffer.wrap(received.get());
+        assertEquals(chunks * chunkSize, data.remaining());
+        for (int i = 0; i < chunks; i++) {
+            assertEquals(i, data.getInt(i * chunkSize));
+        }
+    }
+
+    /**
+     * A peer that stops reading is reported as congested and does not hold up other peers.
+     */
+    @org.junit.jupiter.api.Test
+    public void testSlowPeerDoesNotStallOthers() throws Exception {
+        final CountDownLatch listening = new CountDownLatch(2);
+        final CountDownLatch finished = new CountDownLatch(1);
+        final AtomicReference<String> fastReceived = new AtomicReference<>();
+        final Thread slowPeer = new Thread(() -> {
+            try (ServerSocket serverSocket = new ServerSocket(8033)) {
+                listening.countDown();
+                final Socket socket = serverSocket.accept();
+                // accept but never read
+                finished.await();
+                socket.close();
+            } catch (IOException | InterruptedException ex) {
+                System.out.println("Error : " + ex.getMessage());
+            }
+        });
+        final Thread fastPeer = new Thread(() -> {
+            try (ServerSocket serverSocket = new ServerSocket(8034)) {
+                listening.countDown();
+                final Socket socket = serverSocket.accept();
+                fastReceived.set(new String(new DataInputStream(socket.getInputStream()).readNBytes(5)));
+            } catch (IOException ex) {
+                System.out.println("Error : " + ex.getMessage());
+            }
+        });
+        slowPeer.start();
+        fastPeer.start();
+        assertTrue(listening.await(5, TimeUnit.SECONDS));
+
+        final ProtocolBase tcp = new TCPCommunicator(8032);
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final Thread loop = selectorLoop(tcp, running);
+        final ClientNode slow = new ClientNode("127.0.0.1", 8033);
+        final ClientNode fast = new ClientNode("127.0.0.1", 8034);
+
+        final long start = System.nanoTime();
+        for (int i = 0; i < 3200; i++) {
+            tcp.sendData(new byte[10 * 1024], slow);
+        }
+        tcp.sendData("hello".getBytes(), fast);
+        final long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        fastPeer.join(5000);
+        assertEquals("hello", fastReceived.get());
+        assertTrue(elapsedMs < 2000, "sends are queued, not blocked on the slow peer");
+        assertFalse(tcp.canSend(slow));
+        assertTrue(tcp.canSend(fast));
+
+        finished.countDown();
+        running.set(false);
+        loop.join();
+        slowPeer.join();
+        tcp.closeSocket(slow);
+        tcp.close();
+    }
+
+    /**
+     * A sender that checks canSend backs off long before the queue reaches the hard cap,
+     * so the connection is kept and everything sent arrives once the peer reads again.
+     */
+    @org.junit.jupiter.api.Test
+    public void testSenderBacksOffBeforeTheHardCap() throws Exception {
+        final int chunkSize = 10 * 1024;
+        final CountDownLatch listening = new CountDownLatch(1);
+        final CountDownLatch resume = new CountDownLatch(1);
+        final AtomicReference<Long> received = new AtomicReference<>(0L);
+        final Thread peer = new Thread(() -> {
+            try (ServerSocket serverSocket = new ServerSocket(8049)) {
+                listening.countDown();
+                final Socket socket = serverSocket.accept();
+                // stop reading until the sender has backed off
+                resume.await();
+                final DataInputStream in = new DataInputStream(socket.getInputStream());
+                long total = 0;
+                final byte[] buffer = new byte[64 * 1024];
+                int read = in.read(buffer);
+                while (read > 0) {
+                    total += read;
+                    received.set(total);
+                    read = in.read(buffer);
+                }
+            } catch (IOException | InterruptedException ex) {
+                System.out.println("Error : " + ex.getMessage());
+            }
+        });
+        peer.start();
+        assertTrue(listening.await(5, TimeUnit.SECONDS));
+
+        final ProtocolBase tcp = new TCPCommunicator(8048);
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final Thread loop = selectorLoop(tcp, running);
+        final ClientNode dest = new ClientNode("127.0.0.1", 8049);
+
+        // up to the 64 MB hard cap, unless the sender backs off first
+        final int maxChunks = 64 * 1024 * 1024 / chunkSize;
+        int sent = 0;
+        while (sent < maxChunks && tcp.canSend(dest)) {
+            tcp.sendData(new byte[chunkSize], dest);
+            sent++;
+        }
+        assertFalse(tcp.canSend(dest), "the watermark stopped the sender");
+        assertTrue(sent < maxChunks / 4, "backed off after " + sent + " chunks");
+
+        resume.countDown();
+        final long expected = (long) sent * chunkSize;
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (received.get() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, received.get(), "the connection was kept and nothing was dropped");
+        assertTrue(tcp.canSend(dest), "sending resumes once the queue drains");
+
+        running.set(false);
+        loop.join();
+        tcp.closeSocket(dest);
+        tcp.close();
+        peer.join(5000);
+    }
+
+    /**
+     * Packets split across reads or sharing a read come out whole, one per call.
+     */
+    @org.junit.jupiter.api.Test
+    public void testReceiveSplitsPackets() throws Exception {
+        final int serverPort = 8035;
+        final TCPCommunicator tcp = new TCPCommunicator(serverPort);
+        final byte[] first = frame("first".getBytes());
+        final byte[] second = frame(new byte[20_000]);
+        final byte[] third = frame("third".getBytes());
+        final byte[] stream = new byte[first.length + second.length + third.length];
+        System.arraycopy(first, 0, stream, 0, first.length);
+        System.arraycopy(second, 0, stream, first.length, second.length);
+        System.arraycopy(third, 0, stream, first.length + second.length, third.length);
+
+        try (Socket socket = new Socket("127.0.0.1", serverPort)) {
+            final DataOutputStream dataOut = new DataOutputStream(socket.getOutputStream());
+            // the first packet and half of the second, then the rest
+            final int cut = first.length + second.length / 2;
+            dataOut.write(stream, 0, cut);
+            dataOut.flush();
+            Thread.sleep(100);
+            dataOut.write(stream, cut, stream.length - cut);
+            dataOut.flush();
+
+            final byte[][] expected = {first, second, third};
+            int next = 0;
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (next < expected.length && System.nanoTime() < deadline) {
+                final ReceivePacket packet = tcp.receiveData();
+                if (packet != null) {
+                    org.junit.jupiter.api.Assertions.assertArrayEquals(expected[next++], packet.data());
+                }
+            }
+            assertEquals(expected.length, next);
+        }
+        // the read buffer is reused between reads instead of allocated per read
+        assertTrue(tcp.getReadBuffers().getAllocated() <= 2);
+        tcp.close();
+    }
+
+    /**
+     * A packet with the header of the given module.
+     *
+     * @param module the module
+     * @param payload the bytes after the header
+     * @return the packet
+     */
+    private static byte[] modulePacket(final ModuleType module, final int payload) throws IOException {
+        final PacketInfo info = new PacketInfo();
+        info.setLength(PacketParser.getHeaderSize() + payload);
+        info.setModule(module.ordinal());
+        info.setIpAddress(java.net.InetAddress.getByName("127.0.0.1"));
+        info.setPayload(new byte[payload]);
+        return PacketParser.getPacketParser().createPkt(info);
+    }
+
+    /**
+     * Once a receiver is set, a module stuck on a packet does not hold up the packets of another.
+     */
+    @org.junit.jupiter.api.Test
+    public void testReceiverRunsModulesApart() throws Exception {
+        final int serverPort = 8036;
+        final TCPCommunicator tcp = new TCPCommunicator(serverPort, 2);
+        final CountDownLatch screenStarted = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch chatReceived = new CountDownLatch(1);
+        assertTrue(tcp.setReceiver(packet -> {
+            final int module = PacketParser.getModule(packet.data());
+            if (module == ModuleType.SCREENSHARING.ordinal()) {
+                screenStarted.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            } else if (module == ModuleType.CHAT.ordinal()) {
+                chatReceived.countDown();
+            }
+        }));
+
+        try (Socket socket = new Socket("127.0.0.1", serverPort)) {
+            final DataOutputStream dataOut = new DataOutputStream(socket.getOutputStream());
+            dataOut.write(modulePacket(ModuleType.SCREENSHARING, 60_000));
+            dataOut.write(modulePacket(ModuleType.SCREENSHARING, 60_000));
+            dataOut.write(modulePacket(ModuleType.CHAT, 10));
+            dataOut.flush();
+
+            assertTrue(screenStarted.await(5, TimeUnit.SECONDS));
+            assertTrue(chatReceived.await(5, TimeUnit.SECONDS), "chat is handed over while a frame is stuck");
+            assertEquals(1, tcp.getDispatcher().getQueuedPackets(ModuleType.SCREENSHARING));
+        } finally {
+            release.countDown();
+            tcp.close();
+        }
+    }
+
+    /**
+     * Peers spread over several reactors are all read.
+     */
+    @org.junit.jupiter.api.Test
+    public void testReactorsServeEveryPeer() throws Exception {
+        final int serverPort = 8037;
+        final int peers = 8;
+        final TCPCommunicator tcp = new TCPCommunicator(serverPort, 3);
+        final Socket[] sockets = new Socket[peers];
+        try {
+            for (int i = 0; i < peers; i++) {
+                sockets[i] = new Socket("127.0.0.1", serverPort);
+                sockets[i].getOutputStream().write(frame(("peer " + i).getBytes()));
+            }
+            final java.util.Set<String> received = new java.util.HashSet<>();
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (received.size() < peers && System.nanoTime() < deadline) {
+                final ReceivePacket packet = tcp.receiveData();
+                if (packet != null) {
+                    received.add(payload(packet));
+                }
+            }
+            assertEquals(peers, received.size());
+        } finally {
+            for (Socket socket : sockets) {
+                if (socket != null) {
+                    socket.close();
+                }
+            }
+            tcp.close();
+        }
+    }
+
+    /**
+     * A header and a payload shared by several peers reach each of them as one packet.
+     */
+    @org.junit.jupiter.api.Test
+    public void testSharedPayloadReachesEveryPeer() throws Exception {
+        final TCPCommunicator sender = new TCPCommunicator(8038, 1);
+        final TCPCommunicator first = new TCPCommunicator(8046, 1);
+        final TCPCommunicator second = new TCPCommunicator(8047, 1);
+        try {
+            final byte[] packet = modulePacket(ModuleType.SCREENSHARING, 30_000);
+            java.util.Arrays.fill(packet, PacketParser.getHeaderSize(), packet.length, (byte) 7);
+            final byte[] header = java.util.Arrays.copyOf(packet, PacketParser.getHeaderSize());
+            final ByteBuffer payload = ByteBuffer.wrap(packet, header.length, packet.length - header.length)
+                    .slice().asReadOnlyBuffer();
+
+            sender.sendData(header, payload, new ClientNode("127.0.0.1", 8046));
+            sender.sendData(header, payload, new ClientNode("127.0.0.1", 8047));
+            assertEquals(packet.length - header.length, payload.remaining(), "the shared payload is not consumed");
+
+            for (TCPCommunicator receiver : new TCPCommunicator[] {first, second}) {
+                ReceivePacket received = null;
+                final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+                while (received == null && System.nanoTime() < deadline) {
+                    received = receiver.receiveData();
+                }
+                assertTrue(received != null);
+                org.junit.jupiter.api.Assertions.assertArrayEquals(packet, received.data());
+            }
+        } finally {
+            sender.close();
+            first.close();
+            second.close();
+        }
+    }
 }
@@ -0,0 +1,157 @@
+package com.swe.networking;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.swe.core.ClientNode;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class TimingWheelTest {
+
+    // a small wheel so timers of a few turns are exercised
+    private final TimingWheel wheel = new TimingWheel(1, TimeUnit.MILLISECONDS, 16);
+
+    @AfterEach
+    void close() {
+        wheel.close();
+    }
+
+    @Test
+    void testTimerRunsAfterItsDelay() throws InterruptedException {
+        final CountDownLatch ran = new CountDownLatch(1);
+        final long start = System.nanoTime();
+        wheel.schedule(ran::countDown, 50, TimeUnit.MILLISECONDS);
+        assertEquals(1, wheel.getActiveTimers());
+
+        assertTrue(ran.await(2, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50), "never before the delay");
+        assertEquals(0, wheel.getActiveTimers());
+    }
+
+    @Test
+    void testCancelledTimerDoesNotRun() throws InterruptedException {
+        final AtomicInteger runs = new AtomicInteger();
+        final TimingWheel.Timeout timeout = wheel.schedule(runs::incrementAndGet, 20, TimeUnit.MILLISECONDS);
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel(), "a cancelled timer is not scheduled");
+        assertFalse(timeout.isActive());
+        assertEquals(0, wheel.getActiveTimers());
+
+        Thread.sleep(100);
+        assertEquals(0, runs.get());
+    }
+
+    @Test
+    void testRescheduleMovesTheTimer() throws InterruptedException {
+        final CountDownLatch ran = new CountDownLatch(1);
+        final TimingWheel.Timeout timeout = wheel.schedule(ran::countDown, 10, TimeUnit.MILLISECONDS);
+        timeout.reschedule(200, TimeUnit.MILLISECONDS);
+        assertEquals(1, wheel.getActiveTimers(), "moving a timer does not add one");
+
+        assertFalse(ran.await(100, TimeUnit.MILLISECONDS), "the first deadline was dropped");
+        assertTrue(ran.await(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testRepeatingTimerRunsUntilCancelled() throws InterruptedException {
+        final CountDownLatch ran = new CountDownLatch(3);
+        final TimingWheel.Timeout timeout = wheel.scheduleAtFixedRate(ran::countDown, 10, TimeUnit.MILLISECONDS);
+        assertTrue(ran.await(2, TimeUnit.SECONDS));
+        assertTrue(timeout.isActive());
+
+        assertTrue(timeout.cancel());
+        assertEquals(0, wheel.getActiveTimers());
+    }
+
+    @Test
+    void testWorkerSleepsUntilTheNextDeadline() throws InterruptedException {
+        final CountDownLatch ran = new CountDownLatch(3);
+        final long wakeups = wheel.getWakeups();
+        final TimingWheel.Timeout timeout = wheel.scheduleAtFixedRate(ran::countDown, 100, TimeUnit.MILLISECONDS);
+        assertTrue(ran.await(2, TimeUnit.SECONDS));
+        timeout.cancel();
+
+        // about 300 ticks went by, the worker only woke up for the three runs
+        assertTrue(wheel.getWakeups() - wakeups < 20, "woke up " + (wheel.getWakeups() - wakeups) + " times");
+    }
+
+    @Test
+    void testEarlierTimerWakesTheSleepingWorker() throws InterruptedException {
+        final CountDownLatch ran = new CountDownLatch(1);
+        wheel.schedule(() -> { }, 5, TimeUnit.SECONDS);
+        Thread.sleep(20);
+        final long start = System.nanoTime();
+        wheel.schedule(ran::countDown, 20, TimeUnit.MILLISECONDS);
+
+        assertTrue(ran.await(1, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500), "not held up by the later timer");
+    }
+
+    @Test
+    void testCancellingTimersKeepsTheOthersDue() throws InterruptedException {
+        final CountDownLatch ran = new CountDownLatch(10);
+        final AtomicInteger cancelledRuns = new AtomicInteger();
+        final List<TimingWheel.Timeout> cancelled = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            // interleaved deadlines so cancelled timers sit all over the heap
+            if (i % 2 == 0) {
+                wheel.schedule(ran::countDown, 10 + 3 * i, TimeUnit.MILLISECONDS);
+            } else {
+                cancelled.add(wheel.schedule(cancelledRuns::incrementAndGet, 10 + 3 * i, TimeUnit.MILLISECONDS));
+            }
+        }
+        for (TimingWheel.Timeout timeout : cancelled) {
+            assertTrue(timeout.cancel());
+        }
+        assertEquals(10, wheel.getActiveTimers());
+
+        assertTrue(ran.await(2, TimeUnit.SECONDS));
+        assertEquals(0, cancelledRuns.get());
+        assertEquals(0, wheel.getActiveTimers());
+    }
+
+    @Test
+    void testFailingTaskDoesNotStopTheWheel() throws InterruptedException {
+        final CountDownLatch ran = new CountDownLatch(1);
+        wheel.schedule(() -> {
+            throw new IllegalStateException("task failure");
+        }, 5, TimeUnit.MILLISECONDS);
+        wheel.schedule(ran::countDown, 20, TimeUnit.MILLISECONDS);
+        assertTrue(ran.await(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testTimerTimesOutSilentClientsOnly() throws InterruptedException {
+        final ClientNode silent = new ClientNode("10.0.0.1", 8000);
+        final ClientNode talking = new ClientNode("10.0.0.2", 8000);
+        final CountDownLatch timedOut = new CountDownLatch(1);
+        final AtomicInteger timeouts = new AtomicInteger();
+        final Timer timer = new Timer(100, client -> {
+            timeouts.incrementAndGet();
+            assertEquals(silent, client);
+            timedOut.countDown();
+        }, wheel);
+        timer.addClient(silent);
+        timer.addClient(talking);
+
+        final long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(300);
+        while (System.nanoTime() < end) {
+            timer.updateTimeout(talking);
+            Thread.sleep(10);
+        }
+        assertTrue(timedOut.await(2, TimeUnit.SECONDS));
+        assertEquals(1, timeouts.get());
+        assertEquals(1, wheel.getActiveTimers(), "the talking client is still monitored");
+
+        timer.close();
+        assertEquals(0, wheel.getActiveTimers());
+    }
+}
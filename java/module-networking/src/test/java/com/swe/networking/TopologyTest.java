@@ -13,7 +13,10 @@ import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * Test class for the topology class.
@@ -749,4 +752,80 @@ class TopologyTest {
         networkType = topology.getNetworkType(serverC0, serverC1);
         assertEquals(NetworkType.OTHERCLUSTER.ordinal(), networkType);
     }
-}
\ No newline at end of file
+
+    @org.junit.jupiter.api.Test
+    void testIndexFollowsMembershipChanges() {
+        final Topology topology = Topology.getTopology();
+        final ClientNode serverC0 = new ClientNode("10.0.0.1", 6000);
+        final ClientNode clientC0 = new ClientNode("10.0.0.2", 6000);
+        final ClientNode serverC1 = new ClientNode("10.0.1.1", 6000);
+        final ClientNode serverC2 = new ClientNode("10.0.2.1", 6000);
+        final ClientNode clientC2 = new ClientNode("10.0.2.2", 6000);
+        final List<List<ClientNode>> clusters = new ArrayList<>();
+        clusters.add(new ArrayList<>(List.of(serverC0, clientC0)));
+        clusters.add(new ArrayList<>(List.of(serverC1)));
+        clusters.add(new ArrayList<>(List.of(serverC2, clientC2)));
+        topology.replaceNetwork(new NetworkStructure(clusters, new ArrayList<>(List.of(serverC0, serverC1, serverC2))));
+
+        // the topology keeps its own copy of the structure it was given
+        clusters.get(0).clear();
+        assertEquals(0, topology.getClusterIndex(clientC0));
+        assertEquals(serverC2, topology.getServer(clientC2));
+        assertEquals(serverC2, topology.getDestination(clientC0, clientC2));
+        assertEquals(clientC0, topology.getDestination(serverC0, clientC0));
+
+        final ClientNode joined = new ClientNode("10.0.1.2", 6000);
+        topology.updateNetwork(new ClientNetworkRecord(joined, 1));
+        assertEquals(1, topology.getClusterIndex(joined));
+        assertEquals(serverC1, topology.getServer(joined));
+
+        // removing the only other member of cluster 1 moves cluster 2 down
+        topology.removeClient(new ClientNetworkRecord(joined, 1));
+        topology.removeClient(new ClientNetworkRecord(serverC1, 1));
+        assertFalse(topology.checkClientPresent(serverC1));
+        assertEquals(-1, topology.getClusterIndex(joined));
+        assertEquals(1, topology.getClusterIndex(clientC2));
+        assertEquals(serverC2, topology.getServer(clientC2));
+
+        // removing a server promotes the next client of its cluster
+        topology.removeClient(new ClientNetworkRecord(serverC2, 1));
+        assertEquals(clientC2, topology.getServer(clientC2));
+        assertEquals(NetworkType.OTHERCLUSTER.ordinal(), topology.getNetworkType(serverC0, clientC2));
+        assertNull(topology.getServer(serverC2));
+
+        final List<ClientNode> snapshot = topology.getClients(0);
+        topology.updateNetwork(new ClientNetworkRecord(joined, 0));
+        assertEquals(2, snapshot.size(), "lists handed out do not change under their reader");
+        assertEquals(3, topology.getClients(0).size());
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.add(joined));
+    }
+
+    @org.junit.jupiter.api.Test
+    void testLookupsDuringMembershipChanges() throws InterruptedException {
+        final Topology topology = Topology.getTopology();
+        final ClientNode server = new ClientNode("10.1.0.1", 6000);
+        final List<List<ClientNode>> clusters = new ArrayList<>();
+        clusters.add(new ArrayList<>(List.of(server)));
+        topology.replaceNetwork(new NetworkStructure(clusters, new ArrayList<>(List.of(server))));
+
+        final int joins = 2000;
+        final Thread writer = new Thread(() -> {
+            for (int i = 0; i < joins; i++) {
+                topology.addClient(new ClientNode("10.2." + (i >> 8) + "." + (i & 0xFF), 6000));
+            }
+        });
+        writer.start();
+        boolean consistent = true;
+        while (writer.isAlive()) {
+            for (ClientNode client : topology.getAllClusterServers()) {
+                // every server is routed to itself whatever the writer does
+                consistent &= client.equals(topology.getServer(client));
+            }
+        }
+        writer.join();
+        assertTrue(consistent);
+        final ClientNode last = new ClientNode("10.2." + ((joins - 1) >> 8) + "." + ((joins - 1) & 0xFF), 6000);
+        assertTrue(topology.checkClientPresent(last));
+        assertEquals(joins + 1, topology.getAllClients().size());
+    }
+}
@@ -0,0 +1,187 @@
+package com.swe.networking;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.swe.core.ClientNode;
+
+/**
+ * Test class to test UDPCommunicator class over loopback, with simulated loss.
+ */
+public class UDPCommunicatorTest {
+
+    private static final String LOCALHOST = "127.0.0.1";
+
+    private static byte[] packet(final int index, final int priority, final int payload) throws IOException {
+        final PacketInfo info = new PacketInfo();
+        info.setType(NetworkType.USE.ordinal());
+        info.setPriority(priority);
+        info.setModule(ModuleType.SCREENSHARING.ordinal());
+        info.setConnectionType(NetworkConnectionType.MODULE.ordinal());
+        info.setIpAddress(InetAddress.getByName(LOCALHOST));
+        info.setPortNum(0);
+        info.setMessageId(index);
+        info.setPayload(new byte[payload]);
+        return PacketParser.getPacketParser().createPkt(info);
+    }
+
+    private static boolean waitFor(final java.util.function.BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    /**
+     * Lost packets below the protected priority are counted lost but neither asked for nor
+     * resent, the others still arrive.
+     */
+    @Test
+    public void testLostMediaIsNotResent() throws Exception {
+        final UDPCommunicator sender = new UDPCommunicator(8040);
+        final UDPCommunicator receiver = new UDPCommunicator(8041);
+        try {
+            final Set<Integer> received = ConcurrentHashMap.newKeySet();
+            receiver.setReceiver(p -> received.add(PacketParser.getMessageId(p.data())));
+            sender.setLoss(sequence -> sequence % 5 == 2);
+
+            final ClientNode dest = new ClientNode(LOCALHOST, 8041);
+            for (int i = 0; i < 50; i++) {
+                sender.sendData(packet(i, 2, 100), dest);
+            }
+            assertTrue(waitFor(() -> received.size() == 40));
+            for (int i = 0; i < 50; i++) {
+                assertEquals(i % 5 != 2, received.contains(i), "packet " + i);
+            }
+            assertTrue(waitFor(() -> receiver.getStats().lost() == 10), "gaps are given up on");
+            Thread.sleep(100);
+            assertEquals(0, receiver.getStats().nacked(), "the sender kept none of them");
+            assertEquals(0, sender.getStats().retransmitted());
+        } finally {
+            sender.close();
+            receiver.close();
+        }
+    }
+
+    /**
+     * Lost packets at the protected priority are asked for and resent.
+     */
+    @Test
+    public void testLostKeyframesAreResent() throws Exception {
+        final UDPCommunicator sender = new UDPCommunicator(8042);
+        final UDPCommunicator receiver = new UDPCommunicator(8043);
+        try {
+            final Set<Integer> received = ConcurrentHashMap.newKeySet();
+            receiver.setReceiver(p -> received.add(PacketParser.getMessageId(p.data())));
+            sender.setLoss(sequence -> sequence % 4 == 1);
+
+            final ClientNode dest = new ClientNode(LOCALHOST, 8043);
+            for (int i = 0; i < 40; i++) {
+                sender.sendData(packet(i, 0, 1000), dest);
+            }
+            assertTrue(waitFor(() -> received.size() == 40), "received " + received.size());
+            assertEquals(10, sender.getStats().retransmitted());
+            assertEquals(10, receiver.getStats().nacked());
+            assertEquals(40, receiver.getStats().received());
+            assertEquals(0, receiver.getStats().lost());
+        } finally {
+            sender.close();
+            receiver.close();
+        }
+    }
+
+    /**
+     * Only the kept packets are asked for when kept and other packets are both lost.
+     */
+    @Test
+    public void testOnlyKeptPacketsAreAskedFor() throws Exception {
+        final UDPCommunicator sender = new UDPCommunicator(8056);
+        final UDPCommunicator receiver = new UDPCommunicator(8057);
+        try {
+            final Set<Integer> received = ConcurrentHashMap.newKeySet();
+            receiver.setReceiver(p -> received.add(PacketParser.getMessageId(p.data())));
+            sender.setLoss(sequence -> sequence % 4 == 1);
+
+            final ClientNode dest = new ClientNode(LOCALHOST, 8057);
+            for (int i = 0; i < 40; i++) {
+                // keyframes and media interleaved, numbered apart
+                sender.sendData(packet(i, i % 2 == 0 ? 0 : 2, 100), dest);
+            }
+            assertTrue(waitFor(() -> received.size() == 35), "received " + received.size());
+            assertTrue(waitFor(() -> receiver.getStats().lost() == 5), "lost " + receiver.getStats().lost());
+            for (int i = 0; i < 40; i += 2) {
+                assertTrue(received.contains(i), "keyframe " + i);
+            }
+            assertEquals(5, receiver.getStats().nacked());
+            assertEquals(5, sender.getStats().retransmitted());
+        } finally {
+            sender.close();
+            receiver.close();
+        }
+    }
+
+    /**
+     * A lost last kept packet is found from the sender's tail announcement and resent.
+     */
+    @Test
+    public void testLostTailIsResent() throws Exception {
+        final UDPCommunicator sender = new UDPCommunicator(8058);
+        final UDPCommunicator receiver = new UDPCommunicator(8059);
+        try {
+            final Set<Integer> received = ConcurrentHashMap.newKeySet();
+            receiver.setReceiver(p -> received.add(PacketParser.getMessageId(p.data())));
+            // the last one, no later packet shows the gap
+            sender.setLoss(sequence -> sequence == 4);
+
+            final ClientNode dest = new ClientNode(LOCALHOST, 8059);
+            for (int i = 0; i < 5; i++) {
+                sender.sendData(packet(i, 0, 100), dest);
+            }
+            assertTrue(waitFor(() -> received.size() == 5), "received " + received.size());
+            assertEquals(1, receiver.getStats().nacked());
+            assertEquals(1, sender.getStats().retransmitted());
+            assertEquals(0, receiver.getStats().lost());
+        } finally {
+            sender.close();
+            receiver.close();
+        }
+    }
+
+    /**
+     * Datagrams past the burst go out at the pacing rate.
+     */
+    @Test
+    public void testPacing() throws Exception {
+        final UDPCommunicator sender = new UDPCommunicator(8044);
+        final UDPCommunicator receiver = new UDPCommunicator(8045);
+        try {
+            final Set<Integer> received = ConcurrentHashMap.newKeySet();
+            receiver.setReceiver(p -> received.add(PacketParser.getMessageId(p.data())));
+            // 64 KB burst then 1 MB/s, the 320 KB take about a quarter of a second
+            sender.setPacingRate(1024 * 1024);
+
+            final ClientNode dest = new ClientNode(LOCALHOST, 8045);
+            final long begin = System.nanoTime();
+            for (int i = 0; i < 32; i++) {
+                sender.sendData(packet(i, 2, 10 * 1024), dest);
+            }
+            assertTrue(waitFor(() -> received.size() == 32), "received " + received.size());
+            final long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+            assertTrue(elapsedMs >= 200, "took " + elapsedMs + " ms");
+        } finally {
+            sender.close();
+            receiver.close();
+        }
+    }
+}
@@ -238,7 +238,8 @@ public class CaptureComponents {
 
             addSynchron.apply(dest.ip(), dest.reqCompression());
             final byte[] subscribeData = subsPacket.serialize(NetworkPacketType.SUBSCRIBE_AS_VIEWER);
-            networking.sendData(subscribeData, new ClientNode[] {destNode}, ModuleType.SCREENSHARING.ordinal(), 2);
+            networking.sendData(subscribeData, new ClientNode[] {destNode}, ModuleType.SCREENSHARING.ordinal(),
+                    Utils.CONTROL_PRIORITY);
 
             return res;
         });
@@ -259,7 +260,8 @@ public class CaptureComponents {
             final IPPacket subsPacket = new IPPacket(localIp, false);
 
             final byte[] unSubscribeData = subsPacket.serialize(NetworkPacketType.UNSUBSCRIBE_AS_VIEWER);
-            networking.sendData(unSubscribeData, new ClientNode[] {destNode}, ModuleType.SCREENSHARING.ordinal(), 2);
+            networking.sendData(unSubscribeData, new ClientNode[] {destNode}, ModuleType.SCREENSHARING.ordinal(),
+                    Utils.CONTROL_PRIORITY);
 
             return res;
         });
@@ -4,6 +4,8 @@
 
 package com.swe.ScreenNVideo.Codec;
 
+import com.swe.ScreenNVideo.Model.Frame;
+
 import java.util.List;
 
 /**
@@ -26,6 +28,26 @@ public interface Codec {
      */
     List<byte[]> encode(int[][] screenShot, int x, int y, int height, int width);
 
+    /**
+     * Encode the image, producing only the requested variants.
+     * Implementations may still produce a variant that was not asked for.
+     *
+     * @param screenShot image matrix to be encoded
+     * @param x topLeft postition along x axis of image matrix
+     * @param y topLeft position along y axis of image matrix
+     * @param height block's height
+     * @param width block's width
+     * @param compressed whether the compressed variant is needed
+     * @param unCompressed whether the uncompressed variant is needed
+     * @return list of array bytes, a skipped variant is null
+     *      at ind 0 : compressed
+     *      at ind 1 : without compression
+     */
+    default List<byte[]> encode(int[][] screenShot, int x, int y, int height, int width,
+                                boolean compressed, boolean unCompressed) {
+        return encode(screenShot, x, y, height, width);
+    }
+
     /**
      * Decode and Decompress the image.
      *
@@ -35,4 +57,43 @@ public interface Codec {
      */
     int[][] decode(byte[] encodedImage, boolean compress);
 
+    /**
+     * Encode a block of a flat frame, producing only the requested variants.
+     *
+     * @param frame frame to be encoded
+     * @param x topLeft postition along x axis of the frame
+     * @param y topLeft position along y axis of the frame
+     * @param height block's height
+     * @param width block's width
+     * @param compressed whether the compressed variant is needed
+     * @param unCompressed whether the uncompressed variant is needed
+     * @return list of array bytes, a skipped variant is null
+     *      at ind 0 : compressed
+     *      at ind 1 : without compression
+     */
+    default List<byte[]> encodeFrame(Frame frame, int x, int y, int height, int width,
+                                boolean compressed, boolean unCompressed) {
+        return encode(frame.tile(x, y, width, height).toMatrix(), 0, 0, height, width, compressed, unCompressed);
+    }
+
+    /**
+     * Decode and Decompress the image into a flat frame.
+     *
+     * @param encodedImage image to be decoded
+     * @param compress to compress or not
+     * @return decoded frame
+     */
+    default Frame decodeFrame(byte[] encodedImage, boolean compress) {
+        return Frame.fromMatrix(decode(encodedImage, compress));
+    }
+
+    /**
+     * Sets the quality factor of the compressed variant for the following encodes.
+     * Codecs without a quality setting ignore it.
+     *
+     * @param quality quality factor from 1 (smallest) to 99 (best)
+     */
+    default void setQuality(int quality) {
+    }
+
 }
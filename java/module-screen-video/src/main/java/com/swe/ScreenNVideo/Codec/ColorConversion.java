@@ -0,0 +1,32 @@
+/**
+ * Contributed by @chirag9528.
+ */
+
+package com.swe.ScreenNVideo.Codec;
+
+/**
+ * Arithmetic used by {@link JpegCodec} for RGB &lt;-&gt; YCbCr conversion.
+ */
+public enum ColorConversion {
+    /**
+     * Double precision coefficients, the original conversion.
+     */
+    FLOATING_POINT,
+
+    /**
+     * 16 bit fixed-point coefficients read from per-channel lookup tables, as libjpeg does.
+     */
+    FIXED_POINT;
+
+    /**
+     * Creates the converter implementing this arithmetic.
+     *
+     * @return converter
+     */
+    IColorConverter newConverter() {
+        if (this == FIXED_POINT) {
+            return new FixedPointColorConverter();
+        }
+        return new FloatColorConverter();
+    }
+}
@@ -18,7 +18,7 @@ class Compressor implements ICompressor {
     /**
      * module which have Qunatisation table and implemented quantisation and dequantisation.
      */
-    private final QuantisationUtil quantmodule;
+    private QuantisationUtil quantmodule;
 
     /**
      * Unit Matrix Dimension (8x8).
@@ -98,4 +98,14 @@ class Compressor implements ICompressor {
         }
 
     }
-}
\ No newline at end of file
+
+    /**
+     * Switches to the shared tables of the given quality.
+     *
+     * @param quality : JPEG quality factor from 1 to 99
+     */
+    @Override
+    public void setQuality(final int quality) {
+        quantmodule = QuantisationUtil.forQuality(quality);
+    }
+}
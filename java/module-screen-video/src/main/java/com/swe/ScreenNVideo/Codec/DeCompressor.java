@@ -14,7 +14,7 @@ public class DeCompressor implements IDeCompressor {
     /**
      * module which have Qunatisation table and implemented quantisation and dequantisation.
      */
-    private final QuantisationUtil quantmodule;
+    private QuantisationUtil quantmodule;
 
     /**
      * Unit Matrix Dimension (8x8).
@@ -71,4 +71,14 @@ public class DeCompressor implements IDeCompressor {
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Switches to the shared tables of the given quality.
+     *
+     * @param quality : JPEG quality factor from 1 to 99
+     */
+    @Override
+    public void setQuality(final int quality) {
+        quantmodule = QuantisationUtil.forQuality(quality);
+    }
+}
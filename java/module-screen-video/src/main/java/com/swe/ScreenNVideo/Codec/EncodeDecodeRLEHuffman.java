@@ -30,8 +30,20 @@ public class EncodeDecodeRLEHuffman implements IRLE {
     /** Range of the category lookup table. */
     private static final int CATEGORY_LOOKUP_RANGE = 2048;
 
-    /** Size of the Huffman decode root. */
-    private static final int HUFFMAN_DECODE_ROOT_SIZE = 16;
+    /** Longest Huffman code length. */
+    private static final int MAX_CODE_LENGTH = 16;
+
+    /** Number of zeros skipped by one ZRL symbol. */
+    private static final int ZRL_RUN_LENGTH = 16;
+
+    /** Number of bits resolved by one lookup in the first level decode table. */
+    private static final int LOOKAHEAD_BITS = 9;
+
+    /** Size of the first level decode table. */
+    private static final int LOOKAHEAD_SIZE = 1 << LOOKAHEAD_BITS;
+
+    /** Fill the reader accumulator while it holds at most this many bits. */
+    private static final int ACCUMULATOR_FILL_LIMIT = 56;
 
     /** Size of the byte. */
     private static final int BYTE_SIZE = 8;
@@ -59,26 +71,8 @@ public class EncodeDecodeRLEHuffman implements IRLE {
     private static final int ZERO = 0;
     /** One. */
     private static final int ONE = 1;
-    /** Two. */
-    private static final int TWO = 2;
     /** Three. */
     private static final int THREE = 3;
-    /** Four. */
-    private static final int FOUR = 4;
-    /** Five. */
-    private static final int FIVE = 5;
-    /** Six. */
-    private static final int SIX = 6;
-    /** Seven. */
-    private static final int SEVEN = 7;
-    /** Eight. */
-    private static final int EIGHT = 8;
-    /** Nine. */
-    private static final int NINE = 9;
-    /** Ten. */
-    private static final int TEN = 10;
-    /** Eleven. */
-    private static final int ELEVEN = 11;
 
     /** ZRL. */
     private static final int ZRL = 0xF0;
@@ -97,19 +91,21 @@ public class EncodeDecodeRLEHuffman implements IRLE {
     /** Reverse lookup: zigzag position -> linear index. */
     private static final byte[] REVERSE_ZIGZAG_INDEX = new byte[ZIGZAG_BLOCK_SIZE];
 
-    /** Standard JPEG Huffman tables - using arrays for faster lookup. */
-    private static final String[] DC_HUFFMAN_CODES = new String[DC_HUFFMAN_CODES_SIZE];
-    /** Standard JPEG Huffman tables - using arrays for faster lookup. */
-    private static final String[] AC_HUFFMAN_CODES = new String[AC_HUFFMAN_CODES_SIZE];
-
-    /** Trie-based decode structures for O(code_length) decoding. */
-    private static final HuffmanDecodeNode DC_DECODE_ROOT = new HuffmanDecodeNode();
-    /** Trie-based decode structures for O(code_length) decoding. */
-    private static final HuffmanDecodeNode AC_DECODE_ROOT = new HuffmanDecodeNode();
-
     /** Pre-computed category lookup table for values -2047 to 2047. */
     private static final byte[] CATEGORY_LOOKUP = new byte[CATEGORY_LOOKUP_SIZE];
 
+    /** Standard JPEG luminance DC table specification. */
+    private static final byte[] STD_DC_LUMINANCE_BITS = {
+        0x00, 0x01, 0x05, 0x01, 0x01, 0x01, 0x01, 0x01,
+        0x01, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00,
+    };
+
+    /** Standard JPEG luminance DC table specification. */
+    private static final short[] STD_DC_LUMINANCE_VALUES = {
+        0x00, 0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08, 0x09,
+        0x0A, 0x0B,
+    };
+
     /** Standard JPEG luminance AC table specification. */
     private static final byte[] STD_AC_LUMINANCE_BITS = {
         0x00, 0x02, 0x01, 0x03, 0x03, 0x02, 0x04, 0x03,
@@ -137,33 +133,76 @@ public class EncodeDecodeRLEHuffman implements IRLE {
         0xF9, 0xFA,
     };
 
+    /** Standard JPEG luminance DC Huffman table. */
+    private static final HuffmanTable DC_TABLE =
+        new HuffmanTable(STD_DC_LUMINANCE_BITS, STD_DC_LUMINANCE_VALUES, DC_HUFFMAN_CODES_SIZE);
+
+    /** Standard JPEG luminance AC Huffman table. */
+    private static final HuffmanTable AC_TABLE =
+        new HuffmanTable(STD_AC_LUMINANCE_BITS, STD_AC_LUMINANCE_VALUES, AC_HUFFMAN_CODES_SIZE);
+
     /**
-     * Trie node for fast Huffman decoding without string allocations.
+     * Canonical Huffman table holding both the encode tables and the decode tables.
+     *
+     * <p>
+     * Encoding is a lookup of the right aligned code and its length. Decoding first
+     * looks at the next {@link #LOOKAHEAD_BITS} bits, which resolves every code that
+     * short in one step; longer codes fall back to the per-length limits of the
+     * JPEG decoding procedure (ITU T.81, F.2.2.3).
+     * </p>
      */
-    private static class HuffmanDecodeNode {
-        /** The one node. */
-        private HuffmanDecodeNode one;
-        /** The zero node. */
-        private HuffmanDecodeNode zero;
-        /** The value. */
-        private int value = -1; // -1 means non-leaf
-
-        void insert(final String code, final int val) {
-            HuffmanDecodeNode curr = this;
-            for (int i = 0; i < code.length(); i++) {
-                if (code.charAt(i) == '0') {
-                    if (curr.zero == null) {
-                        curr.zero = new HuffmanDecodeNode();
-                    }
-                    curr = curr.zero;
-                } else {
-                    if (curr.one == null) {
-                        curr.one = new HuffmanDecodeNode();
+    private static final class HuffmanTable {
+        /** Code of each symbol, right aligned. */
+        private final int[] codes;
+        /** Length of the code of each symbol, 0 when the symbol has no code. */
+        private final byte[] lengths;
+        /** First level decode table: (length &lt;&lt; 8) | symbol, 0 for longer codes. */
+        private final int[] lookahead;
+        /** Largest code of each length, -1 when there is none. */
+        private final int[] maxCode;
+        /** Offset from a code of each length to its index in values. */
+        private final int[] valueOffset;
+        /** Symbols ordered by code. */
+        private final short[] values;
+
+        /**
+         * Builds the table from a JPEG DHT style specification.
+         * @param bits number of codes of each length from 1 to 16
+         * @param valuesArgs symbols ordered by code
+         * @param symbolCount size of the symbol alphabet
+         */
+        HuffmanTable(final byte[] bits, final short[] valuesArgs, final int symbolCount) {
+            this.codes = new int[symbolCount];
+            this.lengths = new byte[symbolCount];
+            this.lookahead = new int[LOOKAHEAD_SIZE];
+            this.maxCode = new int[MAX_CODE_LENGTH + 1];
+            this.valueOffset = new int[MAX_CODE_LENGTH + 1];
+            this.values = valuesArgs;
+
+            int code = 0;
+            int valueIndex = 0;
+            for (int length = 1; length <= MAX_CODE_LENGTH; length++) {
+                final int codesForLength = bits[length - 1];
+                valueOffset[length] = valueIndex - code;
+                maxCode[length] = -1;
+
+                for (int i = 0; i < codesForLength; i++) {
+                    final int symbol = values[valueIndex++];
+                    codes[symbol] = code;
+                    lengths[symbol] = (byte) length;
+                    if (length <= LOOKAHEAD_BITS) {
+                        final int spare = LOOKAHEAD_BITS - length;
+                        final int first = code << spare;
+                        final int entry = (length << BYTE_SIZE) | symbol;
+                        for (int j = 0; j < 1 << spare; j++) {
+                            lookahead[first + j] = entry;
+                        }
                     }
-                    curr = curr.one;
+                    maxCode[length] = code;
+                    code++;
                 }
+                code <<= 1;
             }
-            curr.value = val;
         }
     }
 
@@ -177,7 +216,6 @@ public class EncodeDecodeRLEHuffman implements IRLE {
     private static void initializeAll() {
         initializeZigZagIndices();
         initializeCategoryLookup();
-        initializeHuffmanTables();
     }
 
     /**
@@ -225,91 +263,15 @@ public class EncodeDecodeRLEHuffman implements IRLE {
     }
 
     /**
-     * Initialize standard JPEG Huffman tables.
-     */
-    private static void initializeHuffmanTables() {
-        // DC Luminance Huffman codes
-        DC_HUFFMAN_CODES[ZERO] = "00";
-        DC_HUFFMAN_CODES[ONE] = "010";
-        DC_HUFFMAN_CODES[TWO] = "011";
-        DC_HUFFMAN_CODES[THREE] = "100";
-        DC_HUFFMAN_CODES[FOUR] = "101";
-        DC_HUFFMAN_CODES[FIVE] = "110";
-        DC_HUFFMAN_CODES[SIX] = "1110";
-        DC_HUFFMAN_CODES[SEVEN] = "11110";
-        DC_HUFFMAN_CODES[EIGHT] = "111110";
-        DC_HUFFMAN_CODES[NINE] = "1111110";
-        DC_HUFFMAN_CODES[TEN] = "11111110";
-        DC_HUFFMAN_CODES[ELEVEN] = "111111110";
-
-        buildAcHuffmanTable();
-        buildDecodeTries();
-    }
-
-    /**
-     * Build the AC Huffman table.
-     */
-    private static void buildAcHuffmanTable() {
-        int code = 0;
-        int valueIndex = 0;
-
-        for (int bitLength = 1; bitLength <= HUFFMAN_DECODE_ROOT_SIZE; bitLength++) {
-            final int codesForLength = STD_AC_LUMINANCE_BITS[bitLength - 1];
-
-            for (int i = 0; i < codesForLength; i++) {
-                final int symbol = STD_AC_LUMINANCE_VALUES[valueIndex++];
-                AC_HUFFMAN_CODES[symbol] = toBinaryString(code, bitLength);
-                code++;
-            }
-            code <<= 1;
-        }
-    }
-
-    /**
-     * Build the decode tries.
-     */
-    private static void buildDecodeTries() {
-        // Build DC trie
-        for (int i = 0; i < DC_HUFFMAN_CODES.length; i++) {
-            if (DC_HUFFMAN_CODES[i] != null) {
-                DC_DECODE_ROOT.insert(DC_HUFFMAN_CODES[i], i);
-            }
-        }
-
-        // Build AC trie
-        for (int i = 0; i < AC_HUFFMAN_CODES.length; i++) {
-            if (AC_HUFFMAN_CODES[i] != null) {
-                AC_DECODE_ROOT.insert(AC_HUFFMAN_CODES[i], i);
-            }
-        }
-    }
-
-    /**
-     * Fast binary string conversion without allocations.
-     * @param val The value to convert.
-     * @param length The length of the binary string.
-     * @return the binary string
-     */
-    private static String toBinaryString(final int val, final int length) {
-        int value = val;
-        final char[] chars = new char[length];
-        for (int i = length - 1; i >= 0; i--) {
-            chars[i] = (char) ('0' + (value & 1));
-            value >>= 1;
-        }
-        return new String(chars);
-    }
-
-    /**
-     * Bit writer with minimal branching.
+     * Bit writer collecting bits in a 64-bit accumulator and emitting whole words.
      */
     private static class BitWriter {
         /** The buffer. */
         private final ByteBuffer buffer;
-        /** The current byte. */
-        private int currentByte;
-        /** The bits in byte. */
-        private int bitsInByte;
+        /** Pending bits, right aligned. */
+        private long accumulator;
+        /** Number of pending bits, always below a word between calls. */
+        private int bitCount;
 
         /**
          * Constructor for the BitWriter class.
@@ -317,48 +279,25 @@ public class EncodeDecodeRLEHuffman implements IRLE {
          */
         BitWriter(final ByteBuffer bufferArgs) {
             this.buffer = bufferArgs;
-            this.currentByte = 0;
-            this.bitsInByte = 0;
-        }
-
-        /**
-         * Write the bits.
-         * @param bits The bits to write.
-         */
-        public void writeBits(final String bits) {
-            for (int i = 0, len = bits.length(); i < len; i++) {
-                currentByte = (currentByte << 1) | (bits.charAt(i) - '0');
-                if (++bitsInByte == BYTE_SIZE) {
-                    buffer.put((byte) currentByte);
-                    currentByte = 0;
-                    bitsInByte = 0;
-                }
-            }
+            this.accumulator = 0;
+            this.bitCount = 0;
         }
 
         /**
          * Write the bits.
-         * @param value The value to write.
-         * @param nBits The number of bits to write.
+         * @param value The value to write, right aligned.
+         * @param nBits The number of bits to write, at most 32.
          */
         public void writeBits(final int value, final int nBits) {
-            int numBits = nBits;
-            // Process bits in chunks for better performance
-            while (numBits > 0) {
-                final int bitsToWrite = Math.min(numBits, BYTE_SIZE - bitsInByte);
-                final int shift = numBits - bitsToWrite;
-                final int mask = (1 << bitsToWrite) - 1;
-                final int bits = (value >> shift) & mask;
-
-                currentByte = (currentByte << bitsToWrite) | bits;
-                bitsInByte += bitsToWrite;
-                numBits -= bitsToWrite;
-
-                if (bitsInByte == BYTE_SIZE) {
-                    buffer.put((byte) currentByte);
-                    currentByte = 0;
-                    bitsInByte = 0;
-                }
+            accumulator = (accumulator << nBits) | (value & ((1L << nBits) - 1));
+            bitCount += nBits;
+            if (bitCount >= WORD_SIZE) {
+                bitCount -= WORD_SIZE;
+                final int word = (int) (accumulator >>> bitCount);
+                buffer.put((byte) (word >>> (WORD_SIZE - BYTE_SIZE)));
+                buffer.put((byte) (word >>> (WORD_SIZE - 2 * BYTE_SIZE)));
+                buffer.put((byte) (word >>> BYTE_SIZE));
+                buffer.put((byte) word);
             }
         }
 
@@ -366,26 +305,32 @@ public class EncodeDecodeRLEHuffman implements IRLE {
          * Flush the bits.
          */
         public void flush() {
-            if (bitsInByte > 0) {
-                currentByte <<= BYTE_SIZE - bitsInByte;
-                currentByte |= (1 << (BYTE_SIZE - bitsInByte)) - 1; // Pad with 1s
-                buffer.put((byte) currentByte);
-                currentByte = 0;
-                bitsInByte = 0;
+            while (bitCount >= BYTE_SIZE) {
+                bitCount -= BYTE_SIZE;
+                buffer.put((byte) (accumulator >>> bitCount));
+            }
+            if (bitCount > 0) {
+                final int padding = BYTE_SIZE - bitCount;
+                final int lastByte = (int) (accumulator << padding) | ((1 << padding) - 1); // Pad with 1s
+                buffer.put((byte) lastByte);
             }
+            accumulator = 0;
+            bitCount = 0;
         }
     }
 
     /**
-     * Bit reader with trie-based decoding.
+     * Bit reader with a 64-bit accumulator and table-driven Huffman decoding.
      */
     private static class BitReader {
         /** The buffer. */
         private final ByteBuffer buffer;
-        /** The current byte. */
-        private int currentByte;
-        /** The bits remaining. */
-        private int bitsRemaining;
+        /** Buffered bits, right aligned. */
+        private long accumulator;
+        /** Number of buffered bits. */
+        private int bitCount;
+        /** Position of the next byte to load. */
+        private int position;
         /** The max position. */
         private final int maxPosition;
 
@@ -396,76 +341,87 @@ public class EncodeDecodeRLEHuffman implements IRLE {
          */
         BitReader(final ByteBuffer bufferArgs, final int bitStreamLength) {
             this.buffer = bufferArgs;
-            this.currentByte = 0;
-            this.bitsRemaining = 0;
-            this.maxPosition = buffer.position() + bitStreamLength;
+            this.accumulator = 0;
+            this.bitCount = 0;
+            this.position = buffer.position();
+            this.maxPosition = position + bitStreamLength;
         }
 
         /**
-         * Read the bit.
-         * @return the bit
+         * Loads whole bytes into the accumulator until it is full or the stream ends.
          */
-        private int readBit() {
-            if (bitsRemaining == 0) {
-                if (!buffer.hasRemaining() || buffer.position() >= maxPosition) {
-                    return -1;
-                }
-                currentByte = buffer.get() & BYTE_MASK;
-                bitsRemaining = BYTE_SIZE;
+        private void fill() {
+            while (bitCount <= ACCUMULATOR_FILL_LIMIT && position < maxPosition) {
+                accumulator = (accumulator << BYTE_SIZE) | (buffer.get(position++) & BYTE_MASK);
+                bitCount += BYTE_SIZE;
             }
-            return (currentByte >> --bitsRemaining) & 1;
+        }
+
+        /**
+         * Returns the next bits without consuming them, padded with zeros past the end of the stream.
+         * @param nBits The number of bits to peek.
+         * @return the bits
+         */
+        private int peekBits(final int nBits) {
+            final long bits;
+            if (bitCount >= nBits) {
+                bits = accumulator >>> (bitCount - nBits);
+            } else {
+                bits = accumulator << (nBits - bitCount);
+            }
+            return (int) bits & ((1 << nBits) - 1);
         }
 
         /**
          * Read the bits.
          * @param nBits The number of bits to read.
-         * @return the bits
+         * @return the bits, or -1 when the stream ends first
          */
         public int readBits(final int nBits) {
-            int numBits = nBits;
-            int value = 0;
-            while (numBits > 0) {
-                if (bitsRemaining == 0) {
-                    if (!buffer.hasRemaining() || buffer.position() >= maxPosition) {
-                        return -1;
-                    }
-                    currentByte = buffer.get() & BYTE_MASK;
-                    bitsRemaining = BYTE_SIZE;
+            if (nBits <= 0) {
+                return 0;
+            }
+            if (bitCount < nBits) {
+                fill();
+                if (bitCount < nBits) {
+                    bitCount = 0;
+                    return -1;
                 }
-
-                final int bitsToRead = Math.min(numBits, bitsRemaining);
-                final int shift = bitsRemaining - bitsToRead;
-                final int mask = (1 << bitsToRead) - 1;
-                value = (value << bitsToRead) | ((currentByte >> shift) & mask);
-                bitsRemaining -= bitsToRead;
-                numBits -= bitsToRead;
             }
+            final int value = peekBits(nBits);
+            bitCount -= nBits;
             return value;
         }
 
         /**
          * Decode the Huffman.
-         * @param root The root.
-         * @return the decoded Huffman
+         * @param table The table.
+         * @return the decoded symbol, or -1 for an invalid code or the end of the stream
          */
-        public int decodeHuffman(final HuffmanDecodeNode root) {
-            HuffmanDecodeNode curr = root;
-            for (int i = 0; i < HUFFMAN_DECODE_ROOT_SIZE; i++) { // Max code length
-                final int bit = readBit();
-                if (bit == -1) {
-                    return -1;
-                }
+        public int decodeHuffman(final HuffmanTable table) {
+            if (bitCount < MAX_CODE_LENGTH) {
+                fill();
+            }
 
-                if (bit == 0) {
-                    curr = curr.zero;
-                } else {
-                    curr = curr.one;
-                }
-                if (curr == null) {
+            final int entry = table.lookahead[peekBits(LOOKAHEAD_BITS)];
+            if (entry != 0) {
+                final int length = entry >>> BYTE_SIZE;
+                if (length > bitCount) {
                     return -1;
                 }
-                if (curr.value != -1) {
-                    return curr.value;
+                bitCount -= length;
+                return entry & BYTE_MASK;
+            }
+
+            final int code = peekBits(MAX_CODE_LENGTH);
+            for (int length = LOOKAHEAD_BITS + 1; length <= MAX_CODE_LENGTH; length++) {
+                final int prefix = code >>> (MAX_CODE_LENGTH - length);
+                if (prefix <= table.maxCode[length]) {
+                    if (length > bitCount) {
+                        return -1;
+                    }
+                    bitCount -= length;
+                    return table.values[prefix + table.valueOffset[length]];
                 }
             }
             return -1;
@@ -580,13 +536,13 @@ public class EncodeDecodeRLEHuffman implements IRLE {
             }
 
             if (i == ZIGZAG_BLOCK_SIZE) {
-                writer.writeBits(AC_HUFFMAN_CODES[ZERO]); // EOB
+                writer.writeBits(AC_TABLE.codes[ZERO], AC_TABLE.lengths[ZERO]); // EOB
                 break;
             }
 
-            while (zeroRun >= HUFFMAN_DECODE_ROOT_SIZE) {
-                writer.writeBits(AC_HUFFMAN_CODES[ZRL]); // ZRL
-                zeroRun -= HUFFMAN_DECODE_ROOT_SIZE;
+            while (zeroRun >= ZRL_RUN_LENGTH) {
+                writer.writeBits(AC_TABLE.codes[ZRL], AC_TABLE.lengths[ZRL]); // ZRL
+                zeroRun -= ZRL_RUN_LENGTH;
             }
 
             final int idx = ZIGZAG_INDEX[i] & BYTE_MASK;
@@ -602,12 +558,11 @@ public class EncodeDecodeRLEHuffman implements IRLE {
             final int category = getCategoryFast(value);
             final int symbol = (zeroRun << HALF_BYTE_SIZE) | category;
 
-            final String huffCode = AC_HUFFMAN_CODES[symbol];
-            if (huffCode != null) {
-                writer.writeBits(huffCode);
-                if (category > 0) {
-                    writer.writeBits(getAdditionalBitsValue(value, category), category);
-                }
+            final int length = AC_TABLE.lengths[symbol];
+            if (length > 0) {
+                // Code and additional bits in one write
+                writer.writeBits((AC_TABLE.codes[symbol] << category) | getAdditionalBitsValue(value, category),
+                    length + category);
             }
             i++;
         }
@@ -627,7 +582,7 @@ public class EncodeDecodeRLEHuffman implements IRLE {
     private short decodeBlockHuffman(final short[][] matrix, final int startRow, final int startCol,
                                      final BitReader reader, final short prevDC) {
         // Decode DC
-        final int dcCategory = reader.decodeHuffman(DC_DECODE_ROOT);
+        final int dcCategory = reader.decodeHuffman(DC_TABLE);
         final short dcDiff;
         if (dcCategory == 0) {
             dcDiff = 0;
@@ -640,13 +595,13 @@ public class EncodeDecodeRLEHuffman implements IRLE {
         // Decode AC
         int i = 1;
         while (i < ZIGZAG_BLOCK_SIZE) {
-            final int symbol = reader.decodeHuffman(AC_DECODE_ROOT);
+            final int symbol = reader.decodeHuffman(AC_TABLE);
             if (symbol == -1 || symbol == 0x00) {
                 break; // EOB or error
             }
 
             if (symbol == ZRL) { // ZRL
-                i = Math.min(i + HUFFMAN_DECODE_ROOT_SIZE, ZIGZAG_BLOCK_SIZE);
+                i = Math.min(i + ZRL_RUN_LENGTH, ZIGZAG_BLOCK_SIZE);
                 continue;
             }
 
@@ -675,10 +630,8 @@ public class EncodeDecodeRLEHuffman implements IRLE {
      */
     private void encodeDC(final short dcDiff, final BitWriter writer) {
         final int category = getCategoryFast(dcDiff);
-        writer.writeBits(DC_HUFFMAN_CODES[category]);
-        if (category > 0) {
-            writer.writeBits(getAdditionalBitsValue(dcDiff, category), category);
-        }
+        writer.writeBits((DC_TABLE.codes[category] << category) | getAdditionalBitsValue(dcDiff, category),
+            DC_TABLE.lengths[category] + category);
     }
 
     /**
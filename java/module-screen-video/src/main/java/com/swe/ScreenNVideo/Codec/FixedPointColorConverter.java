@@ -0,0 +1,269 @@
+/**
+ * Contributed by @chirag9528.
+ */
+
+package com.swe.ScreenNVideo.Codec;
+
+/**
+ * RGB &lt;-&gt; YCbCr conversion in 16 bit fixed-point, following libjpeg's jccolor/jdcolor.
+ *
+ * <p>Every coefficient * channel product is precomputed into a 256 entry table,
+ * so a pixel costs table lookups and integer adds instead of nine double multiplies.
+ * Y and the 2x2 chroma averages are truncated like the floating point converter,
+ * so both converters agree to within one level.
+ */
+class FixedPointColorConverter implements IColorConverter {
+
+    /**
+     * Offset for alpha component in the AARRGGBB value.
+     */
+    private static final int A_OFFSET = 24;
+
+    /**
+     * Offset for red color component in the AARRGGBB value.
+     */
+    private static final int R_OFFSET = 16;
+
+    /**
+     * Offset for green color component in the AARRGGBB value.
+     */
+    private static final int G_OFFSET = 8;
+
+    /**
+     * Mask for extracting color component.
+     */
+    private static final int MASK = 0xFF;
+
+    /**
+     * Number of fractional bits of the fixed-point coefficients.
+     */
+    private static final int SCALE_BITS = 16;
+
+    /**
+     * 0.5 in fixed-point, added before a shift to round.
+     */
+    private static final int ONE_HALF = 1 << (SCALE_BITS - 1);
+
+    /**
+     * Number of values of an 8 bit channel.
+     */
+    private static final int LEVELS = 256;
+
+    /**
+     * Offset applied to Cb and Cr channels to center them around 128.
+     * Also used as a level-shift value for Y.
+     */
+    private static final int CHROMA_OFFSET = 128;
+
+    /**
+     * Maximum value for a color channel (8-bit).
+     */
+    private static final int COLOR_MAX = 255;
+
+    /**
+     * Side dimension of the 2x2 subsampling block.
+     */
+    private static final int BLOCK_SIDE = 2;
+
+    /**
+     * Chroma of a 2x2 block is summed over its four pixels, two more bits of shift average it.
+     */
+    private static final int AVERAGE_SHIFT = SCALE_BITS + 2;
+
+    /**
+     * The +128 chroma offset of four summed pixels, in fixed-point.
+     */
+    private static final int CHROMA_SUM_OFFSET = (CHROMA_OFFSET * BLOCK_SIDE * BLOCK_SIDE) << SCALE_BITS;
+
+    /** R * 0.299 in fixed-point. */
+    private static final int[] Y_R = table(0.299, 0, 0);
+    /** G * 0.587 in fixed-point. */
+    private static final int[] Y_G = table(0.587, 0, 0);
+    /** B * 0.114 in fixed-point. */
+    private static final int[] Y_B = table(0.114, 0, 0);
+    /** R * -0.168736 in fixed-point. */
+    private static final int[] CB_R = table(-0.168736, 0, 0);
+    /** G * -0.331264 in fixed-point. */
+    private static final int[] CB_G = table(-0.331264, 0, 0);
+    /** B * 0.5 for Cb and R * 0.5 for Cr in fixed-point. */
+    private static final int[] HALF = table(0.5, 0, 0);
+    /** G * -0.418688 in fixed-point. */
+    private static final int[] CR_G = table(-0.418688, 0, 0);
+    /** B * -0.081312 in fixed-point. */
+    private static final int[] CR_B = table(-0.081312, 0, 0);
+
+    /** Red added by Cr, already rounded to an integer. */
+    private static final int[] CR_TO_R = roundedTable(1.402);
+    /** Blue added by Cb, already rounded to an integer. */
+    private static final int[] CB_TO_B = roundedTable(1.772);
+    /** Green added by Cb in fixed-point, carries the rounding half. */
+    private static final int[] CB_TO_G = table(-0.344136, CHROMA_OFFSET, ONE_HALF);
+    /** Green added by Cr in fixed-point. */
+    private static final int[] CR_TO_G = table(-0.714136, CHROMA_OFFSET, 0);
+
+    /**
+     * Clamps v to 0-255 when read at v + RANGE_OFFSET, for v in [-256, 511].
+     */
+    private static final int[] RANGE_LIMIT = new int[LEVELS * 3];
+
+    /**
+     * Index of value 0 in {@link #RANGE_LIMIT}.
+     */
+    private static final int RANGE_OFFSET = LEVELS;
+
+    static {
+        for (int i = 0; i < RANGE_LIMIT.length; i++) {
+            RANGE_LIMIT[i] = Math.min(COLOR_MAX, Math.max(0, i - RANGE_OFFSET));
+        }
+    }
+
+    /**
+     * Builds coefficient * (value - origin) in fixed-point for the 256 values of a channel.
+     *
+     * @param coefficient coefficient to scale by
+     * @param origin channel value mapped to zero, 128 for offset chroma
+     * @param bias fixed-point value added to every entry
+     * @return fixed-point products, indexed by channel value
+     */
+    private static int[] table(final double coefficient, final int origin, final int bias) {
+        final int fixed = (int) Math.round(coefficient * (1 << SCALE_BITS));
+        final int[] result = new int[LEVELS];
+        for (int i = 0; i < LEVELS; i++) {
+            result[i] = fixed * (i - origin) + bias;
+        }
+        return result;
+    }
+
+    /**
+     * Builds round(coefficient * (chroma - 128)) for the 256 offset chroma values.
+     *
+     * @param coefficient coefficient to scale by
+     * @return integer products, indexed by chroma + 128
+     */
+    private static int[] roundedTable(final double coefficient) {
+        final int[] result = table(coefficient, CHROMA_OFFSET, ONE_HALF);
+        for (int i = 0; i < LEVELS; i++) {
+            result[i] >>= SCALE_BITS;
+        }
+        return result;
+    }
+
+    @Override
+    public void toYCbCr(final int[] row0, final int off0, final int[] row1, final int off1,
+                        final int width, final int posY, final short[][][] planes) {
+        final short[] yRow0 = planes[0][posY];
+        final short[] yRow1 = planes[0][posY + 1];
+        final short[] cbRow = planes[1][posY / BLOCK_SIDE];
+        final short[] crRow = planes[2][posY / BLOCK_SIDE];
+        for (int j = 0; j < width; j += BLOCK_SIDE) {
+            final int p00 = row0[off0 + j];
+            final int p01 = row0[off0 + j + 1];
+            final int p10 = row1[off1 + j];
+            final int p11 = row1[off1 + j + 1];
+
+            yRow0[j] = luma(p00);
+            yRow0[j + 1] = luma(p01);
+            yRow1[j] = luma(p10);
+            yRow1[j + 1] = luma(p11);
+
+            final int cbSum = CHROMA_SUM_OFFSET + chromaBlue(p00) + chromaBlue(p01) + chromaBlue(p10) + chromaBlue(p11);
+            final int crSum = CHROMA_SUM_OFFSET + chromaRed(p00) + chromaRed(p01) + chromaRed(p10) + chromaRed(p11);
+
+            cbRow[j / BLOCK_SIDE] = (short) (RANGE_LIMIT[(cbSum >> AVERAGE_SHIFT) + RANGE_OFFSET] - CHROMA_OFFSET);
+            crRow[j / BLOCK_SIDE] = (short) (RANGE_LIMIT[(crSum >> AVERAGE_SHIFT) + RANGE_OFFSET] - CHROMA_OFFSET);
+        }
+    }
+
+    /**
+     * Level shifted luminance of a pixel.
+     *
+     * @param pixel 0xAARRGGBB value
+     * @return Y - 128
+     */
+    private static short luma(final int pixel) {
+        // Y coefficients add up to exactly 1.0 so the sum never leaves 0-255
+        final int y = Y_R[(pixel >> R_OFFSET) & MASK] + Y_G[(pixel >> G_OFFSET) & MASK] + Y_B[pixel & MASK];
+        return (short) ((y >> SCALE_BITS) - CHROMA_OFFSET);
+    }
+
+    /**
+     * Chroma blue-difference of a pixel, without the +128 offset.
+     *
+     * @param pixel 0xAARRGGBB value
+     * @return Cb - 128 in fixed-point
+     */
+    private static int chromaBlue(final int pixel) {
+        return CB_R[(pixel >> R_OFFSET) & MASK] + CB_G[(pixel >> G_OFFSET) & MASK] + HALF[pixel & MASK];
+    }
+
+    /**
+     * Chroma red-difference of a pixel, without the +128 offset.
+     *
+     * @param pixel 0xAARRGGBB value
+     * @return Cr - 128 in fixed-point
+     */
+    private static int chromaRed(final int pixel) {
+        return HALF[(pixel >> R_OFFSET) & MASK] + CR_G[(pixel >> G_OFFSET) & MASK] + CR_B[pixel & MASK];
+    }
+
+    @Override
+    public void toArgb(final short[][][] planes, final int row,
+                       final int[] dst0, final int off0, final int[] dst1, final int off1) {
+        final short[][] yMatrix = planes[0];
+        final short[][] cbMatrix = planes[1];
+        final short[][] crMatrix = planes[2];
+        final int chromaRow = row / BLOCK_SIDE;
+        if (chromaRow >= cbMatrix.length) {
+            return;
+        }
+
+        // Chroma matrices may be padded to multiples of 8, but we only need width/2 elements
+        final int chromaWidth = Math.min(cbMatrix[0].length, yMatrix[0].length / BLOCK_SIDE);
+        final short[] yRow0 = yMatrix[row];
+        final short[] yRow1 = yMatrix[row + 1];
+        final short[] cbRow = cbMatrix[chromaRow];
+        final short[] crRow = crMatrix[chromaRow];
+
+        for (int j = 0; j < chromaWidth; ++j) {
+            // Level shift: [-128, 127] → [0, 255], then look the chroma contributions up once per block
+            final int cb = clamp(cbRow[j] + CHROMA_OFFSET);
+            final int cr = clamp(crRow[j] + CHROMA_OFFSET);
+            final int rAdd = CR_TO_R[cr];
+            final int gAdd = (CB_TO_G[cb] + CR_TO_G[cr]) >> SCALE_BITS;
+            final int bAdd = CB_TO_B[cb];
+            final int col = BLOCK_SIDE * j;
+
+            dst0[off0 + col] = argb(yRow0[col], rAdd, gAdd, bAdd);
+            dst0[off0 + col + 1] = argb(yRow0[col + 1], rAdd, gAdd, bAdd);
+            dst1[off1 + col] = argb(yRow1[col], rAdd, gAdd, bAdd);
+            dst1[off1 + col + 1] = argb(yRow1[col + 1], rAdd, gAdd, bAdd);
+        }
+    }
+
+    /**
+     * Converts one YCbCr sample to an ARGB pixel.
+     *
+     * @param luma level shifted luminance
+     * @param rAdd red contribution of the block's chroma
+     * @param gAdd green contribution of the block's chroma
+     * @param bAdd blue contribution of the block's chroma
+     * @return 0xAARRGGBB value
+     */
+    private static int argb(final short luma, final int rAdd, final int gAdd, final int bAdd) {
+        final int y = clamp(luma + CHROMA_OFFSET) + RANGE_OFFSET;
+        return (MASK << A_OFFSET)
+            | (RANGE_LIMIT[y + rAdd] << R_OFFSET)
+            | (RANGE_LIMIT[y + gAdd] << G_OFFSET)
+            | RANGE_LIMIT[y + bAdd];
+    }
+
+    /**
+     * Clamps an integer value to the 0-255 color range.
+     *
+     * @param value the value to clamp
+     * @return the clamped value
+     */
+    private static int clamp(final int value) {
+        return Math.min(COLOR_MAX, Math.max(0, value));
+    }
+}
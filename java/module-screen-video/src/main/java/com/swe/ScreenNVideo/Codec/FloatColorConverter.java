@@ -0,0 +1,245 @@
+/**
+ * Contributed by @chirag9528.
+ */
+
+package com.swe.ScreenNVideo.Codec;
+
+/**
+ * RGB &lt;-&gt; YCbCr conversion using double precision coefficients.
+ */
+class FloatColorConverter implements IColorConverter {
+
+    /**
+     * Offset for alpha component in the AARRGGBB value.
+     */
+    private static final int A_OFFSET = 24;
+
+    /**
+     * Offset for red color component in the AARRGGBB value.
+     */
+    private static final int R_OFFSET = 16;
+
+    /**
+     * Offset for green color component in the AARRGGBB value.
+     */
+    private static final int G_OFFSET = 8;
+
+    /**
+     * Mask for extracting color component.
+     */
+    private static final int MASK = 0xFF;
+
+    /**
+     * Coefficient for red contribution in luminance(Y) calculation.
+     */
+    private static final double Y_R_COEFF = 0.299;
+
+    /**
+     * Coefficient for green contribution in luminance(Y) calculation.
+     */
+    private static final double Y_G_COEFF = 0.587;
+
+    /**
+     * Coefficient for blue contribution in luminance(Y) calculation.
+     */
+    private static final double Y_B_COEFF = 0.114;
+
+    /**
+     * Coefficient for red contribution in chroma blue-difference (Cb) calculation.
+     */
+    private static final double CB_R_COEFF = -0.168736;
+
+    /**
+     * Coefficient for green contribution in chroma blue-difference (Cb) calculation.
+     */
+    private static final double CB_G_COEFF = -0.331264;
+
+    /**
+     * Coefficient for blue contribution in chroma blue-difference (Cb) calculation.
+     */
+    private static final double CB_B_COEFF = 0.5;
+
+    /**
+     * Coefficient for red contribution in chroma red-difference (Cr) calculation.
+     */
+    private static final double CR_R_COEFF = 0.5;
+
+    /**
+     * Coefficient for green contribution in chroma red-difference (Cr) calculation.
+     */
+    private static final double CR_G_COEFF = -0.418688;
+
+    /**
+     * Coefficient for blue contribution in chroma red-difference (Cr) calculation.
+     */
+    private static final double CR_B_COEFF = -0.081312;
+
+    /**
+     * Offset applied to Cb and Cr channels to center them around 128.
+     * Also used as a level-shift value for Y.
+     */
+    private static final int CHROMA_OFFSET = 128;
+
+    /**
+     * Coefficient for Cr contribution to red channel in YCbCr->RGB conversion.
+     */
+    private static final double CR_TO_R = 1.402;
+
+    /**
+     * Coefficient for Cb contribution to green channel in YCbCr->RGB conversion.
+     */
+    private static final double CB_TO_G = 0.344136;
+
+    /**
+     * Coefficient for Cr contribution to green channel in YCbCr->RGB conversion.
+     */
+    private static final double CR_TO_G = 0.714136;
+
+    /**
+     * Coefficient for Cb contribution to blue channel in YCbCr->RGB conversion.
+     */
+    private static final double CB_TO_B = 1.772;
+
+    /**
+     * Maximum value for a color channel (8-bit).
+     */
+    private static final int COLOR_MAX = 255;
+
+    /**
+     * Number of pixels in a 2*2 block for 4:2:0 chroma subsampling.
+     */
+    private static final int SUBSAMPLE_BLOCK_SIZE = 4;
+
+    /**
+     * Side dimension of the 2x2 subsampling block.
+     */
+    private static final int BLOCK_SIDE = 2;
+
+    @Override
+    public void toYCbCr(final int[] row0, final int off0, final int[] row1, final int off1,
+                        final int width, final int posY, final short[][][] planes) {
+        final short[] yRow0 = planes[0][posY];
+        final short[] yRow1 = planes[0][posY + 1];
+        final short[] cbRow = planes[1][posY / BLOCK_SIDE];
+        final short[] crRow = planes[2][posY / BLOCK_SIDE];
+        for (int j = 0; j < width; j += BLOCK_SIDE) {
+            final int p00 = row0[off0 + j];
+            final int p01 = row0[off0 + j + 1];
+            final int p10 = row1[off1 + j];
+            final int p11 = row1[off1 + j + 1];
+
+            yRow0[j] = luma(p00);
+            yRow0[j + 1] = luma(p01);
+            yRow1[j] = luma(p10);
+            yRow1[j + 1] = luma(p11);
+
+            final double cbPixel = chromaBlue(p00) + chromaBlue(p01) + chromaBlue(p10) + chromaBlue(p11);
+            final double crPixel = chromaRed(p00) + chromaRed(p01) + chromaRed(p10) + chromaRed(p11);
+            final int cbValue = (int) (cbPixel / SUBSAMPLE_BLOCK_SIZE);
+            final int crValue = (int) (crPixel / SUBSAMPLE_BLOCK_SIZE);
+
+            cbRow[j / BLOCK_SIDE] = (short) (rescale(cbValue) - CHROMA_OFFSET);
+            crRow[j / BLOCK_SIDE] = (short) (rescale(crValue) - CHROMA_OFFSET);
+        }
+    }
+
+    @Override
+    public void toArgb(final short[][][] planes, final int row,
+                       final int[] dst0, final int off0, final int[] dst1, final int off1) {
+        final short[][] yMatrix = planes[0];
+        final short[][] cbMatrix = planes[1];
+        final short[][] crMatrix = planes[2];
+        final int chromaRow = row / BLOCK_SIDE;
+        if (chromaRow >= cbMatrix.length) {
+            return;
+        }
+
+        // Chroma matrices may be padded to multiples of 8, but we only need width/2 elements
+        final int chromaWidth = Math.min(cbMatrix[0].length, yMatrix[0].length / BLOCK_SIDE);
+        final short[] yRow0 = yMatrix[row];
+        final short[] yRow1 = yMatrix[row + 1];
+        final short[] cbRow = cbMatrix[chromaRow];
+        final short[] crRow = crMatrix[chromaRow];
+
+        for (int j = 0; j < chromaWidth; ++j) {
+            // Level shift: [-128, 127] → [0, 255], then center chroma for YCbCr → RGB conversion
+            final int cbCentered = rescale(cbRow[j] + CHROMA_OFFSET) - CHROMA_OFFSET;
+            final int crCentered = rescale(crRow[j] + CHROMA_OFFSET) - CHROMA_OFFSET;
+            final int col = BLOCK_SIDE * j;
+
+            dst0[off0 + col] = argb(yRow0[col], cbCentered, crCentered);
+            dst0[off0 + col + 1] = argb(yRow0[col + 1], cbCentered, crCentered);
+            dst1[off1 + col] = argb(yRow1[col], cbCentered, crCentered);
+            dst1[off1 + col + 1] = argb(yRow1[col + 1], cbCentered, crCentered);
+        }
+    }
+
+    /**
+     * Level shifted luminance of a pixel.
+     *
+     * @param pixel 0xAARRGGBB value
+     * @return Y - 128
+     */
+    private static short luma(final int pixel) {
+        final int r = (pixel >> R_OFFSET) & MASK;
+        final int g = (pixel >> G_OFFSET) & MASK;
+        final int b = pixel & MASK;
+        final int y = (int) (Y_R_COEFF * r + Y_G_COEFF * g + Y_B_COEFF * b);
+        return (short) (rescale(y) - CHROMA_OFFSET);
+    }
+
+    /**
+     * Chroma blue-difference of a pixel.
+     *
+     * @param pixel 0xAARRGGBB value
+     * @return Cb centered around 128
+     */
+    private static double chromaBlue(final int pixel) {
+        final int r = (pixel >> R_OFFSET) & MASK;
+        final int g = (pixel >> G_OFFSET) & MASK;
+        final int b = pixel & MASK;
+        return CHROMA_OFFSET + CB_R_COEFF * r + CB_G_COEFF * g + CB_B_COEFF * b;
+    }
+
+    /**
+     * Chroma red-difference of a pixel.
+     *
+     * @param pixel 0xAARRGGBB value
+     * @return Cr centered around 128
+     */
+    private static double chromaRed(final int pixel) {
+        final int r = (pixel >> R_OFFSET) & MASK;
+        final int g = (pixel >> G_OFFSET) & MASK;
+        final int b = pixel & MASK;
+        return CHROMA_OFFSET + CR_R_COEFF * r + CR_G_COEFF * g + CR_B_COEFF * b;
+    }
+
+    /**
+     * Converts one YCbCr sample to an ARGB pixel.
+     *
+     * @param luma level shifted luminance
+     * @param cbCentered centered chroma blue-difference
+     * @param crCentered centered chroma red-difference
+     * @return 0xAARRGGBB value
+     */
+    private static int argb(final short luma, final int cbCentered, final int crCentered) {
+        final int y = rescale(luma + CHROMA_OFFSET);
+
+        // YCbCr → RGB with centered chroma
+        final int r = rescale((int) Math.round(y + CR_TO_R * crCentered));
+        final int g = rescale((int) Math.round(y - CB_TO_G * cbCentered - CR_TO_G * crCentered));
+        final int b = rescale((int) Math.round(y + CB_TO_B * cbCentered));
+
+        return (MASK << A_OFFSET) | (r << R_OFFSET) | (g << G_OFFSET) | b;
+    }
+
+    /**
+     * Clamps an integer value to the 0-255 color range.
+     *
+     * @param value the value to clamp
+     * @return the clamped value
+     */
+    private static int rescale(final int value) {
+        return Math.min(COLOR_MAX, Math.max(0, value));
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ * Contributed by @chirag9528.
+ */
+
+package com.swe.ScreenNVideo.Codec;
+
+/**
+ * Converts between ARGB pixels and level shifted YCbCr 4:2:0 planes.
+ *
+ * <p>Both directions work on a pair of pixel rows at a time, so that one
+ * chroma row is produced (or consumed) per call. Rows are given as
+ * (array, start index) so that int[][] rows and flat frames share the code.
+ */
+interface IColorConverter {
+
+    /**
+     * Converts two adjacent pixel rows to YCbCr, averaging chroma over each 2x2 block.
+     *
+     * @param row0   array holding the upper row
+     * @param off0   index of the first pixel of the upper row
+     * @param row1   array holding the lower row
+     * @param off1   index of the first pixel of the lower row
+     * @param width  number of pixels per row (even)
+     * @param posY   row of the upper row inside the planes (even)
+     * @param planes destination {Y, Cb, Cr} planes, values are level shifted by -128
+     */
+    void toYCbCr(int[] row0, int off0, int[] row1, int off1, int width, int posY, short[][][] planes);
+
+    /**
+     * Converts two YCbCr rows back to ARGB pixels.
+     *
+     * @param planes {Y, Cb, Cr} planes, chroma may be padded to multiples of 8
+     * @param row    upper row to convert (even)
+     * @param dst0   array receiving the upper row
+     * @param off0   index of the first pixel of the upper row
+     * @param dst1   array receiving the lower row
+     * @param off1   index of the first pixel of the lower row
+     */
+    void toArgb(short[][][] planes, int row, int[] dst0, int off0, int[] dst1, int off1);
+}
@@ -30,4 +30,10 @@ interface  ICompressor {
      * @param width     : width of matrix
      */
     void compressLumin(short[][] matrix, short height, short width);
+
+    /**
+     * Selects the quantisation tables used by the following calls.
+     * @param quality : JPEG quality factor from 1 to 99
+     */
+    void setQuality(int quality);
 }
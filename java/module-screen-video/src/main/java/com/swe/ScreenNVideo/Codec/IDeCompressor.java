@@ -30,4 +30,10 @@ public interface IDeCompressor {
      * @param width : width of matrix
      */
     void decompressLumin(short[][] matrix, short height, short width);
+
+    /**
+     * Selects the quantisation tables used by the following calls.
+     * @param quality : JPEG quality factor from 1 to 99
+     */
+    void setQuality(int quality);
 }
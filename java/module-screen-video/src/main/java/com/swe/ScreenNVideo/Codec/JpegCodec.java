@@ -4,6 +4,8 @@
 
 package com.swe.ScreenNVideo.Codec;
 
+import com.swe.ScreenNVideo.Model.Frame;
+
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
@@ -21,108 +23,6 @@ import java.util.List;
  */
 public class JpegCodec implements Codec {
 
-    /**
-     * Offset for alpha component in the AARRGGBB value.
-     */
-    private static final int A_OFFSET = 24;
-
-    /**
-     * Offset for red color component in the AARRGGBB value.
-     */
-    private static final int R_OFFSET = 16;
-
-    /**
-     * Offset for green color component in the AARRGGBB value.
-     */
-    private static final int G_OFFSET = 8;
-
-    /**
-     * Mask for extracting color component.
-     */
-    private static final int MASK = 0xFF;
-
-    /**
-     * Coefficient for red contribution in luminance(Y) calculation.
-     */
-    private static final double Y_R_COEFF = 0.299;
-
-    /**
-     * Coefficient for green contribution in luminance(Y) calculation.
-     */
-    private static final double Y_G_COEFF = 0.587;
-
-    /**
-     * Coefficient for blue contribution in luminance(Y) calculation.
-     */
-    private static final double Y_B_COEFF = 0.114;
-
-    /**
-     * Coefficient for red contribution in chroma blue-difference (Cb) calculation.
-     */
-    private static final double CB_R_COEFF = -0.168736;
-
-    /**
-     * Coefficient for green contribution in chroma blue-difference (Cb) calculation.
-     */
-    private static final double CB_G_COEFF = -0.331264;
-
-    /**
-     * Coefficient for blue contribution in chroma blue-difference (Cb) calculation.
-     */
-    private static final double CB_B_COEFF = 0.5;
-
-    /**
-     * Coefficient for red contribution in chroma red-difference (Cr) calculation.
-     */
-    private static final double CR_R_COEFF = 0.5;
-
-    /**
-     * Coefficient for green contribution in chroma red-difference (Cr) calculation.
-     */
-    private static final double CR_G_COEFF = -0.418688;
-
-    /**
-     * Coefficient for blue contribution in chroma red-difference (Cr) calculation.
-     */
-    private static final double CR_B_COEFF = -0.081312;
-
-    /**
-     * Offset applied to Cb and Cr channels to center them around 128.
-     * Also used as a level-shift value for Y.
-     */
-    private static final int CHROMA_OFFSET = 128;
-
-    /**
-     * Coefficient for Cr contribution to red channel in YCbCr->RGB conversion.
-     */
-    private static final double CR_TO_R = 1.402;
-
-    /**
-     * Coefficient for Cb contribution to green channel in YCbCr->RGB conversion.
-     */
-    private static final double CB_TO_G = 0.344136;
-
-    /**
-     * Coefficient for Cr contribution to green channel in YCbCr->RGB conversion.
-     */
-    private static final double CR_TO_G = 0.714136;
-
-    /**
-     * Coefficient for Cb contribution to blue channel in YCbCr->RGB conversion.
-     */
-    private static final double CB_TO_B = 1.772;
-
-    /**
-     * Maximum value for a color channel (8-bit).
-     */
-    private static final int COLOR_MAX = 255;
-
-    /**
-     * Number of pixels in a 2*2 block for 4:2:0 chroma subsampling.
-     * Note: Not used in 4:4:4 mode, kept for compatibility.
-     */
-    private static final int SUBSAMPLE_BLOCK_SIZE = 4;
-
     /**
      * Side dimension of the 2x2 subsampling block.
      * Note: Not used in 4:4:4 mode, kept for compatibility.
@@ -190,6 +90,16 @@ public class JpegCodec implements Codec {
      */
     private final IRLE enDeRLE = EncodeDecodeRLEHuffman.getInstance();
 
+    /**
+     * Quality factor of the compressed variant, written in front of it so the decoder uses the same tables.
+     */
+    private int quality;
+
+    /**
+     * RGB &lt;-&gt; YCbCr conversion used for encoding and decoding.
+     */
+    private final IColorConverter colorConverter;
+
     /**
      * Buffer for RLE results with compression On.
      */
@@ -201,9 +111,21 @@ public class JpegCodec implements Codec {
     private final ByteBuffer resUnCompressedRLEBuffer;
 
     /**
-     * Creates a JpegCode instance.
+     * Creates a JpegCode instance using floating point colour conversion.
      */
     public JpegCodec() {
+        this(ColorConversion.FLOATING_POINT);
+    }
+
+    /**
+     * Creates a JpegCode instance.
+     *
+     * @param colorConversion arithmetic used for RGB &lt;-&gt; YCbCr conversion
+     */
+    public JpegCodec(final ColorConversion colorConversion) {
+        colorConverter = colorConversion.newConverter();
+        quality = QuantisationUtil.MAX_QUALITY;
+        compressor.setQuality(quality);
         final int hight = 1200;
         final int width = 800;
         final double ycbcrMatrixfactor = 1.5;
@@ -218,61 +140,62 @@ public class JpegCodec implements Codec {
     @Override
     public List<byte[]> encode(final int[][] screenshot, final int topLeftX, final int topLeftY,
                                final int height, final int width) {
+        return encode(screenshot, topLeftX, topLeftY, height, width, true, true);
+    }
 
+    @Override
+    public List<byte[]> encode(final int[][] screenshot, final int topLeftX, final int topLeftY,
+                               final int height, final int width,
+                               final boolean compressed, final boolean unCompressed) {
+        validateEncodeDimensions(height, width);
+        final short[][][] planes = newPlanes(height, width);
+        for (int i = 0; i < height; i += BLOCK_SIDE) {
+            colorConverter.toYCbCr(screenshot[topLeftY + i], topLeftX, screenshot[topLeftY + i + 1], topLeftX,
+                    width, i, planes);
+        }
+        return encodePixel(planes[0], planes[1], planes[2], compressed, unCompressed);
+    }
+
+    @Override
+    public List<byte[]> encodeFrame(final Frame frame, final int topLeftX, final int topLeftY,
+                               final int height, final int width,
+                               final boolean compressed, final boolean unCompressed) {
+        validateEncodeDimensions(height, width);
+        final short[][][] planes = newPlanes(height, width);
+        final int[] pixels = frame.getPixels();
+        for (int i = 0; i < height; i += BLOCK_SIDE) {
+            colorConverter.toYCbCr(pixels, frame.index(topLeftY + i, topLeftX),
+                    pixels, frame.index(topLeftY + i + 1, topLeftX), width, i, planes);
+        }
+        return encodePixel(planes[0], planes[1], planes[2], compressed, unCompressed);
+    }
+
+    /**
+     * Only even sized blocks can be 4:2:0 subsampled.
+     *
+     * @param height block's height
+     * @param width block's width
+     */
+    private static void validateEncodeDimensions(final int height, final int width) {
         if (height % BLOCK_SIDE == 1 || width % BLOCK_SIDE == 1) {
             throw new RuntimeException("Invalid Matrix for encoding");
         }
+    }
 
+    /**
+     * Allocates the Y, Cb and Cr planes of a block being encoded.
+     * Chroma planes are padded to multiples of the DCT block size.
+     *
+     * @param height block's height
+     * @param width block's width
+     * @return {Y, Cb, Cr}
+     */
+    private static short[][][] newPlanes(final int height, final int width) {
         final int halfHeight = height / BLOCK_SIDE;
         final int halfWidth = width / BLOCK_SIDE;
         final int cbHeight = (int) Math.ceil(halfHeight / DCT_BLOCK_SIZE_DOUBLE) * DCT_BLOCK_SIZE;
         final int cbWidth = (int) Math.ceil(halfWidth / DCT_BLOCK_SIZE_DOUBLE) * DCT_BLOCK_SIZE;
-        final short[][] yMatrix = new short[height][width];
-        final short[][] cbMatrix = new short[cbHeight][cbWidth];
-        final short[][] crMatrix = new short[cbHeight][cbWidth];
-
-        final int bottomLeftX = topLeftX + width;
-        final int bottomLeftY = topLeftY + height;
-        for (int i = topLeftY; i < bottomLeftY; i += BLOCK_SIDE) {
-            for (int j = topLeftX; j < bottomLeftX; j += BLOCK_SIDE) {
-                double cbPixel = 0;
-                double crPixel = 0;
-                for (int ii = i; ii < i + BLOCK_SIDE; ++ii) {
-                    for (int jj = j; jj < j + BLOCK_SIDE; ++jj) {
-                        final int pixel = screenshot[ii][jj];
-
-                        final int r = (pixel >> R_OFFSET) & MASK;
-                        final int g = (pixel >> G_OFFSET) & MASK;
-                        final int b = pixel & MASK;
-
-                        // conversion to YCbCr
-                        int y = (int) (Y_R_COEFF * r + Y_G_COEFF * g + Y_B_COEFF * b);
-                        final double cb = CHROMA_OFFSET + CB_R_COEFF * r + CB_G_COEFF * g + CB_B_COEFF * b;
-                        final double cr = CHROMA_OFFSET + CR_R_COEFF * r + CR_G_COEFF * g + CR_B_COEFF * b;
-
-                        cbPixel += cb;
-                        crPixel += cr;
-
-                        // Clamp to 0-255
-                        y = Math.min(COLOR_MAX, Math.max(0, y));
-                        yMatrix[ii - topLeftY][jj - topLeftX] = (short) (y - CHROMA_OFFSET);
-                    }
-                }
-
-                final int posY = i - topLeftY;
-                final int posX = j - topLeftX;
-                final int cbValue = (int) (cbPixel / SUBSAMPLE_BLOCK_SIZE);
-                final int crValue = (int) (crPixel / SUBSAMPLE_BLOCK_SIZE);
-
-                cbMatrix[posY / BLOCK_SIDE][posX / BLOCK_SIDE] =
-                        (short) (Math.min(COLOR_MAX, Math.max(0, cbValue)) - CHROMA_OFFSET);
-                crMatrix[posY / BLOCK_SIDE][posX / BLOCK_SIDE] =
-                        (short) (Math.min(COLOR_MAX, Math.max(0, crValue)) - CHROMA_OFFSET);
-
-            }
-        }
-
-        return encodePixel(yMatrix, cbMatrix, crMatrix);
+        return new short[][][] {new short[height][width], new short[cbHeight][cbWidth], new short[cbHeight][cbWidth]};
     }
 
     /**
@@ -283,41 +206,63 @@ public class JpegCodec implements Codec {
      * @return byte array of compressed and uncompressed pixel.
      */
     public List<byte[]> encodePixel(final short[][] yMatrix, final short[][] cbMatrix, final short[][] crMatrix) {
+        return encodePixel(yMatrix, cbMatrix, crMatrix, true, true);
+    }
+
+    /**
+     * Encoding the YCbCr sampled pixels from image, skipping the variants nobody needs.
+     * Note: the compressed path transforms the matrices in place.
+     * @param yMatrix Ymatrix
+     * @param cbMatrix cbMatrix
+     * @param crMatrix crMatrix
+     * @param compressed whether to produce the DCT-quantised stream
+     * @param unCompressed whether to produce the RLE-only stream
+     * @return byte array of compressed and uncompressed pixel, null for a skipped variant.
+     */
+    public List<byte[]> encodePixel(final short[][] yMatrix, final short[][] cbMatrix, final short[][] crMatrix,
+                                    final boolean compressed, final boolean unCompressed) {
         final int height = yMatrix.length;
         final int width  = yMatrix[0].length;
         final int cbHeight = cbMatrix.length;
         final int cbWidth = cbMatrix[0].length;
 
-        resCompressedRLEBuffer.clear();
-        resUnCompressedRLEBuffer.clear();
+        byte[] unCompressedData = null;
+        if (unCompressed) {
+            resUnCompressedRLEBuffer.clear();
 
-        // add the uncompressed versions first
-        enDeRLE.zigZagRLE(yMatrix, resUnCompressedRLEBuffer);
-        enDeRLE.zigZagRLE(cbMatrix, resUnCompressedRLEBuffer);
-        enDeRLE.zigZagRLE(crMatrix, resUnCompressedRLEBuffer);
+            // add the uncompressed versions first
+            enDeRLE.zigZagRLE(yMatrix, resUnCompressedRLEBuffer);
+            enDeRLE.zigZagRLE(cbMatrix, resUnCompressedRLEBuffer);
+            enDeRLE.zigZagRLE(crMatrix, resUnCompressedRLEBuffer);
 
+            unCompressedData = new byte[resUnCompressedRLEBuffer.position()];
+            resUnCompressedRLEBuffer.rewind();
+            resUnCompressedRLEBuffer.get(unCompressedData);
+        }
 
-        // YMatrix;
-        compressor.compressLumin(yMatrix, (short) height, (short) width);
+        byte[] compressedData = null;
+        if (compressed) {
+            resCompressedRLEBuffer.clear();
+            resCompressedRLEBuffer.put((byte) quality);
 
-        // CbMatrix;
-        compressor.compressChrome(cbMatrix, (short) cbHeight, (short) cbWidth);
+            // YMatrix;
+            compressor.compressLumin(yMatrix, (short) height, (short) width);
 
-        // CyMatrix
-        compressor.compressChrome(crMatrix, (short) cbHeight, (short) cbWidth);
+            // CbMatrix;
+            compressor.compressChrome(cbMatrix, (short) cbHeight, (short) cbWidth);
 
-        // add the compressed patches
-        enDeRLE.zigZagRLE(yMatrix, resCompressedRLEBuffer);
-        enDeRLE.zigZagRLE(cbMatrix, resCompressedRLEBuffer);
-        enDeRLE.zigZagRLE(crMatrix, resCompressedRLEBuffer);
+            // CyMatrix
+            compressor.compressChrome(crMatrix, (short) cbHeight, (short) cbWidth);
 
-        final byte[] compressedData = new byte[resCompressedRLEBuffer.position()];
-        resCompressedRLEBuffer.rewind();
-        resCompressedRLEBuffer.get(compressedData);
+            // add the compressed patches
+            enDeRLE.zigZagRLE(yMatrix, resCompressedRLEBuffer);
+            enDeRLE.zigZagRLE(cbMatrix, resCompressedRLEBuffer);
+            enDeRLE.zigZagRLE(crMatrix, resCompressedRLEBuffer);
 
-        final byte[] unCompressedData = new byte[resUnCompressedRLEBuffer.position()];
-        resUnCompressedRLEBuffer.rewind();
-        resUnCompressedRLEBuffer.get(unCompressedData);
+            compressedData = new byte[resCompressedRLEBuffer.position()];
+            resCompressedRLEBuffer.rewind();
+            resCompressedRLEBuffer.get(compressedData);
+        }
 
         final ArrayList<byte[]> res = new ArrayList<>();
         res.add(compressedData);
@@ -339,7 +284,39 @@ public class JpegCodec implements Codec {
      */
     @Override
     public int[][] decode(final byte[] encodedImage, final boolean compress) {
+        final short[][][] planes = decodePlanes(encodedImage, compress);
+        final short[][] yMatrix = planes[0];
+        final int[][] rgb = new int[yMatrix.length][yMatrix[0].length];
+        for (int i = 0; i + 1 < rgb.length; i += BLOCK_SIDE) {
+            colorConverter.toArgb(planes, i, rgb[i], 0, rgb[i + 1], 0);
+        }
+        return rgb;
+    }
+
+    @Override
+    public Frame decodeFrame(final byte[] encodedImage, final boolean compress) {
+        final short[][][] planes = decodePlanes(encodedImage, compress);
+        final short[][] yMatrix = planes[0];
+        final Frame frame = new Frame(yMatrix.length, yMatrix[0].length);
+        final int[] pixels = frame.getPixels();
+        for (int i = 0; i + 1 < frame.getHeight(); i += BLOCK_SIDE) {
+            colorConverter.toArgb(planes, i, pixels, frame.index(i, 0), pixels, frame.index(i + 1, 0));
+        }
+        return frame;
+    }
+
+    /**
+     * Reads the Y, Cb and Cr planes from an encoded image.
+     *
+     * @param encodedImage image to be decoded
+     * @param compress whether the planes were quantised
+     * @return {Y, Cb, Cr}
+     */
+    private short[][][] decodePlanes(final byte[] encodedImage, final boolean compress) {
         final ByteBuffer buffer = ByteBuffer.wrap(encodedImage);
+        if (compress) {
+            decompressor.setQuality(buffer.get());
+        }
         final short[][] yMatrix = enDeRLE.revZigZagRLE(buffer);
         final short[][] cbMatrix = enDeRLE.revZigZagRLE(buffer);
         final short[][] crMatrix = enDeRLE.revZigZagRLE(buffer);
@@ -350,71 +327,25 @@ public class JpegCodec implements Codec {
             decompressor.decompressChrome(crMatrix, (short) crMatrix.length, (short) crMatrix[0].length);
         }
 
-        return convertYCbCrToRGB(yMatrix, cbMatrix, crMatrix);
+        return new short[][][] {yMatrix, cbMatrix, crMatrix};
     }
 
     /**
-     * Clamps an integer value to the 0-255 color range.
-     *
-     * @param value the value to clamp
-     * @return the clamped value
+     * Sets the quality factor of the compressed variant.
+     * @param qualityArgs quality factor, clamped to 1..99
      */
-    private int rescale(final int value) {
-        return Math.min(COLOR_MAX, Math.max(0, value));
+    @Override
+    public void setQuality(final int qualityArgs) {
+        this.quality = Math.max(QuantisationUtil.MIN_QUALITY, Math.min(QuantisationUtil.MAX_QUALITY, qualityArgs));
+        compressor.setQuality(quality);
     }
 
     /**
-     * Converts YCbCr 4:2:0 data back to an ARGB 8:8:8:8 pixel matrix.
-     *
-     * @param yMatrix  the luminance matrix
-     * @param cbMatrix the chroma-blue matrix (subsampled)
-     * @param crMatrix the chroma-red matrix (subsampled)
-     * @return a 2D integer array of ARGB pixels
+     * Gets the quality factor of the compressed variant.
+     * @return quality factor
      */
-    private int[][] convertYCbCrToRGB(final short[][] yMatrix, final short[][] cbMatrix, final short[][] crMatrix) {
-        final int height = yMatrix.length;
-        final int width = yMatrix[0].length;
-        final int[][] rgb = new int[height][width];
-
-        // Chroma matrices may be padded to multiples of 8, but we only need height/2 x width/2
-        final int chromaHeight = Math.min(cbMatrix.length, height / 2);
-        final int chromaWidth = Math.min(cbMatrix[0].length, width / 2);
-
-        // Process chroma subsampled data - only use the first height/2 x width/2 elements
-        // even if chroma matrices are padded to multiples of 8
-        for (int i = 0; i < chromaHeight; ++i) {
-            for (int j = 0; j < chromaWidth; ++j) {
-                // Level shift: [-128, 127] → [0, 255]
-                final int cbOffset = rescale(cbMatrix[i][j] + CHROMA_OFFSET);
-                final int crOffset = rescale(crMatrix[i][j] + CHROMA_OFFSET);
-
-                // Center chroma for YCbCr → RGB conversion
-                final int cbCentered = cbOffset - CHROMA_OFFSET;
-                final int crCentered = crOffset - CHROMA_OFFSET;
-
-                for (int ii = 0; ii < BLOCK_SIDE; ++ii) {
-                    for (int jj = 0; jj < BLOCK_SIDE; ++jj) {
-                        final int yRow = BLOCK_SIDE * i + ii;
-                        final int yCol = BLOCK_SIDE * j + jj;
-                        final int y = rescale(yMatrix[yRow][yCol] + CHROMA_OFFSET);
-
-                        // YCbCr → RGB with centered chroma
-                        int r = (int) Math.round(y + CR_TO_R * crCentered);
-                        int g = (int) Math.round(y - CB_TO_G * cbCentered - CR_TO_G * crCentered);
-                        int b = (int) Math.round(y + CB_TO_B * cbCentered);
-
-                        // Clamp final RGB
-                        r = Math.min(COLOR_MAX, Math.max(0, r));
-                        g = Math.min(COLOR_MAX, Math.max(0, g));
-                        b = Math.min(COLOR_MAX, Math.max(0, b));
-
-                        rgb[yRow][yCol] = (MASK << A_OFFSET) | (r << R_OFFSET) | (g << G_OFFSET) | b;
-                    }
-                }
-            }
-        }
-
-        return rgb;
+    public int getQuality() {
+        return quality;
     }
 
     /**
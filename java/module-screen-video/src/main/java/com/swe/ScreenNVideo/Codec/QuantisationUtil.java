@@ -115,15 +115,32 @@ public class QuantisationUtil {
      */
     private final double[] aanScaleFactor;
 
+    /**
+     * Lowest supported quality factor.
+     */
+    public static final int MIN_QUALITY = 1;
+
+    /**
+     * Highest supported quality factor, also the default one.
+     */
+    public static final int MAX_QUALITY = 99;
+
     /**
      * Singleton instance.
      */
-    private static final QuantisationUtil QUANT_INSTANCE = new QuantisationUtil();
+    private static final QuantisationUtil QUANT_INSTANCE = new QuantisationUtil(MAX_QUALITY);
+
+    /**
+     * Tables per quality factor, created on first use by {@link #forQuality(int)}.
+     */
+    private static final QuantisationUtil[] QUALITY_TABLES = new QuantisationUtil[MAX_QUALITY + 1];
 
     /**
      * Private constructor to enforce singleton pattern.
+     *
+     * @param quality quality factor the tables are scaled for
      */
-    private QuantisationUtil() {
+    private QuantisationUtil(final int quality) {
         aanScaleFactor = new double[MATRIX_DIM];
         aanScaleFactor[0] = ONE / (TWO * Math.sqrt(TWO));
         for (int i = 1; i < MATRIX_DIM; ++i) {
@@ -131,8 +148,7 @@ public class QuantisationUtil {
         }
 
         // Initialize the scaled tables when created
-        final int qualityResolution = 99;
-        setCompressonResolution(qualityResolution);
+        setCompressonResolution(quality);
     }
 
     /**
@@ -144,6 +160,24 @@ public class QuantisationUtil {
         return QUANT_INSTANCE;
     }
 
+    /**
+     * Gets the tables scaled for a quality factor.
+     * Unlike {@link #getInstance()} these are shared per quality and must not be rescaled,
+     * so an encoder and a decoder agreeing on the quality always agree on the tables.
+     *
+     * @param quality quality factor, clamped to [MIN_QUALITY, MAX_QUALITY]
+     * @return tables for that quality
+     */
+    public static QuantisationUtil forQuality(final int quality) {
+        final int q = Math.max(MIN_QUALITY, Math.min(MAX_QUALITY, quality));
+        synchronized (QUALITY_TABLES) {
+            if (QUALITY_TABLES[q] == null) {
+                QUALITY_TABLES[q] = new QuantisationUtil(q);
+            }
+            return QUALITY_TABLES[q];
+        }
+    }
+
     /**
      * Scales the quantization tables based on a JPEG quality factor 'q'.
      * This method MODIFIES the class's quantChrome and quantLumin tables in-place.
@@ -0,0 +1,199 @@
+/**
+ * Contributed by @alonot.
+ */
+
+package com.swe.ScreenNVideo;
+
+import com.swe.core.logging.SweLogger;
+import com.swe.core.logging.SweLoggerFactory;
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongConsumer;
+
+/**
+ * Runs a task at a fixed period without busy waiting.
+ *
+ * <p>
+ * Deadlines are absolute (start + n * period), so the time taken by the task and
+ * oversleeping do not accumulate as drift. Between runs the thread is parked until
+ * the next deadline. A run that ends after the next deadline is an overrun: the
+ * next run starts immediately, deadlines that passed entirely are skipped rather
+ * than replayed back to back, and their number is reported to the overrun listener.
+ * </p>
+ */
+public final class FramePacer {
+
+    /**
+     * Screen Video logger.
+     */
+    private static final SweLogger LOG = SweLoggerFactory.getLogger("SCREEN-VIDEO");
+
+    /**
+     * Time between two runs in nanoseconds, see {@link #setPeriod(long)}.
+     */
+    private volatile long periodNanos;
+
+    /**
+     * Task to run every period.
+     */
+    private final Runnable task;
+
+    /**
+     * Called after each overrun with the number of skipped deadlines.
+     */
+    private final LongConsumer overrunListener;
+
+    /**
+     * Cleared by {@link #stop()}.
+     */
+    private volatile boolean running;
+
+    /**
+     * Thread started by {@link #start(String)}, null when paced on the caller's thread.
+     */
+    private Thread thread;
+
+    /**
+     * Number of runs so far.
+     */
+    private volatile long ticks;
+
+    /**
+     * Number of runs that ended after the next deadline.
+     */
+    private volatile long overruns;
+
+    /**
+     * Number of deadlines skipped because of overruns.
+     */
+    private volatile long skipped;
+
+    /**
+     * Creates a pacer.
+     *
+     * @param periodNanosArgs time between two runs in nanoseconds
+     * @param taskArgs task to run every period
+     * @param overrunListenerArgs called after each overrun with the number of skipped deadlines
+     */
+    public FramePacer(final long periodNanosArgs, final Runnable taskArgs, final LongConsumer overrunListenerArgs) {
+        checkPeriod(periodNanosArgs);
+        this.periodNanos = periodNanosArgs;
+        this.task = taskArgs;
+        this.overrunListener = overrunListenerArgs;
+    }
+
+    private static void checkPeriod(final long period) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be positive: " + period);
+        }
+    }
+
+    /**
+     * Changes the period, from the next deadline on.
+     * May be called from any thread, including from the task itself.
+     *
+     * @param periodNanosArgs time between two runs in nanoseconds
+     */
+    public void setPeriod(final long periodNanosArgs) {
+        checkPeriod(periodNanosArgs);
+        this.periodNanos = periodNanosArgs;
+    }
+
+    /**
+     * Current period.
+     *
+     * @return time between two runs in nanoseconds
+     */
+    public long getPeriod() {
+        return periodNanos;
+    }
+
+    /**
+     * Period matching a frame rate.
+     *
+     * @param fps frames per second
+     * @return period in nanoseconds
+     */
+    public static long periodOf(final int fps) {
+        return Utils.SEC_IN_NS / Math.max(1, fps);
+    }
+
+    /**
+     * Paces the task on the calling thread until {@link #stop()} is called.
+     *
+     * @throws InterruptedException if the calling thread is interrupted
+     */
+    public void run() throws InterruptedException {
+        running = true;
+        long deadline = System.nanoTime();
+        while (running) {
+            task.run();
+            ticks++;
+
+            final long period = periodNanos;
+            deadline += period;
+            final long lateness = System.nanoTime() - deadline;
+            if (lateness >= 0) {
+                final long missed = lateness / period;
+                deadline += missed * period;
+                overruns++;
+                skipped += missed;
+                overrunListener.accept(missed);
+            }
+
+            long remaining = deadline - System.nanoTime();
+            while (remaining > 0 && running) {
+                LockSupport.parkNanos(this, remaining);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException("Pacer interrupted");
+                }
+                remaining = deadline - System.nanoTime();
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException("Pacer interrupted");
+            }
+        }
+    }
+
+    /**
+     * Paces the task on a new daemon thread.
+     *
+     * @param name name of the thread
+     */
+    public void start(final String name) {
+        running = true;
+        thread = new Thread(() -> {
+            try {
+                run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                LOG.error("Paced task " + name + " failed", e);
+            }
+        }, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops pacing after the current run.
+     */
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    public long getOverruns() {
+        return overruns;
+    }
+
+    public long getSkipped() {
+        return skipped;
+    }
+}
@@ -5,15 +5,22 @@
 package com.swe.ScreenNVideo;
 
 import com.swe.ScreenNVideo.Capture.BackgroundCaptureManager;
+import com.swe.ScreenNVideo.Codec.JpegCodec;
 import com.swe.ScreenNVideo.Model.APackets;
 import com.swe.ScreenNVideo.Model.CPackets;
+import com.swe.ScreenNVideo.Model.DirtyRect;
 import com.swe.ScreenNVideo.Model.Feed;
+import com.swe.ScreenNVideo.Model.Frame;
 import com.swe.ScreenNVideo.Model.IPPacket;
 import com.swe.ScreenNVideo.Model.NetworkPacketType;
 import com.swe.ScreenNVideo.Model.RImage;
 import com.swe.ScreenNVideo.Model.Viewer;
+import com.swe.ScreenNVideo.Model.ViewerFeedback;
 import com.swe.ScreenNVideo.PatchGenerator.CompressedPatch;
 import com.swe.ScreenNVideo.Playback.AudioPlayer;
+import com.swe.ScreenNVideo.Playback.UiPublisher;
+import com.swe.ScreenNVideo.RateControl.OperatingPoint;
+import com.swe.ScreenNVideo.RateControl.RateController;
 import com.swe.ScreenNVideo.Synchronizer.AudioSynchronizer;
 import com.swe.ScreenNVideo.Synchronizer.FeedData;
 import com.swe.ScreenNVideo.Synchronizer.ImageSynchronizer;
@@ -27,10 +34,13 @@ import com.swe.networking.ModuleType;
 import com.swe.core.logging.SweLogger;
 
 import javax.sound.sampled.LineUnavailableException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.Objects;
 
 /**
@@ -38,6 +48,11 @@ import java.util.Objects;
  * - Manages Screen Capture and Video Capture
  */
 public class MediaCaptureManager implements CaptureManager {
+    /**
+     * Upper bound of audio chunks sent per audio tick, so a backlog cannot stall the audio pacer.
+     */
+    private static final int MAX_AUDIO_CHUNKS_PER_TICK = 8;
+
     /**
      * Port for the server.
      */
@@ -65,6 +80,14 @@ public class MediaCaptureManager implements CaptureManager {
      * RPC object.
      */
     private final AbstractRPC rpc;
+    /**
+     * Sends received images to the UI through reused buffers.
+     */
+    private final UiPublisher uiPublisher;
+    /**
+     * Pool decoding the feeds of every presenter, see {@link ImageSynchronizer}.
+     */
+    private final ForkJoinPool decodePool = new ForkJoinPool(Utils.DECODER_WORKERS);
 
     /**
      * Cached IP for this machine to avoid repeated socket calls.
@@ -90,6 +113,46 @@ public class MediaCaptureManager implements CaptureManager {
      */
     private final SweLogger logger;
 
+    /**
+     * Last feed sent to the viewers, null once sharing stopped. Only used by the video pacer.
+     */
+    private int[][] sentFeed;
+
+    /**
+     * Time of the previous video tick in ms. Only used by the video pacer.
+     */
+    private long prevSendAt;
+
+    /**
+     * Picks quality, frame rate and tile budget from the viewers' feedback.
+     */
+    private final RateController rateController = new RateController(Utils.TARGET_BYTES_PER_SEC);
+
+    /**
+     * Whether viewers of the compressed feed are present.
+     */
+    private volatile boolean compressedViewers;
+
+    /**
+     * Whether viewers of the uncompressed feed are present.
+     */
+    private volatile boolean unCompressedViewers;
+
+    /**
+     * Pacer of the video ticks, its period follows the operating point.
+     */
+    private FramePacer videoPacer;
+
+    /**
+     * Frame rate asked for in {@link #startCapture(int)}, the operating point never goes above it.
+     */
+    private int maxSendFps = Utils.FPS;
+
+    /**
+     * Operating point the capture pipeline currently runs at. Only used by the video pacer.
+     */
+    private OperatingPoint appliedPoint;
+
     /**
      * Constructor for the MediaCaptureManager.
      *
@@ -102,6 +165,7 @@ public class MediaCaptureManager implements CaptureManager {
         final Context context = Context.getInstance();
         this.rpc = context.getRpc();
         this.port = portArgs;
+        this.uiPublisher = UiPublisher.create(rpc, "remote-" + portArgs);
         this.networking = argNetworking;
         final CaptureComponents captureComponents = new CaptureComponents(networking, rpc, port,
                 (k, v) -> updateImage(k, v));
@@ -114,13 +178,14 @@ public class MediaCaptureManager implements CaptureManager {
         }
 
         final BackgroundCaptureManager backgroundCaptureManager = new BackgroundCaptureManager(captureComponents);
-        videoComponent = new VideoComponents(Utils.FPS, port, captureComponents, backgroundCaptureManager);
+        videoComponent = new VideoComponents(port, captureComponents, backgroundCaptureManager);
 
         backgroundCaptureManager.start();
 
         imageSynchronizers = new HashMap<>();
         audioSynchronizers = new HashMap<>();
         viewers = new HashMap<>();
+        updateRequiredVariants();
 
         // Cache local IP once to avoid repeated socket operations during capture
         this.localIp = Utils.getSelfIP();
@@ -158,7 +223,7 @@ public class MediaCaptureManager implements CaptureManager {
         // logger.info("Broadcasting join meeting to : " +
         // Arrays.toString(clientNodes));
         final byte[] subscribeData = subscriberPacket.serialize(NetworkPacketType.SUBSCRIBE_AS_VIEWER);
-        networking.broadcast(subscribeData, ModuleType.SCREENSHARING.ordinal(), 2);
+        networking.broadcast(subscribeData, ModuleType.SCREENSHARING.ordinal(), Utils.CONTROL_PRIORITY);
     }
 
     private void addParticipant(final String ip, final boolean reqCompression) {
@@ -171,18 +236,55 @@ public class MediaCaptureManager implements CaptureManager {
         final ClientNode node = new ClientNode(ip, port);
         final Viewer viewer = viewers.computeIfAbsent(ip, k -> new Viewer(node, reqCompression));
         viewer.setRequireCompressed(reqCompression);
-        imageSynchronizers.computeIfAbsent(ip, k -> new ImageSynchronizer(videoComponent.getVideoCodec()));
+        // own codecs, the capture thread keeps encoding with the video component's codec meanwhile
+        imageSynchronizers.computeIfAbsent(ip, k -> new ImageSynchronizer(new JpegCodec(Utils.COLOR_CONVERSION),
+                () -> new JpegCodec(Utils.COLOR_CONVERSION), decodePool, Utils.DECODER_WORKERS));
         audioSynchronizers.computeIfAbsent(ip, k -> new AudioSynchronizer(this.audioPlayer));
+        updateRequiredVariants();
     }
 
     private void removeViewer(final String ip) {
         viewers.remove(ip);
         imageSynchronizers.remove(ip);
         audioSynchronizers.remove(ip);
+        updateRequiredVariants();
+    }
+
+    /**
+     * Tells the video pipeline which feed variants currently have viewers.
+     * With no viewers only the compressed feed is kept, it still drives the local preview.
+     */
+    private void updateRequiredVariants() {
+        boolean compressed = false;
+        boolean unCompressed = false;
+        for (Viewer viewer : viewers.values()) {
+            if (viewer.isRequireCompressed()) {
+                compressed = true;
+            } else {
+                unCompressed = true;
+            }
+        }
+        // a group that lost its last viewer starts over at the best operating point
+        if (!compressed) {
+            rateController.reset(true);
+        }
+        if (!unCompressed) {
+            rateController.reset(false);
+        }
+        compressedViewers = compressed;
+        unCompressedViewers = unCompressed;
+        if (!compressed && !unCompressed) {
+            compressed = true;
+        }
+        videoComponent.setRequiredVariants(compressed, unCompressed);
     }
 
     /**
      * Server-side of the ScreenNVideo.
+     * Audio is sent at its capture period and video at sendFPS, each paced independently
+     * (see {@link FramePacer}); overruns of either are reported to {@link Telemetry}.
+     * The video rate, quality and tile budget are lowered below sendFPS by the
+     * {@link RateController} when the viewers report congestion.
      *
      * @param sendFPS Send FPS. Max rate at which data is sent to the viewers.
      */
@@ -190,44 +292,89 @@ public class MediaCaptureManager implements CaptureManager {
     public void startCapture(final int sendFPS) throws ExecutionException, InterruptedException {
 
         logger.info("Starting capture");
-        int[][] feed = null;
-        final double timePerFrame = (1.0 / sendFPS) * Utils.SEC_IN_MS;
-        long prevSendAt = 0;
-        while (true) {
-            final long diff = System.currentTimeMillis() - prevSendAt;
-            // get audio Feed
+        final Telemetry telemetry = Telemetry.getTelemetry();
+        final FramePacer audioPacer = new FramePacer((long) Utils.AUDIO_PERIOD_MS * Utils.MSEC_IN_NS,
+                this::sendAudio, telemetry::addAudioOverrun);
+        maxSendFps = sendFPS;
+        appliedPoint = null;
+        videoPacer = new FramePacer(FramePacer.periodOf(sendFPS),
+                this::sendVideo, telemetry::addVideoOverrun);
+
+        audioPacer.start("ScreenNVideo-Audio-Pacer");
+        try {
+            videoPacer.run();
+        } finally {
+            audioPacer.stop();
+        }
+    }
+
+    /**
+     * Sends the audio captured since the last call, one broadcast per chunk.
+     */
+    private void sendAudio() {
+        for (int i = 0; i < MAX_AUDIO_CHUNKS_PER_TICK; i++) {
             final byte[] encodedAudio = videoComponent.captureAudio();
-            if (encodedAudio != null) {
-                networking.broadcast(encodedAudio, ModuleType.SCREENSHARING.ordinal(), 2);
+            if (encodedAudio == null) {
+                return;
             }
+            networking.broadcast(encodedAudio, ModuleType.SCREENSHARING.ordinal(), Utils.FRAME_PRIORITY);
+        }
+    }
 
-            if (diff < timePerFrame) {
-                continue;
-            }
-            prevSendAt = System.currentTimeMillis();
-            final Feed encodedFeed = videoComponent.captureScreenNVideo();
-            final int[][] newFeed = videoComponent.getFeed();
-            if (encodedFeed == null) {
-                if (feed != null && newFeed == null) {
-                    final IPPacket subscriberPacket = new IPPacket(localIp, false);
-                    final byte[] subscribeData = subscriberPacket.serialize(NetworkPacketType.STOP_SHARE);
-                    sendDataToViewers(subscribeData, k -> true);
-                    feed = null;
-                }
-            } else {
-                feed = newFeed;
-                // send compressedFeed
-                // logger.info("Sending to Compress");
-                sendDataToViewers(encodedFeed.compressedFeed(), Viewer::isRequireCompressed);
-                // send unCompressedFeed
-                // logger.info("Sending to uncompress");
-                sendDataToViewers(encodedFeed.unCompressedFeed(), viewer -> !viewer.isRequireCompressed());
-                final double sendingFPS = (double) (Utils.SEC_IN_MS) / diff;
-                logger.info("Sent Data at " + sendingFPS + " FPS");
-                Telemetry.getTelemetry().addFps(sendingFPS);
+    /**
+     * Captures one video frame and sends the diff to the viewers.
+     */
+    private void sendVideo() {
+        final long now = System.currentTimeMillis();
+        final long diff = now - prevSendAt;
+        prevSendAt = now;
+        applyOperatingPoint();
+        final Feed encodedFeed = videoComponent.captureScreenNVideo();
+        final int[][] newFeed = videoComponent.getFeed();
+        if (encodedFeed == null) {
+            if (sentFeed != null && newFeed == null) {
+                final IPPacket subscriberPacket = new IPPacket(localIp, false);
+                final byte[] subscribeData = subscriberPacket.serialize(NetworkPacketType.STOP_SHARE);
+                sendDataToViewers(subscribeData, k -> true, Utils.CONTROL_PRIORITY);
+                sentFeed = null;
             }
+            return;
+        }
+        sentFeed = newFeed;
+        // send compressedFeed
+        // logger.info("Sending to Compress");
+        if (sendDataToViewers(encodedFeed.compressedFeed(), Viewer::isRequireCompressed,
+                Utils.FRAME_PRIORITY)) {
+            rateController.recordSent(true, encodedFeed.compressedFeed().length, now);
+        }
+        // send unCompressedFeed
+        // logger.info("Sending to uncompress");
+        if (sendDataToViewers(encodedFeed.unCompressedFeed(), viewer -> !viewer.isRequireCompressed(),
+                Utils.FRAME_PRIORITY)) {
+            rateController.recordSent(false, encodedFeed.unCompressedFeed().length, now);
+        }
+        if (diff > 0) {
+            final double sendingFPS = (double) (Utils.SEC_IN_MS) / diff;
+            logger.info("Sent Data at " + sendingFPS + " FPS");
+            Telemetry.getTelemetry().addFps(sendingFPS);
+        }
+    }
 
+    /**
+     * Moves the capture pipeline to the operating point picked by the rate controller.
+     */
+    private void applyOperatingPoint() {
+        final OperatingPoint point = rateController.getEffectivePoint(compressedViewers, unCompressedViewers);
+        if (point.equals(appliedPoint)) {
+            return;
         }
+        appliedPoint = point;
+        final int fps = Math.min(maxSendFps, point.fps());
+        videoComponent.setOperatingPoint(point.quality(), point.tileBudget());
+        videoPacer.setPeriod(FramePacer.periodOf(fps));
+        Telemetry.getTelemetry().setOperatingPoint(point.quality(), fps, point.tileBudget());
+        logger.info("Operating point: quality " + point.quality() + " fps " + fps
+                + " tile budget " + point.tileBudget() + "%");
     }
 
     /**
@@ -236,10 +383,13 @@ public class MediaCaptureManager implements CaptureManager {
      *
      * @param feed         the data to send
      * @param viewerFilter predicate to filter which viewers should receive the data
+     * @param priority     the priority to send the data at
+     * @return whether the data was sent to any viewer
      */
-    private void sendDataToViewers(final byte[] feed, final java.util.function.Predicate<Viewer> viewerFilter) {
+    private boolean sendDataToViewers(final byte[] feed, final java.util.function.Predicate<Viewer> viewerFilter,
+                                      final int priority) {
         if (feed == null) {
-            return;
+            return false;
         }
 
         final ClientNode[] clientNodes = viewers.values().stream()
@@ -248,16 +398,17 @@ public class MediaCaptureManager implements CaptureManager {
                 .toArray(ClientNode[]::new);
 
         if (clientNodes.length == 0) {
-            return;
+            return false;
         }
 
         logger.info("Size : " + feed.length / Utils.KB + " KB");
-        networking.sendData(feed, clientNodes, ModuleType.SCREENSHARING.ordinal(), 2);
+        networking.sendData(feed, clientNodes, ModuleType.SCREENSHARING.ordinal(), priority);
 
         logger.info("Sent to viewers " + clientNodes.length);
         for (ClientNode c : clientNodes) {
             logger.info(c.hostName());
         }
+        return true;
         // CompletableFuture.runAsync(() -> {
         // try {
         // Thread.sleep(5000);
@@ -313,12 +464,18 @@ public class MediaCaptureManager implements CaptureManager {
                     }
 
                     imageSynchronizer.setDataReceived(imageSynchronizer.getDataReceived() + data.length);
-                    final double diff = System.currentTimeMillis() - imageSynchronizer.getPrevSend();
+                    final long prevSend = imageSynchronizer.getPrevSend();
+                    final double diff = System.currentTimeMillis() - prevSend;
                     long dataPerSec = -1;
                     if (diff > Utils.SEC_IN_MS) {
                         dataPerSec = (long) ((imageSynchronizer.getDataReceived() / diff) * Utils.SEC_IN_MS);
                         imageSynchronizer.setDataReceived(0);
                         imageSynchronizer.setPrevSend();
+                        final ViewerFeedback feedback = imageSynchronizer.takeFeedback(localIp, dataPerSec);
+                        // the first window has no start, its rate means nothing
+                        if (prevSend != 0) {
+                            sendFeedback(networkPackets.ip(), feedback);
+                        }
                     }
 
                     // logger.info("Recieved " + networkPackets.packetNumber() + "; Expected
@@ -341,6 +498,7 @@ public class MediaCaptureManager implements CaptureManager {
                     // if heap is growing too large, request a full frame to resync
                     if (imageSynchronizer.getHeap().size() >= Utils.MAX_HEAP_SIZE) {
                         logger.info("Too Large");
+                        imageSynchronizer.recordGap();
                         askForFullImage(networkPackets.ip(), imageSynchronizer.isReqCompression());
                         imageSynchronizer.setWaitingForFullImage(true);
                         imageSynchronizer.getHeap().clear();
@@ -356,12 +514,19 @@ public class MediaCaptureManager implements CaptureManager {
                         imageSynchronizer.getHeap().poll();
                     }
 
-                    int[][] image = null;
+                    Frame image = null;
+                    // regions touched by the applied feeds, unless one of them was a full image
+                    final List<DirtyRect> dirtyRects = new ArrayList<>();
+                    boolean appliedFullImage = false;
                     while (true) {
 
                         // If the next expected patch hasn't arrived yet, wait
                         final FeedData feedData = imageSynchronizer.getHeap().peek();
                         if (feedData == null || feedData.getFeedNumber() != imageSynchronizer.getExpectedFeedNumber()) {
+                            if (feedData != null) {
+                                // an earlier feed is missing, this one has to wait
+                                imageSynchronizer.recordGap();
+                            }
                             // if (feedData != null) {
                             // logger.info("Expected " + imageSynchronizer.getExpectedFeedNumber()
                             // + " GOT : " + feedData.getFeedNumber() + " Len " +
@@ -381,17 +546,24 @@ public class MediaCaptureManager implements CaptureManager {
                         final List<CompressedPatch> patches = minFeedCPacket.packets();
                         final int newHeight = minFeedCPacket.height();
                         final int newWidth = minFeedCPacket.width();
+                        appliedFullImage |= minFeedCPacket.isFullImage();
+                        for (CompressedPatch patch : patches) {
+                            dirtyRects.add(new DirtyRect(patch.x(), patch.y(), patch.width(), patch.height()));
+                        }
 
                         imageSynchronizer.setExpectedFeedNumber(imageSynchronizer.getExpectedFeedNumber() + 1);
 
                         try {
-                            image = imageSynchronizer.synchronize(newHeight, newWidth, patches,
+                            final long decodeStart = System.nanoTime();
+                            image = imageSynchronizer.synchronizeFrame(newHeight, newWidth, patches,
                                     networkPackets.compress());
+                            imageSynchronizer.recordDecode(System.nanoTime() - decodeStart);
                         } catch (Exception e) {
                             logger.info(
                                     "-----------------------------=------------------------Exception "
                                             + e.getMessage());
                             e.printStackTrace();
+                            imageSynchronizer.recordGap();
                             askForFullImage(networkPackets.ip(), imageSynchronizer.isReqCompression());
                             imageSynchronizer.getHeap().clear();
                             return;
@@ -402,12 +574,18 @@ public class MediaCaptureManager implements CaptureManager {
                         return;
                     }
 
-                    final RImage rImage = new RImage(image, networkPackets.ip(), dataPerSec);
-                    final byte[] serializedImage = rImage.serialize();
+                    RImage rImage = new RImage(image, networkPackets.ip(), dataPerSec);
+                    if (Utils.UI_DIRTY_RECTS && !appliedFullImage) {
+                        rImage = rImage.withDirtyRects(dirtyRects);
+                    }
                     logger.info("Sending to UI" + ("; Expected : "
                             + imageSynchronizer.getExpectedFeedNumber()));
                     try {
-                        final byte[] res = rpc.call(Utils.UPDATE_UI, serializedImage).get();
+                        final CompletableFuture<byte[]> uiResult = uiPublisher.publish(rImage);
+                        if (uiResult == null) {
+                            return;
+                        }
+                        final byte[] res = uiResult.get();
                         if (res.length == 0) {
                             return;
                         }
@@ -448,17 +626,31 @@ public class MediaCaptureManager implements CaptureManager {
                     logger.info("Viewer requested to be removed" + viewerIP);
                     removeViewer(viewerIP.ip());
                 }
+                case VIEWER_FEEDBACK -> {
+                    final ViewerFeedback feedback = ViewerFeedback.deserialize(data);
+                    logger.debug("Feedback " + feedback);
+                    if (viewers.containsKey(feedback.ip())) {
+                        rateController.onFeedback(feedback, System.currentTimeMillis());
+                    }
+                }
                 default -> {
                 }
             }
         }
 
+        private void sendFeedback(final String ip, final ViewerFeedback feedback) {
+            final ClientNode destNode = new ClientNode(ip, port);
+            networking.sendData(feedback.serialize(), new ClientNode[] {destNode},
+                    ModuleType.SCREENSHARING.ordinal(), Utils.CONTROL_PRIORITY);
+        }
+
         private void askForFullImage(final String ip, final boolean reqCompress) {
             logger.info("Asking for data...");
             final IPPacket subscribePacket = new IPPacket(localIp, reqCompress);
             final byte[] subscribeData = subscribePacket.serialize(NetworkPacketType.SUBSCRIBE_AS_VIEWER);
             final ClientNode destNode = new ClientNode(ip, port);
-            networking.sendData(subscribeData, new ClientNode[] {destNode}, ModuleType.SCREENSHARING.ordinal(), 2);
+            networking.sendData(subscribeData, new ClientNode[] {destNode}, ModuleType.SCREENSHARING.ordinal(),
+                    Utils.CONTROL_PRIORITY);
         }
 
         public void addUserNFullImageRequest(final String ip, final boolean reqCompression) {
@@ -482,7 +674,7 @@ public class MediaCaptureManager implements CaptureManager {
             }
             logger.info("Sending Full Image");
             networking.sendData(fullImageEncoded, new ClientNode[] {new ClientNode(ip, port)},
-                    ModuleType.SCREENSHARING.ordinal(), 2);
+                    ModuleType.SCREENSHARING.ordinal(), Utils.CONTROL_PRIORITY);
         }
     }
 }
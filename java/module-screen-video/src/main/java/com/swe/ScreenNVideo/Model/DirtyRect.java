@@ -0,0 +1,15 @@
+/**
+ * Contributed by @BhupathiVarun.
+ */
+
+package com.swe.ScreenNVideo.Model;
+
+/**
+ * Region of an image that changed since the previous update of the UI.
+ * @param x left column
+ * @param y top row
+ * @param width width in pixels
+ * @param height height in pixels
+ */
+public record DirtyRect(int x, int y, int width, int height) {
+}
@@ -0,0 +1,183 @@
+/**
+ * Contributed by @alonot.
+ */
+
+package com.swe.ScreenNVideo.Model;
+
+/**
+ * Image frame backed by a single flat int[] of 0xAARRGGBB pixels.
+ *
+ * <p>
+ * Pixel (row, col) lives at {@code offset + row * stride + col}. A tile is a view
+ * sharing the same array with a different offset, width and height, so no pixels
+ * are copied when a frame is split into tiles.
+ * </p>
+ */
+public final class Frame {
+
+    /** Backing pixel array. */
+    private final int[] pixels;
+
+    /** Index of pixel (0, 0) in the backing array. */
+    private final int offset;
+
+    /** Distance between two rows in the backing array. */
+    private final int stride;
+
+    /** Height of the frame. */
+    private final int height;
+
+    /** Width of the frame. */
+    private final int width;
+
+    /**
+     * Creates a new zero-filled frame.
+     *
+     * @param heightArgs height of the frame
+     * @param widthArgs width of the frame
+     */
+    public Frame(final int heightArgs, final int widthArgs) {
+        this(new int[heightArgs * widthArgs], 0, widthArgs, heightArgs, widthArgs);
+    }
+
+    private Frame(final int[] pixelsArgs, final int offsetArgs, final int strideArgs,
+                  final int heightArgs, final int widthArgs) {
+        this.pixels = pixelsArgs;
+        this.offset = offsetArgs;
+        this.stride = strideArgs;
+        this.height = heightArgs;
+        this.width = widthArgs;
+    }
+
+    /**
+     * Wraps a row-major pixel array without copying it.
+     *
+     * @param data pixel array of at least height * width entries
+     * @param heightArgs height of the frame
+     * @param widthArgs width of the frame
+     * @return frame backed by data
+     */
+    public static Frame wrap(final int[] data, final int heightArgs, final int widthArgs) {
+        if (data.length < heightArgs * widthArgs) {
+            throw new IllegalArgumentException("Pixel array too small for " + heightArgs + "x" + widthArgs);
+        }
+        return new Frame(data, 0, widthArgs, heightArgs, widthArgs);
+    }
+
+    /**
+     * Copies an int[][] image into a new frame.
+     *
+     * @param matrix image matrix (matrix[row][col])
+     * @return frame holding a copy of the matrix
+     */
+    public static Frame fromMatrix(final int[][] matrix) {
+        final int h = matrix.length;
+        final int w;
+        if (h > 0) {
+            w = matrix[0].length;
+        } else {
+            w = 0;
+        }
+        final Frame frame = new Frame(h, w);
+        for (int i = 0; i < h; i++) {
+            System.arraycopy(matrix[i], 0, frame.pixels, i * w, w);
+        }
+        return frame;
+    }
+
+    /**
+     * Copies this frame into a new int[][] image.
+     *
+     * @return image matrix (matrix[row][col])
+     */
+    public int[][] toMatrix() {
+        final int[][] matrix = new int[height][width];
+        for (int i = 0; i < height; i++) {
+            System.arraycopy(pixels, offset + i * stride, matrix[i], 0, width);
+        }
+        return matrix;
+    }
+
+    /**
+     * Copies the overlapping top left region of this frame into another frame.
+     *
+     * @param dst destination frame
+     */
+    public void copyTo(final Frame dst) {
+        final int h = Math.min(height, dst.height);
+        final int w = Math.min(width, dst.width);
+        for (int i = 0; i < h; i++) {
+            System.arraycopy(pixels, offset + i * stride, dst.pixels, dst.offset + i * dst.stride, w);
+        }
+    }
+
+    /**
+     * Returns a view on a rectangular region of this frame sharing the same pixels.
+     *
+     * @param x column of the top left corner
+     * @param y row of the top left corner
+     * @param w width of the tile
+     * @param h height of the tile
+     * @return tile view
+     */
+    public Frame tile(final int x, final int y, final int w, final int h) {
+        if (x < 0 || y < 0 || x + w > width || y + h > height) {
+            throw new IndexOutOfBoundsException("Tile " + x + "," + y + " " + w + "x" + h
+                + " outside " + width + "x" + height);
+        }
+        return new Frame(pixels, index(y, x), stride, h, w);
+    }
+
+    /**
+     * Index of pixel (row, col) in the backing array.
+     *
+     * @param row row of the pixel
+     * @param col column of the pixel
+     * @return index into {@link #getPixels()}
+     */
+    public int index(final int row, final int col) {
+        return offset + row * stride + col;
+    }
+
+    /**
+     * Reads a pixel.
+     *
+     * @param row row of the pixel
+     * @param col column of the pixel
+     * @return 0xAARRGGBB value
+     */
+    public int get(final int row, final int col) {
+        return pixels[offset + row * stride + col];
+    }
+
+    /**
+     * Writes a pixel.
+     *
+     * @param row row of the pixel
+     * @param col column of the pixel
+     * @param value 0xAARRGGBB value
+     */
+    public void set(final int row, final int col, final int value) {
+        pixels[offset + row * stride + col] = value;
+    }
+
+    public int[] getPixels() {
+        return pixels;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getStride() {
+        return stride;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+}
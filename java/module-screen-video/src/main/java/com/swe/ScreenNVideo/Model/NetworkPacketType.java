@@ -32,4 +32,8 @@ public enum NetworkPacketType {
      * Depicts audio Packet.
      */
     APACKETS,
+    /**
+     * Depicts a viewer's report on how well it keeps up with a feed.
+     */
+    VIEWER_FEEDBACK,
 }
@@ -7,16 +7,43 @@ package com.swe.ScreenNVideo.Model;
 import com.swe.ScreenNVideo.Utils;
 
 import java.nio.ByteBuffer;
+import java.util.List;
 
 /**
  * Image to be sent via RPC.
+ *
+ * <p>
+ * Full layout: ip length, ip, data rate, height, width, then height * width RGB triplets.
+ * With dirty rectangles the width is followed by the number of rectangles and, for each,
+ * x, y, width, height and its RGB triplets; only those regions changed since the last update.
+ * </p>
  */
 public class RImage {
+    /**
+     * Bytes per serialized pixel.
+     */
+    private static final int RGB_BYTES = 3;
+
+    /**
+     * Ints per serialized rectangle header.
+     */
+    private static final int RECT_INTS = 4;
+
+    /**
+     * Ints of the header after the ip: ip length, height, width.
+     */
+    private static final int HEADER_INTS = 3;
+
     /**
      * Image to be sent to UI.
      */
     private final int[][] image;
 
+    /**
+     * Image to be sent to UI when backed by a flat frame.
+     */
+    private final Frame frame;
+
     /**
      * ip of the user whose image is this.
      */
@@ -27,6 +54,11 @@ public class RImage {
      */
     private final long dataRate;
 
+    /**
+     * Changed regions, null to send the full image.
+     */
+    private final List<DirtyRect> dirtyRects;
+
     /**
      * Constructor for the RImage class.
      * @param imageArgs The image.
@@ -34,9 +66,46 @@ public class RImage {
      * @param dataRateArgs The data rate.
      */
     public RImage(final int[][] imageArgs, final String ipArgs, final long dataRateArgs) {
+        this(imageArgs, null, ipArgs, dataRateArgs, null);
+    }
+
+    /**
+     * Constructor for the RImage class backed by a flat frame.
+     * @param frameArgs The image.
+     * @param ipArgs The IP address.
+     * @param dataRateArgs The data rate.
+     */
+    public RImage(final Frame frameArgs, final String ipArgs, final long dataRateArgs) {
+        this(null, frameArgs, ipArgs, dataRateArgs, null);
+    }
+
+    private RImage(final int[][] imageArgs, final Frame frameArgs, final String ipArgs, final long dataRateArgs,
+                   final List<DirtyRect> dirtyRectsArgs) {
         ip = ipArgs;
         image = imageArgs;
+        frame = frameArgs;
         dataRate = dataRateArgs;
+        dirtyRects = dirtyRectsArgs;
+    }
+
+    /**
+     * Same image, sending only the given regions.
+     * @param rects changed regions, clipped to the image when serialized
+     * @return the image restricted to the regions
+     */
+    public RImage withDirtyRects(final List<DirtyRect> rects) {
+        return new RImage(image, frame, ip, dataRate, List.copyOf(rects));
+    }
+
+    /**
+     * Same image, sending all of it.
+     * @return the full image
+     */
+    public RImage asFullImage() {
+        if (dirtyRects == null) {
+            return this;
+        }
+        return new RImage(image, frame, ip, dataRate, null);
     }
 
     /**
@@ -44,34 +113,150 @@ public class RImage {
      * @return serialized byte array
      */
     public byte[] serialize() {
-        final int height = image.length;
-        final int width = image[0].length;
+        final byte[] out = new byte[serializedLength()];
+        serializeInto(ByteBuffer.wrap(out));
+        return out;
+    }
+
+    /**
+     * Number of bytes written by {@link #serializeInto(ByteBuffer)}.
+     * @return serialized length
+     */
+    public int serializedLength() {
+        final int headerLen = ip.getBytes().length + HEADER_INTS * Integer.BYTES + Long.BYTES;
+        if (dirtyRects == null) {
+            return headerLen + getHeight() * getWidth() * RGB_BYTES;
+        }
+        int len = headerLen + Integer.BYTES;
+        for (DirtyRect rect : dirtyRects) {
+            len += RECT_INTS * Integer.BYTES + clippedWidth(rect) * clippedHeight(rect) * RGB_BYTES;
+        }
+        return len;
+    }
+
+    /**
+     * Serializes the image at the position of the buffer, which must have
+     * {@link #serializedLength()} bytes remaining. Lets callers reuse their buffers.
+     * @param out buffer to write to, heap or direct
+     */
+    public void serializeInto(final ByteBuffer out) {
+        final int height = getHeight();
+        final int width = getWidth();
         final byte[] ipBytes = ip.getBytes();
-        final int lenReq = ipBytes.length + (height * width) * 3 + 12 + Long.BYTES;
-        final ByteBuffer buffer = ByteBuffer.allocate(lenReq); // three for rgb
         // put the ip
-        buffer.putInt(ipBytes.length);
-        buffer.put(ipBytes);
+        out.putInt(ipBytes.length);
+        out.put(ipBytes);
 
         // put the dataRate
-        buffer.putLong(dataRate);
+        out.putLong(dataRate);
 
         // put the image
-        buffer.putInt(height);
-        buffer.putInt(width);
-        for (int i = 0; i < height; i++) {
-            for (int j = 0; j < width; j++) {
-                final int pixel = image[i][j];
-                final byte r = (byte) ((pixel >> Utils.INT_MASK_16) & Utils.BYTE_MASK);
-                final byte g = (byte) ((pixel >> Utils.INT_MASK_8) & Utils.BYTE_MASK);
-                final byte b = (byte) (pixel & Utils.BYTE_MASK);
-
-                buffer.put(r);
-                buffer.put(g);
-                buffer.put(b);
+        out.putInt(height);
+        out.putInt(width);
+
+        byte[] scratch = null;
+        if (!out.hasArray()) {
+            scratch = new byte[width * RGB_BYTES];
+        }
+        if (dirtyRects == null) {
+            for (int i = 0; i < height; i++) {
+                writeRow(out, i, 0, width, scratch);
+            }
+            return;
+        }
+        out.putInt(dirtyRects.size());
+        for (DirtyRect rect : dirtyRects) {
+            final int rectWidth = clippedWidth(rect);
+            final int rectHeight = clippedHeight(rect);
+            out.putInt(rect.x());
+            out.putInt(rect.y());
+            out.putInt(rectWidth);
+            out.putInt(rectHeight);
+            for (int i = 0; i < rectHeight; i++) {
+                writeRow(out, rect.y() + i, rect.x(), rectWidth, scratch);
+            }
+        }
+    }
+
+    private int clippedWidth(final DirtyRect rect) {
+        return Math.max(0, Math.min(rect.width(), getWidth() - rect.x()));
+    }
+
+    private int clippedHeight(final DirtyRect rect) {
+        return Math.max(0, Math.min(rect.height(), getHeight() - rect.y()));
+    }
+
+    /**
+     * Writes the RGB bytes of part of a row, straight into the backing array when there is one.
+     * @param out buffer to write to
+     * @param row row of the image
+     * @param col first column
+     * @param count number of pixels
+     * @param scratch row sized buffer for direct buffers, unused otherwise
+     */
+    private void writeRow(final ByteBuffer out, final int row, final int col, final int count, final byte[] scratch) {
+        final int len = count * RGB_BYTES;
+        if (out.hasArray()) {
+            final int pos = out.position();
+            fillRgb(row, col, count, out.array(), out.arrayOffset() + pos);
+            out.position(pos + len);
+        } else {
+            fillRgb(row, col, count, scratch, 0);
+            out.put(scratch, 0, len);
+        }
+    }
+
+    private void fillRgb(final int row, final int col, final int count, final byte[] dst, final int dstStart) {
+        int pos = dstStart;
+        if (frame != null) {
+            // one row of the flat frame at a time
+            final int[] pixels = frame.getPixels();
+            final int start = frame.index(row, col);
+            for (int idx = start; idx < start + count; idx++) {
+                final int pixel = pixels[idx];
+                dst[pos++] = (byte) ((pixel >> Utils.INT_MASK_16) & Utils.BYTE_MASK);
+                dst[pos++] = (byte) ((pixel >> Utils.INT_MASK_8) & Utils.BYTE_MASK);
+                dst[pos++] = (byte) (pixel & Utils.BYTE_MASK);
             }
+            return;
+        }
+        final int[] pixelRow = image[row];
+        for (int j = col; j < col + count; j++) {
+            final int pixel = pixelRow[j];
+            dst[pos++] = (byte) ((pixel >> Utils.INT_MASK_16) & Utils.BYTE_MASK);
+            dst[pos++] = (byte) ((pixel >> Utils.INT_MASK_8) & Utils.BYTE_MASK);
+            dst[pos++] = (byte) (pixel & Utils.BYTE_MASK);
         }
-        return buffer.array();
+    }
+
+    /**
+     * Height of the image.
+     * @return height in pixels
+     */
+    public int getHeight() {
+        if (frame != null) {
+            return frame.getHeight();
+        }
+        return image.length;
+    }
+
+    /**
+     * Width of the image.
+     * @return width in pixels
+     */
+    public int getWidth() {
+        if (frame != null) {
+            return frame.getWidth();
+        }
+        return image[0].length;
+    }
+
+    /**
+     * Changed regions sent instead of the full image.
+     * @return the regions, null when the full image is sent
+     */
+    public List<DirtyRect> getDirtyRects() {
+        return dirtyRects;
     }
 
     /**
@@ -79,9 +264,20 @@ public class RImage {
      * @return the image
      */
     public int[][] getImage() {
+        if (image == null && frame != null) {
+            return frame.toMatrix();
+        }
         return image;
     }
 
+    /**
+     * Get the image as a flat frame.
+     * @return the frame, null when constructed from a matrix
+     */
+    public Frame getFrame() {
+        return frame;
+    }
+
     /**
      * Get the IP address.
      * @return the IP address
@@ -0,0 +1,73 @@
+/**
+ * Contributed by @alonot.
+ */
+
+package com.swe.ScreenNVideo.Model;
+
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * Report a viewer sends back to a sharer about the feed it receives.
+ * @param ip The IP address of the viewer.
+ * @param reqCompression Whether the viewer receives the compressed feed.
+ * @param bytesPerSec Feed bytes received per second since the previous report.
+ * @param decodeMicros Average time to decode and stitch one frame, in microseconds.
+ * @param gaps Frames that arrived while an earlier one was missing, plus full image requests.
+ */
+public record ViewerFeedback(String ip, boolean reqCompression, long bytesPerSec, int decodeMicros, int gaps) {
+
+    /** SIze of INT. */
+    private static final int INT_SIZE = 4;
+
+    /** Serialized size: type, 4 ints for ip, boolean, long and 2 ints. */
+    private static final int SERIALIZED_LEN = 1 + INT_SIZE * Integer.BYTES + 1 + Long.BYTES + 2 * Integer.BYTES;
+
+    /**
+     * Serializes the feedback for networking layer.
+     * @return serialized byte array
+     */
+    public byte[] serialize() {
+        final ByteBuffer buffer = ByteBuffer.allocate(SERIALIZED_LEN);
+        buffer.put((byte) (NetworkPacketType.VIEWER_FEEDBACK.ordinal()));
+
+        final int[] ipInts = Arrays.stream(ip.split("\\.")).mapToInt(Integer::parseInt).toArray();
+        for (int i = 0; i < ipInts.length; i++) {
+            buffer.putInt(ipInts[i]);
+        }
+        if (reqCompression) {
+            buffer.put((byte) 1);
+        } else {
+            buffer.put((byte) 0);
+        }
+        buffer.putLong(bytesPerSec);
+        buffer.putInt(decodeMicros);
+        buffer.putInt(gaps);
+
+        return buffer.array();
+    }
+
+    /**
+     * Deserializes the feedback from the networking layer.
+     *
+     * @param data the byte array to be deserialized
+     * @return the feedback
+     */
+    public static ViewerFeedback deserialize(final byte[] data) {
+        final ByteBuffer buffer = ByteBuffer.wrap(data);
+        final byte type = buffer.get();
+        final int[] ipInts = new int[INT_SIZE];
+        for (int i = 0; i < INT_SIZE; i++) {
+            ipInts[i] = buffer.getInt();
+        }
+        final String ip = Arrays.stream(ipInts).mapToObj(String::valueOf).collect(Collectors.joining("."));
+        final boolean reqCompression = buffer.get() == 1;
+        final long bytesPerSec = buffer.getLong();
+        final int decodeMicros = buffer.getInt();
+        final int gaps = buffer.getInt();
+        return new ViewerFeedback(ip, reqCompression, bytesPerSec, decodeMicros, gaps);
+    }
+
+}
@@ -4,9 +4,27 @@
 
 package com.swe.ScreenNVideo.PatchGenerator;
 
+import com.swe.ScreenNVideo.Model.Frame;
+
 /**
  * Implementation of the IHasher interface.
  * Computes hashes for image patches using a configurable stride.
+ *
+ * <p>
+ * Sampled pixels are read row by row, packed two per 64-bit value and fed into
+ * two interleaved multiply-rotate chains (the xxHash64 round) that are merged
+ * and finished with the xxHash64 avalanche. For a fixed tile size every step is
+ * a bijection of the state it updates, so changing any single sampled pixel
+ * always changes the hash, and swapped or shifted pixels change it with
+ * overwhelming probability. Only the RGB bits are hashed, alpha is ignored.
+ * </p>
+ *
+ * <p>
+ * A stride of 1 hashes the full tile. Larger strides only look at every
+ * stride-th row and column, which is cheaper but misses edits that fall
+ * between the samples, so they are only safe for content where such edits
+ * do not matter (e.g. camera feeds).
+ * </p>
  */
 public class Hasher implements IHasher {
 
@@ -16,34 +34,69 @@ public class Hasher implements IHasher {
     private final int stride;
 
     /**
-     * Offset for red color component in the AARRGGBB value.
+     * Mask for extracting the RGB bits of an AARRGGBB value.
+     */
+    private static final int RGB_MASK = 0xFFFFFF;
+
+    /**
+     * xxHash64 prime 1.
+     */
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+
+    /**
+     * xxHash64 prime 2.
+     */
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+
+    /**
+     * xxHash64 prime 3.
+     */
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+
+    /**
+     * Number of bits kept from each pixel.
+     */
+    private static final int RGB_BITS = 24;
+
+    /**
+     * Number of independent states per tile.
      */
-    private static final int R_OFFSET = 16;
+    private static final int LANES = 2;
 
     /**
-     * Offset for green color component in the AARRGGBB value.
+     * Samples consumed by one iteration of the row loop, minus one.
      */
-    private static final int G_OFFSET = 8;
+    private static final int THREE_STEPS = 3;
 
     /**
-     * Bit shift for green channel when computing hash.
+     * Rotation of the second lane when the lanes are merged.
      */
-    private static final int SHIFT1 = 20;
+    private static final int LANE_ROTATION = 17;
 
     /**
-     * Bit shift for blue channel when computing hash.
+     * Rotation of the mixing round.
      */
-    private static final int SHIFT2 = 40;
+    private static final int ROUND_ROTATION = 31;
 
     /**
-     * Mask for extracting color componenet.
+     * First shift of the avalanche.
      */
-    private static final int MASK = 0xFF;
+    private static final int AVALANCHE_SHIFT1 = 33;
+
+    /**
+     * Second shift of the avalanche.
+     */
+    private static final int AVALANCHE_SHIFT2 = 29;
+
+    /**
+     * Third shift of the avalanche.
+     */
+    private static final int AVALANCHE_SHIFT3 = 32;
 
     /**
      * Constructs a Hasher with a specified sampling stride.
      *
-     * @param strideArg sampling step (e.g. 2 = every 2nd pixel, 4 = every 4th pixel)
+     * @param strideArg sampling step (e.g. 1 = full tile, 2 = every 2nd pixel, 4 = every 4th pixel)
      */
     public Hasher(final int strideArg) {
         this.stride = Math.max(1, strideArg); // avoid zero or negative
@@ -51,18 +104,136 @@ public class Hasher implements IHasher {
 
     @Override
     public long hash(final int[][] img, final int x, final int y, final int w, final int h) {
-        long hash = 0;
-        for (int i = 0; i < w; i += stride) {
-            for (int j = 0; j < h; j += stride) {
-                final int pixel = img[y + j][x + i];
-                final int r = (pixel >> R_OFFSET) & MASK;
-                final int g = (pixel >> G_OFFSET) & MASK;
-                final int b = pixel & MASK;
-                hash += r;
-                hash += (long) g << SHIFT1;
-                hash += (long) b << SHIFT2;
+        final long[] lanes = {PRIME1, PRIME2};
+        for (int j = 0; j < h; j += stride) {
+            mixRow(img[y + j], x, x + w, lanes, 0);
+        }
+        return finish(lanes, 0);
+    }
+
+    @Override
+    public long hashFrame(final Frame frame, final int x, final int y, final int w, final int h) {
+        final int[] pixels = frame.getPixels();
+        final int rowStep = frame.getStride() * stride;
+        final long[] lanes = {PRIME1, PRIME2};
+        int rowStart = frame.index(y, x);
+        for (int j = 0; j < h; j += stride) {
+            mixRow(pixels, rowStart, rowStart + w, lanes, 0);
+            rowStart += rowStep;
+        }
+        return finish(lanes, 0);
+    }
+
+    @Override
+    public void hashTiles(final Frame frame, final int tileSize, final long[] out) {
+        // one row-major pass over the frame, each row feeds the running state of every tile it crosses
+        final int width = frame.getWidth();
+        final int height = frame.getHeight();
+        final int tilesX = (width + tileSize - 1) / tileSize;
+        final int tilesY = (height + tileSize - 1) / tileSize;
+        final int[] pixels = frame.getPixels();
+        final long[] lanes = new long[tilesX * LANES];
+
+        for (int ty = 0; ty < tilesY; ty++) {
+            final int tileY = ty * tileSize;
+            final int tileH = Math.min(tileSize, height - tileY);
+            for (int lane = 0; lane < lanes.length; lane += LANES) {
+                lanes[lane] = PRIME1;
+                lanes[lane + 1] = PRIME2;
             }
+            for (int j = 0; j < tileH; j += stride) {
+                final int rowStart = frame.index(tileY + j, 0);
+                for (int tx = 0; tx < tilesX; tx++) {
+                    final int segStart = rowStart + tx * tileSize;
+                    final int segEnd = rowStart + Math.min((tx + 1) * tileSize, width);
+                    mixRow(pixels, segStart, segEnd, lanes, tx * LANES);
+                }
+            }
+            final int base = ty * tilesX;
+            for (int tx = 0; tx < tilesX; tx++) {
+                out[base + tx] = finish(lanes, tx * LANES);
+            }
+        }
+    }
+
+    /**
+     * Feeds the sampled pixels of one row segment into a pair of lanes.
+     * Samples are packed two per round and the rounds alternate between the lanes,
+     * so the two multiply chains run in parallel.
+     *
+     * @param pixels row data
+     * @param from index of the first pixel
+     * @param to index after the last pixel
+     * @param lanes running states
+     * @param lane index of the first of the two lanes
+     */
+    private void mixRow(final int[] pixels, final int from, final int to, final long[] lanes, final int lane) {
+        final int step = stride;
+        long a = lanes[lane];
+        long b = lanes[lane + 1];
+        int idx = from;
+        while (idx + THREE_STEPS * step < to) {
+            a = mix(a, pack(pixels[idx], pixels[idx + step]));
+            b = mix(b, pack(pixels[idx + 2 * step], pixels[idx + THREE_STEPS * step]));
+            idx += LANES * 2 * step;
         }
-        return hash;
+        if (idx + step < to) {
+            a = mix(a, pack(pixels[idx], pixels[idx + step]));
+            idx += 2 * step;
+        }
+        if (idx < to) {
+            b = mix(b, pixels[idx] & RGB_MASK);
+        }
+        lanes[lane] = a;
+        lanes[lane + 1] = b;
+    }
+
+    /**
+     * Packs the RGB bits of two pixels into one value.
+     *
+     * @param first AARRGGBB value
+     * @param second AARRGGBB value
+     * @return both pixels without alpha
+     */
+    private static long pack(final int first, final int second) {
+        return (first & RGB_MASK) | (long) (second & RGB_MASK) << RGB_BITS;
+    }
+
+    /**
+     * Feeds one value into a running state.
+     *
+     * @param acc running state
+     * @param value packed pixels
+     * @return new state
+     */
+    private static long mix(final long acc, final long value) {
+        return Long.rotateLeft(acc + value * PRIME2, ROUND_ROTATION) * PRIME1;
+    }
+
+    /**
+     * Merges a pair of lanes into the hash.
+     *
+     * @param lanes running states
+     * @param lane index of the first of the two lanes
+     * @return hash
+     */
+    private static long finish(final long[] lanes, final int lane) {
+        return avalanche(lanes[lane] + Long.rotateLeft(lanes[lane + 1], LANE_ROTATION));
+    }
+
+    /**
+     * Spreads every bit of the state over the whole hash.
+     *
+     * @param acc final running state
+     * @return hash
+     */
+    private static long avalanche(final long acc) {
+        long h = acc;
+        h ^= h >>> AVALANCHE_SHIFT1;
+        h *= PRIME2;
+        h ^= h >>> AVALANCHE_SHIFT2;
+        h *= PRIME3;
+        h ^= h >>> AVALANCHE_SHIFT3;
+        return h;
     }
 }
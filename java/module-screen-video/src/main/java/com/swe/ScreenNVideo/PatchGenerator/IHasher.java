@@ -4,6 +4,8 @@
 
 package com.swe.ScreenNVideo.PatchGenerator;
 
+import com.swe.ScreenNVideo.Model.Frame;
+
 /**
  * Interface for computing a hash value of an image patch or tile.
  */
@@ -18,4 +20,37 @@ public interface IHasher {
      * @return hash as a long
      */
     long hash(int[][] img, int x, int y, int w, int h);
+
+    /**
+     * Computes a hash for an image patch/tile of a flat frame.
+     * The default copies the tile into a matrix, implementations should read the frame directly.
+     * @param frame -> flat pixel data
+     * @param x -> x-coordinate of first corner
+     * @param y -> y-coordinate of first corner
+     * @param w -> width
+     * @param h -> height
+     * @return hash as a long, equal to the matrix hash of the same pixels
+     */
+    default long hashFrame(Frame frame, int x, int y, int w, int h) {
+        return hash(frame.tile(x, y, w, h).toMatrix(), 0, 0, w, h);
+    }
+
+    /**
+     * Computes the hash of every tile of a frame.
+     * Tiles are tileSize x tileSize, cut from the top left corner, the last row and column may be smaller.
+     * The default hashes tile by tile, implementations may hash all tiles in one pass over the frame.
+     * @param frame -> flat pixel data
+     * @param tileSize -> width and height of a tile
+     * @param out -> receives the hash of tile (tx, ty) at ty * tilesX + tx, equal to hashFrame of that tile
+     */
+    default void hashTiles(Frame frame, int tileSize, long[] out) {
+        final int width = frame.getWidth();
+        final int height = frame.getHeight();
+        int i = 0;
+        for (int y = 0; y < height; y += tileSize) {
+            for (int x = 0; x < width; x += tileSize) {
+                out[i++] = hashFrame(frame, x, y, Math.min(tileSize, width - x), Math.min(tileSize, height - y));
+            }
+        }
+    }
 }
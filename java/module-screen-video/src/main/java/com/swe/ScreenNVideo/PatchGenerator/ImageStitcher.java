@@ -4,6 +4,7 @@
 
 package com.swe.ScreenNVideo.PatchGenerator;
 
+import com.swe.ScreenNVideo.Model.Frame;
 import com.swe.ScreenNVideo.Utils;
 import com.swe.core.logging.SweLogger;
 import com.swe.core.logging.SweLoggerFactory;
@@ -24,6 +25,12 @@ public class ImageStitcher {
      */
     private int[][] canvas;
 
+    /**
+     * The target canvas when stitching onto a flat frame.
+     * Non-null only while in frame mode, see {@link #setCanvas(Frame)}.
+     */
+    private Frame frameCanvas;
+
     /**
      * Height of current canvas.
      */
@@ -42,6 +49,7 @@ public class ImageStitcher {
      */
     public void setCanvas(final int height, final int width) {
         this.canvas = new int[height][width];
+        this.frameCanvas = null;
         this.currentHeight = height;
         this.currentWidth = width;
     }
@@ -53,11 +61,26 @@ public class ImageStitcher {
      */
     public void setCanvas(final int[][] initialCanvas) {
         this.canvas = initialCanvas;
+        this.frameCanvas = null;
         this.currentHeight = initialCanvas.length;
         this.currentWidth = initialCanvas[0].length;
         LOG.debug("Setting canvas " + currentHeight + "x" + currentWidth);
     }
 
+    /**
+     * Assigns a flat frame as canvas.
+     * Patches are stitched onto the frame until a matrix canvas is assigned again.
+     *
+     * @param initialCanvas to be assigned to canvas.
+     */
+    public void setCanvas(final Frame initialCanvas) {
+        this.frameCanvas = initialCanvas;
+        this.canvas = null;
+        this.currentHeight = initialCanvas.getHeight();
+        this.currentWidth = initialCanvas.getWidth();
+        LOG.debug("Setting frame canvas " + currentHeight + "x" + currentWidth);
+    }
+
     /**
      * Set Canvas Dimensions.
      * @param newHeight height of the updated canvas
@@ -74,6 +97,7 @@ public class ImageStitcher {
      */
     public void resetCanvas() {
         this.canvas = new int[0][0];
+        this.frameCanvas = null;
         this.currentHeight = 0;
         this.currentWidth = 0;
         LOG.debug("Resetting canvas to empty");
@@ -90,6 +114,24 @@ public class ImageStitcher {
         }
     }
 
+    /**
+     * Grows the canvas once so that every given patch fits.
+     * Afterwards {@link #stitch(Stitchable)} never resizes for these patches, so disjoint
+     * ones may be stitched from several threads at once.
+     * @param patches the patches about to be stitched
+     */
+    public void fitCanvas(final List<? extends Stitchable> patches) {
+        int maxHeight = currentHeight;
+        int maxWidth = currentWidth;
+        for (Stitchable patch : patches) {
+            maxHeight = Math.max(maxHeight, patch.getY() + patch.getHeight());
+            maxWidth = Math.max(maxWidth, patch.getX() + patch.getWidth());
+        }
+        if (maxHeight > currentHeight || maxWidth > currentWidth) {
+            resize(maxHeight, maxWidth, true);
+        }
+    }
+
     /**
      * Stitches the provided patch onto the canvas.
      * Stretches the canvas if necessary.
@@ -97,7 +139,11 @@ public class ImageStitcher {
      */
     public void stitch(final Stitchable patch) {
         verifyDimensions(patch);
-        patch.applyOn(canvas);
+        if (frameCanvas != null) {
+            patch.applyOn(frameCanvas);
+        } else {
+            patch.applyOn(canvas);
+        }
     }
 
     private void verifyDimensions(final Stitchable patch) {
@@ -116,6 +162,10 @@ public class ImageStitcher {
      * @param width of new canvas
      */
     private void resize(final int height, final int width, final boolean fill) {
+        if (frameCanvas != null) {
+            resizeFrame(height, width, fill);
+            return;
+        }
         final int[][] newCanvas = new int[height][width];
         LOG.debug("Resizing canvas from " + currentHeight + "x" + currentWidth + " to " + height + "x" + width);
 
@@ -128,6 +178,19 @@ public class ImageStitcher {
         this.currentWidth = width;
     }
 
+    private void resizeFrame(final int height, final int width, final boolean fill) {
+        final Frame newCanvas = new Frame(height, width);
+        LOG.debug("Resizing frame canvas from " + currentHeight + "x" + currentWidth + " to " + height + "x" + width);
+
+        if (fill) {
+            frameCanvas.copyTo(newCanvas);
+        }
+
+        this.frameCanvas = newCanvas;
+        this.currentHeight = height;
+        this.currentWidth = width;
+    }
+
     /**
      * Returns the final stitched canvas.
      *
@@ -136,4 +199,13 @@ public class ImageStitcher {
     public int[][] getCanvas() {
         return canvas;
     }
+
+    /**
+     * Returns the final stitched frame canvas.
+     *
+     * @return the canvas, null when not in frame mode
+     */
+    public Frame getCanvasFrame() {
+        return frameCanvas;
+    }
 }
\ No newline at end of file
@@ -6,34 +6,169 @@ package com.swe.ScreenNVideo.PatchGenerator;
 
 import com.swe.ScreenNVideo.Codec.Codec;
 import com.swe.ScreenNVideo.Model.FeedPatch;
+import com.swe.ScreenNVideo.Model.Frame;
 import com.swe.ScreenNVideo.Utils;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
 
 /**
  * Generates packets for image/patch transmission by dividing images into tiles.
  * Uses a compressor to encode patches and a hasher to detect changes between frames.
  * Maintains a cache of previous hashes for efficient patch generation.
+ * Optionally shards the dirty tiles of a frame across a pool of encoder workers.
  */
 public class PacketGenerator {
 
     /** Default size of each tile in pixels. */
     private static final int TILE_SIZE = 32;
 
+    /** Number of ints used to describe a dirty tile (x, y, w, h). */
+    private static final int TILE_FIELDS = 4;
+
+    /** Index of the tile height in a dirty tile entry. */
+    private static final int TILE_H = 3;
+
+    /** Below this many dirty tiles a frame is encoded on the calling thread. */
+    private static final int MIN_PARALLEL_TILES = 8;
+
+    /** Tile budget meaning every dirty tile is sent. */
+    public static final int FULL_TILE_BUDGET = 100;
+
     /** Compressor used to encode image patches. */
     private final Codec compressor;
 
     /** Hasher used to compute hashes of image patches. */
     private final IHasher hasher;
 
+    /** Pool running the encoder shards; null in serial mode. */
+    private final ForkJoinPool encoderPool;
+
+    /** Codec owned by each shard, shard i only ever touches workerCodecs[i]. */
+    private final Codec[] workerCodecs;
+
     /** Stores previous hash values for each tile in the grid. */
     private long[][] prevHashes;
 
+    /** Whether any viewer currently wants the compressed patches. */
+    private volatile boolean compressedRequired = true;
+
+    /** Whether any viewer currently wants the uncompressed patches. */
+    private volatile boolean unCompressedRequired = true;
+
+    /** Share (percent) of the tile grid that may be sent per frame, the other dirty tiles are deferred. */
+    private volatile int tileBudgetPercent = FULL_TILE_BUDGET;
+
+    /** Tile index the budget starts from, so deferred tiles go first in the next frame. */
+    private int tileCursor = 0;
+
+    /** Dirty tiles deferred to a later frame by the tile budget in the last frame. */
+    private int lastDeferredTiles = 0;
+
+    /** Wall clock time spent encoding the last frame in nanoseconds. */
+    private long lastEncodeTime = 0;
+
+    /** Fraction (0-1) of the pool kept busy while encoding the last frame. */
+    private double lastWorkerUtilisation = 0;
+
 
     public PacketGenerator(final Codec compressorArg, final IHasher hasherArg) {
         this.compressor = compressorArg;
         this.hasher = hasherArg;
+        this.encoderPool = null;
+        this.workerCodecs = new Codec[0];
+    }
+
+    /**
+     * Creates a packet generator that encodes dirty tiles in parallel.
+     * Each worker gets its own codec since codecs keep scratch buffers.
+     *
+     * @param compressorArg codec used for full images and small diffs
+     * @param hasherArg hasher used to detect dirty tiles
+     * @param codecFactory creates one codec per worker
+     * @param workerCount number of encoder workers, 1 or less keeps the serial path
+     */
+    public PacketGenerator(final Codec compressorArg, final IHasher hasherArg,
+                           final Supplier<Codec> codecFactory, final int workerCount) {
+        this.compressor = compressorArg;
+        this.hasher = hasherArg;
+        if (workerCount <= 1) {
+            this.encoderPool = null;
+            this.workerCodecs = new Codec[0];
+            return;
+        }
+        this.encoderPool = new ForkJoinPool(workerCount);
+        this.workerCodecs = new Codec[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workerCodecs[i] = codecFactory.get();
+        }
+    }
+
+    /**
+     * Sets which patch variants have subscribers.
+     * Diff frames only encode the required variants, full images always carry both.
+     *
+     * @param compressed whether compressed patches are needed
+     * @param unCompressed whether uncompressed patches are needed
+     */
+    public void setRequiredVariants(final boolean compressed, final boolean unCompressed) {
+        this.compressedRequired = compressed;
+        this.unCompressedRequired = unCompressed;
+    }
+
+    /**
+     * Sets the quality factor of the compressed patches on every codec.
+     * Must not be called while a frame is being encoded.
+     *
+     * @param quality quality factor from 1 to 99
+     */
+    public void setQuality(final int quality) {
+        compressor.setQuality(quality);
+        for (Codec codec : workerCodecs) {
+            codec.setQuality(quality);
+        }
+    }
+
+    /**
+     * Limits the number of tiles sent per diff frame to a share of the tile grid.
+     * Dirty tiles over the budget keep their old hash, so they stay dirty and are sent by
+     * the next frames, starting with the ones deferred the longest.
+     *
+     * @param percent share of the tile grid (1-100), {@link #FULL_TILE_BUDGET} sends every dirty tile
+     */
+    public void setTileBudget(final int percent) {
+        this.tileBudgetPercent = Math.max(1, Math.min(FULL_TILE_BUDGET, percent));
+    }
+
+    /**
+     * Dirty tiles the tile budget deferred in the last frame.
+     *
+     * @return number of deferred tiles
+     */
+    public int getLastDeferredTiles() {
+        return lastDeferredTiles;
+    }
+
+    /**
+     * Wall clock time spent encoding the dirty tiles of the last frame.
+     *
+     * @return time in nanoseconds
+     */
+    public long getLastEncodeTime() {
+        return lastEncodeTime;
+    }
+
+    /**
+     * Share of the worker pool that was busy while encoding the last frame.
+     * Always 1 in serial mode when something was encoded.
+     *
+     * @return utilisation between 0 and 1
+     */
+    public double getLastWorkerUtilisation() {
+        return lastWorkerUtilisation;
     }
 
     /**
@@ -57,13 +192,26 @@ public class PacketGenerator {
 
     /**
      * Split frames into tiles, compare hashes, compress dirty tiles.
+     * Patches are always returned in row-major tile order, whichever path encoded them.
+     * A variant without subscribers (see {@link #setRequiredVariants}) comes back as an empty list.
      * @param curr is the image frame (int[width][height][3] RGB array)
      * @return list of compressed patches,
      */
     public FeedPatch generatePackets(final int[][] curr) {
-        final int height = curr.length;
-        final int width = curr[0].length;
+        return generatePackets(new MatrixTiles(curr), curr.length, curr[0].length);
+    }
 
+    /**
+     * Split a flat frame into tiles, compare hashes, compress dirty tiles.
+     * Tiles are hashed and encoded straight from the frame's backing array.
+     * @param curr is the image frame
+     * @return list of compressed patches,
+     */
+    public FeedPatch generateFramePackets(final Frame curr) {
+        return generatePackets(new FrameTiles(curr), curr.getHeight(), curr.getWidth());
+    }
+
+    private FeedPatch generatePackets(final TileSource curr, final int height, final int width) {
         // Tile grid size
         final int tilesX = (int) Math.ceil((double) width / TILE_SIZE);
         final int tilesY = (int) Math.ceil((double) height / TILE_SIZE);
@@ -80,29 +228,247 @@ public class PacketGenerator {
             prevHashes = newPrevHashes;
         }
 
-        final List<CompressedPatch> compressedPatches = new ArrayList<>();
-        final List<CompressedPatch> unCompressedPatches = new ArrayList<>();
+        final long[] tileHashes = new long[tilesX * tilesY];
+        curr.hashTiles(hasher, tileHashes);
 
+        final int tileCount = tilesX * tilesY;
+        final boolean[] dirty = new boolean[tileCount];
+        int dirtyTotal = 0;
+        for (int i = 0; i < tileCount; i++) {
+            if (tileHashes[i] != prevHashes[i % tilesX][i / tilesX]) {
+                dirty[i] = true;
+                dirtyTotal++;
+            }
+        }
+        lastDeferredTiles = applyTileBudget(dirty, dirtyTotal);
+
+        // collect dirty tiles first so that they can be sharded across workers
+        final int[] dirtyTiles = new int[tileCount * TILE_FIELDS];
+        int dirtyCount = 0;
         for (int ty = 0; ty < tilesY; ty++) {
             for (int tx = 0; tx < tilesX; tx++) {
+                final int tile = ty * tilesX + tx;
+                if (!dirty[tile]) {
+                    // unchanged, or deferred by the budget and still holding the hash last sent
+                    continue;
+                }
                 final int x = tx * TILE_SIZE;
                 final int y = ty * TILE_SIZE;
-                final int w = Math.min(TILE_SIZE, width - x);
-                final int h = Math.min(TILE_SIZE, height - y);
-
-                final long currHash = hasher.hash(curr, x, y, w, h);
-                if (currHash != prevHashes[tx][ty]) {
-                    final List<byte[]> compressedString = this.compressor.encode(curr, x, y, h, w);
-                    // add the compressed patch
-                    compressedPatches.add(new CompressedPatch(x, y, w, h, compressedString.get(0)));
-                    // add uncompressed patch
-                    unCompressedPatches.add(new CompressedPatch(x, y, w, h, compressedString.get(1)));
-                }
-                prevHashes[tx][ty] = currHash;
+                final int base = dirtyCount * TILE_FIELDS;
+                dirtyTiles[base] = x;
+                dirtyTiles[base + 1] = y;
+                dirtyTiles[base + 2] = Math.min(TILE_SIZE, width - x);
+                dirtyTiles[base + TILE_H] = Math.min(TILE_SIZE, height - y);
+                dirtyCount++;
+                prevHashes[tx][ty] = tileHashes[tile];
+            }
+        }
+
+        // read once so that all tiles of a frame agree on the variants
+        final boolean wantCompressed = compressedRequired;
+        final boolean wantUnCompressed = unCompressedRequired;
+        final byte[][] compressed = new byte[dirtyCount][];
+        final byte[][] unCompressed = new byte[dirtyCount][];
+        final EncodeJob job = new EncodeJob(curr, dirtyTiles, wantCompressed, wantUnCompressed,
+                compressed, unCompressed);
+        final long encodeStart = System.nanoTime();
+        if (encoderPool == null || dirtyCount < MIN_PARALLEL_TILES) {
+            encodeTiles(compressor, job, 0, dirtyCount);
+            lastEncodeTime = System.nanoTime() - encodeStart;
+            if (dirtyCount > 0) {
+                lastWorkerUtilisation = 1;
+            } else {
+                lastWorkerUtilisation = 0;
+            }
+        } else {
+            encodeParallel(job, dirtyCount, encodeStart);
+        }
+
+        final List<CompressedPatch> compressedPatches = new ArrayList<>(dirtyCount);
+        final List<CompressedPatch> unCompressedPatches = new ArrayList<>(dirtyCount);
+        for (int i = 0; i < dirtyCount; i++) {
+            final int base = i * TILE_FIELDS;
+            final int x = dirtyTiles[base];
+            final int y = dirtyTiles[base + 1];
+            final int w = dirtyTiles[base + 2];
+            final int h = dirtyTiles[base + TILE_H];
+            // add the compressed patch
+            if (compressed[i] != null) {
+                compressedPatches.add(new CompressedPatch(x, y, w, h, compressed[i]));
+            }
+            // add uncompressed patch
+            if (unCompressed[i] != null) {
+                unCompressedPatches.add(new CompressedPatch(x, y, w, h, unCompressed[i]));
             }
         }
         return new FeedPatch(compressedPatches, unCompressedPatches);
     }
 
-}
+    /**
+     * Clears the dirty flag of the tiles over the budget.
+     * Tiles are kept in row-major order starting at the cursor, which then moves past the
+     * last kept tile, so every dirty tile is eventually sent.
+     *
+     * @param dirty dirty flag per tile, row-major
+     * @param dirtyTotal number of set flags
+     * @return number of tiles deferred
+     */
+    private int applyTileBudget(final boolean[] dirty, final int dirtyTotal) {
+        final int tileCount = dirty.length;
+        final int budget = Math.max(1, (int) ((long) tileCount * tileBudgetPercent / FULL_TILE_BUDGET));
+        if (dirtyTotal <= budget) {
+            return 0;
+        }
+        if (tileCursor >= tileCount) {
+            tileCursor = 0;
+        }
+        int kept = 0;
+        int lastKept = tileCursor;
+        for (int n = 0; n < tileCount; n++) {
+            final int tile = (tileCursor + n) % tileCount;
+            if (!dirty[tile]) {
+                continue;
+            }
+            if (kept < budget) {
+                kept++;
+                lastKept = tile;
+            } else {
+                dirty[tile] = false;
+            }
+        }
+        tileCursor = (lastKept + 1) % tileCount;
+        return dirtyTotal - budget;
+    }
+
+    /**
+     * Splits the dirty tiles into contiguous shards, one per worker codec, and waits for all of them.
+     *
+     * @param job dirty tiles of the frame and their output slots
+     * @param dirtyCount number of dirty tiles
+     * @param encodeStart time at which encoding started
+     */
+    private void encodeParallel(final EncodeJob job, final int dirtyCount, final long encodeStart) {
+        final int shards = Math.min(workerCodecs.length, dirtyCount);
+        final long[] busyTime = new long[shards];
+        final List<ForkJoinTask<?>> tasks = new ArrayList<>(shards);
+        for (int s = 0; s < shards; s++) {
+            final int shard = s;
+            final int from = (int) ((long) dirtyCount * s / shards);
+            final int to = (int) ((long) dirtyCount * (s + 1) / shards);
+            tasks.add(encoderPool.submit(() -> {
+                final long shardStart = System.nanoTime();
+                encodeTiles(workerCodecs[shard], job, from, to);
+                busyTime[shard] = System.nanoTime() - shardStart;
+            }));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
 
+        lastEncodeTime = System.nanoTime() - encodeStart;
+        long totalBusy = 0;
+        for (long busy : busyTime) {
+            totalBusy += busy;
+        }
+        if (lastEncodeTime > 0) {
+            lastWorkerUtilisation = Math.min(1.0, totalBusy / ((double) lastEncodeTime * workerCodecs.length));
+        } else {
+            lastWorkerUtilisation = 0;
+        }
+    }
+
+    /**
+     * Encodes the dirty tiles in [from, to) with the given codec.
+     *
+     * @param codec codec to use, must not be shared with another thread
+     * @param job dirty tiles of the frame and their output slots
+     * @param from first tile index (inclusive)
+     * @param to last tile index (exclusive)
+     */
+    private static void encodeTiles(final Codec codec, final EncodeJob job, final int from, final int to) {
+        final int[] dirtyTiles = job.dirtyTiles();
+        for (int i = from; i < to; i++) {
+            final int base = i * TILE_FIELDS;
+            final List<byte[]> compressedString = job.tiles().encode(codec, dirtyTiles[base], dirtyTiles[base + 1],
+                    dirtyTiles[base + TILE_H], dirtyTiles[base + 2], job.wantCompressed(), job.wantUnCompressed());
+            if (job.wantCompressed()) {
+                job.compressed()[i] = compressedString.get(0);
+            }
+            if (job.wantUnCompressed()) {
+                job.unCompressed()[i] = compressedString.get(1);
+            }
+        }
+    }
+
+    /**
+     * Dirty tiles of one frame, the variants to produce and the slots receiving them.
+     *
+     * @param tiles tiles of the image frame
+     * @param dirtyTiles packed (x, y, w, h) entries
+     * @param wantCompressed whether to produce the compressed variant
+     * @param wantUnCompressed whether to produce the uncompressed variant
+     * @param compressed output slots for the compressed data
+     * @param unCompressed output slots for the uncompressed data
+     */
+    private record EncodeJob(TileSource tiles, int[] dirtyTiles, boolean wantCompressed, boolean wantUnCompressed,
+                             byte[][] compressed, byte[][] unCompressed) {
+    }
+
+    /**
+     * Image being split into tiles, either an int[][] matrix or a flat frame.
+     */
+    private interface TileSource {
+        /**
+         * Hashes every tile of the image into out, row-major.
+         *
+         * @param tileHasher hasher to use
+         * @param out receives the hash of tile (tx, ty) at ty * tilesX + tx
+         */
+        void hashTiles(IHasher tileHasher, long[] out);
+
+        List<byte[]> encode(Codec codec, int x, int y, int h, int w, boolean compressed, boolean unCompressed);
+    }
+
+    /**
+     * Tiles of an int[][] image.
+     */
+    private record MatrixTiles(int[][] image) implements TileSource {
+        @Override
+        public void hashTiles(final IHasher tileHasher, final long[] out) {
+            final int height = image.length;
+            final int width = image[0].length;
+            int i = 0;
+            for (int y = 0; y < height; y += TILE_SIZE) {
+                for (int x = 0; x < width; x += TILE_SIZE) {
+                    out[i++] = tileHasher.hash(image, x, y, Math.min(TILE_SIZE, width - x),
+                            Math.min(TILE_SIZE, height - y));
+                }
+            }
+        }
+
+        @Override
+        public List<byte[]> encode(final Codec codec, final int x, final int y, final int h, final int w,
+                                   final boolean compressed, final boolean unCompressed) {
+            if (compressed && unCompressed) {
+                return codec.encode(image, x, y, h, w);
+            }
+            return codec.encode(image, x, y, h, w, compressed, unCompressed);
+        }
+    }
+
+    /**
+     * Tiles of a flat frame.
+     */
+    private record FrameTiles(Frame frame) implements TileSource {
+        @Override
+        public void hashTiles(final IHasher tileHasher, final long[] out) {
+            tileHasher.hashTiles(frame, TILE_SIZE, out);
+        }
+
+        @Override
+        public List<byte[]> encode(final Codec codec, final int x, final int y, final int h, final int w,
+                                   final boolean compressed, final boolean unCompressed) {
+            return codec.encodeFrame(frame, x, y, h, w, compressed, unCompressed);
+        }
+    }
+}
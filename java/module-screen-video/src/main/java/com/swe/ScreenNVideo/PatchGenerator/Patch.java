@@ -4,14 +4,19 @@
 
 package com.swe.ScreenNVideo.PatchGenerator;
 
+import com.swe.ScreenNVideo.Model.Frame;
+
 /**
  *Represents a patch of pixels that can be applied to a canvas.
  */
 public class Patch implements Stitchable {
 
-    /** Pixel data for this patch. */
+    /** Pixel data for this patch, null when backed by a frame. */
     private final int[][] pixels;
 
+    /** Flat pixel data for this patch, null when backed by a matrix. */
+    private final Frame frame;
+
     /** X-coordinate to place patch. */
     private final int x;
 
@@ -27,6 +32,21 @@ public class Patch implements Stitchable {
      */
     public Patch(final int[][] patchPixels, final int posX, final int posY) {
         this.pixels = patchPixels;
+        this.frame = null;
+        this.x = posX;
+        this.y = posY;
+    }
+
+    /**
+     * Creates a new {@code Patch} backed by a flat frame.
+     *
+     * @param patchFrame the pixel data of the patch
+     * @param posX the x-coordinate
+     * @param posY the y-coordinate
+     */
+    public Patch(final Frame patchFrame, final int posX, final int posY) {
+        this.pixels = null;
+        this.frame = patchFrame;
         this.x = posX;
         this.y = posY;
     }
@@ -39,6 +59,10 @@ public class Patch implements Stitchable {
      */
     @Override
     public void applyOn(final int[][] canvas) {
+        if (frame != null) {
+            applyFrameOn(canvas);
+            return;
+        }
         for (int i = 0; i < pixels.length; i++) {
             for (int j = 0; j < pixels[0].length; j++) {
                 final int targetX = x + j;
@@ -55,13 +79,60 @@ public class Patch implements Stitchable {
         }
     }
 
+    private void applyFrameOn(final int[][] canvas) {
+        for (int i = 0; i < frame.getHeight(); i++) {
+            for (int j = 0; j < frame.getWidth(); j++) {
+                final int targetX = x + j;
+                final int targetY = y + i;
+
+                if (targetY >= 0
+                    && targetY < canvas.length
+                    && targetX >= 0
+                    && targetX < canvas[0].length) {
+                    canvas[targetY][targetX] = frame.get(i, j);
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies this patch onto the provided frame, one clipped row copy at a time.
+     *
+     * @param canvas is the target canvas
+     */
+    @Override
+    public void applyOn(final Frame canvas) {
+        final int srcCol = Math.max(0, -x);
+        final int srcRow = Math.max(0, -y);
+        final int cols = Math.min(getWidth(), canvas.getWidth() - x) - srcCol;
+        final int rows = Math.min(getHeight(), canvas.getHeight() - y);
+        if (cols <= 0) {
+            return;
+        }
+        final int[] dst = canvas.getPixels();
+        for (int i = srcRow; i < rows; i++) {
+            final int dstIndex = canvas.index(y + i, x + srcCol);
+            if (frame != null) {
+                System.arraycopy(frame.getPixels(), frame.index(i, srcCol), dst, dstIndex, cols);
+            } else {
+                System.arraycopy(pixels[i], srcCol, dst, dstIndex, cols);
+            }
+        }
+    }
+
     @Override
     public int getHeight() {
+        if (frame != null) {
+            return frame.getHeight();
+        }
         return pixels.length;
     }
 
     @Override
     public int getWidth() {
+        if (frame != null) {
+            return frame.getWidth();
+        }
         return pixels[0].length;
     }
 
@@ -4,12 +4,26 @@
 
 package com.swe.ScreenNVideo.PatchGenerator;
 
+import com.swe.ScreenNVideo.Model.Frame;
+
 /**
  * Interface for stitchable objects.
  */
 public interface Stitchable {
     void applyOn(int[][] canvas);
 
+    /**
+     * Applies this object onto a flat frame canvas.
+     * Falls back to the matrix path; implementations should override it to avoid the copies.
+     *
+     * @param canvas is the target canvas
+     */
+    default void applyOn(Frame canvas) {
+        final int[][] matrix = canvas.toMatrix();
+        applyOn(matrix);
+        Frame.fromMatrix(matrix).copyTo(canvas);
+    }
+
     int getHeight();
 
     int getWidth();
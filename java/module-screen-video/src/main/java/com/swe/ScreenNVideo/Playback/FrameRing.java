@@ -0,0 +1,299 @@
+/**
+ * Contributed by @BhupathiVarun.
+ */
+
+package com.swe.ScreenNVideo.Playback;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Fixed set of reusable buffers frames are serialized into on their way to the UI.
+ *
+ * <p>
+ * A slot is acquired for a frame, filled, handed to the RPC layer and released once the
+ * UI answered the call. When every slot is still in flight the frame is dropped instead
+ * of allocating, the UI is behind anyway.
+ * </p>
+ *
+ * <p>
+ * Heap rings keep one array per slot, sized exactly to the frame because the RPC layer
+ * sends whole arrays; it is only reallocated when the frame size changes. Mapped rings
+ * carve fixed size slots out of a memory-mapped file that the UI process maps as well,
+ * so only the slot position has to go through the RPC layer.
+ * </p>
+ */
+public final class FrameRing implements Closeable {
+
+    /**
+     * Slots of the ring.
+     */
+    private final Slot[] slots;
+
+    /**
+     * Backing file of a mapped ring, null for heap rings.
+     */
+    private final Path file;
+
+    /**
+     * Channel of the backing file, null for heap rings.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Size of each slot of a mapped ring, 0 for heap rings.
+     */
+    private final int slotCapacity;
+
+    /**
+     * Slot tried first by the next acquire, so slots are used round robin.
+     */
+    private int next;
+
+    /**
+     * Frames dropped because every slot was in flight or the frame did not fit.
+     */
+    private long dropped;
+
+    /**
+     * Times a heap slot was reallocated for a new frame size.
+     */
+    private long reallocations;
+
+    /**
+     * Creates a heap ring.
+     *
+     * @param slotCount number of frames that can be in flight
+     */
+    public FrameRing(final int slotCount) {
+        this(slotCount, null, null, 0);
+    }
+
+    private FrameRing(final int slotCount, final Path fileArgs, final FileChannel channelArgs,
+                      final int slotCapacityArgs) {
+        if (slotCount <= 0) {
+            throw new IllegalArgumentException("Ring needs at least one slot: " + slotCount);
+        }
+        this.file = fileArgs;
+        this.channel = channelArgs;
+        this.slotCapacity = slotCapacityArgs;
+        this.slots = new Slot[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = new Slot(i, (long) i * slotCapacityArgs);
+        }
+    }
+
+    /**
+     * Creates a ring backed by a memory-mapped file, created or truncated to fit the slots.
+     *
+     * @param fileArgs file shared with the UI process
+     * @param slotCount number of frames that can be in flight
+     * @param slotCapacityArgs size of each slot in bytes
+     * @return the mapped ring
+     * @throws IOException if the file cannot be mapped
+     */
+    public static FrameRing mapped(final Path fileArgs, final int slotCount, final int slotCapacityArgs)
+            throws IOException {
+        if (slotCapacityArgs <= 0) {
+            throw new IllegalArgumentException("Slot capacity must be positive: " + slotCapacityArgs);
+        }
+        final FileChannel fileChannel = FileChannel.open(fileArgs, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            final FrameRing ring = new FrameRing(slotCount, fileArgs, fileChannel, slotCapacityArgs);
+            final MappedByteBuffer mapped = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    (long) slotCount * slotCapacityArgs);
+            for (Slot slot : ring.slots) {
+                slot.buffer = mapped.slice((int) slot.offset, slotCapacityArgs);
+            }
+            return ring;
+        } catch (IOException | RuntimeException e) {
+            fileChannel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Takes a free slot for a frame.
+     *
+     * @param length serialized size of the frame
+     * @return a slot whose buffer has exactly length bytes remaining, null if none is free or the frame
+     *     does not fit a mapped slot
+     */
+    public synchronized Slot acquire(final int length) {
+        if (isShared() && length > slotCapacity) {
+            dropped++;
+            return null;
+        }
+        for (int n = 0; n < slots.length; n++) {
+            final Slot slot = slots[(next + n) % slots.length];
+            if (slot.busy) {
+                continue;
+            }
+            next = (slot.index + 1) % slots.length;
+            slot.busy = true;
+            slot.length = length;
+            if (!isShared() && (slot.buffer == null || slot.buffer.capacity() != length)) {
+                slot.buffer = ByteBuffer.wrap(new byte[length]);
+                reallocations++;
+            }
+            slot.buffer.clear().limit(length);
+            return slot;
+        }
+        dropped++;
+        return null;
+    }
+
+    /**
+     * Returns a slot to the ring once the UI is done with it.
+     *
+     * @param slot slot from {@link #acquire(int)}
+     */
+    public synchronized void release(final Slot slot) {
+        slot.busy = false;
+    }
+
+    /**
+     * Whether the slots live in a file shared with the UI process.
+     *
+     * @return true for mapped rings
+     */
+    public boolean isShared() {
+        return channel != null;
+    }
+
+    /**
+     * Backing file of a mapped ring.
+     *
+     * @return the file, null for heap rings
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Size of each slot of a mapped ring.
+     *
+     * @return size in bytes, 0 for heap rings
+     */
+    public int getSlotCapacity() {
+        return slotCapacity;
+    }
+
+    /**
+     * Frames dropped because no slot could take them.
+     *
+     * @return number of dropped frames
+     */
+    public synchronized long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Times a heap slot was reallocated for a new frame size.
+     *
+     * @return number of reallocations
+     */
+    public synchronized long getReallocations() {
+        return reallocations;
+    }
+
+    /**
+     * Closes and deletes the backing file of a mapped ring.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * One reusable frame buffer.
+     */
+    public static final class Slot {
+        /**
+         * Position of the slot in the ring.
+         */
+        private final int index;
+
+        /**
+         * Offset of the slot in the backing file, 0 for heap rings.
+         */
+        private final long offset;
+
+        /**
+         * Buffer the frame is serialized into.
+         */
+        private ByteBuffer buffer;
+
+        /**
+         * Length of the frame currently held.
+         */
+        private int length;
+
+        /**
+         * Whether the slot is in flight.
+         */
+        private boolean busy;
+
+        private Slot(final int indexArgs, final long offsetArgs) {
+            this.index = indexArgs;
+            this.offset = offsetArgs;
+        }
+
+        /**
+         * Position of the slot in the ring.
+         *
+         * @return slot index
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * Offset of the slot in the backing file.
+         *
+         * @return offset in bytes, 0 for heap rings
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * Buffer to serialize the frame into, limited to the frame length.
+         *
+         * @return the buffer
+         */
+        public ByteBuffer getBuffer() {
+            return buffer;
+        }
+
+        /**
+         * Length of the frame held by the slot.
+         *
+         * @return length in bytes
+         */
+        public int getLength() {
+            return length;
+        }
+
+        /**
+         * Backing array of a heap slot, exactly the frame length.
+         *
+         * @return the array
+         */
+        public byte[] array() {
+            return buffer.array();
+        }
+    }
+}
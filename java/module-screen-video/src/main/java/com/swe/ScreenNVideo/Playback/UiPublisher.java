@@ -0,0 +1,212 @@
+/**
+ * Contributed by @BhupathiVarun.
+ */
+
+package com.swe.ScreenNVideo.Playback;
+
+import com.swe.ScreenNVideo.Model.RImage;
+import com.swe.ScreenNVideo.Utils;
+import com.swe.core.RPCinterface.AbstractRPC;
+import com.swe.core.logging.SweLogger;
+import com.swe.core.logging.SweLoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sends images to the UI through a {@link FrameRing}.
+ *
+ * <p>
+ * Images are serialized straight into a ring slot. With a heap ring the slot's array is the
+ * RPC payload ({@link Utils#UPDATE_UI}, or {@link Utils#UPDATE_UI_RECTS} for images carrying
+ * dirty rectangles); with a shared ring only a reference to the slot is sent
+ * ({@link Utils#UPDATE_UI_SLOT}): slot index, offset, length, kind (0 full image, 1 dirty
+ * rectangles) and the ring file. The slot is reused once the UI answered the call.
+ * </p>
+ *
+ * <p>
+ * Dirty rectangles only make sense on top of what the UI already shows, so the full image is
+ * sent instead for an ip the UI has not seen at that size yet, or after a frame of that ip was
+ * dropped or refused.
+ * </p>
+ */
+public class UiPublisher {
+
+    /**
+     * Screen Video logger.
+     */
+    private static final SweLogger LOG = SweLoggerFactory.getLogger("SCREEN-VIDEO");
+
+    /**
+     * Kind of a slot reference holding a full image.
+     */
+    private static final byte KIND_FULL = 0;
+
+    /**
+     * Kind of a slot reference holding dirty rectangles.
+     */
+    private static final byte KIND_RECTS = 1;
+
+    /**
+     * Size of a slot reference without the ring path: index, offset, length, kind, path length.
+     */
+    private static final int SLOT_REF_LEN = Integer.BYTES + Long.BYTES + Integer.BYTES + 1 + Integer.BYTES;
+
+    /**
+     * Answer of a call whose frame was dropped.
+     */
+    private static final byte[] DROPPED = new byte[0];
+
+    /**
+     * RPC to the UI.
+     */
+    private final AbstractRPC rpc;
+
+    /**
+     * Buffers the images are serialized into.
+     */
+    private final FrameRing ring;
+
+    /**
+     * Size (height, width) of the last full image the UI got per ip.
+     */
+    private final Map<String, int[]> syncedSizes = new HashMap<>();
+
+    /**
+     * Creates a publisher.
+     *
+     * @param rpcArgs RPC to the UI
+     * @param ringArgs buffers the images are serialized into
+     */
+    public UiPublisher(final AbstractRPC rpcArgs, final FrameRing ringArgs) {
+        this.rpc = rpcArgs;
+        this.ring = ringArgs;
+    }
+
+    /**
+     * Creates a publisher with the ring configured in {@link Utils}. Falls back to a heap ring
+     * when the shared ring cannot be mapped.
+     *
+     * @param rpcArgs RPC to the UI
+     * @param name name of the ring file, unique per publisher
+     * @return the publisher
+     */
+    public static UiPublisher create(final AbstractRPC rpcArgs, final String name) {
+        if (Utils.UI_SHARED_MEMORY) {
+            final Path file = Path.of(System.getProperty("java.io.tmpdir"), "swe-ui-" + name + ".ring");
+            try {
+                return new UiPublisher(rpcArgs, FrameRing.mapped(file, Utils.UI_RING_SLOTS, Utils.UI_RING_SLOT_BYTES));
+            } catch (IOException e) {
+                LOG.error("Unable to map UI frame ring, using heap buffers", e);
+            }
+        }
+        return new UiPublisher(rpcArgs, new FrameRing(Utils.UI_RING_SLOTS));
+    }
+
+    /**
+     * Sends an image to the UI.
+     *
+     * @param image image to show, possibly restricted to dirty rectangles
+     * @return future of the UI's answer, an empty answer if the frame was dropped, null if the RPC gave none
+     */
+    public CompletableFuture<byte[]> publish(final RImage image) {
+        final RImage toSend = resolve(image);
+        final int length = toSend.serializedLength();
+
+        if (ring.isShared() && length > ring.getSlotCapacity()) {
+            // does not fit a shared slot, send it inline instead
+            return track(toSend, null, rpc.call(inlineMethod(toSend), toSend.serialize()));
+        }
+
+        final FrameRing.Slot slot = ring.acquire(length);
+        if (slot == null) {
+            LOG.error("UI frame ring full — dropping frame");
+            markStale(toSend.getIp());
+            return CompletableFuture.completedFuture(DROPPED);
+        }
+
+        final CompletableFuture<byte[]> future;
+        try {
+            toSend.serializeInto(slot.getBuffer());
+            if (ring.isShared()) {
+                future = rpc.call(Utils.UPDATE_UI_SLOT, slotReference(slot, toSend));
+            } else {
+                future = rpc.call(inlineMethod(toSend), slot.array());
+            }
+        } catch (RuntimeException e) {
+            ring.release(slot);
+            markStale(toSend.getIp());
+            throw e;
+        }
+        return track(toSend, slot, future);
+    }
+
+    /**
+     * Ring the images go through.
+     *
+     * @return the ring
+     */
+    public FrameRing getRing() {
+        return ring;
+    }
+
+    private synchronized RImage resolve(final RImage image) {
+        final int[] size = syncedSizes.get(image.getIp());
+        final boolean synced = size != null && size[0] == image.getHeight() && size[1] == image.getWidth();
+        if (image.getDirtyRects() != null && synced) {
+            return image;
+        }
+        // the UI has this size from now on, unless the call fails
+        syncedSizes.put(image.getIp(), new int[] {image.getHeight(), image.getWidth()});
+        return image.asFullImage();
+    }
+
+    private synchronized void markStale(final String ip) {
+        syncedSizes.remove(ip);
+    }
+
+    private CompletableFuture<byte[]> track(final RImage image, final FrameRing.Slot slot,
+                                            final CompletableFuture<byte[]> future) {
+        if (future == null) {
+            if (slot != null) {
+                ring.release(slot);
+            }
+            return null;
+        }
+        return future.whenComplete((res, err) -> {
+            if (slot != null) {
+                ring.release(slot);
+            }
+            if (err != null || res == null || (res.length > 0 && res[0] == 0)) {
+                markStale(image.getIp());
+            }
+        });
+    }
+
+    private static String inlineMethod(final RImage image) {
+        if (image.getDirtyRects() == null) {
+            return Utils.UPDATE_UI;
+        }
+        return Utils.UPDATE_UI_RECTS;
+    }
+
+    private byte[] slotReference(final FrameRing.Slot slot, final RImage image) {
+        final byte[] path = ring.getFile().toAbsolutePath().toString().getBytes();
+        final ByteBuffer ref = ByteBuffer.allocate(SLOT_REF_LEN + path.length);
+        ref.putInt(slot.getIndex());
+        ref.putLong(slot.getOffset());
+        ref.putInt(slot.getLength());
+        if (image.getDirtyRects() == null) {
+            ref.put(KIND_FULL);
+        } else {
+            ref.put(KIND_RECTS);
+        }
+        ref.putInt(path.length);
+        ref.put(path);
+        return ref.array();
+    }
+}
@@ -0,0 +1,14 @@
+/**
+ * Contributed by @alonot.
+ */
+
+package com.swe.ScreenNVideo.RateControl;
+
+/**
+ * Settings the video feed is encoded and sent with.
+ * @param quality Quality factor of the compressed patches (1-99).
+ * @param fps Frames sent per second.
+ * @param tileBudget Share (percent) of the tile grid sent per diff frame.
+ */
+public record OperatingPoint(int quality, int fps, int tileBudget) {
+}
@@ -0,0 +1,258 @@
+/**
+ * Contributed by @alonot.
+ */
+
+package com.swe.ScreenNVideo.RateControl;
+
+import com.swe.ScreenNVideo.Model.ViewerFeedback;
+import com.swe.ScreenNVideo.Utils;
+
+/**
+ * Picks the operating point of the video feed from the viewers' feedback.
+ *
+ * <p>
+ * Viewers are grouped by the feed variant they receive (compressed / uncompressed).
+ * Each group walks a ladder of operating points, from the best one down to the cheapest:
+ * a report showing congestion, or the group's send rate going over the target, moves the
+ * group one step down (at most once per {@link #HOLD_MS}); once the group stayed clean
+ * for {@link #RECOVERY_MS} and has room under the target it moves one step back up.
+ * A group therefore runs at the level of its weakest viewer.
+ * </p>
+ *
+ * <p>
+ * A report shows congestion when the viewer saw gaps in the feed, when decoding a frame
+ * took longer than the frame period, or when it received clearly less than was sent.
+ * </p>
+ *
+ * <p>
+ * All methods are synchronized: feedback arrives on the networking thread while the
+ * capture thread records sent bytes and reads the operating point.
+ * </p>
+ */
+public class RateController {
+
+    /**
+     * Operating points from the best to the cheapest. Only the compressed variant has a quality.
+     */
+    private static final OperatingPoint[] LADDER = {
+        new OperatingPoint(99, Utils.FPS, 100),
+        new OperatingPoint(90, Utils.FPS, 100),
+        new OperatingPoint(80, 30, 100),
+        new OperatingPoint(70, 30, 75),
+        new OperatingPoint(60, 20, 75),
+        new OperatingPoint(50, 15, 50),
+        new OperatingPoint(40, 10, 50),
+        new OperatingPoint(30, 5, 25),
+    };
+
+    /**
+     * Minimum time between two steps down, lets the previous step show in the feedback.
+     */
+    static final long HOLD_MS = 1_000;
+
+    /**
+     * Time without congestion before stepping back up.
+     */
+    static final long RECOVERY_MS = 5_000;
+
+    /**
+     * Received rate below this percentage of the sent rate counts as congestion.
+     */
+    private static final long DELIVERY_PERCENT = 75;
+
+    /**
+     * Stepping up needs the send rate below this percentage of the target.
+     */
+    private static final long HEADROOM_PERCENT = 80;
+
+    /**
+     * Percent base.
+     */
+    private static final long PERCENT = 100;
+
+    /**
+     * Microseconds in a second.
+     */
+    private static final int SEC_IN_US = 1_000_000;
+
+    /**
+     * Bytes per second each group is kept under.
+     */
+    private final long targetBytesPerSec;
+
+    /**
+     * Viewers of the compressed feed.
+     */
+    private final Group compressedGroup = new Group();
+
+    /**
+     * Viewers of the uncompressed feed.
+     */
+    private final Group unCompressedGroup = new Group();
+
+    /**
+     * Creates a controller.
+     *
+     * @param targetBytesPerSecArgs bytes per second each group is kept under
+     */
+    public RateController(final long targetBytesPerSecArgs) {
+        this.targetBytesPerSec = targetBytesPerSecArgs;
+    }
+
+    /**
+     * Accounts a feed sent to a group, once per feed regardless of the number of viewers.
+     *
+     * @param compressed whether the compressed group was sent to
+     * @param bytes size of the feed
+     * @param nowMs current time in ms
+     */
+    public synchronized void recordSent(final boolean compressed, final int bytes, final long nowMs) {
+        final Group group = group(compressed);
+        if (group.windowStart == 0) {
+            group.windowStart = nowMs;
+        }
+        group.windowBytes += bytes;
+        final long elapsed = nowMs - group.windowStart;
+        if (elapsed >= Utils.SEC_IN_MS) {
+            group.sentBytesPerSec = group.windowBytes * Utils.SEC_IN_MS / elapsed;
+            group.windowBytes = 0;
+            group.windowStart = nowMs;
+        }
+    }
+
+    /**
+     * Updates the level of the viewer's group from its report.
+     *
+     * @param feedback report of the viewer
+     * @param nowMs current time in ms
+     */
+    public synchronized void onFeedback(final ViewerFeedback feedback, final long nowMs) {
+        final Group group = group(feedback.reqCompression());
+        final OperatingPoint point = LADDER[group.level];
+        final boolean congested = feedback.gaps() > 0
+                || (long) feedback.decodeMicros() * point.fps() > SEC_IN_US
+                || feedback.bytesPerSec() * PERCENT < group.sentBytesPerSec * DELIVERY_PERCENT;
+        final boolean overTarget = group.sentBytesPerSec > targetBytesPerSec;
+
+        if (congested || overTarget) {
+            group.lastCongestion = nowMs;
+            if (group.level < LADDER.length - 1 && nowMs - group.lastChange >= HOLD_MS) {
+                group.level++;
+                group.lastChange = nowMs;
+            }
+            return;
+        }
+
+        final boolean hasHeadroom = group.sentBytesPerSec * PERCENT <= targetBytesPerSec * HEADROOM_PERCENT;
+        if (group.level > 0 && hasHeadroom && nowMs - group.lastCongestion >= RECOVERY_MS
+                && nowMs - group.lastChange >= RECOVERY_MS) {
+            group.level--;
+            group.lastChange = nowMs;
+        }
+    }
+
+    /**
+     * Forgets the state of a group, e.g. when its last viewer left.
+     *
+     * @param compressed which group
+     */
+    public synchronized void reset(final boolean compressed) {
+        group(compressed).reset();
+    }
+
+    /**
+     * Operating point of a group.
+     *
+     * @param compressed which group
+     * @return the group's operating point
+     */
+    public synchronized OperatingPoint getOperatingPoint(final boolean compressed) {
+        return LADDER[group(compressed).level];
+    }
+
+    /**
+     * Operating point of the shared capture pipeline.
+     * Both variants come from the same diff chain, a group cannot skip frames the other
+     * one gets, so the frame rate and tile budget follow the most constrained group that
+     * has viewers. The quality only affects the compressed variant.
+     *
+     * @param compressedActive whether the compressed group has viewers
+     * @param unCompressedActive whether the uncompressed group has viewers
+     * @return point to capture and encode with
+     */
+    public synchronized OperatingPoint getEffectivePoint(final boolean compressedActive,
+                                                         final boolean unCompressedActive) {
+        final OperatingPoint compressedPoint = LADDER[compressedGroup.level];
+        final OperatingPoint unCompressedPoint = LADDER[unCompressedGroup.level];
+        if (!unCompressedActive) {
+            return compressedPoint;
+        }
+        if (!compressedActive) {
+            return new OperatingPoint(LADDER[0].quality(), unCompressedPoint.fps(), unCompressedPoint.tileBudget());
+        }
+        return new OperatingPoint(compressedPoint.quality(),
+                Math.min(compressedPoint.fps(), unCompressedPoint.fps()),
+                Math.min(compressedPoint.tileBudget(), unCompressedPoint.tileBudget()));
+    }
+
+    /**
+     * Last measured send rate of a group.
+     *
+     * @param compressed which group
+     * @return bytes per second
+     */
+    public synchronized long getSentBytesPerSec(final boolean compressed) {
+        return group(compressed).sentBytesPerSec;
+    }
+
+    private Group group(final boolean compressed) {
+        if (compressed) {
+            return compressedGroup;
+        }
+        return unCompressedGroup;
+    }
+
+    /**
+     * Controller state of one viewer group.
+     */
+    private static final class Group {
+        /**
+         * Index in the ladder.
+         */
+        private int level;
+
+        /**
+         * Time of the last level change in ms.
+         */
+        private long lastChange;
+
+        /**
+         * Time of the last congested report in ms.
+         */
+        private long lastCongestion;
+
+        /**
+         * Start of the current send rate window in ms, 0 before the first send.
+         */
+        private long windowStart;
+
+        /**
+         * Bytes sent in the current window.
+         */
+        private long windowBytes;
+
+        /**
+         * Send rate measured over the previous window.
+         */
+        private long sentBytesPerSec;
+
+        void reset() {
+            level = 0;
+            lastChange = 0;
+            lastCongestion = 0;
+            windowStart = 0;
+            windowBytes = 0;
+            sentBytesPerSec = 0;
+        }
+    }
+}
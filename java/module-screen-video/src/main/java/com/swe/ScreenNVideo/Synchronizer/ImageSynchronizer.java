@@ -5,28 +5,44 @@
 package com.swe.ScreenNVideo.Synchronizer;
 
 import com.swe.ScreenNVideo.Codec.Codec;
+import com.swe.ScreenNVideo.Model.Frame;
+import com.swe.ScreenNVideo.Model.ViewerFeedback;
 import com.swe.ScreenNVideo.PatchGenerator.CompressedPatch;
 import com.swe.ScreenNVideo.PatchGenerator.ImageStitcher;
 import com.swe.ScreenNVideo.PatchGenerator.Patch;
+import com.swe.ScreenNVideo.Utils;
 import com.swe.core.logging.SweLogger;
 import com.swe.core.logging.SweLoggerFactory;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
 
 /**
  * Synchronizer to synchronize the image from the patches.
+ * Optionally decodes and stitches the patches of a feed across a pool of decoder workers.
  */
 public class ImageSynchronizer {
     /**
      * Screen Video logger.
      */
     private static final SweLogger LOG = SweLoggerFactory.getLogger("SCREEN-VIDEO");
+    /**
+     * Below this many patches a feed is decoded on the calling thread.
+     */
+    private static final int MIN_PARALLEL_PATCHES = 8;
     /**
      * The previous image.
      * The new patch will be stitched on this image.
      */
     private int[][] previousImage;
+    /**
+     * The previous image when synchronizing onto flat frames.
+     */
+    private Frame previousFrame;
     /**
      * The codec to decode the patches.
      */
@@ -35,6 +51,14 @@ public class ImageSynchronizer {
      * The image stitcher to stitch the patches.
      */
     private final ImageStitcher imageStitcher;
+    /**
+     * Pool running the decoder shards, may be shared between synchronizers; null in serial mode.
+     */
+    private final ForkJoinPool decodePool;
+    /**
+     * Codec owned by each shard, shard i only ever touches workerCodecs[i].
+     */
+    private final Codec[] workerCodecs;
 
     /**
      * Time in ms when previous packets were sent.
@@ -69,6 +93,55 @@ public class ImageSynchronizer {
         prevSend = System.currentTimeMillis();
     }
 
+    /**
+     * Time spent decoding and stitching frames since the last feedback, in nanoseconds.
+     */
+    private long decodeTime = 0;
+
+    /**
+     * Frames decoded since the last feedback.
+     */
+    private int decodedFrames = 0;
+
+    /**
+     * Gaps seen since the last feedback.
+     */
+    private int gaps = 0;
+
+    /**
+     * Accounts the time taken to decode and stitch one frame.
+     * @param nanos time in nanoseconds
+     */
+    public void recordDecode(final long nanos) {
+        decodeTime += nanos;
+        decodedFrames++;
+    }
+
+    /**
+     * Accounts a frame that arrived while an earlier one was missing, or a full image request.
+     */
+    public void recordGap() {
+        gaps++;
+    }
+
+    /**
+     * Builds the report for the sharer and starts a new reporting period.
+     * @param ip IP of this viewer
+     * @param bytesPerSec feed bytes received per second
+     * @return the report
+     */
+    public ViewerFeedback takeFeedback(final String ip, final long bytesPerSec) {
+        int decodeMicros = 0;
+        if (decodedFrames > 0) {
+            decodeMicros = (int) (decodeTime / decodedFrames / (Utils.MSEC_IN_NS / Utils.SEC_IN_MS));
+        }
+        final ViewerFeedback feedback = new ViewerFeedback(ip, reqCompression, bytesPerSec, decodeMicros, gaps);
+        decodeTime = 0;
+        decodedFrames = 0;
+        gaps = 0;
+        return feedback;
+    }
+
     /**
      * The next feed number we expect to recieve in correct order.
      * Used to ensure patches are applied sequentially.
@@ -142,11 +215,34 @@ public class ImageSynchronizer {
      * @param codec the codec to decode the patches.
      */
     public ImageSynchronizer(final Codec codec) {
+        this(codec, null, null, 0);
+    }
+
+    /**
+     * Create a new image synchronizer that decodes the patches of a feed in parallel.
+     * Each worker gets its own codec since codecs keep scratch buffers.
+     * @param codec the codec to decode the patches of small feeds.
+     * @param codecFactory creates one codec per worker
+     * @param decodePoolArgs pool running the workers, may be shared between synchronizers
+     * @param workerCount number of decoder workers, 1 or less keeps the serial path
+     */
+    public ImageSynchronizer(final Codec codec, final Supplier<Codec> codecFactory, final ForkJoinPool decodePoolArgs,
+                             final int workerCount) {
         this.videoCodec = codec;
         this.imageStitcher = new ImageStitcher();
         previousImage = null;
         this.expectedFeedNumber = 0;
         this.heap = new PriorityQueue<>((a, b) -> Integer.compare(a.getFeedNumber(), b.getFeedNumber()));
+        if (decodePoolArgs == null || workerCount <= 1) {
+            this.decodePool = null;
+            this.workerCodecs = new Codec[0];
+            return;
+        }
+        this.decodePool = decodePoolArgs;
+        this.workerCodecs = new Codec[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workerCodecs[i] = codecFactory.get();
+        }
     }
 
     /**
@@ -180,4 +276,103 @@ public class ImageSynchronizer {
         return previousImage;
     }
 
+    /**
+     * Synchronize the image from the patches onto a flat frame.
+     * Decoded patches are copied row by row into the frame without intermediate matrices.
+     * @param compressedPatches the patches to synchronize the image.
+     * @param newHeight height of incoming packet
+     * @param newWidth width of incoming packet
+     * @param toDeCompress to compress the packets ot not
+     * @return the image.
+     */
+    public Frame synchronizeFrame(final int newHeight, final int newWidth,
+                                  final List<CompressedPatch> compressedPatches, final boolean toDeCompress) {
+        if (previousFrame != null) {
+            imageStitcher.setCanvas(previousFrame);
+        } else {
+            imageStitcher.setCanvas(new Frame(newHeight, newWidth));
+        }
+
+        imageStitcher.setCanvasDimensions(newHeight, newWidth);
+
+        if (decodePool == null || compressedPatches.size() < MIN_PARALLEL_PATCHES) {
+            for (CompressedPatch compressedPatch : compressedPatches) {
+                final Frame decodedImage = videoCodec.decodeFrame(compressedPatch.data(), toDeCompress);
+                final Patch patch = new Patch(decodedImage, compressedPatch.x(), compressedPatch.y());
+                imageStitcher.stitch(patch);
+            }
+        } else {
+            synchronizeParallel(compressedPatches, toDeCompress);
+        }
+        previousFrame = imageStitcher.getCanvasFrame();
+        if (previousFrame == null) {
+            LOG.warn("ImageSynchronizer produced null canvas");
+        }
+        return previousFrame;
+    }
+
+    /**
+     * Decodes the patches in contiguous shards, one per worker codec, grows the canvas once
+     * for all of them, then stitches the shards concurrently.
+     * The patches of a feed are disjoint tiles, so the shards write disjoint regions of the canvas.
+     * Returns once the whole feed is on the canvas, feeds are still applied in order.
+     * @param compressedPatches the patches of the feed
+     * @param toDeCompress to compress the packets ot not
+     */
+    private void synchronizeParallel(final List<CompressedPatch> compressedPatches, final boolean toDeCompress) {
+        final int count = compressedPatches.size();
+        final int shards = Math.min(workerCodecs.length, count);
+        final Patch[] decoded = new Patch[count];
+
+        final List<ForkJoinTask<?>> tasks = new ArrayList<>(shards);
+        for (int s = 0; s < shards; s++) {
+            final Codec codec = workerCodecs[s];
+            final int from = (int) ((long) count * s / shards);
+            final int to = (int) ((long) count * (s + 1) / shards);
+            tasks.add(decodePool.submit(() -> {
+                for (int i = from; i < to; i++) {
+                    final CompressedPatch compressedPatch = compressedPatches.get(i);
+                    final Frame decodedImage = codec.decodeFrame(compressedPatch.data(), toDeCompress);
+                    decoded[i] = new Patch(decodedImage, compressedPatch.x(), compressedPatch.y());
+                }
+            }));
+        }
+        joinAll(tasks);
+
+        // decoded patches can be padded past their tile, size the canvas before stitching concurrently
+        final List<Patch> patches = List.of(decoded);
+        imageStitcher.fitCanvas(patches);
+
+        tasks.clear();
+        for (int s = 0; s < shards; s++) {
+            final int from = (int) ((long) count * s / shards);
+            final int to = (int) ((long) count * (s + 1) / shards);
+            tasks.add(decodePool.submit(() -> {
+                for (int i = from; i < to; i++) {
+                    imageStitcher.stitch(patches.get(i));
+                }
+            }));
+        }
+        joinAll(tasks);
+    }
+
+    /**
+     * Waits for every task, so none is still touching the canvas, then rethrows the first failure.
+     * @param tasks the shards
+     */
+    private static void joinAll(final List<ForkJoinTask<?>> tasks) {
+        RuntimeException failure = null;
+        for (ForkJoinTask<?> task : tasks) {
+            try {
+                task.join();
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
 }
@@ -10,6 +10,7 @@ import java.util.LinkedList;
 
 /**
  * Telemetry class for the ScreenNVideo module.
+ * The capture, encoder and controller threads all use the current model, so every method locks the instance.
  */
 public class Telemetry implements ScreenVideoTelemetry {
 
@@ -40,7 +41,7 @@ public class Telemetry implements ScreenVideoTelemetry {
      * Get the Telemetry instance.
      * @return The Telemetry instance.
      */
-    public static Telemetry getTelemetry() {
+    public static synchronized Telemetry getTelemetry() {
         if (telemetry == null) {
             telemetry = new Telemetry();
         }
@@ -50,7 +51,7 @@ public class Telemetry implements ScreenVideoTelemetry {
     /**
      * Close the current screen video telemetry model.
      */
-    public void closeModel() {
+    public synchronized void closeModel() {
         if (currentScreenVideoTelemetryModel != null) {
             currentScreenVideoTelemetryModel.setEndTime(System.currentTimeMillis());
             screenVideoTelemetryModels.add(currentScreenVideoTelemetryModel);
@@ -60,7 +61,7 @@ public class Telemetry implements ScreenVideoTelemetry {
     /**
      * Add a new screen video telemetry model.
      */
-    public void addNewModel() {
+    public synchronized void addNewModel() {
         currentScreenVideoTelemetryModel = new ScreenVideoTelemetryModel(System.currentTimeMillis(),
                 System.currentTimeMillis(), new ArrayList<>(), false, false);
         currentScreenVideoTelemetryModel.setWithCamera(false);
@@ -72,18 +73,65 @@ public class Telemetry implements ScreenVideoTelemetry {
      * Add a new FPS to the current screen video telemetry model.
      * @param fps The FPS to add.
      */
-    public void addFps(final Double fps) {
+    public synchronized void addFps(final Double fps) {
         if (currentScreenVideoTelemetryModel == null) {
             addNewModel();
         }
         currentScreenVideoTelemetryModel.addFps(fps);
     }
 
+    /**
+     * Add the encode time and encoder worker utilisation of a frame to the current model.
+     * @param encodeTimeMs Time taken to encode the dirty tiles in milliseconds.
+     * @param workerUtilisation Fraction (0-1) of the encoder pool that was busy.
+     */
+    public synchronized void addEncodeStats(final double encodeTimeMs, final double workerUtilisation) {
+        if (currentScreenVideoTelemetryModel == null) {
+            addNewModel();
+        }
+        currentScreenVideoTelemetryModel.addEncodeStats(encodeTimeMs, workerUtilisation);
+    }
+
+    /**
+     * Record an overrun of the video pacer on the current model.
+     * @param skippedFrames Number of frame deadlines skipped because of the overrun.
+     */
+    public synchronized void addVideoOverrun(final long skippedFrames) {
+        if (currentScreenVideoTelemetryModel == null) {
+            addNewModel();
+        }
+        currentScreenVideoTelemetryModel.addVideoOverrun(skippedFrames);
+    }
+
+    /**
+     * Record an overrun of the audio pacer on the current model.
+     * @param skippedChunks Number of audio deadlines skipped because of the overrun.
+     */
+    public synchronized void addAudioOverrun(final long skippedChunks) {
+        if (currentScreenVideoTelemetryModel == null) {
+            addNewModel();
+        }
+        currentScreenVideoTelemetryModel.addAudioOverrun(skippedChunks);
+    }
+
+    /**
+     * Record the operating point picked by the rate controller on the current model.
+     * @param quality Quality factor of the compressed feed.
+     * @param fps Frames sent per second.
+     * @param tileBudget Share (percent) of the tile grid sent per diff frame.
+     */
+    public synchronized void setOperatingPoint(final int quality, final int fps, final int tileBudget) {
+        if (currentScreenVideoTelemetryModel == null) {
+            addNewModel();
+        }
+        currentScreenVideoTelemetryModel.setOperatingPoint(quality, fps, tileBudget);
+    }
+
     /**
      * Set the with camera flag for the current screen video telemetry model.
      * @param withCamera The with camera flag.
      */
-    public void setWithCamera(final boolean withCamera) {
+    public synchronized void setWithCamera(final boolean withCamera) {
         if (currentScreenVideoTelemetryModel == null) {
             addNewModel();
         }
@@ -94,7 +142,7 @@ public class Telemetry implements ScreenVideoTelemetry {
      * Set the with screen flag for the current screen video telemetry model.
      * @param withScreen The with screen flag.
      */
-    public void setWithScreen(final boolean withScreen) {
+    public synchronized void setWithScreen(final boolean withScreen) {
         if (currentScreenVideoTelemetryModel == null) {
             addNewModel();
         }
@@ -103,16 +151,17 @@ public class Telemetry implements ScreenVideoTelemetry {
 
     /**
      * Get all screen video telemetry models.
+     * Models are copied under the lock, so callers can serialise them while capture keeps recording.
      * @return List of all screen video telemetry models.
      */
     @Override
-    public List<ScreenVideoTelemetryModel> getAllScreenVideosTelemetry() {
+    public synchronized List<ScreenVideoTelemetryModel> getAllScreenVideosTelemetry() {
         final ArrayList<ScreenVideoTelemetryModel> allScreenVideosTelemetry = new ArrayList<>();
         while (!screenVideoTelemetryModels.isEmpty()) {
-            allScreenVideosTelemetry.add(screenVideoTelemetryModels.poll());
+            allScreenVideosTelemetry.add(screenVideoTelemetryModels.poll().snapshot());
         }
         if (currentScreenVideoTelemetryModel != null) {
-            allScreenVideosTelemetry.add(currentScreenVideoTelemetryModel);
+            allScreenVideosTelemetry.add(currentScreenVideoTelemetryModel.snapshot());
         }
         return allScreenVideosTelemetry;
     }
@@ -4,6 +4,7 @@
 
 package com.swe.ScreenNVideo;
 
+import com.swe.ScreenNVideo.Codec.ColorConversion;
 import com.swe.core.logging.SweLogger;
 import com.swe.core.logging.SweLoggerFactory;
 
@@ -25,8 +26,18 @@ public class Utils {
     private static final SweLogger LOG = SweLoggerFactory.getLogger("SCREEN-VIDEO");
     /**
      * Hashing stride for the hashing algorithm.
+     * 1 hashes every pixel of a tile, larger strides miss edits between the samples.
      */
-    public static final int HASH_STRIDE = 2;
+    public static final int HASH_STRIDE = 1;
+    /**
+     * Priority of diff frames and audio, a lost or dropped one is replaced by the next.
+     */
+    public static final int FRAME_PRIORITY = 2;
+    /**
+     * Priority of control messages and full images, resent when lost over UDP and never
+     * dropped by a full receive queue.
+     */
+    public static final int CONTROL_PRIORITY = 1;
     /**
      * Key constant for start_video_capture.
      */
@@ -67,6 +78,14 @@ public class Utils {
      * Key constant for StopShare.
      */
     public static final String STOP_SHARE = "stopShare";
+    /**
+     * Key constant for update_ui with only the changed regions of the image.
+     */
+    public static final String UPDATE_UI_RECTS = "updateUIRects";
+    /**
+     * Key constant for update_ui referencing an image in the shared frame ring.
+     */
+    public static final String UPDATE_UI_SLOT = "updateUISlot";
     /**
      * Key constant for unsubscribe_as_viewer.
      */
@@ -157,6 +176,52 @@ public class Utils {
      */
     public static final int FPS = 40;
 
+    /**
+     * Bytes per second the video feed of a viewer group is kept under by the rate controller.
+     */
+    public static final long TARGET_BYTES_PER_SEC = 4L * 1024 * 1024;
+
+    /**
+     * Period at which captured audio is sent, matches the 20 ms chunks of AudioCapture.
+     */
+    public static final int AUDIO_PERIOD_MS = 20;
+
+    /**
+     * Number of workers encoding dirty tiles in parallel, one core is left for capture.
+     */
+    public static final int ENCODER_WORKERS = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+    /**
+     * Number of workers decoding the patches of received feeds in parallel, shared by all presenters.
+     */
+    public static final int DECODER_WORKERS = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+    /**
+     * Colour conversion used by the video codec. Only affects local encode/decode, not the wire format.
+     */
+    public static final ColorConversion COLOR_CONVERSION = ColorConversion.FIXED_POINT;
+
+    /**
+     * Frames that can be on their way to the UI at once, further frames are dropped.
+     */
+    public static final int UI_RING_SLOTS = 4;
+
+    /**
+     * Hand images to the UI through a memory-mapped ring instead of the RPC payload.
+     * Needs a UI that handles {@link #UPDATE_UI_SLOT}.
+     */
+    public static final boolean UI_SHARED_MEMORY = false;
+
+    /**
+     * Size of a slot of the shared ring, a 1080p image plus its header.
+     */
+    public static final int UI_RING_SLOT_BYTES = 1920 * 1080 * 3 + 1024;
+
+    /**
+     * Send only the changed regions of received images. Needs a UI that handles {@link #UPDATE_UI_RECTS}.
+     */
+    public static final boolean UI_DIRTY_RECTS = false;
+
     /**
      * Writes the given int to the buffer in little endian.
      * 
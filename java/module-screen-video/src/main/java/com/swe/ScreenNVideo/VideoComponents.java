@@ -15,7 +15,10 @@ import com.swe.ScreenNVideo.Model.APackets;
 import com.swe.ScreenNVideo.Model.CPackets;
 import com.swe.ScreenNVideo.Model.Feed;
 import com.swe.ScreenNVideo.Model.FeedPatch;
+import com.swe.ScreenNVideo.Model.Frame;
 import com.swe.ScreenNVideo.Model.RImage;
+import com.swe.ScreenNVideo.Playback.UiPublisher;
+import com.swe.ScreenNVideo.Telemetry.Telemetry;
 import com.swe.core.Context;
 import com.swe.core.RPCinterface.AbstractRPC;
 import com.swe.core.logging.SweLogger;
@@ -60,14 +63,14 @@ public class VideoComponents {
     private final AbstractRPC rpc;
 
     /**
-     * Keeps track of previous click.
+     * Sends the local preview to the UI through reused buffers.
      */
-    private long start = 0L;
+    private final UiPublisher uiPublisher;
 
     /**
-     * Limit the FPS at server.
+     * Time of the previous capture, used to log the server FPS.
      */
-    private final double timeDelay;
+    private long start = 0L;
 
     /**
      * Local IP address.
@@ -119,23 +122,24 @@ public class VideoComponents {
         return captureComponents.isScreenCaptureOn();
     }
 
-    VideoComponents(final int fps, final int portArgs, final CaptureComponents captureComponentsArgs,
+    VideoComponents(final int portArgs, final CaptureComponents captureComponentsArgs,
             final BackgroundCaptureManager bgCapManagerArgs) {
         this.rpc = Context.getInstance().getRpc();
         this.port = portArgs;
         this.captureComponents = captureComponentsArgs;
         this.bgCapManager = bgCapManagerArgs;
         final IHasher hasher = new Hasher(Utils.HASH_STRIDE);
-        videoCodec = new JpegCodec();
+        videoCodec = new JpegCodec(Utils.COLOR_CONVERSION);
         audioEncoder = new ADPCMEncoder();
-        patchGenerator = new PacketGenerator(videoCodec, hasher);
+        patchGenerator = new PacketGenerator(videoCodec, hasher,
+                () -> new JpegCodec(Utils.COLOR_CONVERSION), Utils.ENCODER_WORKERS);
         // initialize bounded queue and start worker thread that reads from the queue
         // and updates the UI
         this.uiQueue = new ArrayBlockingQueue<>(UI_QUEUE_CAPACITY);
+        this.uiPublisher = UiPublisher.create(rpc, "local-" + portArgs);
         final Thread uiWorkerThread = new Thread(this::uiWorkLoop, "MediaCaptureManager-UI-Worker");
         uiWorkerThread.setDaemon(true);
         uiWorkerThread.start();
-        timeDelay = (1.0 / fps) * Utils.SEC_IN_NS;
     }
 
     /**
@@ -173,15 +177,10 @@ public class VideoComponents {
                 try {
 
                     final RImage rImage = new RImage(frame, localIp, 0);
-                    final byte[] serializedImage = rImage.serialize();
-
-                    if (serializedImage == null) {
-                        continue;
-                    }
                     // LOG.info("Time from previous send: " + (System.nanoTime() - prev)
                     // / ((double) Utils.MSEC_IN_NS));
                     try {
-                        rpc.call(Utils.UPDATE_UI, serializedImage);
+                        uiPublisher.publish(rImage);
                     } catch (final Exception e) {
                         LOG.error("Video component failure", e);
                     }
@@ -202,6 +201,28 @@ public class VideoComponents {
         return videoCodec;
     }
 
+    /**
+     * Sets which feed variants the viewers subscribe to, so unused ones are not encoded.
+     *
+     * @param compressed whether any viewer wants the compressed feed
+     * @param unCompressed whether any viewer wants the uncompressed feed
+     */
+    public void setRequiredVariants(final boolean compressed, final boolean unCompressed) {
+        patchGenerator.setRequiredVariants(compressed, unCompressed);
+    }
+
+    /**
+     * Sets the quality of the compressed feed and the share of the tile grid sent per diff frame.
+     * Called from the capture thread between two frames.
+     *
+     * @param quality quality factor from 1 to 99
+     * @param tileBudget share (percent) of the tile grid sent per diff frame
+     */
+    public void setOperatingPoint(final int quality, final int tileBudget) {
+        patchGenerator.setQuality(quality);
+        patchGenerator.setTileBudget(tileBudget);
+    }
+
     /**
      * Previous time stamp.
      */
@@ -262,15 +283,13 @@ public class VideoComponents {
     /**
      * Captures the Video using CaptureComponents, handles overlay ,diffing and
      * converting it to bytes .
+     * Pacing is up to the caller, every call captures a frame.
      *
      * @return encoded Patches to be sent through the network
      */
     protected Feed captureScreenNVideo() {
         final long currTime = System.nanoTime();
         final long diff = currTime - start;
-        if (diff < timeDelay) {
-            return null;
-        }
         // LOG.info("Time Delay " + ((currTime - prev)
         // / ((double) Utils.MSEC_IN_NS)) + " " + (diff / ((double) Utils.MSEC_IN_NS)));
         start = System.nanoTime();
@@ -300,8 +319,14 @@ public class VideoComponents {
         videoCodec.setDctTime(0);
         videoCodec.setZigZagTime(0);
 
-        final FeedPatch patches = patchGenerator.generatePackets(newFeed);
+        // single copy into a flat frame, tiles are then hashed and encoded without per-row lookups
+        final FeedPatch patches = patchGenerator.generateFramePackets(Frame.fromMatrix(newFeed));
         runCount++;
+        if (!patches.compressedPatches().isEmpty() || !patches.unCompressedPatches().isEmpty()) {
+            Telemetry.getTelemetry().addEncodeStats(
+                    patchGenerator.getLastEncodeTime() / ((double) Utils.MSEC_IN_NS),
+                    patchGenerator.getLastWorkerUtilisation());
+        }
 
         // update the feed
         feed = newFeed;
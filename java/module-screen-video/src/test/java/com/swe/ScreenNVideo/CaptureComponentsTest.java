@@ -390,7 +390,7 @@ public class CaptureComponentsTest {
         verify(mockAddSynchron).apply(REMOTE_IP, true);
 
         // Verify networking sent data
-        verify(mockNetworking).sendData(any(), any(ClientNode[].class), anyInt(), eq(2));
+        verify(mockNetworking).sendData(any(), any(ClientNode[].class), anyInt(), eq(Utils.CONTROL_PRIORITY));
     }
 
     /**
@@ -425,7 +425,7 @@ public class CaptureComponentsTest {
         unsubscribeHandler.apply(new byte[]{0});
 
         // Verify networking sent the unsubscribe packet
-        verify(mockNetworking).sendData(any(), any(ClientNode[].class), eq(ModuleType.SCREENSHARING.ordinal()), eq(2));
+        verify(mockNetworking).sendData(any(), any(ClientNode[].class), eq(ModuleType.SCREENSHARING.ordinal()), eq(Utils.CONTROL_PRIORITY));
     }
 
     /**
@@ -273,6 +273,47 @@ public class EncodeDecodeRLEHuffmanTest {
             "Decoded matrix should match original matrix across 2 blocks");
     }
 
+    @Test
+    @DisplayName("Test bit stream matches the standard JPEG codes")
+    public void testKnownBitStream() {
+        short[][] originalMatrix = new short[8][8];
+        originalMatrix[0][0] = 5;
+        originalMatrix[0][1] = -1;
+
+        ByteBuffer encodedBuffer = ByteBuffer.allocate(64);
+        codec.zigZagRLE(originalMatrix, encodedBuffer);
+        encodedBuffer.flip();
+
+        // DC: category 3 "100" + "101", AC: symbol 0x01 "00" + "0", EOB "1010", padded with 1s
+        final byte[] expected = {0, 8, 0, 8, 0, 0, 0, 2, (byte) 0x94, 0x57};
+        final byte[] actual = new byte[encodedBuffer.remaining()];
+        encodedBuffer.get(actual);
+        assertArrayEquals(expected, actual, "Bit stream should match the standard tables");
+    }
+
+    @Test
+    @DisplayName("Test codes longer than the first level decode table")
+    public void testLongCodes() {
+        short[][] originalMatrix = new short[8][16];
+        // Long zero runs, ZRL and large categories give codes of up to 16 bits
+        originalMatrix[0][0] = -1000;
+        originalMatrix[7][7] = 1000;
+        originalMatrix[3][4] = -700;
+        originalMatrix[0][8] = 1000;
+        originalMatrix[7][14] = -3;
+        originalMatrix[6][15] = 513;
+
+        ByteBuffer encodedBuffer = ByteBuffer.allocate(1024);
+        codec.zigZagRLE(originalMatrix, encodedBuffer);
+        final int encodedSize = encodedBuffer.position();
+        encodedBuffer.flip();
+
+        short[][] decodedMatrix = codec.revZigZagRLE(encodedBuffer);
+
+        assertEquals(encodedSize, encodedBuffer.position(), "Decoder should consume the whole bit stream");
+        assertMatrixEquals(originalMatrix, decodedMatrix, "Long codes should encode and decode correctly");
+    }
+
     /**
      * Helper method to print a matrix for visual verification
      */
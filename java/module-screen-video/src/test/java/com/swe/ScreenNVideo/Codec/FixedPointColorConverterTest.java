@@ -0,0 +1,106 @@
+/**
+ * Contributed by @chirag9528
+ */
+
+package com.swe.ScreenNVideo.Codec;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that the fixed-point colour conversion stays within one level of the floating point one.
+ */
+public class FixedPointColorConverterTest {
+
+    private static final int HEIGHT = 64;
+    private static final int WIDTH = 96;
+    private static final int MASK = 0xFF;
+
+    private final IColorConverter floating = new FloatColorConverter();
+    private final IColorConverter fixed = new FixedPointColorConverter();
+
+    private static short[][][] newPlanes() {
+        return new short[][][] {new short[HEIGHT][WIDTH], new short[HEIGHT / 2][WIDTH / 2],
+            new short[HEIGHT / 2][WIDTH / 2]};
+    }
+
+    private static int[] randomPixels(final long seed) {
+        final Random random = new Random(seed);
+        final int[] pixels = new int[HEIGHT * WIDTH];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt();
+        }
+        return pixels;
+    }
+
+    private static void toYCbCr(final IColorConverter converter, final int[] pixels, final short[][][] planes) {
+        for (int i = 0; i < HEIGHT; i += 2) {
+            converter.toYCbCr(pixels, i * WIDTH, pixels, (i + 1) * WIDTH, WIDTH, i, planes);
+        }
+    }
+
+    private static int[] toArgb(final IColorConverter converter, final short[][][] planes) {
+        final int[] pixels = new int[HEIGHT * WIDTH];
+        for (int i = 0; i < HEIGHT; i += 2) {
+            converter.toArgb(planes, i, pixels, i * WIDTH, pixels, (i + 1) * WIDTH);
+        }
+        return pixels;
+    }
+
+    @Test
+    public void testRgbToYCbCrWithinOneLevel() {
+        final int[] pixels = randomPixels(1);
+        final short[][][] expected = newPlanes();
+        final short[][][] actual = newPlanes();
+        toYCbCr(floating, pixels, expected);
+        toYCbCr(fixed, pixels, actual);
+
+        for (int p = 0; p < expected.length; p++) {
+            for (int i = 0; i < expected[p].length; i++) {
+                for (int j = 0; j < expected[p][0].length; j++) {
+                    assertTrue(Math.abs(expected[p][i][j] - actual[p][i][j]) <= 1,
+                        "plane " + p + " at " + i + "," + j);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testYCbCrToRgbWithinOneLevel() {
+        final short[][][] planes = newPlanes();
+        toYCbCr(floating, randomPixels(2), planes);
+        final int[] expected = toArgb(floating, planes);
+        final int[] actual = toArgb(fixed, planes);
+
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i] >>> 24, actual[i] >>> 24, "alpha at " + i);
+            for (int shift = 0; shift <= 16; shift += 8) {
+                final int e = (expected[i] >> shift) & MASK;
+                final int a = (actual[i] >> shift) & MASK;
+                assertTrue(Math.abs(e - a) <= 1, "channel " + shift + " at " + i);
+            }
+        }
+    }
+
+    @Test
+    public void testGreysAreExact() {
+        final int[] pixels = new int[HEIGHT * WIDTH];
+        for (int i = 0; i < pixels.length; i++) {
+            final int v = i & MASK;
+            pixels[i] = 0xFF000000 | (v << 16) | (v << 8) | v;
+        }
+        final short[][][] planes = newPlanes();
+        toYCbCr(fixed, pixels, planes);
+        for (int i = 0; i < HEIGHT; i++) {
+            for (int j = 0; j < WIDTH; j++) {
+                assertEquals((pixels[i * WIDTH + j] & MASK) - 128, planes[0][i][j]);
+            }
+        }
+        assertEquals(0, planes[1][0][0]);
+        assertEquals(0, planes[2][0][0]);
+    }
+}
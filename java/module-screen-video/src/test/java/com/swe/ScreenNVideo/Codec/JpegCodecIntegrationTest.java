@@ -6,6 +6,7 @@ package com.swe.ScreenNVideo.Codec;
 
 import com.swe.ScreenNVideo.PatchGenerator.CompressedPatch;
 import com.swe.ScreenNVideo.Model.CPackets;
+import com.swe.ScreenNVideo.Model.Frame;
 import com.swe.ScreenNVideo.Synchronizer.ImageSynchronizer;
 import com.swe.ScreenNVideo.Utils;
 import org.junit.jupiter.api.Test;
@@ -14,6 +15,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -169,7 +171,14 @@ public class JpegCodecIntegrationTest {
 
                 
                 // Encode this tile (note: encode parameters are: screenshot, topLeftX, topLeftY, height, width, compress)
-                final byte[] compressedData = codec.encode(matrix, x, y, h, w).get(0);
+                // the compressed variant starts with its quality, pick the one matching toCompress
+                final List<byte[]> variants = codec.encode(matrix, x, y, h, w);
+                final byte[] compressedData;
+                if (toCompress) {
+                    compressedData = variants.get(0);
+                } else {
+                    compressedData = variants.get(1);
+                }
                 
                 patches.add(new CompressedPatch(x, y, w, h, compressedData));
             }
@@ -366,5 +375,32 @@ public class JpegCodecIntegrationTest {
         // expect failure
 //        throw new AssertionError("Didn't failed");
     }
-}
 
+    /**
+     * Test that decoding a feed across workers gives the same frame as the serial path.
+     */
+    @Test
+    public void testParallelSynchronizeMatchesSerial() {
+        final int width = 320;
+        final int height = 240;
+        final JpegCodec codec = new JpegCodec();
+        final ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            final ImageSynchronizer serial = new ImageSynchronizer(codec);
+            final ImageSynchronizer parallel = new ImageSynchronizer(new JpegCodec(), JpegCodec::new, pool, 3);
+
+            for (int feedNumber = 0; feedNumber < 3; feedNumber++) {
+                final boolean toCompress = feedNumber % 2 == 0;
+                final List<CompressedPatch> patches = encodeTilesWithoutHashing(
+                    createRandomMatrix(height, width), codec, toCompress);
+                assertTrue(patches.size() >= 8, "feed should take the parallel path");
+
+                final Frame expected = serial.synchronizeFrame(height, width, patches, toCompress);
+                final Frame actual = parallel.synchronizeFrame(height, width, patches, toCompress);
+                assertArrayEquals(expected.toMatrix(), actual.toMatrix(), "feed " + feedNumber);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -4,11 +4,16 @@
 
 package com.swe.ScreenNVideo.Codec;
 
+import com.swe.ScreenNVideo.Model.Frame;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -549,6 +554,119 @@ public class JpegCodecTest {
         return image;
     }
 
+    /**
+     * Tests that encoding a single variant skips the other and matches the dual encode byte for byte.
+     */
+    @Test
+    public void testEncodeSingleVariant() {
+        final int[][] image = createMixedColorImage(LARGE_DIM, LARGE_DIM);
+        final List<byte[]> both = codec.encode(image, TOP_LEFT_ZERO, TOP_LEFT_ZERO, LARGE_DIM, LARGE_DIM);
+
+        final List<byte[]> onlyCompressed =
+                codec.encode(image, TOP_LEFT_ZERO, TOP_LEFT_ZERO, LARGE_DIM, LARGE_DIM, true, false);
+        assertArrayEquals(both.get(0), onlyCompressed.get(0));
+        assertNull(onlyCompressed.get(1));
+
+        final List<byte[]> onlyUnCompressed =
+                codec.encode(image, TOP_LEFT_ZERO, TOP_LEFT_ZERO, LARGE_DIM, LARGE_DIM, false, true);
+        assertNull(onlyUnCompressed.get(0));
+        assertArrayEquals(both.get(1), onlyUnCompressed.get(1));
+    }
+
+    /**
+     * Test that encoding a tile of a flat frame gives the same bytes as the matrix path,
+     * and that decoding into a frame gives the same pixels.
+     */
+    @Test
+    public void testFrameEncodeDecodeMatchesMatrix() {
+        final int[][] image = createGradientImage(LARGE_DIM * 2, LARGE_DIM * 2);
+        final Frame frame = Frame.fromMatrix(image);
+
+        final List<byte[]> fromMatrix =
+                codec.encode(image, LARGE_DIM, LARGE_DIM, LARGE_DIM, LARGE_DIM);
+        final List<byte[]> fromFrame =
+                codec.encodeFrame(frame, LARGE_DIM, LARGE_DIM, LARGE_DIM, LARGE_DIM, true, true);
+        assertArrayEquals(fromMatrix.get(0), fromFrame.get(0));
+        assertArrayEquals(fromMatrix.get(1), fromFrame.get(1));
+
+        final int[][] decoded = codec.decode(fromMatrix.get(0), true);
+        assertArrayEquals(decoded, codec.decodeFrame(fromMatrix.get(0), true).toMatrix());
+    }
+
+    /**
+     * Tests that the fixed-point colour conversion round trips at least as well as floating point.
+     */
+    @Test
+    public void testFixedPointColorConversionPsnrParity() {
+        final int[][] image = createGradientImage(LARGE_DIM * 2, LARGE_DIM * 2);
+        final JpegCodec fixedCodec = new JpegCodec(ColorConversion.FIXED_POINT);
+
+        for (final boolean compress : new boolean[] {true, false}) {
+            final int index;
+            if (compress) {
+                index = 0;
+            } else {
+                index = 1;
+            }
+            final byte[] floatEncoded = codec.encode(image, TOP_LEFT_ZERO, TOP_LEFT_ZERO,
+                    LARGE_DIM * 2, LARGE_DIM * 2).get(index);
+            final byte[] fixedEncoded = fixedCodec.encode(image, TOP_LEFT_ZERO, TOP_LEFT_ZERO,
+                    LARGE_DIM * 2, LARGE_DIM * 2).get(index);
+
+            final double floatPsnr = psnr(image, codec.decode(floatEncoded, compress));
+            final double fixedPsnr = psnr(image, fixedCodec.decode(fixedEncoded, compress));
+            assertTrue(fixedPsnr > floatPsnr - 0.1, "PSNR float " + floatPsnr + " vs fixed " + fixedPsnr);
+        }
+    }
+
+    /**
+     * Tests that the quality travels with the compressed data, so any codec decodes it with the sender's tables.
+     */
+    @Test
+    public void testQualityIsCarriedInCompressedData() {
+        final int[][] image = createGradientImage(LARGE_DIM * 2, LARGE_DIM * 2);
+        final byte[] high = codec.encode(image, TOP_LEFT_ZERO, TOP_LEFT_ZERO, LARGE_DIM * 2, LARGE_DIM * 2).get(0);
+        codec.setQuality(QUALITY_LOW);
+        final List<byte[]> low = codec.encode(image, TOP_LEFT_ZERO, TOP_LEFT_ZERO, LARGE_DIM * 2, LARGE_DIM * 2);
+
+        assertEquals(QUALITY_LOW, codec.getQuality());
+        assertEquals(QUALITY_LOW, low.get(0)[0]);
+        assertTrue(low.get(0).length < high.length, "low " + low.get(0).length + " vs high " + high.length);
+
+        // a receiver left at the default quality
+        final JpegCodec receiver = new JpegCodec();
+        final int[][] decodedLow = receiver.decode(low.get(0), true);
+        assertArrayEquals(codec.decode(low.get(0), true), decodedLow);
+        final double lowPsnr = psnr(image, decodedLow);
+        final double highPsnr = psnr(image, receiver.decode(high, true));
+        assertTrue(lowPsnr > QUALITY_LOW && lowPsnr < highPsnr, "PSNR low " + lowPsnr + " vs high " + highPsnr);
+
+        // the uncompressed variant has no quality
+        assertArrayEquals(receiver.encode(image, TOP_LEFT_ZERO, TOP_LEFT_ZERO, LARGE_DIM * 2, LARGE_DIM * 2).get(1),
+                low.get(1));
+    }
+
+    /**
+     * Peak signal to noise ratio over the RGB channels.
+     *
+     * @param original original image
+     * @param decoded decoded image
+     * @return PSNR in dB
+     */
+    private double psnr(final int[][] original, final int[][] decoded) {
+        double squaredError = 0;
+        for (int i = 0; i < original.length; i++) {
+            for (int j = 0; j < original[0].length; j++) {
+                for (int shift = 0; shift <= RED_SHIFT; shift += GREEN_SHIFT) {
+                    final int diff = ((original[i][j] >> shift) & COLOR_MASK) - ((decoded[i][j] >> shift) & COLOR_MASK);
+                    squaredError += diff * diff;
+                }
+            }
+        }
+        final double mse = squaredError / (original.length * original[0].length * 3);
+        return 10 * Math.log10(COLOR_MASK * COLOR_MASK / Math.max(mse, 1e-9));
+    }
+
     /**
      * Helper method to verify image similarity within delta.
      *
@@ -0,0 +1,150 @@
+/**
+ * Contributed by @alonot.
+ */
+package com.swe.ScreenNVideo;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for FramePacer.
+ */
+public class FramePacerTest {
+
+    /**
+     * Period used by the tests, 10 ms.
+     */
+    private static final long PERIOD = 10_000_000L;
+
+    /**
+     * Tests that runs follow the absolute schedule instead of accumulating the task time.
+     */
+    @Test
+    public void testRunsAtPeriodWithoutDrift() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        final FramePacer[] pacer = new FramePacer[1];
+        pacer[0] = new FramePacer(PERIOD, () -> {
+            // task takes a good share of the period, a relative sleep would drift by it every run
+            busyWait(PERIOD / 2);
+            if (runs.incrementAndGet() == 20) {
+                pacer[0].stop();
+            }
+        }, skipped -> { });
+
+        final long start = System.nanoTime();
+        pacer[0].run();
+        final long elapsed = System.nanoTime() - start;
+
+        assertEquals(20, pacer[0].getTicks());
+        // 19 full periods between the first and the last run plus the last run itself
+        assertTrue(elapsed >= 19 * PERIOD, "ran too fast: " + elapsed);
+        assertTrue(elapsed < 19 * PERIOD + PERIOD * 10, "drifted: " + elapsed);
+    }
+
+    /**
+     * Tests that an overrun skips the missed deadlines and reports them.
+     */
+    @Test
+    public void testOverrunSkipsMissedDeadlines() throws Exception {
+        final List<Long> reported = new ArrayList<>();
+        final AtomicInteger runs = new AtomicInteger();
+        final FramePacer[] pacer = new FramePacer[1];
+        pacer[0] = new FramePacer(PERIOD, () -> {
+            final int run = runs.incrementAndGet();
+            if (run == 1) {
+                // misses the next 3 deadlines entirely and part of the 4th
+                busyWait(PERIOD * 4 + PERIOD / 2);
+            }
+            if (run == 3) {
+                pacer[0].stop();
+            }
+        }, reported::add);
+
+        pacer[0].run();
+
+        assertEquals(3, pacer[0].getTicks());
+        assertEquals(1, pacer[0].getOverruns());
+        assertEquals(3, pacer[0].getSkipped());
+        assertEquals(List.of(3L), reported);
+    }
+
+    /**
+     * Tests that interrupting the pacing thread ends the run.
+     */
+    @Test
+    public void testInterruptStopsRun() {
+        final FramePacer pacer = new FramePacer(PERIOD, () -> Thread.currentThread().interrupt(), skipped -> { });
+
+        assertThrows(InterruptedException.class, pacer::run);
+        assertEquals(1, pacer.getTicks());
+    }
+
+    /**
+     * Tests pacing on a background thread.
+     */
+    @Test
+    public void testStartAndStop() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        final FramePacer pacer = new FramePacer(PERIOD, runs::incrementAndGet, skipped -> { });
+
+        pacer.start("pacer-test");
+        Thread.sleep(PERIOD * 5 / 1_000_000);
+        pacer.stop();
+        Thread.sleep(PERIOD * 3 / 1_000_000);
+        final int stoppedAt = runs.get();
+        Thread.sleep(PERIOD * 3 / 1_000_000);
+
+        assertTrue(stoppedAt >= 1, "pacer did not run");
+        assertEquals(stoppedAt, runs.get(), "pacer kept running after stop");
+    }
+
+    /**
+     * Tests that a new period applies from the next deadline.
+     */
+    @Test
+    public void testSetPeriodFromTask() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        final FramePacer[] pacer = new FramePacer[1];
+        pacer[0] = new FramePacer(PERIOD * 20, () -> {
+            final int run = runs.incrementAndGet();
+            if (run == 1) {
+                pacer[0].setPeriod(PERIOD);
+            }
+            if (run == 10) {
+                pacer[0].stop();
+            }
+        }, skipped -> { });
+
+        final long start = System.nanoTime();
+        pacer[0].run();
+        final long elapsed = System.nanoTime() - start;
+
+        assertEquals(PERIOD, pacer[0].getPeriod());
+        assertTrue(elapsed >= 9 * PERIOD, "ran too fast: " + elapsed);
+        assertTrue(elapsed < PERIOD * 20, "old period still used: " + elapsed);
+        assertThrows(IllegalArgumentException.class, () -> pacer[0].setPeriod(-1));
+    }
+
+    /**
+     * Tests that the period must be positive.
+     */
+    @Test
+    public void testRejectsNonPositivePeriod() {
+        assertThrows(IllegalArgumentException.class, () -> new FramePacer(0, () -> { }, skipped -> { }));
+        assertEquals(Utils.SEC_IN_NS / 40, FramePacer.periodOf(40));
+    }
+
+    private static void busyWait(final long nanos) {
+        final long end = System.nanoTime() + nanos;
+        while (System.nanoTime() < end) {
+            Thread.onSpinWait();
+        }
+    }
+}
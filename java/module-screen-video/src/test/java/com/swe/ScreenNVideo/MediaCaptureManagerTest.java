@@ -5,6 +5,7 @@
 package com.swe.ScreenNVideo;
 
 import com.swe.ScreenNVideo.Capture.BackgroundCaptureManager;
+import com.swe.ScreenNVideo.Codec.QuantisationUtil;
 import com.swe.ScreenNVideo.Model.APackets;
 import com.swe.ScreenNVideo.Model.CPackets;
 import com.swe.ScreenNVideo.Model.Feed;
@@ -12,8 +13,10 @@ import com.swe.ScreenNVideo.Model.IPPacket;
 import com.swe.ScreenNVideo.Model.NetworkPacketType;
 import com.swe.ScreenNVideo.Model.RImage;
 import com.swe.ScreenNVideo.Model.Viewer;
+import com.swe.ScreenNVideo.Model.ViewerFeedback;
 import com.swe.ScreenNVideo.PatchGenerator.CompressedPatch;
 import com.swe.ScreenNVideo.Playback.AudioPlayer;
+import com.swe.ScreenNVideo.RateControl.RateController;
 import com.swe.ScreenNVideo.Synchronizer.AudioSynchronizer;
 import com.swe.ScreenNVideo.Synchronizer.FeedData;
 import com.swe.ScreenNVideo.Synchronizer.ImageSynchronizer;
@@ -204,7 +207,7 @@ public class MediaCaptureManagerTest {
         mediaCaptureManager.broadcastJoinMeeting();
 
         final ArgumentCaptor<byte[]> dataCaptor = ArgumentCaptor.forClass(byte[].class);
-        verify(mockNetworking).broadcast(dataCaptor.capture(), eq(ModuleType.SCREENSHARING.ordinal()), eq(2));
+        verify(mockNetworking).broadcast(dataCaptor.capture(), eq(ModuleType.SCREENSHARING.ordinal()), eq(Utils.CONTROL_PRIORITY));
         assertNotNull(dataCaptor.getValue());
     }
 
@@ -273,6 +276,26 @@ public class MediaCaptureManagerTest {
         assertFalse(viewer.isRequireCompressed());
     }
 
+    /**
+     * Tests that only the feed variants with viewers are requested from the video pipeline.
+     */
+    @Test
+    public void testRequiredVariantsFollowViewers() throws Exception {
+        final Method addParticipantMethod = MediaCaptureManager.class.getDeclaredMethod("addParticipant", String.class, boolean.class);
+        addParticipantMethod.setAccessible(true);
+        final Method removeViewerMethod = MediaCaptureManager.class.getDeclaredMethod("removeViewer", String.class);
+        removeViewerMethod.setAccessible(true);
+
+        addParticipantMethod.invoke(mediaCaptureManager, REMOTE_IP, true);
+        verify(mockVideoComponents).setRequiredVariants(true, false);
+
+        addParticipantMethod.invoke(mediaCaptureManager, REMOTE_IP_2, false);
+        verify(mockVideoComponents).setRequiredVariants(true, true);
+
+        removeViewerMethod.invoke(mediaCaptureManager, REMOTE_IP);
+        verify(mockVideoComponents).setRequiredVariants(false, true);
+    }
+
     /**
      * Tests removeViewer removes all associated data.
      */
@@ -302,9 +325,9 @@ public class MediaCaptureManagerTest {
      */
     @Test
     public void testSendDataToViewers_NullFeed() throws Exception {
-        final Method sendDataToViewersMethod = MediaCaptureManager.class.getDeclaredMethod("sendDataToViewers", byte[].class, java.util.function.Predicate.class);
+        final Method sendDataToViewersMethod = MediaCaptureManager.class.getDeclaredMethod("sendDataToViewers", byte[].class, java.util.function.Predicate.class, int.class);
         sendDataToViewersMethod.setAccessible(true);
-        sendDataToViewersMethod.invoke(mediaCaptureManager, (byte[]) null, (java.util.function.Predicate<Viewer>) v -> true);
+        sendDataToViewersMethod.invoke(mediaCaptureManager, (byte[]) null, (java.util.function.Predicate<Viewer>) v -> true, Utils.FRAME_PRIORITY);
 
         verify(mockNetworking, never()).sendData(any(), any(), anyInt(), anyInt());
     }
@@ -315,9 +338,9 @@ public class MediaCaptureManagerTest {
     @Test
     public void testSendDataToViewers_EmptyViewers() throws Exception {
         final byte[] testData = new byte[]{1, 2, 3};
-        final Method sendDataToViewersMethod = MediaCaptureManager.class.getDeclaredMethod("sendDataToViewers", byte[].class, java.util.function.Predicate.class);
+        final Method sendDataToViewersMethod = MediaCaptureManager.class.getDeclaredMethod("sendDataToViewers", byte[].class, java.util.function.Predicate.class, int.class);
         sendDataToViewersMethod.setAccessible(true);
-        sendDataToViewersMethod.invoke(mediaCaptureManager, testData, (java.util.function.Predicate<Viewer>) v -> true);
+        sendDataToViewersMethod.invoke(mediaCaptureManager, testData, (java.util.function.Predicate<Viewer>) v -> true, Utils.FRAME_PRIORITY);
 
         verify(mockNetworking, never()).sendData(any(), any(), anyInt(), anyInt());
     }
@@ -334,14 +357,14 @@ public class MediaCaptureManagerTest {
         addParticipantMethod.invoke(mediaCaptureManager, REMOTE_IP_2, false);
 
         final byte[] testData = new byte[]{1, 2, 3};
-        final Method sendDataToViewersMethod = MediaCaptureManager.class.getDeclaredMethod("sendDataToViewers", byte[].class, java.util.function.Predicate.class);
+        final Method sendDataToViewersMethod = MediaCaptureManager.class.getDeclaredMethod("sendDataToViewers", byte[].class, java.util.function.Predicate.class, int.class);
         sendDataToViewersMethod.setAccessible(true);
         
         // Send only to compressed viewers
-        sendDataToViewersMethod.invoke(mediaCaptureManager, testData, (java.util.function.Predicate<Viewer>) Viewer::isRequireCompressed);
+        sendDataToViewersMethod.invoke(mediaCaptureManager, testData, (java.util.function.Predicate<Viewer>) Viewer::isRequireCompressed, Utils.FRAME_PRIORITY);
 
         final ArgumentCaptor<ClientNode[]> nodesCaptor = ArgumentCaptor.forClass(ClientNode[].class);
-        verify(mockNetworking).sendData(eq(testData), nodesCaptor.capture(), eq(ModuleType.SCREENSHARING.ordinal()), eq(2));
+        verify(mockNetworking).sendData(eq(testData), nodesCaptor.capture(), eq(ModuleType.SCREENSHARING.ordinal()), eq(Utils.FRAME_PRIORITY));
         assertEquals(1, nodesCaptor.getValue().length);
     }
 
@@ -425,6 +448,24 @@ public class MediaCaptureManagerTest {
         assertFalse(viewers.containsKey(REMOTE_IP));
     }
 
+    /**
+     * Tests that feedback of a viewer moves its group's operating point and unknown viewers are ignored.
+     */
+    @Test
+    public void testClientHandler_ViewerFeedback() throws Exception {
+        final Method addParticipantMethod = MediaCaptureManager.class.getDeclaredMethod("addParticipant", String.class, boolean.class);
+        addParticipantMethod.setAccessible(true);
+        addParticipantMethod.invoke(mediaCaptureManager, REMOTE_IP, true);
+
+        final MediaCaptureManager.ClientHandler handler = getField(mediaCaptureManager, "clientHandler");
+        handler.receiveData(new ViewerFeedback(REMOTE_IP_2, false, 0, 0, 5).serialize());
+        handler.receiveData(new ViewerFeedback(REMOTE_IP, true, 0, 0, 5).serialize());
+
+        final RateController rateController = getField(mediaCaptureManager, "rateController");
+        assertTrue(rateController.getOperatingPoint(true).quality() < QuantisationUtil.MAX_QUALITY);
+        assertEquals(QuantisationUtil.MAX_QUALITY, rateController.getOperatingPoint(false).quality());
+    }
+
     /**
      * Tests ClientHandler handles APACKETS packet.
      */
@@ -460,7 +501,7 @@ public class MediaCaptureManagerTest {
         askForFullImageMethod.invoke(handler, REMOTE_IP, true);
 
         final ArgumentCaptor<byte[]> dataCaptor = ArgumentCaptor.forClass(byte[].class);
-        verify(mockNetworking).sendData(dataCaptor.capture(), any(ClientNode[].class), eq(ModuleType.SCREENSHARING.ordinal()), eq(2));
+        verify(mockNetworking).sendData(dataCaptor.capture(), any(ClientNode[].class), eq(ModuleType.SCREENSHARING.ordinal()), eq(Utils.CONTROL_PRIORITY));
         assertNotNull(dataCaptor.getValue());
     }
 
@@ -478,7 +519,7 @@ public class MediaCaptureManagerTest {
         addUserNFullImageRequestMethod.setAccessible(true);
         addUserNFullImageRequestMethod.invoke(handler, REMOTE_IP, false);
 
-        verify(mockNetworking).sendData(any(byte[].class), any(ClientNode[].class), eq(ModuleType.SCREENSHARING.ordinal()), eq(2));
+        verify(mockNetworking).sendData(any(byte[].class), any(ClientNode[].class), eq(ModuleType.SCREENSHARING.ordinal()), eq(Utils.CONTROL_PRIORITY));
     }
 
     /**
@@ -0,0 +1,77 @@
+/**
+ * Contributed by @alonot.
+ */
+
+package com.swe.ScreenNVideo.Model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for the flat-array Frame.
+ */
+class FrameTest {
+
+    private int[][] createMatrix(final int h, final int w) {
+        final int[][] matrix = new int[h][w];
+        for (int i = 0; i < h; i++) {
+            for (int j = 0; j < w; j++) {
+                matrix[i][j] = i * 100 + j;
+            }
+        }
+        return matrix;
+    }
+
+    @Test
+    void testFromMatrixRoundTrip() {
+        final int[][] matrix = createMatrix(3, 5);
+        final Frame frame = Frame.fromMatrix(matrix);
+
+        assertEquals(3, frame.getHeight());
+        assertEquals(5, frame.getWidth());
+        assertEquals(5, frame.getStride());
+        assertEquals(204, frame.get(2, 4));
+        assertArrayEquals(matrix, frame.toMatrix());
+    }
+
+    @Test
+    void testWrapSharesArray() {
+        final int[] data = new int[6];
+        final Frame frame = Frame.wrap(data, 2, 3);
+        frame.set(1, 2, 7);
+
+        assertSame(data, frame.getPixels());
+        assertEquals(7, data[5]);
+        assertThrows(IllegalArgumentException.class, () -> Frame.wrap(data, 3, 3));
+    }
+
+    @Test
+    void testTileIsView() {
+        final Frame frame = Frame.fromMatrix(createMatrix(4, 6));
+        final Frame tile = frame.tile(2, 1, 3, 2);
+
+        assertEquals(2, tile.getHeight());
+        assertEquals(3, tile.getWidth());
+        assertEquals(6, tile.getStride());
+        assertEquals(102, tile.get(0, 0));
+        assertEquals(204, tile.get(1, 2));
+        assertArrayEquals(new int[][] {{102, 103, 104}, {202, 203, 204}}, tile.toMatrix());
+
+        tile.set(0, 0, -1);
+        assertEquals(-1, frame.get(1, 2), "Tile writes must land in the parent frame");
+        assertThrows(IndexOutOfBoundsException.class, () -> frame.tile(4, 0, 3, 2));
+    }
+
+    @Test
+    void testCopyToClipsToSmallerFrame() {
+        final Frame src = Frame.fromMatrix(createMatrix(3, 3));
+        final Frame dst = new Frame(2, 4);
+        src.copyTo(dst);
+
+        assertArrayEquals(new int[][] {{0, 1, 2, 0}, {100, 101, 102, 0}}, dst.toMatrix());
+    }
+}
@@ -8,6 +8,7 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
 import java.nio.ByteBuffer;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -88,4 +89,71 @@ class RImageTest {
         // Ensure no extra bytes are left
         assertFalse(buffer.hasRemaining(), "Buffer should be fully consumed");
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Serialize() of a frame backed image should match the matrix layout")
+    void testSerializeFrameMatchesMatrix() {
+        int[][] image = {{0xFF0000, 0x00FF00, 0x0000FF}, {0x123456, 0x654321, 0xABCDEF}};
+        Frame tile = Frame.fromMatrix(new int[][] {{0, 0, 0, 0}, {0, 0xFF0000, 0x00FF00, 0x0000FF},
+            {0, 0x123456, 0x654321, 0xABCDEF}}).tile(1, 1, 3, 2);
+
+        byte[] expected = new RImage(image, "10.0.0.1", 42L).serialize();
+        RImage frameImage = new RImage(tile, "10.0.0.1", 42L);
+
+        assertArrayEquals(expected, frameImage.serialize());
+        assertSame(tile, frameImage.getFrame());
+        assertArrayEquals(image, frameImage.getImage());
+    }
+
+    @Test
+    @DisplayName("serializeInto() a direct buffer should match serialize()")
+    void testSerializeIntoDirectBuffer() {
+        int[][] image = {{0xFF0000, 0x00FF00}, {0x0000FF, 0x123456}};
+        RImage rImage = new RImage(image, "10.0.0.1", 7L);
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(rImage.serializedLength());
+        rImage.serializeInto(direct);
+        assertFalse(direct.hasRemaining(), "serializedLength() should be exact");
+
+        byte[] written = new byte[direct.capacity()];
+        direct.flip().get(written);
+        assertArrayEquals(rImage.serialize(), written);
+    }
+
+    @Test
+    @DisplayName("Dirty rectangles should carry only the clipped regions")
+    void testSerializeDirtyRects() {
+        int[][] image = {{1, 2, 3}, {4, 5, 6}};
+        RImage rImage = new RImage(image, "1.2.3.4", 0L)
+            .withDirtyRects(List.of(new DirtyRect(1, 0, 8, 1), new DirtyRect(0, 1, 1, 1)));
+
+        ByteBuffer buffer = ByteBuffer.wrap(rImage.serialize());
+        buffer.position(Integer.BYTES + "1.2.3.4".length() + Long.BYTES);
+        assertEquals(2, buffer.getInt(), "Height");
+        assertEquals(3, buffer.getInt(), "Width");
+        assertEquals(2, buffer.getInt(), "Rect count");
+
+        // first rect clipped to the two remaining columns
+        assertEquals(1, buffer.getInt());
+        assertEquals(0, buffer.getInt());
+        assertEquals(2, buffer.getInt());
+        assertEquals(1, buffer.getInt());
+        for (int pixel : new int[] {2, 3}) {
+            assertEquals(0, buffer.get());
+            assertEquals(0, buffer.get());
+            assertEquals((byte) pixel, buffer.get());
+        }
+
+        assertEquals(0, buffer.getInt());
+        assertEquals(1, buffer.getInt());
+        assertEquals(1, buffer.getInt());
+        assertEquals(1, buffer.getInt());
+        assertEquals(0, buffer.get());
+        assertEquals(0, buffer.get());
+        assertEquals(4, buffer.get());
+        assertFalse(buffer.hasRemaining(), "Buffer should be fully consumed");
+
+        assertNull(rImage.asFullImage().getDirtyRects());
+        assertArrayEquals(new RImage(image, "1.2.3.4", 0L).serialize(), rImage.asFullImage().serialize());
+    }
+}
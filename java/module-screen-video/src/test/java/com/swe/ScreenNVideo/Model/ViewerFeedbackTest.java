@@ -0,0 +1,27 @@
+/**
+ * Contributed by @alonot.
+ */
+package com.swe.ScreenNVideo.Model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests for ViewerFeedback.
+ */
+public class ViewerFeedbackTest {
+
+    /**
+     * Tests that a report survives serialization.
+     */
+    @Test
+    public void testSerializeRoundTrip() {
+        final ViewerFeedback feedback = new ViewerFeedback("10.32.1.7", false, 5_000_000_000L, 1234, 3);
+
+        final byte[] data = feedback.serialize();
+
+        assertEquals(NetworkPacketType.VIEWER_FEEDBACK.ordinal(), data[0]);
+        assertEquals(feedback, ViewerFeedback.deserialize(data));
+    }
+}
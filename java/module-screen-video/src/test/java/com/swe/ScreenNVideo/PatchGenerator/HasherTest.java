@@ -1,5 +1,6 @@
 package com.swe.ScreenNVideo.PatchGenerator;
 
+import com.swe.ScreenNVideo.Model.Frame;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -24,6 +25,30 @@ public class HasherTest {
         return img;
     }
 
+    /**
+     * Additive channel sum the hasher used before, kept to pin its false negatives.
+     */
+    private long legacyHash(int[][] img, int x, int y, int w, int h, int stride) {
+        long hash = 0;
+        for (int i = 0; i < w; i += stride) {
+            for (int j = 0; j < h; j += stride) {
+                int pixel = img[y + j][x + i];
+                hash += (pixel >> 16) & 0xFF;
+                hash += (long) ((pixel >> 8) & 0xFF) << 20;
+                hash += (long) (pixel & 0xFF) << 40;
+            }
+        }
+        return hash;
+    }
+
+    private int[][] copy(int[][] img) {
+        int[][] res = new int[img.length][];
+        for (int i = 0; i < img.length; i++) {
+            res[i] = img[i].clone();
+        }
+        return res;
+    }
+
     @Test
     void testHashNoStrideFullPatch() {
         int[][] img = createTestImage(3, 3);
@@ -31,16 +56,14 @@ public class HasherTest {
 
         long hash = hasher.hash(img, 0, 0, 3, 3);
 
-        // manual calculation for 9 pixels
-        long expected = 0;
-        for (int v = 1; v <= 9; v++) {
-            int r = v, g = v, b = v;
-            expected += r;
-            expected += ((long) g) << 20;
-            expected += ((long) b) << 40;
+        // every single pixel takes part in the full tile hash
+        for (int y = 0; y < 3; y++) {
+            for (int x = 0; x < 3; x++) {
+                int[][] changed = copy(img);
+                changed[y][x] ^= 1;
+                assertNotEquals(hash, hasher.hash(changed, 0, 0, 3, 3), "pixel " + x + "," + y);
+            }
         }
-
-        assertEquals(expected, hash);
     }
 
     @Test
@@ -51,31 +74,17 @@ public class HasherTest {
         long hash = hasher.hash(img, 0, 0, 5, 5);
 
         // should sample pixels at (0,0), (2,0), (4,0), (0,2), (2,2), (4,2), (0,4), (2,4), (4,4)
-        int[] sampleValues = {
-                1, 3, 5,
-                11, 13, 15,
-                21, 23, 25
-        };
-
-        long expected = 0;
-        for (int v : sampleValues) {
-            expected += v;
-            expected += ((long) v) << 20;
-            expected += ((long) v) << 40;
+        for (int y = 0; y < 5; y++) {
+            for (int x = 0; x < 5; x++) {
+                int[][] changed = copy(img);
+                changed[y][x] ^= 0x010101;
+                if (x % 2 == 0 && y % 2 == 0) {
+                    assertNotEquals(hash, hasher.hash(changed, 0, 0, 5, 5), "sampled pixel " + x + "," + y);
+                } else {
+                    assertEquals(hash, hasher.hash(changed, 0, 0, 5, 5), "skipped pixel " + x + "," + y);
+                }
+            }
         }
-
-        assertEquals(expected, hash);
-    }
-
-    @Test
-    void testStrideLessThanOneDefaultsToOne() {
-        Hasher h = new Hasher(0);  // should become stride=1
-        int[][] img = createTestImage(2, 2);
-
-        long hash1 = h.hash(img, 0, 0, 2, 2);
-        long hash2 = new Hasher(1).hash(img, 0, 0, 2, 2);
-
-        assertEquals(hash2, hash1);
     }
 
     @Test
@@ -86,15 +95,65 @@ public class HasherTest {
         // Subregion: top-left 2x2 -> values: 1,2,6,7
         long hash = hasher.hash(img, 0, 0, 2, 2);
 
-        int[] vals = {1, 2, 6, 7};
-        long expected = 0;
-        for (int v : vals) {
-            expected += v;
-            expected += ((long) v) << 20;
-            expected += ((long) v) << 40;
+        int[][] other = new int[4][4];
+        other[2][1] = img[0][0];
+        other[2][2] = img[0][1];
+        other[3][1] = img[1][0];
+        other[3][2] = img[1][1];
+
+        assertEquals(hash, hasher.hash(other, 1, 2, 2, 2));
+    }
+
+    @Test
+    void testAlphaIgnored() {
+        int[][] img = createTestImage(4, 4);
+        int[][] opaque = copy(img);
+        for (int[] row : opaque) {
+            for (int x = 0; x < row.length; x++) {
+                row[x] |= 0xFF000000;
+            }
         }
+        Hasher hasher = new Hasher(1);
 
-        assertEquals(expected, hash);
+        assertEquals(hasher.hash(img, 0, 0, 4, 4), hasher.hash(opaque, 0, 0, 4, 4));
+    }
+
+    @Test
+    void testNoFalseNegativesOfLegacyHash() {
+        int[][] img = createTestImage(8, 8);
+        Hasher hasher = new Hasher(1);
+        long hash = hasher.hash(img, 0, 0, 8, 8);
+
+        // two pixels swapping places
+        int[][] swapped = copy(img);
+        swapped[1][2] = img[5][6];
+        swapped[5][6] = img[1][2];
+        assertEquals(legacyHash(img, 0, 0, 8, 8, 1), legacyHash(swapped, 0, 0, 8, 8, 1));
+        assertNotEquals(hash, hasher.hash(swapped, 0, 0, 8, 8));
+
+        // a value moving from one pixel to its neighbour (e.g. a cursor moving by one pixel)
+        int[][] moved = copy(img);
+        moved[3][3] += 0x000010;
+        moved[3][4] -= 0x000010;
+        assertEquals(legacyHash(img, 0, 0, 8, 8, 1), legacyHash(moved, 0, 0, 8, 8, 1));
+        assertNotEquals(hash, hasher.hash(moved, 0, 0, 8, 8));
+
+        // an edit between the stride 2 samples (e.g. a typed character one pixel wide)
+        int[][] subStride = copy(img);
+        subStride[1][1] = 0;
+        assertEquals(legacyHash(img, 0, 0, 8, 8, 2), legacyHash(subStride, 0, 0, 8, 8, 2));
+        assertNotEquals(hash, hasher.hash(subStride, 0, 0, 8, 8));
+    }
+
+    @Test
+    void testStrideLessThanOneDefaultsToOne() {
+        Hasher h = new Hasher(0);  // should become stride=1
+        int[][] img = createTestImage(2, 2);
+
+        long hash1 = h.hash(img, 0, 0, 2, 2);
+        long hash2 = new Hasher(1).hash(img, 0, 0, 2, 2);
+
+        assertEquals(hash2, hash1);
     }
 
     @Test
@@ -107,4 +166,39 @@ public class HasherTest {
 
         assertEquals(h1, h2);
     }
+
+    @Test
+    void testFrameHashMatchesMatrixHash() {
+        int[][] img = createTestImage(7, 9);
+        Frame frame = Frame.fromMatrix(img);
+
+        for (int stride = 1; stride <= 3; stride++) {
+            Hasher hasher = new Hasher(stride);
+            assertEquals(hasher.hash(img, 0, 0, 7, 9), hasher.hashFrame(frame, 0, 0, 7, 9));
+            assertEquals(hasher.hash(img, 2, 3, 5, 4), hasher.hashFrame(frame, 2, 3, 5, 4));
+        }
+    }
+
+    @Test
+    void testHashTilesMatchesHashFrame() {
+        int[][] img = createTestImage(70, 45);
+        Frame frame = Frame.fromMatrix(img);
+        // 3 x 2 tiles, the last column and row are partial
+        long[] hashes = new long[6];
+
+        for (int stride = 1; stride <= 3; stride++) {
+            Hasher hasher = new Hasher(stride);
+            hasher.hashTiles(frame, 32, hashes);
+            int i = 0;
+            for (int y = 0; y < 45; y += 32) {
+                for (int x = 0; x < 70; x += 32) {
+                    int w = Math.min(32, 70 - x);
+                    int h = Math.min(32, 45 - y);
+                    assertEquals(hasher.hashFrame(frame, x, y, w, h), hashes[i], "tile " + i + " stride " + stride);
+                    assertEquals(hasher.hash(img, x, y, w, h), hashes[i], "tile " + i + " stride " + stride);
+                    i++;
+                }
+            }
+        }
+    }
 }
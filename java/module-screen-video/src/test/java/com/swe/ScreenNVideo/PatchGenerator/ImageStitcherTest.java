@@ -6,12 +6,16 @@
 
 package com.swe.ScreenNVideo.PatchGenerator;
 
+import com.swe.ScreenNVideo.Model.Frame;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import java.util.Arrays;
 import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 // NOTE: This test assumes that com.swe.ScreenNVideo.Utils.copyMatrix is available and functional
 // as part of the overall module environment.
@@ -339,4 +343,68 @@ public class ImageStitcherTest {
         // Check initial area where no patch was applied (should be FILL_COLOR)
         assertEquals(FILL_COLOR, stitcher.getCanvas()[2][2], "Unpatched area should remain original fill color.");
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests that a patch lands on a frame canvas exactly as on a matrix canvas, including clipping.
+     */
+    @Test
+    void testPatchApplyOnFrameMatchesMatrix() {
+        final int[][] patchPixels = new int[3][3];
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                patchPixels[i][j] = i * 3 + j + 1;
+            }
+        }
+        final int[][] positions = {{1, 1}, {-1, -1}, {4, 3}, {-2, 3}};
+        for (final int[] pos : positions) {
+            final int[][] matrixCanvas = createSolidMatrix(5, 5, FILL_COLOR);
+            final Frame frameCanvas = Frame.fromMatrix(matrixCanvas);
+
+            new Patch(patchPixels, pos[0], pos[1]).applyOn(matrixCanvas);
+            new Patch(patchPixels, pos[0], pos[1]).applyOn(frameCanvas);
+            assertArrayEquals(matrixCanvas, frameCanvas.toMatrix(), "Matrix patch at " + pos[0] + "," + pos[1]);
+
+            final Frame frameCanvas2 = Frame.fromMatrix(createSolidMatrix(5, 5, FILL_COLOR));
+            new Patch(Frame.fromMatrix(patchPixels), pos[0], pos[1]).applyOn(frameCanvas2);
+            assertArrayEquals(matrixCanvas, frameCanvas2.toMatrix(), "Frame patch at " + pos[0] + "," + pos[1]);
+        }
+    }
+
+    /**
+     * Tests stitching in frame mode, including growing the frame canvas.
+     */
+    @Test
+    void testStitchFrameCanvasExpands() {
+        stitcher.setCanvas(Frame.fromMatrix(createSolidMatrix(INITIAL_H, INITIAL_W, FILL_COLOR)));
+        stitcher.stitch(new Patch(Frame.fromMatrix(createSolidMatrix(4, 4, TEST_COLOR)), 8, 8));
+
+        final Frame canvas = stitcher.getCanvasFrame();
+        assertNull(stitcher.getCanvas(), "Matrix canvas is unused in frame mode");
+        assertEquals(12, canvas.getHeight());
+        assertEquals(12, canvas.getWidth());
+        assertEquals(FILL_COLOR, canvas.get(0, 0));
+        assertEquals(TEST_COLOR, canvas.get(11, 11));
+        assertEquals(0, canvas.get(0, 11), "Newly grown area starts empty");
+    }
+
+    /**
+     * Tests that fitCanvas grows the canvas once for all patches, keeping its content.
+     */
+    @Test
+    void testFitCanvasCoversAllPatches() {
+        stitcher.setCanvas(Frame.fromMatrix(createSolidMatrix(INITIAL_H, INITIAL_W, FILL_COLOR)));
+        final Patch right = new Patch(Frame.fromMatrix(createSolidMatrix(2, 4, TEST_COLOR)), 9, 0);
+        final Patch below = new Patch(Frame.fromMatrix(createSolidMatrix(3, 2, TEST_COLOR)), 0, 10);
+
+        stitcher.fitCanvas(List.of(right, below));
+        final Frame canvas = stitcher.getCanvasFrame();
+        assertEquals(13, canvas.getHeight());
+        assertEquals(13, canvas.getWidth());
+        assertEquals(FILL_COLOR, canvas.get(0, 0));
+
+        stitcher.stitch(right);
+        stitcher.stitch(below);
+        assertSame(canvas, stitcher.getCanvasFrame(), "Stitching fitted patches does not resize");
+        assertEquals(TEST_COLOR, canvas.get(12, 1));
+    }
+}
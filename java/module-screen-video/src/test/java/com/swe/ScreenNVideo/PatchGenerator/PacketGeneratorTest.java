@@ -6,6 +6,7 @@ import com.swe.ScreenNVideo.Utils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -252,4 +253,139 @@ public class PacketGeneratorTest {
         assertEquals(4, fp.compressedPatches().size());
     }
 
+
+    // ---------------------------------------------------------
+    // TEST 7 : PARALLEL ENCODING KEEPS ROW-MAJOR PATCH ORDER
+    // ---------------------------------------------------------
+    @Test
+    void testParallelEncodingKeepsOrder() {
+        final int workers = 3;
+        final Codec[] created = new Codec[workers];
+        final int[] next = {0};
+        final PacketGenerator parallel = new PacketGenerator(codec, hasher, () -> {
+            final Codec worker = mock(Codec.class);
+            when(worker.encode(any(), anyInt(), anyInt(), anyInt(), anyInt()))
+                    .thenAnswer(inv -> List.of(
+                            new byte[]{(byte) (int) inv.getArgument(1), (byte) (int) inv.getArgument(2)},
+                            new byte[]{0}));
+            created[next[0]++] = worker;
+            return worker;
+        }, workers);
+
+        int[][] img = new int[128][128]; // 4x4 tiles, all dirty on first frame
+        when(hasher.hash(any(), anyInt(), anyInt(), anyInt(), anyInt())).thenReturn(7L);
+
+        FeedPatch fp = parallel.generatePackets(img);
+
+        assertEquals(16, fp.compressedPatches().size());
+        for (int i = 0; i < 16; i++) {
+            CompressedPatch cp = fp.compressedPatches().get(i);
+            assertEquals((i % 4) * 32, cp.x());
+            assertEquals((i / 4) * 32, cp.y());
+            assertArrayEquals(new byte[]{(byte) cp.x(), (byte) cp.y()}, cp.data());
+        }
+        // the shared codec is never used for sharded frames, every worker codec is
+        verify(codec, never()).encode(any(), anyInt(), anyInt(), anyInt(), anyInt());
+        for (Codec worker : created) {
+            verify(worker, atLeastOnce()).encode(any(), anyInt(), anyInt(), anyInt(), anyInt());
+        }
+        assertTrue(parallel.getLastWorkerUtilisation() >= 0);
+        assertTrue(parallel.getLastWorkerUtilisation() <= 1);
+    }
+
+    // ---------------------------------------------------------
+    // TEST 8 : SMALL DIFFS STAY ON THE CALLING THREAD
+    // ---------------------------------------------------------
+    @Test
+    void testParallelModeSmallDiffUsesSharedCodec() {
+        final Codec worker = mock(Codec.class);
+        final PacketGenerator parallel = new PacketGenerator(codec, hasher, () -> worker, 2);
+
+        int[][] img = new int[32][32];
+        when(hasher.hash(any(), anyInt(), anyInt(), anyInt(), anyInt())).thenReturn(5L);
+        when(codec.encode(any(), anyInt(), anyInt(), anyInt(), anyInt()))
+                .thenReturn(List.of(new byte[]{1}, new byte[]{2}));
+
+        FeedPatch fp = parallel.generatePackets(img);
+
+        assertEquals(1, fp.compressedPatches().size());
+        verify(worker, never()).encode(any(), anyInt(), anyInt(), anyInt(), anyInt());
+        assertEquals(1.0, parallel.getLastWorkerUtilisation());
+    }
+
+    // ---------------------------------------------------------
+    // TEST 9 : ONLY REQUIRED VARIANTS ARE ENCODED
+    // ---------------------------------------------------------
+    @Test
+    void testGeneratePacketsOnlyRequiredVariant() {
+        int[][] img = new int[32][32];
+        when(hasher.hash(any(), anyInt(), anyInt(), anyInt(), anyInt())).thenReturn(3L);
+        final List<byte[]> onlyCompressed = new ArrayList<>();
+        onlyCompressed.add(new byte[]{1});
+        onlyCompressed.add(null);
+        when(codec.encode(any(), anyInt(), anyInt(), anyInt(), anyInt(), eq(true), eq(false)))
+                .thenReturn(onlyCompressed);
+
+        generator.setRequiredVariants(true, false);
+        FeedPatch fp = generator.generatePackets(img);
+
+        assertEquals(1, fp.compressedPatches().size());
+        assertEquals(0, fp.unCompressedPatches().size());
+        verify(codec, never()).encode(any(), anyInt(), anyInt(), anyInt(), anyInt());
+    }
+
+    @Test
+    void testTileBudgetDefersRemainingTilesToNextFrames() {
+        int[][] img = new int[64][64]; // 2x2 tiles, every tile dirty and unchanged afterwards
+        when(hasher.hash(any(), anyInt(), anyInt(), anyInt(), anyInt())).thenReturn(5L);
+        when(codec.encode(any(), anyInt(), anyInt(), anyInt(), anyInt()))
+                .thenReturn(List.of(new byte[]{1}, new byte[]{2}));
+
+        generator.setTileBudget(25); // one tile per frame
+        final int[][] expected = {{0, 0}, {32, 0}, {0, 32}, {32, 32}};
+        for (int[] tile : expected) {
+            FeedPatch fp = generator.generatePackets(img);
+            assertEquals(1, fp.compressedPatches().size());
+            assertEquals(tile[0], fp.compressedPatches().get(0).x());
+            assertEquals(tile[1], fp.compressedPatches().get(0).y());
+        }
+        assertEquals(0, generator.getLastDeferredTiles());
+        assertTrue(generator.generatePackets(img).compressedPatches().isEmpty());
+    }
+
+    @Test
+    void testTileBudgetStartsAfterLastSentTile() {
+        int[][] img = new int[64][64];
+        // tile (0,0) changes every frame, the others only once
+        when(hasher.hash(any(), eq(0), eq(0), anyInt(), anyInt())).thenReturn(1L, 2L, 3L, 4L);
+        when(hasher.hash(any(), eq(32), eq(0), anyInt(), anyInt())).thenReturn(7L);
+        when(hasher.hash(any(), eq(0), eq(32), anyInt(), anyInt())).thenReturn(7L);
+        when(hasher.hash(any(), eq(32), eq(32), anyInt(), anyInt())).thenReturn(7L);
+        when(codec.encode(any(), anyInt(), anyInt(), anyInt(), anyInt()))
+                .thenReturn(List.of(new byte[]{1}, new byte[]{2}));
+
+        generator.setTileBudget(50); // two tiles per frame
+        FeedPatch first = generator.generatePackets(img);
+        assertEquals(2, generator.getLastDeferredTiles());
+        assertEquals(0, first.compressedPatches().get(0).x());
+        assertEquals(32, first.compressedPatches().get(1).x());
+
+        // the busy tile does not starve the deferred ones
+        FeedPatch second = generator.generatePackets(img);
+        assertEquals(2, second.compressedPatches().size());
+        assertEquals(32, second.compressedPatches().get(0).y());
+        assertEquals(32, second.compressedPatches().get(1).y());
+    }
+
+    @Test
+    void testSetQualityReachesEveryCodec() {
+        final Codec worker = mock(Codec.class);
+        final PacketGenerator parallel = new PacketGenerator(codec, hasher, () -> worker, 2);
+
+        parallel.setQuality(42);
+
+        verify(codec).setQuality(42);
+        verify(worker, times(2)).setQuality(42);
+    }
+
 }
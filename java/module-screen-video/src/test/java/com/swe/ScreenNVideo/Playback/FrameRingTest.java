@@ -0,0 +1,108 @@
+/**
+ * Contributed by @BhupathiVarun.
+ */
+
+package com.swe.ScreenNVideo.Playback;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for FrameRing.
+ */
+public class FrameRingTest {
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Tests that heap slots are reused and only reallocated when the frame size changes.
+     */
+    @Test
+    public void testHeapSlotsAreReused() {
+        final FrameRing ring = new FrameRing(1);
+
+        final FrameRing.Slot first = ring.acquire(16);
+        assertEquals(16, first.array().length);
+        assertEquals(16, first.getBuffer().remaining());
+        final byte[] array = first.array();
+        ring.release(first);
+
+        final FrameRing.Slot second = ring.acquire(16);
+        assertSame(array, second.array());
+        ring.release(second);
+
+        final FrameRing.Slot resized = ring.acquire(8);
+        assertNotSame(array, resized.array());
+        assertEquals(8, resized.array().length);
+        assertEquals(2, ring.getReallocations());
+        assertFalse(ring.isShared());
+    }
+
+    /**
+     * Tests that frames are dropped while every slot is in flight.
+     */
+    @Test
+    public void testDropsWhenAllSlotsBusy() {
+        final FrameRing ring = new FrameRing(2);
+
+        final FrameRing.Slot a = ring.acquire(4);
+        final FrameRing.Slot b = ring.acquire(4);
+        assertNotSame(a, b);
+        assertNull(ring.acquire(4));
+        assertEquals(1, ring.getDropped());
+
+        ring.release(a);
+        assertSame(a, ring.acquire(4));
+    }
+
+    /**
+     * Tests that a mapped ring writes its slots into the shared file.
+     */
+    @Test
+    public void testMappedSlotsLandInFile() throws Exception {
+        final Path file = tempDir.resolve("frames.ring");
+        try (FrameRing ring = FrameRing.mapped(file, 2, 8)) {
+            assertTrue(ring.isShared());
+            assertEquals(16, Files.size(file));
+
+            ring.acquire(4);
+            final FrameRing.Slot slot = ring.acquire(4);
+            assertNotNull(slot);
+            assertEquals(8, slot.getOffset());
+            slot.getBuffer().putInt(0xCAFEBABE);
+
+            assertNull(ring.acquire(9), "frames larger than a slot do not fit");
+
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                final ByteBuffer read = ByteBuffer.allocate(4);
+                channel.read(read, slot.getOffset());
+                assertEquals(0xCAFEBABE, read.flip().getInt());
+            }
+        }
+        assertFalse(Files.exists(file), "closing removes the ring file");
+    }
+
+    /**
+     * Tests that a ring needs at least one slot.
+     */
+    @Test
+    public void testRejectsEmptyRing() {
+        assertThrows(IllegalArgumentException.class, () -> new FrameRing(0));
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * Contributed by @BhupathiVarun.
+ */
+
+package com.swe.ScreenNVideo.Playback;
+
+import com.swe.ScreenNVideo.Model.DirtyRect;
+import com.swe.ScreenNVideo.Model.RImage;
+import com.swe.ScreenNVideo.Utils;
+import com.swe.core.RPCinterface.AbstractRPC;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Tests for UiPublisher.
+ */
+public class UiPublisherTest {
+
+    private static final String IP = "10.0.0.2";
+
+    private RecordingRpc rpc;
+    private FrameRing ring;
+    private UiPublisher publisher;
+
+    @BeforeEach
+    public void setUp() {
+        rpc = new RecordingRpc();
+        ring = new FrameRing(1);
+        publisher = new UiPublisher(rpc, ring);
+    }
+
+    private static RImage image() {
+        return new RImage(new int[][] {{1, 2}, {3, 4}}, IP, 0);
+    }
+
+    private static RImage rects() {
+        return image().withDirtyRects(List.of(new DirtyRect(0, 0, 1, 1)));
+    }
+
+    /**
+     * Tests that the image is serialized into the ring slot which is reused once the UI answered.
+     */
+    @Test
+    public void testSendsSlotArrayAndReusesIt() {
+        publisher.publish(image());
+        assertEquals(Utils.UPDATE_UI, rpc.methods.get(0));
+        assertArrayEquals(image().serialize(), rpc.payloads.get(0));
+
+        // slot still in flight
+        assertEquals(0, publisher.publish(image()).join().length);
+        assertEquals(1, ring.getDropped());
+
+        rpc.answer(0, new byte[] {1});
+        publisher.publish(image());
+        assertSame(rpc.payloads.get(0), rpc.payloads.get(1));
+    }
+
+    /**
+     * Tests that dirty rectangles are only sent once the UI has the full image.
+     */
+    @Test
+    public void testFirstImageIsSentFull() {
+        publisher.publish(rects());
+        assertEquals(Utils.UPDATE_UI, rpc.methods.get(0));
+        rpc.answer(0, new byte[] {1});
+
+        publisher.publish(rects());
+        assertEquals(Utils.UPDATE_UI_RECTS, rpc.methods.get(1));
+        assertArrayEquals(rects().serialize(), rpc.payloads.get(1));
+    }
+
+    /**
+     * Tests that a refused or dropped frame makes the next one a full image.
+     */
+    @Test
+    public void testResyncsAfterRefusalAndDrop() {
+        publisher.publish(rects());
+        rpc.answer(0, new byte[] {0});
+
+        publisher.publish(rects());
+        assertEquals(Utils.UPDATE_UI, rpc.methods.get(1));
+
+        // dropped while the previous frame is in flight
+        publisher.publish(rects());
+        rpc.answer(1, new byte[] {1});
+
+        publisher.publish(rects());
+        assertEquals(Utils.UPDATE_UI, rpc.methods.get(2));
+        rpc.answer(2, new byte[] {1});
+
+        publisher.publish(rects());
+        assertEquals(Utils.UPDATE_UI_RECTS, rpc.methods.get(3));
+    }
+
+    /**
+     * RPC recording the calls and answering them on demand.
+     */
+    private static final class RecordingRpc implements AbstractRPC {
+        private final List<String> methods = new ArrayList<>();
+        private final List<byte[]> payloads = new ArrayList<>();
+        private final List<CompletableFuture<byte[]>> results = new ArrayList<>();
+
+        @Override
+        public void subscribe(final String methodName, final Function<byte[], byte[]> method) {
+        }
+
+        @Override
+        public Thread connect(final int portNumber) {
+            return null;
+        }
+
+        @Override
+        public CompletableFuture<byte[]> call(final String methodName, final byte[] data) {
+            methods.add(methodName);
+            payloads.add(data);
+            final CompletableFuture<byte[]> result = new CompletableFuture<>();
+            results.add(result);
+            return result;
+        }
+
+        void answer(final int call, final byte[] res) {
+            results.get(call).complete(res);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/**
+ * Contributed by @alonot.
+ */
+package com.swe.ScreenNVideo.RateControl;
+
+import com.swe.ScreenNVideo.Model.ViewerFeedback;
+import com.swe.ScreenNVideo.Utils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests for RateController.
+ */
+public class RateControllerTest {
+
+    private static final long TARGET = 1_000_000;
+    private static final long T0 = 100_000;
+    private static final String VIEWER = "10.0.0.2";
+
+    private RateController controller;
+
+    @BeforeEach
+    public void setUp() {
+        controller = new RateController(TARGET);
+    }
+
+    private static ViewerFeedback clean(final boolean compressed) {
+        return new ViewerFeedback(VIEWER, compressed, 0, 0, 0);
+    }
+
+    private static ViewerFeedback withGaps(final boolean compressed) {
+        return new ViewerFeedback(VIEWER, compressed, 0, 0, 2);
+    }
+
+    /**
+     * Tests that the groups start at the best operating point.
+     */
+    @Test
+    public void testStartsAtBestPoint() {
+        assertEquals(new OperatingPoint(99, Utils.FPS, 100), controller.getOperatingPoint(true));
+        assertEquals(new OperatingPoint(99, Utils.FPS, 100), controller.getOperatingPoint(false));
+    }
+
+    /**
+     * Tests that gaps step the group down, at most once per hold time.
+     */
+    @Test
+    public void testGapsStepDownOncePerHold() {
+        controller.onFeedback(withGaps(true), T0);
+        assertEquals(90, controller.getOperatingPoint(true).quality());
+
+        controller.onFeedback(withGaps(true), T0 + RateController.HOLD_MS / 2);
+        assertEquals(90, controller.getOperatingPoint(true).quality());
+
+        controller.onFeedback(withGaps(true), T0 + RateController.HOLD_MS);
+        assertEquals(new OperatingPoint(80, 30, 100), controller.getOperatingPoint(true));
+    }
+
+    /**
+     * Tests that decoding slower than the frame period counts as congestion.
+     */
+    @Test
+    public void testSlowDecodeStepsDown() {
+        controller.onFeedback(new ViewerFeedback(VIEWER, true, 0, 1_000_000 / Utils.FPS, 0), T0);
+        assertEquals(99, controller.getOperatingPoint(true).quality());
+
+        controller.onFeedback(new ViewerFeedback(VIEWER, true, 0, 1_000_000 / Utils.FPS + 1, 0), T0);
+        assertEquals(90, controller.getOperatingPoint(true).quality());
+    }
+
+    /**
+     * Tests that receiving clearly less than was sent counts as congestion.
+     */
+    @Test
+    public void testDeliveryShortfallStepsDown() {
+        controller.recordSent(true, 100_000, T0);
+        controller.recordSent(true, 100_000, T0 + Utils.SEC_IN_MS);
+        assertEquals(200_000, controller.getSentBytesPerSec(true));
+
+        controller.onFeedback(new ViewerFeedback(VIEWER, true, 190_000, 0, 0), T0);
+        assertEquals(99, controller.getOperatingPoint(true).quality());
+
+        controller.onFeedback(new ViewerFeedback(VIEWER, true, 100_000, 0, 0), T0);
+        assertEquals(90, controller.getOperatingPoint(true).quality());
+    }
+
+    /**
+     * Tests that a group sending over the target steps down even with clean reports.
+     */
+    @Test
+    public void testOverTargetStepsDown() {
+        controller.recordSent(false, (int) TARGET, T0);
+        controller.recordSent(false, (int) TARGET, T0 + Utils.SEC_IN_MS);
+
+        controller.onFeedback(new ViewerFeedback(VIEWER, false, 2 * TARGET, 0, 0), T0 + Utils.SEC_IN_MS);
+
+        assertEquals(Utils.FPS, controller.getOperatingPoint(false).fps());
+        assertEquals(90, controller.getOperatingPoint(false).quality());
+        assertEquals(99, controller.getOperatingPoint(true).quality());
+    }
+
+    /**
+     * Tests that a group steps back up once it stayed clean for the recovery time.
+     */
+    @Test
+    public void testRecoversAfterCleanPeriod() {
+        controller.onFeedback(withGaps(true), T0);
+        controller.onFeedback(withGaps(true), T0 + RateController.HOLD_MS);
+        final long lastCongestion = T0 + RateController.HOLD_MS;
+
+        controller.onFeedback(clean(true), lastCongestion + RateController.RECOVERY_MS - 1);
+        assertEquals(80, controller.getOperatingPoint(true).quality());
+
+        controller.onFeedback(clean(true), lastCongestion + RateController.RECOVERY_MS);
+        assertEquals(90, controller.getOperatingPoint(true).quality());
+
+        // one step per recovery period
+        controller.onFeedback(clean(true), lastCongestion + RateController.RECOVERY_MS + 1);
+        assertEquals(90, controller.getOperatingPoint(true).quality());
+        controller.onFeedback(clean(true), lastCongestion + 2 * RateController.RECOVERY_MS);
+        assertEquals(99, controller.getOperatingPoint(true).quality());
+    }
+
+    /**
+     * Tests that the level stops at the cheapest point.
+     */
+    @Test
+    public void testStopsAtCheapestPoint() {
+        for (int i = 0; i < 20; i++) {
+            controller.onFeedback(withGaps(true), T0 + i * RateController.HOLD_MS);
+        }
+        assertEquals(new OperatingPoint(30, 5, 25), controller.getOperatingPoint(true));
+    }
+
+    /**
+     * Tests that the shared pipeline follows the most constrained group with viewers.
+     */
+    @Test
+    public void testEffectivePointCombinesGroups() {
+        for (int i = 0; i < 3; i++) {
+            controller.onFeedback(withGaps(false), T0 + i * RateController.HOLD_MS);
+        }
+        controller.onFeedback(withGaps(true), T0);
+
+        assertEquals(new OperatingPoint(90, 30, 75), controller.getEffectivePoint(true, true));
+        assertEquals(new OperatingPoint(90, Utils.FPS, 100), controller.getEffectivePoint(true, false));
+        assertEquals(new OperatingPoint(99, 30, 75), controller.getEffectivePoint(false, true));
+    }
+
+    /**
+     * Tests that reset brings a group back to the best point.
+     */
+    @Test
+    public void testReset() {
+        controller.onFeedback(withGaps(true), T0);
+        controller.recordSent(true, 10, T0);
+
+        controller.reset(true);
+
+        assertEquals(99, controller.getOperatingPoint(true).quality());
+        assertEquals(0, controller.getSentBytesPerSec(true));
+    }
+}
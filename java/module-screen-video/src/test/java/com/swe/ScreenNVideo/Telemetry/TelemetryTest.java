@@ -102,6 +102,71 @@ public class TelemetryTest {
         assertEquals(1, models.size(), "Should have one model");
     }
 
+    /**
+     * Tests that addEncodeStats records encode time and worker utilisation.
+     */
+    @Test
+    public void testAddEncodeStats_RecordsOnModel() {
+        telemetry.addEncodeStats(12.5, 0.75);
+        telemetry.addEncodeStats(7.5, 0.25);
+
+        final List<ScreenVideoTelemetryModel> models = telemetry.getAllScreenVideosTelemetry();
+        assertEquals(1, models.size(), "Should have one model after addEncodeStats");
+        assertEquals(2, models.get(0).getEncodedFrames());
+        assertEquals(10.0, models.get(0).getAvgEncodeTimeMs(), 1e-9);
+        assertEquals(12.5, models.get(0).getMaxEncodeTimeMs(), 1e-9);
+        assertEquals(0.5, models.get(0).getAvgWorkerUtilisation(), 1e-9);
+    }
+
+    /**
+     * Tests that returned models are snapshots which later updates do not change.
+     */
+    @Test
+    public void testGetAllScreenVideosTelemetry_ReturnsSnapshot() {
+        telemetry.addEncodeStats(12.5, 0.75);
+        final ScreenVideoTelemetryModel model = telemetry.getAllScreenVideosTelemetry().get(0);
+
+        telemetry.addEncodeStats(20.0, 1.0);
+        telemetry.addFps(30.0);
+
+        assertEquals(1, model.getEncodedFrames());
+        assertEquals(12.5, model.getMaxEncodeTimeMs(), 1e-9);
+        assertTrue(model.getFpsEvery3Seconds().isEmpty());
+    }
+
+    /**
+     * Tests that pacer overruns are counted per stream.
+     */
+    @Test
+    public void testAddOverruns_RecordsOnModel() {
+        telemetry.addVideoOverrun(2);
+        telemetry.addVideoOverrun(0);
+        telemetry.addAudioOverrun(1);
+
+        final List<ScreenVideoTelemetryModel> models = telemetry.getAllScreenVideosTelemetry();
+        assertEquals(1, models.size(), "Should have one model after addVideoOverrun");
+        assertEquals(2, models.get(0).getVideoOverruns());
+        assertEquals(2, models.get(0).getVideoSkippedFrames());
+        assertEquals(1, models.get(0).getAudioOverruns());
+        assertEquals(1, models.get(0).getAudioSkippedChunks());
+    }
+
+    /**
+     * Tests that the operating point is recorded on the current model.
+     */
+    @Test
+    public void testSetOperatingPoint_RecordsOnModel() {
+        telemetry.setOperatingPoint(90, 40, 100);
+        telemetry.setOperatingPoint(60, 20, 75);
+
+        final List<ScreenVideoTelemetryModel> models = telemetry.getAllScreenVideosTelemetry();
+        assertEquals(1, models.size(), "Should have one model after setOperatingPoint");
+        assertEquals(60, models.get(0).getOperatingQuality());
+        assertEquals(20, models.get(0).getOperatingFps());
+        assertEquals(75, models.get(0).getOperatingTileBudget());
+        assertEquals(2, models.get(0).getOperatingPointChanges());
+    }
+
     /**
      * Tests that setWithCamera creates a new model if none exists.
      */